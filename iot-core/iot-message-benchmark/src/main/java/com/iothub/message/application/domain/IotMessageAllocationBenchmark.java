@@ -0,0 +1,92 @@
+package com.iothub.message.application.domain;
+
+import com.iothub.message.application.enums.MessageSourceType;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入站负载从适配器到处理器的每条消息分配量
+ * 对比原来的字符串方式（转换器解码为字符串，处理前再按平台字符集转换一次）与字节视图方式：
+ * 只读取或转发负载的处理器不解码、不复制，需要文本的处理器才按 UTF-8 解码一次。
+ * 分配量需配合 GC 分析器查看 gc.alloc.rate.norm（每次操作分配的字节数）：
+ * java -jar benchmarks.jar IotMessageAllocationBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IotMessageAllocationBenchmark {
+    
+    private static final InboundHeaders HEADERS =
+            new InboundHeaders(MessageTypeEnum.PROPERTY, MessageSourceType.EDGE, "id-1", "dev-1");
+    
+    @Param({"64", "512", "4096"})
+    public int payloadSize;
+    
+    private byte[] payload;
+    private final OutputStream out = OutputStream.nullOutputStream();
+    
+    @Setup
+    public void setup() {
+        payload = new byte[payloadSize];
+        Arrays.fill(payload, (byte) 'a');
+    }
+    
+    /**
+     * 原来的方式：转换器把负载解码为字符串，处理前再按平台字符集转换一次
+     */
+    @Benchmark
+    public String stringPath() {
+        String converted = new String(payload, StandardCharsets.UTF_8);
+        return new String(converted.getBytes());
+    }
+    
+    /**
+     * 字节视图方式：处理器只读取负载，不解码
+     */
+    @Benchmark
+    public void bytePath(Blackhole blackhole) {
+        IotMessage message = new IotMessage("/topic/dev-1", payload, HEADERS);
+        ByteBuffer view = message.getPayload();
+        blackhole.consume(message);
+        blackhole.consume(view.get(0));
+    }
+    
+    /**
+     * 字节视图方式：处理器原样转发负载
+     */
+    @Benchmark
+    public IotMessage forwardPath() throws IOException {
+        IotMessage message = new IotMessage("/topic/dev-1", payload, HEADERS);
+        message.writePayloadTo(out);
+        return message;
+    }
+    
+    /**
+     * 字节视图方式：处理器需要文本，按 UTF-8 解码一次
+     */
+    @Benchmark
+    public String lazyContentPath() {
+        return new IotMessage("/topic/dev-1", payload, HEADERS).getContent();
+    }
+}
@@ -0,0 +1,93 @@
+package com.iothub.message.application.utils.codec;
+
+import cn.hutool.core.util.StrUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 负载编解码器的编码、解码耗时和编码后大小
+ * 上报数据分为少量属性（small）和较多属性加嵌套结构（large）两种；编码后的字节数在每轮开始时打印，
+ * 同时打印原来 StrUtil.toString 生成的 Map 文本的字节数作为对照。
+ * 运行：java -jar benchmarks.jar PayloadCodecBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadCodecBenchmark {
+    
+    @Param({JsonPayloadCodec.NAME, CborPayloadCodec.NAME, BinaryPayloadCodec.NAME})
+    public String codecName;
+    
+    @Param({"small", "large"})
+    public String report;
+    
+    private PayloadCodec codec;
+    private Map<String, Object> value;
+    private byte[] encoded;
+    
+    @Setup
+    public void setup() {
+        codec = switch (codecName) {
+            case CborPayloadCodec.NAME -> new CborPayloadCodec();
+            case BinaryPayloadCodec.NAME -> new BinaryPayloadCodec();
+            default -> new JsonPayloadCodec();
+        };
+        value = report.equals("small") ? smallReport() : largeReport();
+        encoded = codec.encode(value);
+        System.out.printf("%n[%s/%s] encoded: %d bytes, Map.toString: %d bytes%n", codecName, report, encoded.length,
+                StrUtil.toString(value).getBytes(StandardCharsets.UTF_8).length);
+    }
+    
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(value);
+    }
+    
+    @Benchmark
+    public Object decode() {
+        return codec.decode(encoded);
+    }
+    
+    private static Map<String, Object> smallReport() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("temperature", 23.5);
+        report.put("humidity", 61);
+        report.put("online", true);
+        report.put("timestamp", 1_700_000_000_000L);
+        return report;
+    }
+    
+    private static Map<String, Object> largeReport() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            report.put("property" + i, i % 3 == 0 ? (Object) (i * 1.25) : i % 3 == 1 ? (Object) (i * 17L) : "value-" + i);
+        }
+        report.put("name", "温湿度传感器-1");
+        report.put("tags", List.of("indoor", "floor-3"));
+        Map<String, Object> location = new LinkedHashMap<>();
+        location.put("lat", 31.2304);
+        location.put("lng", 121.4737);
+        report.put("location", location);
+        report.put("samples", new int[]{12, -3, 7, 0, 255, 1024, -65536, 42});
+        report.put("timestamp", 1_700_000_000_000L);
+        return report;
+    }
+}
@@ -1,10 +1,22 @@
 package com.iothub.message.application.core.config;
 
+import com.iothub.message.application.domain.PublishOptions;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.utils.codec.PayloadCompression;
+import com.iothub.message.application.utils.queue.MessagePriority;
+import com.iothub.message.application.utils.queue.OverflowPolicy;
+import com.iothub.message.application.utils.queue.QueueType;
+import com.iothub.message.application.utils.queue.WaitStrategy;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 @ConfigurationProperties(prefix = "iot")
 @Data
 @AllArgsConstructor
@@ -12,4 +24,262 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 public class IotMessageConfigProperties {
     private String tag;
     private Boolean enabled;
+    private int nodeId = 0;    // 消息 ID 中的节点编号（0 ~ 65535），同一系统中的实例应各不相同
+    
+    // 消息分发配置
+    private Dispatcher dispatcher = new Dispatcher();
+    
+    // 接收缓冲队列配置
+    private Queue queue = new Queue();
+    
+    // 入站消息去重配置
+    private Dedup dedup = new Dedup();
+    
+    // 按消息类型配置的批量处理参数，未配置的消息类型逐条处理
+    private Map<MessageTypeEnum, Batch> batches = defaultBatches();
+    
+    // 未单独配置的消息类型使用的发布策略
+    private Delivery defaultDelivery = new Delivery();
+    
+    // 按消息类型配置的发布策略，DataPayload 通过 withMqttConfig 单独指定时以消息为准
+    private Map<MessageTypeEnum, Delivery> deliveries = defaultDeliveries();
+    
+    // 上行发件箱配置
+    private Outbox outbox = new Outbox();
+    
+    // 上行负载编码配置
+    private Codec codec = new Codec();
+    
+    // 上行合并发布配置
+    private Coalescing coalescing = new Coalescing();
+    
+    // 负载压缩配置
+    private Compression compression = new Compression();
+    
+    /**
+     * 消息分发配置：按设备编码（或主题）哈希到固定的处理通道，
+     * 同一设备的消息在同一通道内顺序处理，不同设备之间并行处理
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Dispatcher {
+        private int laneCount = 16;              // 处理通道数量
+        private int laneQueueCapacity = 1000;    // 每个通道的队列容量
+        private int processTimeout = 5;          // 单条消息的处理超时时间（秒）
+        private long dispatchTimeout = 1000;     // 通道已满时受保护的消息类型最多等待的时间（毫秒），超时后丢弃；可丢弃的类型不等待
+    }
+    
+    /**
+     * 入站消息去重配置：按 MessageId 过滤时间窗口内重复投递的消息（如 QoS 1 重连后的重发）
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Dedup {
+        private boolean enabled = true;          // 是否启用去重
+        private long window = 10 * 60 * 1000;    // 去重时间窗口（毫秒）
+        private int capacity = 200_000;          // 单个时间桶内最多记录的消息 ID 数量，超出后提前淘汰最旧的记录
+        private int shards = 64;                 // 分片数量
+        private int generations = 2;             // 每个分片按时间桶划分的代数，记录保留 window ~ window × 代数 / (代数 - 1)
+    }
+    
+    /**
+     * 批量处理配置：同一消息类型的消息攒满 maxSize 条或等待超过 linger 后，一次性交给处理器的 processBatch
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Batch {
+        private int maxSize = 200;    // 单批最大消息数
+        private long linger = 50;     // 攒批的最长等待时间（毫秒）
+    }
+    
+    // 属性上报量最大，默认开启批量处理
+    private static Map<MessageTypeEnum, Batch> defaultBatches() {
+        Map<MessageTypeEnum, Batch> batches = new EnumMap<>(MessageTypeEnum.class);
+        batches.put(MessageTypeEnum.PROPERTY, new Batch(200, 50));
+        return batches;
+    }
+    
+    /**
+     * 发布策略：QoS、保留标志和 MQTT v5 消息过期时间
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Delivery {
+        private int qos = 1;                      // 服务质量等级
+        private boolean retained = false;         // 是否为保留消息
+        private long messageExpiryInterval = 0;   // 消息过期时间（秒），过期后代理不再投递，0 表示不过期
+        
+        public PublishOptions toOptions() {
+            return new PublishOptions(qos, retained, messageExpiryInterval);
+        }
+    }
+    
+    /**
+     * 获取指定消息类型的发布策略
+     */
+    public PublishOptions deliveryOf(MessageTypeEnum messageType) {
+        Delivery delivery = messageType == null ? null : deliveries.get(messageType);
+        return (delivery != null ? delivery : defaultDelivery).toOptions();
+    }
+    
+    // 属性上报只关心最新值，过期未投递的数据不再有意义
+    private static Map<MessageTypeEnum, Delivery> defaultDeliveries() {
+        Map<MessageTypeEnum, Delivery> deliveries = new EnumMap<>(MessageTypeEnum.class);
+        deliveries.put(MessageTypeEnum.PROPERTY, new Delivery(1, false, 300));
+        return deliveries;
+    }
+    
+    /**
+     * 上行发件箱配置：链路不可用时，上报与命令确认追加到本地日志，批量刷盘，重连后按原顺序限速补发
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Outbox {
+        private boolean enabled = false;                 // 是否启用发件箱
+        private String directory = "data/outbox";        // 段文件目录
+        private int segmentSize = 16 * 1024 * 1024;      // 单个段文件大小（字节）
+        private int maxSegments = 64;                    // 保留上限（段数量），达到后丢弃最旧的段
+        private long fsyncInterval = 200;                // 批量刷盘间隔（毫秒），写入在下一次刷盘后才确认
+        private int replayRate = 100;                    // 补发速率上限（条/秒）
+        private long replayAckTimeout = 30000;           // 补发时等待代理确认的超时时间（毫秒）
+        private long retryInterval = 1000;               // 链路不可用或补发失败后的重试间隔（毫秒）
+    }
+    
+    /**
+     * 上行负载编码配置：按消息类型选择编解码器（json、cbor、binary 或自定义 PayloadCodec Bean 的名称），
+     * 编码器的内容类型随消息发出，接收方据此解码
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Codec {
+        private String defaultFormat = "json";                              // 未单独配置的消息类型使用的编解码器
+        private Map<MessageTypeEnum, String> formats = new EnumMap<>(MessageTypeEnum.class); // 按消息类型配置的编解码器
+        
+        /**
+         * 获取指定消息类型的编解码器名称
+         */
+        public String formatOf(MessageTypeEnum messageType) {
+            String format = messageType == null ? null : formats.get(messageType);
+            return format != null ? format : defaultFormat;
+        }
+    }
+    
+    /**
+     * 上行合并发布配置：同一消息类型的设备上报在 linger 时间内攒满 maxRecords 条或 maxBytes 字节后，
+     * 合并为一条信封消息发布到上行主题根，云端接收时拆开后逐条处理
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Coalescing {
+        private boolean enabled = false;              // 是否启用合并发布
+        private int maxRecords = 500;                 // 单个信封最多包含的记录数
+        private int maxBytes = 256 * 1024;            // 单个信封的负载上限（字节），应小于代理允许的最大报文
+        private long linger = 20;                     // 第一条记录最多等待的时间（毫秒）
+        private Set<MessageTypeEnum> types = EnumSet.of(MessageTypeEnum.PROPERTY, MessageTypeEnum.EVENT); // 参与合并的消息类型
+    }
+    
+    /**
+     * 负载压缩配置：达到阈值的上行负载以 deflate 压缩后发送，并通过 ContentEncoding 用户属性标记；
+     * 接收端不论是否启用，都会解压带有该标记的消息
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Compression {
+        private boolean enabled = false;                   // 发送时是否压缩
+        private int threshold = 1024;                      // 负载达到该字节数才压缩，过小的负载压缩收益抵不上开销
+        private int level = 6;                             // deflate 压缩级别（0 ~ 9）
+        private int poolSize = 16;                         // 复用的压缩器和解压器数量上限
+        private int maxInflatedSize = 16 * 1024 * 1024;    // 解压后的最大字节数，超过时丢弃消息
+        
+        public PayloadCompression create() {
+            return new PayloadCompression(threshold, level, poolSize, maxInflatedSize);
+        }
+    }
+    
+    /**
+     * 接收缓冲队列配置
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Queue {
+        private int capacity = 10000;                         // 队列容量（每个优先级通道）
+        private QueueType type = QueueType.RING_MPMC;         // 底层存储类型
+        private WaitStrategy waitStrategy = WaitStrategy.PARK; // 环形队列为空时的等待策略，PARK 挂起后由写入方唤醒，空闲时不占用 CPU
+        
+        private OverflowPolicy defaultOverflowPolicy = OverflowPolicy.DROP_NEWEST; // 未单独配置的消息类型使用的溢出策略
+        private Map<MessageTypeEnum, OverflowPolicy> overflowPolicies = defaultOverflowPolicies(); // 按消息类型配置的溢出策略
+        private long blockTimeout = 5000;      // BLOCK 策略下阻塞写入方的最长等待时间（毫秒），入站适配器不阻塞，放不下的消息暂不确认
+        private double highWaterMark = 0.9;    // 高水位（占容量比例），达到后暂停入站适配器
+        private double lowWaterMark = 0.5;     // 低水位（占容量比例），回落后恢复入站适配器
+        
+        private MessagePriority defaultPriority = MessagePriority.NORMAL;              // 未单独配置的消息类型使用的优先级
+        private Map<MessageTypeEnum, MessagePriority> priorities = defaultPriorities(); // 按消息类型配置的优先级
+        private int starvationLimit = 32;          // 低优先级通道有积压时，最多连续被更高优先级抢先的次数，达到后让出一次
+        private long waitReportInterval = 60000;   // 各优先级排队等待时间的日志输出间隔（毫秒），0 表示不输出
+        
+        // 磁盘溢写配置
+        private Spill spill = new Spill();
+        
+        /**
+         * 获取指定消息类型的溢出策略
+         */
+        public OverflowPolicy overflowPolicyOf(MessageTypeEnum messageType) {
+            OverflowPolicy policy = messageType == null ? null : overflowPolicies.get(messageType);
+            return policy != null ? policy : defaultOverflowPolicy;
+        }
+        
+        /**
+         * 指定消息类型在队列已满时是否允许丢弃（DROP_NEWEST、DROP_OLDEST 策略）
+         */
+        public boolean isDroppable(MessageTypeEnum messageType) {
+            OverflowPolicy policy = overflowPolicyOf(messageType);
+            return policy == OverflowPolicy.DROP_NEWEST || policy == OverflowPolicy.DROP_OLDEST;
+        }
+        
+        /**
+         * 获取指定消息类型的优先级
+         */
+        public MessagePriority priorityOf(MessageTypeEnum messageType) {
+            MessagePriority priority = messageType == null ? null : priorities.get(messageType);
+            return priority != null ? priority : defaultPriority;
+        }
+        
+        // 命令、请求与响应优先于大批量的属性上报
+        private static Map<MessageTypeEnum, MessagePriority> defaultPriorities() {
+            Map<MessageTypeEnum, MessagePriority> priorities = new EnumMap<>(MessageTypeEnum.class);
+            priorities.put(MessageTypeEnum.COMMAND_INVOCATION, MessagePriority.HIGH);
+            priorities.put(MessageTypeEnum.COMMAND_ACKNOWLEDGMENT, MessagePriority.HIGH);
+            priorities.put(MessageTypeEnum.REQUEST_CLOUD, MessagePriority.HIGH);
+            priorities.put(MessageTypeEnum.RESPONSE_EDGE, MessagePriority.HIGH);
+            priorities.put(MessageTypeEnum.PROPERTY, MessagePriority.LOW);
+            return priorities;
+        }
+        
+        // 命令类消息不允许丢弃，入站时放不下则暂不确认、稍后补入；遥测类消息优先保留最新数据
+        private static Map<MessageTypeEnum, OverflowPolicy> defaultOverflowPolicies() {
+            Map<MessageTypeEnum, OverflowPolicy> policies = new EnumMap<>(MessageTypeEnum.class);
+            policies.put(MessageTypeEnum.COMMAND_INVOCATION, OverflowPolicy.BLOCK);
+            policies.put(MessageTypeEnum.COMMAND_ACKNOWLEDGMENT, OverflowPolicy.BLOCK);
+            policies.put(MessageTypeEnum.REQUEST_CLOUD, OverflowPolicy.BLOCK);
+            policies.put(MessageTypeEnum.RESPONSE_EDGE, OverflowPolicy.BLOCK);
+            policies.put(MessageTypeEnum.PROPERTY, OverflowPolicy.DROP_OLDEST);
+            policies.put(MessageTypeEnum.EVENT, OverflowPolicy.DROP_OLDEST);
+            return policies;
+        }
+    }
+    
+    /**
+     * 磁盘溢写配置：内存队列写满后，消息追加到本地磁盘的内存映射段文件中
+     * 每个优先级通道在 directory 下使用各自的子目录，段数量上限按通道分别计算
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Spill {
+        private boolean enabled = false;                 // 是否启用磁盘溢写
+        private String directory = "data/spill";         // 段文件目录
+        private int segmentSize = 64 * 1024 * 1024;      // 单个段文件大小（字节）
+        private int maxSegments = 16;                    // 最多同时存在的段数量
+    }
 }
@@ -1,8 +1,6 @@
 package com.iothub.message.application.core.config;
 
 import com.iothub.message.application.core.handler.connector.DefaultDeviceConnector ;
-import com.iothub.message.application.core.handler.connector.IotMessageProcessor;
-import com.iothub.message.application.enums.MessageTypeEnum;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -13,13 +11,6 @@ import java.util.Map;
 @Configuration
 public class MessageProcessorConfig {
     
-    @Bean
-    public Map<MessageTypeEnum, IotMessageProcessor> messageProcessors(List<IotMessageProcessor> iotMessageProcessorList) {
-        Map<MessageTypeEnum, IotMessageProcessor> processors = new HashMap<>();
-        iotMessageProcessorList.forEach(iotMessageProcessor -> processors.put(iotMessageProcessor.getMessageType(), iotMessageProcessor));
-        return processors;
-    }
-    
     @Bean
     public Map<String, String> identifyConnectorMap(List<DefaultDeviceConnector> connectorList) {
         Map<String, String> identifyMap = new HashMap<>();
@@ -1,30 +1,32 @@
 package com.iothub.message.application.core.config;
 
-import com.iothub.message.application.core.listener.CustomMqttCallback;
+import com.iothub.message.application.core.config.conditions.SplitConnectionsCondition;
+import com.iothub.message.application.core.handler.mqtt.InboundHeaderMapper;
+import com.iothub.message.application.core.handler.mqtt.MqttConnectionManager;
 import jakarta.annotation.Resource;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
 import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
-import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.eclipse.paho.mqttv5.common.MqttSubscription;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
-import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.channel.PublishSubscribeChannel;
 import org.springframework.integration.core.MessageProducer;
 import org.springframework.integration.mqtt.core.Mqttv5ClientManager;
 import org.springframework.integration.mqtt.inbound.Mqttv5PahoMessageDrivenChannelAdapter;
-import org.springframework.integration.mqtt.outbound.Mqttv5PahoMessageHandler;
-import org.springframework.integration.mqtt.support.MqttHeaderMapper;
 import org.springframework.messaging.MessageChannel;
-import org.springframework.messaging.converter.SmartMessageConverter;
-import org.springframework.messaging.converter.StringMessageConverter;
 
 import java.util.UUID;
 
 /**
  * 配置 MQTT 适配器，用于接收和发送消息
+ * 订阅适配器和发送处理器共用一个由 MqttConnectionManager 管理的连接（一个客户端 ID、一个重连循环）；
+ * 配置 spring.mqtt.split-connections 后订阅另用一个连接。连接状态通过 MqttConnectionEvent 事件发布。
+ * 订阅使用手动确认，由 InboundAdmission 在消息入队后确认。
  */
 @Configuration
 @Order(1)
@@ -33,6 +35,8 @@ public class MqttAdapterConfig {
     
     @Resource
     private MqttConfigProperties mqttConfigProperties;
+    @Resource
+    private ApplicationEventPublisher applicationEventPublisher;
     
     /**
      * 配置 MQTT 连接选项
@@ -48,7 +52,7 @@ public class MqttAdapterConfig {
         options.setUserName(mqttConfigProperties.getUsername());
         options.setPassword(mqttConfigProperties.getPassword().getBytes());
         options.setCleanStart(true);  // 保持会话
-        options.setAutomaticReconnect(true);  // 启用自动重连
+        options.setAutomaticReconnect(false);  // 重连由 MqttConnectionManager 按指数退避加抖动负责
         return options;
     }
     
@@ -57,105 +61,102 @@ public class MqttAdapterConfig {
     }
     
     /**
-     * 配置 MQTT 客户端
+     * 配置 MQTT 连接管理器：未拆分时为收发共用的连接，拆分后为发送使用的连接
      *
-     * @param mqttConnectionOptions MQTT 连接选项
-     * @return MqttClient 客户端实例
+     * @param mqttConnectionOptions 连接选项
+     * @return MqttConnectionManager 管理器实例
      */
-    @SneakyThrows
     @Bean
-    public MqttAsyncClient mqttAsyncClient(MqttConnectionOptions mqttConnectionOptions) {
-        String clientId = this.getClientId("Iot");
-        String brokerUrl = mqttConfigProperties.getBrokerUrl();
-
-        // 创建 MQTT 客户端实例
-        MqttAsyncClient client = new MqttAsyncClient(brokerUrl, clientId);
-
-        // 设置回调处理
-        client.setCallback(new CustomMqttCallback(client, mqttConnectionOptions));
-
-        client.connect(mqttConnectionOptions);
-        return client;
+    public MqttConnectionManager mqttv5ClientManager(MqttConnectionOptions mqttConnectionOptions) {
+        boolean split = mqttConfigProperties.isSplitConnections();
+        MqttConnectionManager mqttv5ClientManager = new MqttConnectionManager(
+                split ? MqttConfigProperties.OUTBOUND_CONNECTION : MqttConfigProperties.SHARED_CONNECTION,
+                mqttConnectionOptions, this.getClientId(split ? "IotOut" : "IotEdge"), mqttConfigProperties.getReconnect());
+        // 容器在工厂方法返回后才注入事件发布器，启动前先设置，首次连接的事件才不会丢失
+        mqttv5ClientManager.setApplicationEventPublisher(applicationEventPublisher);
+        // 订阅使用此连接时由接收端在消息入队后确认，客户端在启动时按此创建
+        mqttv5ClientManager.setManualAcks(!split);
+        // 只创建客户端，首次连接在后台发起，代理不可达时不阻塞容器启动
+        mqttv5ClientManager.start();
+        return mqttv5ClientManager;
     }
     
-    
     /**
-     * 配置 Mqttv5 客户端管理器
+     * 拆分连接时订阅使用的连接管理器
      *
      * @param mqttConnectionOptions 连接选项
-     * @return Mqttv5ClientManager 管理器实例
+     * @return MqttConnectionManager 管理器实例
      */
     @Bean
-    public Mqttv5ClientManager mqttv5ClientManager(MqttConnectionOptions mqttConnectionOptions) {
-        Mqttv5ClientManager mqttv5ClientManager = new Mqttv5ClientManager(mqttConnectionOptions, this.getClientId("IotEdge"));
-        mqttv5ClientManager.start();
-        return mqttv5ClientManager;
+    @Conditional(SplitConnectionsCondition.class)
+    public MqttConnectionManager mqttInboundClientManager(MqttConnectionOptions mqttConnectionOptions) {
+        MqttConnectionManager mqttInboundClientManager = new MqttConnectionManager(MqttConfigProperties.INBOUND_CONNECTION, mqttConnectionOptions,
+                this.getClientId("IotIn"), mqttConfigProperties.getReconnect());
+        mqttInboundClientManager.setApplicationEventPublisher(applicationEventPublisher);
+        mqttInboundClientManager.setManualAcks(true);
+        mqttInboundClientManager.start();
+        return mqttInboundClientManager;
     }
     
     /**
      * 配置 MQTT 订阅适配器，接收消息并发送到输入通道
+     * 默认与发送处理器共用同一个客户端连接，noLocal 订阅选项才能过滤掉本端自己发布的消息
      *
-     * @param mqttConnectionOptions 连接选项
+     * @param mqttv5ClientManager       收发共用（或发送使用）的客户端管理器
+     * @param mqttInboundClientManager  拆分连接时订阅使用的客户端管理器
      * @return MessageProducer 订阅适配器
      */
     @Bean
-    public MessageProducer inbound(MqttConnectionOptions mqttConnectionOptions) {
-        String[] subTopicArr = mqttConfigProperties.getSubscriptions().toArray(new String[0]);
+    public MessageProducer inbound(@Qualifier("mqttv5ClientManager") Mqttv5ClientManager mqttv5ClientManager,
+                                   @Qualifier("mqttInboundClientManager") ObjectProvider<Mqttv5ClientManager> mqttInboundClientManager) {
+        MqttSubscription[] subscriptions = buildSubscriptions(mqttConfigProperties);
+        Mqttv5ClientManager clientManager = mqttInboundClientManager.getIfAvailable(() -> mqttv5ClientManager);
         
-        Mqttv5PahoMessageDrivenChannelAdapter adapter = new Mqttv5PahoMessageDrivenChannelAdapter(
-                mqttConnectionOptions, this.getClientId("In"), subTopicArr);
+        Mqttv5PahoMessageDrivenChannelAdapter adapter = new Mqttv5PahoMessageDrivenChannelAdapter(clientManager, subscriptions);
         
-        // 设置 QoS 和完成超时
-        adapter.setQos(mqttConfigProperties.getQos() != null ? mqttConfigProperties.getQos() : 1);
+        // 设置完成超时
         adapter.setCompletionTimeout(Integer.parseInt(mqttConfigProperties.getConnectionTimeout().replace("s", "")) * 1000L);
         
-        // 设置消息转换器
-        SmartMessageConverter smartMessageConverter = new StringMessageConverter();
-        adapter.setMessageConverter(smartMessageConverter);
+        // 不设置消息转换器，负载保持原始字节，由处理器按需解码
+        adapter.setPayloadType(byte[].class);
+        
+        // 接收时一次性解析业务用户属性，后续环节直接复用解析结果
+        adapter.setHeaderMapper(new InboundHeaderMapper());
+        
+        // 手动确认：消息进入接收队列后才回复 PUBACK，队列放不下的命令不确认也不丢弃，由接收端稍后补入
+        adapter.setManualAcks(true);
         
         adapter.setOutputChannel(mqttInputChannel());  // 设置输出通道
         
-        log.info("MQTT subscribe Topics = {}", (Object) subTopicArr);
+        log.info("MQTT subscribe Topics = {}, noLocal = {}", (Object) subscriptions, mqttConfigProperties.isNoLocal());
         return adapter;  // 返回适配器
     }
     
     /**
-     * 配置接收消息的通道
-     *
-     * @return MessageChannel 接收消息通道
+     * 根据配置生成订阅及其 MQTT v5 订阅选项
      */
-    @Bean
-    public MessageChannel mqttInputChannel() {
-        return new PublishSubscribeChannel();  // 发布-订阅通道，用于接收消息
+    static MqttSubscription[] buildSubscriptions(MqttConfigProperties properties) {
+        String[] subTopicArr = properties.resolveSubscriptions(); // 按配置改写为共享订阅
+        int qos = properties.getQos() != null ? properties.getQos() : 1;
+        
+        MqttSubscription[] subscriptions = new MqttSubscription[subTopicArr.length];
+        for (int i = 0; i < subTopicArr.length; i++) {
+            subscriptions[i] = new MqttSubscription(subTopicArr[i], qos);
+            // MQTT v5 规定共享订阅不能设置 noLocal
+            subscriptions[i].setNoLocal(properties.isNoLocal() && !MqttConfigProperties.isShared(subTopicArr[i]));
+            subscriptions[i].setRetainAsPublished(properties.isRetainAsPublished());
+        }
+        return subscriptions;
     }
     
     /**
-     * 配置发送消息的通道
+     * 配置接收消息的通道
      *
-     * @return MessageChannel 发送消息通道
+     * @return MessageChannel 接收消息通道
      */
     @Bean
-    public MessageChannel mqttOutputChannel() {
-        return new DirectChannel();  // 直接通道，用于发送消息
+    public MessageChannel mqttInputChannel() {
+        return new PublishSubscribeChannel();  // 发布-订阅通道，用于接收消息
     }
     
-    /**
-     * 配置发送消息的处理器
-     */
-    @Bean(value = "mqttv5PahoMessageHandler")
-    public Mqttv5PahoMessageHandler mqttv5PahoMessageHandler(Mqttv5ClientManager mqttv5ClientManager) {
-        // 使用 UUID 生成唯一的 clientId
-        String clientId = this.getClientId("Out");
-        log.info("MQTT消息处理器（生产者）clientId:{}", clientId);
-        
-        // 创建消息发送处理器
-        Mqttv5PahoMessageHandler messageHandler = new Mqttv5PahoMessageHandler(mqttv5ClientManager);
-        messageHandler.start();
-        messageHandler.setHeaderMapper(new MqttHeaderMapper());
-        messageHandler.setAsync(true);  // 设置异步发送
-        messageHandler.setDefaultQos(mqttConfigProperties.getQos());  // 设置默认QoS
-        
-        return messageHandler;
-    }
-
 }
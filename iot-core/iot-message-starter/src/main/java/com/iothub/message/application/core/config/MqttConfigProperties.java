@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @ConfigurationProperties(prefix = "spring.mqtt")
@@ -12,6 +13,12 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 public class MqttConfigProperties {
+    
+    // 连接名称，随连接事件发布
+    public static final String SHARED_CONNECTION = "shared";
+    public static final String OUTBOUND_CONNECTION = "outbound";
+    public static final String INBOUND_CONNECTION = "inbound";
+    
     private String brokerUrl;
     private String clientId;
     private String username;
@@ -21,4 +28,137 @@ public class MqttConfigProperties {
     private String defaultTopic;
     private List<String> subscriptions;
     private Integer qos;
+    
+    // MQTT v5 共享订阅配置
+    private Shared shared = new Shared();
+    
+    // MQTT v5 订阅选项：不接收本连接自己发布的消息（共享订阅不支持该选项，会自动忽略）
+    private boolean noLocal = true;
+    // MQTT v5 订阅选项：转发保留消息时保留原始的 retain 标记
+    private boolean retainAsPublished = true;
+    
+    // 订阅和发布默认共用一个连接；拆分后各用一个连接，互不影响（此时 noLocal 无法过滤本端发布的消息，依靠按方向划分的主题避免回环）
+    private boolean splitConnections = false;
+    
+    // 按方向划分的主题
+    private Topics topics = new Topics();
+    
+    // 发布配置
+    private Publish publish = new Publish();
+    
+    // 重连配置
+    private Reconnect reconnect = new Reconnect();
+    
+    /**
+     * 由容器创建的连接名称，发布连接池额外创建的连接不在其中
+     *
+     * @return 未拆分时为 shared，拆分后为 outbound 和 inbound
+     */
+    public List<String> connectionNames() {
+        return splitConnections ? List.of(OUTBOUND_CONNECTION, INBOUND_CONNECTION) : List.of(SHARED_CONNECTION);
+    }
+    
+    /**
+     * 生成实际订阅的主题过滤器
+     * 已经以 $share/ 开头的主题原样订阅；独占主题每个实例都会收到全部消息；
+     * 其余主题在启用共享订阅（或被列为共享主题）时改写为 $share/{group}/{topic}，由代理在同组实例之间分摊
+     *
+     * @return 主题过滤器数组
+     */
+    public String[] resolveSubscriptions() {
+        if (subscriptions == null) {
+            return new String[0];
+        }
+        return subscriptions.stream().map(this::resolveSubscription).toArray(String[]::new);
+    }
+    
+    private String resolveSubscription(String topic) {
+        if (isShared(topic) || shared.getExclusiveTopics().contains(topic)) {
+            return topic;
+        }
+        if (shared.isEnabled() || shared.getSharedTopics().contains(topic)) {
+            return Shared.PREFIX + shared.validGroup() + "/" + topic;
+        }
+        return topic;
+    }
+    
+    /**
+     * 是否为共享订阅的主题过滤器
+     */
+    public static boolean isShared(String topicFilter) {
+        return topicFilter.startsWith(Shared.PREFIX);
+    }
+    
+    /**
+     * 按方向划分的主题：边端只向上行主题发布、只订阅下行主题，云端相反，
+     * 配合 noLocal 订阅选项，本端发出的消息不会再由代理投递回本端
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Topics {
+        private String uplink = "/topic/up";       // 上行主题根：边端 -> 云端（属性、事件、命令确认等）
+        private String downlink = "/topic/down";   // 下行主题根：云端 -> 边端（命令下发等）
+        
+        /**
+         * 指定设备的上行主题
+         */
+        public String uplinkOf(String deviceCode) {
+            return uplink + "/" + deviceCode;
+        }
+        
+        /**
+         * 指定设备的下行主题
+         */
+        public String downlinkOf(String deviceCode) {
+            return downlink + "/" + deviceCode;
+        }
+    }
+    
+    /**
+     * 发布配置：限制每个连接已发出、尚未确认的消息数量，窗口满时发布方等待确认
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Publish {
+        private int maxInflight = 100;        // 在途窗口大小，不应超过代理的 receive-maximum，代理限制更小时自动收缩
+        private long windowTimeout = 5000;    // 窗口已满时发布方的最长等待时间（毫秒），超时后发布失败
+        private boolean topicAliases = true;  // 按 LRU 管理出站主题别名，关闭时沿用客户端默认方式（只为最先出现的主题分配）
+        private int poolSize = 1;             // 发布连接数，大于 1 时按设备编码哈希分散到多个连接，每个连接有独立的在途窗口
+        private long failoverCooldown = 5000; // 连接发布失败后的冷却时间（毫秒），期间其上的发布转投其他连接
+        private long shutdownTimeout = 5000;  // 关闭时等待连接池创建的连接断开完成的最长时间（毫秒）
+    }
+    
+    /**
+     * 重连配置：连接断开后按指数退避加全抖动重连，并限制预算窗口内的重连次数
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Reconnect {
+        private long initialDelay = 1000;    // 第一次重连等待时间的上限（毫秒），之后每次失败翻倍
+        private long maxDelay = 60000;       // 等待时间上限（毫秒）
+        private int budget = 10;             // 预算窗口内最多重连次数，不大于 0 时不限制
+        private long budgetWindow = 60000;   // 预算窗口（毫秒）
+    }
+    
+    /**
+     * 共享订阅配置：同一分组内的多个实例共同订阅一个主题，每条消息只投递给其中一个实例，
+     * 用于云端连接器水平扩展
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Shared {
+        static final String PREFIX = "$share/";
+        
+        private boolean enabled = false;                          // 是否默认以共享方式订阅所有主题
+        private String group = "iot-connector";                   // 共享分组名称，同组实例分摊消息
+        private List<String> sharedTopics = new ArrayList<>();    // 未默认启用时，单独以共享方式订阅的主题
+        private List<String> exclusiveTopics = new ArrayList<>(); // 始终独占订阅（每个实例都接收）的主题
+        
+        private String validGroup() {
+            if (group == null || group.isEmpty() || group.contains("/") || group.contains("+") || group.contains("#")) {
+                throw new IllegalArgumentException("Invalid shared subscription group: " + group);
+            }
+            return group;
+        }
+    }
 }
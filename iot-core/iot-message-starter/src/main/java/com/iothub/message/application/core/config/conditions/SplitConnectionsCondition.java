@@ -0,0 +1,14 @@
+package com.iothub.message.application.core.config.conditions;
+
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.lang.NonNull;
+
+public class SplitConnectionsCondition implements Condition {
+    @Override
+    public boolean matches(ConditionContext context, @NonNull AnnotatedTypeMetadata metadata) {
+        String split = context.getEnvironment().getProperty("spring.mqtt.split-connections");
+        return "true".equalsIgnoreCase(split);
+    }
+}
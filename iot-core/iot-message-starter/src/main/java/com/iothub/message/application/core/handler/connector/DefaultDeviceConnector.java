@@ -1,17 +1,21 @@
 package com.iothub.message.application.core.handler.connector;
 
-import cn.hutool.core.util.StrUtil;
-import com.iothub.message.application.core.handler.mqtt.MqttMessageSenderHandler;
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import com.iothub.message.application.core.handler.mqtt.PayloadCodecRegistry;
+import com.iothub.message.application.core.handler.mqtt.ReportCoalescer;
 import com.iothub.message.application.domain.DataPayload;
 import com.iothub.message.application.domain.Device;
 import com.iothub.message.application.domain.DeviceStatus;
 import com.iothub.message.application.domain.MessageRequest;
+import com.iothub.message.application.domain.PublishReceipt;
 import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.utils.codec.PayloadCodec;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 默认设备连接器抽象类，提供了设备控制命令的模板方法，
@@ -24,7 +28,13 @@ public abstract class DefaultDeviceConnector implements DeviceConnector {
     private DeviceStatus cachedStatus; // 缓存设备状态，减少频繁获取的开销
     @Resource
     @Lazy
-    private MqttMessageSenderHandler mqttMessageSenderHandler;
+    private ReportCoalescer reportCoalescer;
+    @Resource
+    @Lazy
+    private PayloadCodecRegistry payloadCodecRegistry;
+    @Resource
+    @Lazy
+    private MqttConfigProperties mqttConfigProperties;
     
     /**
      * 执行控制命令，模板方法
@@ -65,14 +75,14 @@ public abstract class DefaultDeviceConnector implements DeviceConnector {
      * 上报属性（业务逻辑由子类实现）
      */
     @Override
-    public final void reportProperty() {
+    public final CompletableFuture<PublishReceipt> reportProperty() {
         log.info("Device {} Reporting property", this.getDevice().code());
         try {
             // 子类实现上报属性的具体业务逻辑
             Map<String, Object> result = doReportProperty();
             
             if (result.isEmpty()) {
-                return;
+                return CompletableFuture.completedFuture(null);
             }
             
             DataPayload<Object> payload = DataPayload.builder()
@@ -81,9 +91,10 @@ public abstract class DefaultDeviceConnector implements DeviceConnector {
                     .build();
             
             // 处理命令结果（例如将结果上报到 MQTT 或记录日志）
-            handleResult(payload);
+            return handleResult(payload);
         } catch (Exception e) {
             log.error("Error reporting device: {}", e.getMessage(), e);
+            return CompletableFuture.failedFuture(e);
         }
     }
     
@@ -91,14 +102,14 @@ public abstract class DefaultDeviceConnector implements DeviceConnector {
      * 上报事件（业务逻辑由子类实现）
      */
     @Override
-    public final void reportEvent() {
+    public final CompletableFuture<PublishReceipt> reportEvent() {
         log.info("Device {} Reporting event", this.getDevice().code());
         try {
             // 子类实现上报属性的具体业务逻辑
             Map<String, Object> result = doReportEvent();
             
             if(result.isEmpty()){
-                return;
+                return CompletableFuture.completedFuture(null);
             }
             
             DataPayload<Object> payload = DataPayload.builder()
@@ -107,9 +118,10 @@ public abstract class DefaultDeviceConnector implements DeviceConnector {
                     .build();
             
             // 处理命令结果（例如将结果上报到 MQTT 或记录日志）
-            handleResult(payload);
+            return handleResult(payload);
         } catch (Exception e) {
             log.error("Error reporting device: {}", e.getMessage(), e);
+            return CompletableFuture.failedFuture(e);
         }
     }
     
@@ -179,11 +191,23 @@ public abstract class DefaultDeviceConnector implements DeviceConnector {
         log.info("参数校验结束！！！");
     }
     
-  
-    private void handleResult(DataPayload<Object> payload) {
+    
+    private CompletableFuture<PublishReceipt> handleResult(DataPayload<Object> payload) {
         log.info("handle result：{}", payload);
-        // todo: 根据不同类型，选择不同topic进行发送，目前默认是 /topic 测试
-        mqttMessageSenderHandler.publish("/topic", StrUtil.toString(payload.getData()), payload.getMessageTypeEnum());
+        // 边端的结果和上报统一发布到上行主题，云端只订阅上行方向
+        Device device = getDevice();
+        MqttConfigProperties.Topics topics = mqttConfigProperties.getTopics();
+        String topic = device != null ? topics.uplinkOf(device.code()) : topics.getUplink();
+        // 按消息类型选择编码器，内容类型随消息发出；上报按类型合并后经发件箱发布，链路不可用时暂存到本地，恢复后补发
+        PayloadCodec codec = payloadCodecRegistry.codecFor(payload.getMessageTypeEnum());
+        // 通过 withMqttConfig 单独指定的 QoS、保留标志和过期时间优先于消息类型的默认策略
+        return reportCoalescer.publish(topic, device != null ? device.code() : null, codec.encode(payload.getData()),
+                        codec.contentType(), payload.publishOptions(), payload.getMessageTypeEnum())
+                .whenComplete((receipt, e) -> {
+                    if (e != null) {
+                        log.error("Failed to publish {} to topic: {}", payload.getMessageTypeEnum(), topic, e);
+                    }
+                });
     }
     
     /**
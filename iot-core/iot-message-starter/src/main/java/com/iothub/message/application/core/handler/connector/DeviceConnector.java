@@ -2,6 +2,9 @@ package com.iothub.message.application.core.handler.connector;
 
 import com.iothub.message.application.domain.DeviceStatus;
 import com.iothub.message.application.domain.MessageRequest;
+import com.iothub.message.application.domain.PublishReceipt;
+
+import java.util.concurrent.CompletableFuture;
 
 public interface DeviceConnector {
     
@@ -14,13 +17,17 @@ public interface DeviceConnector {
     
     /**
      * 处理设备属性更新，接收属性更新的数据并执行相应的操作
+     *
+     * @return 代理确认上报后完成的 Future，没有需要上报的数据时以 null 完成
      */
-    void reportProperty();
+    CompletableFuture<PublishReceipt> reportProperty();
     
     /**
      * 处理设备事件，接收事件数据并执行事件相关的业务逻辑
+     *
+     * @return 代理确认上报后完成的 Future，没有需要上报的数据时以 null 完成
      */
-    void reportEvent();
+    CompletableFuture<PublishReceipt> reportEvent();
     
     /**
      * 设备当前状态
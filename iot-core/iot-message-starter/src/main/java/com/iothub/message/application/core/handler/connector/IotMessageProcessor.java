@@ -1,9 +1,43 @@
 package com.iothub.message.application.core.handler.connector;
 
+import com.iothub.message.application.domain.IotMessage;
 import com.iothub.message.application.enums.MessageTypeEnum;
 
+import java.util.List;
+
 public interface IotMessageProcessor {
     void process(String topic, String content);
     
+    /**
+     * 处理单条入站消息
+     * 默认将负载按 UTF-8 解码后调用 {@link #process(String, String)}；
+     * 只转发字节或直接解析字节的处理器可覆盖此方法，通过 {@link IotMessage#getPayload()} 读取负载，避免解码和复制
+     *
+     * @param message 入站消息，包含负载只读视图和预先解析的消息头
+     */
+    default void process(IotMessage message) {
+        process(message.getTopic(), message.getContent());
+    }
+    
+    /**
+     * 批量处理消息，仅对配置了批量参数（iot.batches）的消息类型生效
+     * 默认逐条调用 {@link #process(IotMessage)}，需要批量写入下游的处理器可覆盖此方法
+     *
+     * @param messages 同一消息类型的一批消息，按到达顺序排列
+     */
+    default void processBatch(List<IotMessage> messages) {
+        for (IotMessage message : messages) {
+            process(message);
+        }
+    }
+    
     MessageTypeEnum getMessageType();
-}
\ No newline at end of file
+    
+    /**
+     * 处理器接收的主题模式，支持 MQTT 通配符 + 和 #，以及绑定层级值的命名层级（如 {deviceCode}），
+     * 绑定值可通过 {@link IotMessage#getTopicVariable(String)} 读取。默认返回空列表，表示接收该消息类型的所有主题
+     */
+    default List<String> getTopicPatterns() {
+        return List.of();
+    }
+}
@@ -0,0 +1,49 @@
+package com.iothub.message.application.core.handler.connector;
+
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.utils.topic.TopicMatch;
+import com.iothub.message.application.utils.topic.TopicTrie;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 处理器路由
+ * 先按消息类型选出该类型的主题字典树，再按主题匹配处理器注册的模式并绑定命名层级。
+ * 没有声明主题模式的处理器注册为 #，接收该类型的所有主题；同一消息类型可以由多个处理器按主题划分。
+ */
+@Slf4j
+@Component
+public class ProcessorRouter {
+    
+    private static final String ALL_TOPICS = "#";
+    
+    private final Map<MessageTypeEnum, TopicTrie<IotMessageProcessor>> routes = new EnumMap<>(MessageTypeEnum.class);
+    
+    public ProcessorRouter(List<IotMessageProcessor> iotMessageProcessorList) {
+        for (IotMessageProcessor processor : iotMessageProcessorList) {
+            TopicTrie<IotMessageProcessor> trie = routes.computeIfAbsent(processor.getMessageType(), type -> new TopicTrie<>());
+            List<String> patterns = processor.getTopicPatterns();
+            for (String pattern : patterns.isEmpty() ? List.of(ALL_TOPICS) : patterns) {
+                trie.register(pattern, processor);
+                log.info("Registered processor {} for {} on topic pattern {}",
+                        processor.getClass().getSimpleName(), processor.getMessageType(), pattern);
+            }
+        }
+    }
+    
+    /**
+     * 查找处理消息的处理器
+     *
+     * @param messageType 消息类型
+     * @param topic       消息主题
+     * @return 路由结果，没有匹配的处理器时返回 null
+     */
+    public TopicMatch<IotMessageProcessor> route(MessageTypeEnum messageType, String topic) {
+        TopicTrie<IotMessageProcessor> trie = routes.get(messageType);
+        return trie == null || topic == null ? null : trie.route(topic);
+    }
+}
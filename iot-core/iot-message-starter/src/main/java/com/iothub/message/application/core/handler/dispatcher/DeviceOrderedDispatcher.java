@@ -0,0 +1,195 @@
+package com.iothub.message.application.core.handler.dispatcher;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按设备有序的消息分发器
+ * 消息根据路由键（设备编码或主题）哈希到固定通道，每个通道由一个工作线程顺序消费，
+ * 保证同一设备的消息按到达顺序处理，不同设备的消息在不同通道中并行处理。
+ * 分发线程只有一个，通道已满时不会无限等待，某个通道被卡住时其他通道照常分发和处理。
+ */
+@Slf4j
+@Component
+public class DeviceOrderedDispatcher {
+    
+    private final IotMessageConfigProperties.Dispatcher config;
+    private final IotMessageConfigProperties.Queue queueConfig;    // 按消息类型的溢出策略决定通道已满时是否等待
+    // 各消息类型因通道已满被丢弃的数量
+    private final Map<MessageTypeEnum, LongAdder> droppedCounters = new EnumMap<>(MessageTypeEnum.class);
+    private final ExecutorService virtualThreadPool; // 虚拟线程池，用于执行通道工作线程
+    private Lane[] lanes;
+    private volatile boolean running;
+    
+    public DeviceOrderedDispatcher(IotMessageConfigProperties iotMessageConfigProperties) {
+        this.config = iotMessageConfigProperties.getDispatcher();
+        this.queueConfig = iotMessageConfigProperties.getQueue();
+        for (MessageTypeEnum messageType : MessageTypeEnum.values()) {
+            droppedCounters.put(messageType, new LongAdder());
+        }
+        this.virtualThreadPool = Executors.newVirtualThreadPerTaskExecutor();
+    }
+    
+    @PostConstruct
+    public void start() {
+        int laneCount = Math.max(1, config.getLaneCount());
+        int capacity = Math.max(1, config.getLaneQueueCapacity());
+        
+        lanes = new Lane[laneCount];
+        running = true;
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, capacity);
+            virtualThreadPool.submit(lanes[i]);
+        }
+        log.info("Message dispatcher started with {} lanes, lane capacity: {}, process timeout: {}s",
+                laneCount, capacity, config.getProcessTimeout());
+    }
+    
+    /**
+     * 分发消息处理任务，相同路由键的任务总是进入同一通道
+     * 通道已满时不无限等待：可丢弃的消息类型（DROP_NEWEST、DROP_OLDEST 策略）立即丢弃；
+     * 受保护的消息类型最多等待 dispatchTimeout，通道已被忽略中断的任务卡住时不等待，仍放不下则丢弃并按消息类型计数
+     *
+     * @param routingKey  路由键（设备编码或主题）
+     * @param messageType 消息类型，决定通道已满时的处理方式
+     * @param task        消息处理任务
+     * @return 任务是否已进入通道
+     * @throws InterruptedException 如果等待时线程被中断
+     */
+    public boolean dispatch(String routingKey, MessageTypeEnum messageType, Runnable task) throws InterruptedException {
+        Lane lane = lanes[laneIndex(routingKey)];
+        if (lane.queue.offer(task)) {
+            return true;
+        }
+        if (!queueConfig.isDroppable(messageType) && !lane.blocked
+                && lane.queue.offer(task, config.getDispatchTimeout(), TimeUnit.MILLISECONDS)) {
+            return true;
+        }
+        LongAdder counter = droppedCounters.get(messageType == null ? MessageTypeEnum.UNSUPPORTED : messageType);
+        counter.increment();
+        log.error("Dispatcher lane {} is full{}, dropping message of type {}, routing key: {}, total dropped: {}",
+                lane.index, lane.blocked ? " and blocked" : "", messageType, routingKey, counter.sum());
+        return false;
+    }
+    
+    /**
+     * 计算路由键对应的通道下标
+     */
+    int laneIndex(String routingKey) {
+        if (routingKey == null) {
+            return 0;
+        }
+        int hash = routingKey.hashCode();
+        hash ^= (hash >>> 16); // 扰动高位，使分布更均匀
+        return Math.floorMod(hash, lanes.length);
+    }
+    
+    /**
+     * 当前积压在各通道中的任务总数
+     */
+    public int pendingCount() {
+        int total = 0;
+        for (Lane lane : lanes) {
+            total += lane.queue.size();
+        }
+        return total;
+    }
+    
+    /**
+     * 指定消息类型因通道已满被丢弃的数量
+     */
+    public long droppedCount(MessageTypeEnum messageType) {
+        return droppedCounters.get(messageType == null ? MessageTypeEnum.UNSUPPORTED : messageType).sum();
+    }
+    
+    /**
+     * 被中断后仍未结束的任务卡住的通道数量
+     */
+    public int blockedLaneCount() {
+        int blocked = 0;
+        for (Lane lane : lanes) {
+            if (lane.blocked) {
+                blocked++;
+            }
+        }
+        return blocked;
+    }
+    
+    /**
+     * 在虚拟线程中执行任务并等待其完成，超时后中断任务并记录日志
+     * 被中断后仍未结束的任务会继续等待，直到它真正退出才处理通道中的下一条消息，
+     * 同一设备的前后两条消息不会并发执行；此时只有该通道被阻塞并标记为卡住，其他通道照常处理。
+     */
+    private void runWithTimeout(Lane lane, Runnable task) throws InterruptedException {
+        Duration timeout = Duration.ofSeconds(Math.max(1, config.getProcessTimeout()));
+        Thread worker = lane.taskBuilder.start(task);
+        try {
+            if (worker.join(timeout)) {
+                return;
+            }
+            log.error("Message processing timed out on lane {} after {}s, interrupting", lane.index, config.getProcessTimeout());
+            worker.interrupt();
+            while (!worker.join(timeout)) {
+                lane.blocked = true;
+                log.error("Message processing on lane {} is still running after interruption, lane is blocked", lane.index);
+            }
+        } catch (InterruptedException e) {
+            // 分发器关闭时一并中断正在执行的任务
+            worker.interrupt();
+            throw e;
+        } finally {
+            lane.blocked = false;
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (!virtualThreadPool.isShutdown()) {
+            virtualThreadPool.shutdownNow();
+        }
+    }
+    
+    /**
+     * 分发通道，内部持有有界队列并由单个工作线程顺序消费
+     */
+    private final class Lane implements Runnable {
+        private final int index;
+        private final BlockingQueue<Runnable> queue;
+        private final Thread.Builder taskBuilder;   // 只由通道自己的工作线程使用
+        private volatile boolean blocked;           // 当前任务被中断后仍未结束
+        
+        private Lane(int index, int capacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.taskBuilder = Thread.ofVirtual().name("dispatcher-lane-" + index)
+                    .uncaughtExceptionHandler((thread, e) -> log.error("Message processing failed on lane {}", index, e));
+        }
+        
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    Runnable task = queue.take();
+                    runWithTimeout(this, task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.info("Dispatcher lane {} stopped", index);
+                    return;
+                } catch (Exception e) {
+                    log.error("Unexpected error in dispatcher lane {}", index, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.iothub.message.application.core.handler.dispatcher;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.core.handler.connector.IotMessageProcessor;
+import com.iothub.message.application.domain.IotMessage;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.utils.TimerUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按消息类型攒批
+ * 同一消息类型、同一处理器的消息攒满 maxSize 条或最早一条等待超过 linger 后，作为一批分发给处理器的 processBatch。
+ * 同一处理器的批次总是进入同一分发通道，保证批次之间按到达顺序处理。
+ * 该类只由接收线程访问，不是线程安全的。
+ */
+@Slf4j
+public class MessageBatchAccumulator {
+    
+    private static final String ROUTING_KEY_PREFIX = "batch:";
+    
+    private final Map<MessageTypeEnum, IotMessageConfigProperties.Batch> settings;
+    private final DeviceOrderedDispatcher dispatcher;
+    private final Map<IotMessageProcessor, PendingBatch> pending = new IdentityHashMap<>(); // 按处理器攒批
+    
+    public MessageBatchAccumulator(Map<MessageTypeEnum, IotMessageConfigProperties.Batch> settings,
+                                   DeviceOrderedDispatcher dispatcher) {
+        this.settings = settings;
+        this.dispatcher = dispatcher;
+    }
+    
+    /**
+     * 指定消息类型是否按批处理
+     */
+    public boolean isBatched(MessageTypeEnum messageType) {
+        IotMessageConfigProperties.Batch batch = settings.get(messageType);
+        return batch != null && batch.getMaxSize() > 1;
+    }
+    
+    /**
+     * 加入一条消息，所在批次攒满时立即分发
+     *
+     * @param messageType 消息类型
+     * @param processor   该类型的处理器
+     * @param message     消息
+     * @throws InterruptedException 如果分发时线程被中断
+     */
+    public void add(MessageTypeEnum messageType, IotMessageProcessor processor, IotMessage message) throws InterruptedException {
+        PendingBatch batch = pending.computeIfAbsent(processor, key -> new PendingBatch(messageType, key, settings.get(messageType)));
+        if (batch.messages.isEmpty()) {
+            batch.deadline = System.nanoTime() + batch.lingerNanos;
+        }
+        batch.messages.add(message);
+        if (batch.messages.size() >= batch.maxSize) {
+            flush(batch);
+        }
+    }
+    
+    /**
+     * 距离最近一个批次到期的时间，没有待分发的批次时返回 maxDelay
+     *
+     * @param maxDelay 最长等待时间（纳秒）
+     * @return 等待时间（纳秒）
+     */
+    public long nextFlushDelay(long maxDelay) {
+        long now = System.nanoTime();
+        long delay = maxDelay;
+        for (PendingBatch batch : pending.values()) {
+            if (!batch.messages.isEmpty()) {
+                delay = Math.min(delay, Math.max(0, batch.deadline - now));
+            }
+        }
+        return delay;
+    }
+    
+    /**
+     * 分发所有已到期的批次
+     *
+     * @throws InterruptedException 如果分发时线程被中断
+     */
+    public void flushExpired() throws InterruptedException {
+        long now = System.nanoTime();
+        for (PendingBatch batch : pending.values()) {
+            if (!batch.messages.isEmpty() && batch.deadline - now <= 0) {
+                flush(batch);
+            }
+        }
+    }
+    
+    private void flush(PendingBatch batch) throws InterruptedException {
+        List<IotMessage> messages = batch.messages;
+        MessageTypeEnum messageType = batch.messageType;
+        IotMessageProcessor processor = batch.processor;
+        batch.messages = new ArrayList<>(batch.maxSize);
+        
+        dispatcher.dispatch(batch.routingKey, messageType, () -> {
+            log.info("Processing batch of {} {} messages with processor: {}",
+                    messages.size(), messageType, processor.getClass().getName());
+            TimerUtil.startTimer("批量消息处理");
+            try {
+                processor.processBatch(messages);
+            } catch (Exception e) {
+                log.error("Error during batch processing: {}", e.getMessage());
+            } finally {
+                TimerUtil.stopTimer("批量消息处理");
+            }
+        });
+    }
+    
+    /**
+     * 某一处理器正在攒的批次
+     */
+    private static final class PendingBatch {
+        private final MessageTypeEnum messageType;
+        private final IotMessageProcessor processor;
+        private final String routingKey;
+        private final int maxSize;
+        private final long lingerNanos;
+        private List<IotMessage> messages;
+        private long deadline;
+        
+        private PendingBatch(MessageTypeEnum messageType, IotMessageProcessor processor, IotMessageConfigProperties.Batch config) {
+            this.messageType = messageType;
+            this.processor = processor;
+            this.routingKey = ROUTING_KEY_PREFIX + messageType.name() + ":" + processor.getClass().getName();
+            this.maxSize = config.getMaxSize();
+            this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(config.getLinger());
+            this.messages = new ArrayList<>(maxSize);
+        }
+    }
+}
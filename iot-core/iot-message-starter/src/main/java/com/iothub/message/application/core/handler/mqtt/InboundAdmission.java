@@ -0,0 +1,114 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.domain.InboundHeaders;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.utils.queue.MqttMessageQueue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.integration.StaticMessageHeaderAccessor;
+import org.springframework.integration.acks.SimpleAcknowledgment;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 入站消息入队与确认
+ * 入站适配器使用手动确认：消息进入接收队列（或按溢出策略被有意丢弃）之后才向代理回复 PUBACK。
+ * 受保护的消息类型（BLOCK、PAUSE_INBOUND 策略）在通道已满时既不阻塞 MQTT 回调线程，也不丢弃，
+ * 而是暂不确认、按到达顺序放入等待列表，由消费线程在队列腾出位置后补入并确认。
+ * 未确认的消息占用代理的接收窗口（Receive Maximum），窗口用满后代理暂停投递，等待列表的长度因此有上限。
+ */
+@Slf4j
+@Component
+public class InboundAdmission {
+    
+    private final MqttMessageQueue<Message<?>> messageQueue;
+    private final MessageDeduplicator messageDeduplicator;
+    // 通道已满时暂不确认的受保护消息，回调线程追加，消费线程从队首补入
+    private final Queue<Message<?>> deferred = new ConcurrentLinkedQueue<>();
+    
+    public InboundAdmission(MqttMessageQueue<Message<?>> messageQueue, MessageDeduplicator messageDeduplicator) {
+        this.messageQueue = messageQueue;
+        this.messageDeduplicator = messageDeduplicator;
+    }
+    
+    /**
+     * 接收一条消息，在 MQTT 回调线程上调用，不阻塞
+     * 受保护的消息在等待列表非空时直接排到列表末尾，不越过先到达的消息
+     *
+     * @param message 入站消息
+     */
+    public void admit(Message<?> message) {
+        InboundHeaders headers = InboundHeaders.of(message);
+        MessageTypeEnum messageType = headers.getMessageType();
+        if (messageQueue.isDroppable(messageType)) {
+            // 入队成功后才记录消息 ID；按策略丢弃的消息同样确认，代理不再重发
+            if (messageQueue.offer(message, messageType)) {
+                messageDeduplicator.record(headers.getMessageId());
+            }
+            acknowledge(message);
+            return;
+        }
+        if (deferred.isEmpty() && messageQueue.offer(message, messageType)) {
+            messageDeduplicator.record(headers.getMessageId());
+            acknowledge(message);
+            return;
+        }
+        boolean first = deferred.isEmpty();
+        deferred.add(message);
+        if (first) {
+            log.warn("Queue is full, holding messages of type {} unacknowledged until space frees up", messageType);
+        }
+    }
+    
+    /**
+     * 按到达顺序把等待列表中的消息补入队列并确认，遇到仍放不下的消息即停止；只在消费线程上调用
+     * 先入队再移出列表，回调线程在补入过程中看到列表非空，新消息不会越过正在补入的消息
+     *
+     * @return 补入的消息数量
+     */
+    public int admitDeferred() {
+        int admitted = 0;
+        Message<?> message;
+        while ((message = deferred.peek()) != null) {
+            InboundHeaders headers = InboundHeaders.of(message);
+            if (!messageQueue.offer(message, headers.getMessageType())) {
+                break;
+            }
+            deferred.poll();
+            messageDeduplicator.record(headers.getMessageId());
+            acknowledge(message);
+            admitted++;
+        }
+        if (admitted > 0) {
+            log.info("Admitted {} held message(s), still held: {}", admitted, deferred.size());
+        }
+        return admitted;
+    }
+    
+    /**
+     * 向代理确认消息；入站适配器未开启手动确认时消息不带确认回调，不做处理
+     *
+     * @param message 入站消息
+     */
+    public void acknowledge(Message<?> message) {
+        SimpleAcknowledgment acknowledgment = StaticMessageHeaderAccessor.getAcknowledgment(message);
+        if (acknowledgment == null) {
+            return;
+        }
+        try {
+            acknowledgment.acknowledge();
+        } catch (RuntimeException e) {
+            // 连接已断开时无法确认，会话保留时代理在重连后重发
+            log.warn("Failed to acknowledge inbound message: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 暂不确认、等待补入的消息数量
+     */
+    public int deferredSize() {
+        return deferred.size();
+    }
+}
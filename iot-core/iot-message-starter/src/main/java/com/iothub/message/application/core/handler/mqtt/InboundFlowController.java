@@ -0,0 +1,74 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.utils.queue.MqttMessageQueue;
+import com.iothub.message.application.utils.queue.OverflowPolicy;
+import com.iothub.message.application.utils.queue.QueuePressureListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 入站流控：接收队列达到高水位时暂停 MQTT 入站适配器，回落到低水位后恢复
+ * 适配器的启停会触发取消订阅/重新订阅，不能在适配器自身的回调线程中执行，因此统一交给单独的线程串行处理。
+ * cleanStart=true 时代理不保留暂停期间下发的消息，启动时对这一组合给出警告。
+ */
+@Slf4j
+@Component
+public class InboundFlowController implements QueuePressureListener {
+    
+    private final ExecutorService controlExecutor = Executors.newSingleThreadExecutor(Thread.ofVirtual().factory());
+    
+    @Resource(name = "inbound")
+    private SmartLifecycle inbound;
+    @Resource
+    private MqttMessageQueue<Message<?>> messageQueue;
+    @Resource
+    private IotMessageConfigProperties iotMessageConfigProperties;
+    @Resource
+    private MqttConnectionOptions mqttConnectionOptions;
+    
+    @PostConstruct
+    public void init() {
+        messageQueue.addPressureListener(this);
+        IotMessageConfigProperties.Queue queue = iotMessageConfigProperties.getQueue();
+        boolean pauseInbound = queue.getDefaultOverflowPolicy() == OverflowPolicy.PAUSE_INBOUND
+                || queue.getOverflowPolicies().containsValue(OverflowPolicy.PAUSE_INBOUND);
+        if (pauseInbound && mqttConnectionOptions.isCleanStart()) {
+            log.warn("PAUSE_INBOUND is configured with cleanStart=true, messages sent while inbound is paused will be lost");
+        }
+    }
+    
+    @Override
+    public void onHighWater() {
+        controlExecutor.execute(() -> {
+            if (inbound.isRunning()) {
+                log.warn("Pausing MQTT inbound adapter, queue size: {}", messageQueue.size());
+                inbound.stop();
+            }
+        });
+    }
+    
+    @Override
+    public void onLowWater() {
+        controlExecutor.execute(() -> {
+            if (!inbound.isRunning()) {
+                log.info("Resuming MQTT inbound adapter, queue size: {}", messageQueue.size());
+                inbound.start();
+            }
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        controlExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,55 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.domain.InboundHeaders;
+import com.iothub.message.application.enums.MessageSourceType;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+import org.springframework.integration.mqtt.support.MqttHeaderMapper;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.MessageHeaders;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 入站消息头映射器
+ * 只遍历一次用户属性，将业务属性（消息类型、来源、消息 ID、设备编码）与内容类型解析为 {@link InboundHeaders}
+ * 并作为单个消息头放入消息；其余用户属性按原名称映射，出站映射沿用父类实现。
+ */
+public class InboundHeaderMapper extends MqttHeaderMapper {
+    
+    @Override
+    public Map<String, Object> toHeaders(MqttProperties properties) {
+        Map<String, Object> headers = new HashMap<>(8);
+        if (properties.getContentType() != null) {
+            headers.put(MessageHeaders.CONTENT_TYPE, properties.getContentType());
+        }
+        if (properties.getResponseTopic() != null) {
+            headers.put(MqttHeaders.RESPONSE_TOPIC, properties.getResponseTopic());
+        }
+        if (properties.getCorrelationData() != null) {
+            headers.put(MqttHeaders.CORRELATION_DATA, properties.getCorrelationData());
+        }
+        
+        MessageTypeEnum messageType = null;
+        MessageSourceType sourceType = MessageSourceType.UNKNOWN;
+        String messageId = null;
+        String deviceCode = null;
+        List<UserProperty> userProperties = properties.getUserProperties();
+        for (int i = 0, size = userProperties.size(); i < size; i++) {
+            UserProperty property = userProperties.get(i);
+            switch (property.getKey()) {
+                case InboundHeaders.MESSAGE_TYPE -> messageType = MessageTypeEnum.fromHeader(property.getValue());
+                case InboundHeaders.MESSAGE_SOURCE_TYPE -> sourceType = MessageSourceType.fromHeader(property.getValue());
+                case InboundHeaders.MESSAGE_ID -> messageId = property.getValue();
+                case InboundHeaders.DEVICE_CODE -> deviceCode = property.getValue();
+                default -> headers.put(property.getKey(), property.getValue());
+            }
+        }
+        headers.put(InboundHeaders.HEADER, new InboundHeaders(messageType, sourceType, messageId, deviceCode,
+                properties.getContentType()));
+        return headers;
+    }
+}
@@ -0,0 +1,110 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serial;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发布在途窗口
+ * 限制已发出、尚未收到确认的 QoS 1/2 消息数量，窗口满时发布方等待确认释放位置。
+ * 每次连接建立后按代理在 CONNACK 中声明的 receive-maximum 重新设定窗口，取其与配置值中较小者；
+ * 连接期间客户端仍拒绝超出的发布时，按实际在途数量收缩窗口，下一次连接时恢复。
+ */
+@Slf4j
+public class InflightWindow {
+    
+    private final WindowSemaphore permits;
+    private final int configured;
+    private volatile int limit;
+    
+    public InflightWindow(int limit) {
+        this.configured = Math.max(1, limit);
+        this.limit = configured;
+        this.permits = new WindowSemaphore(this.limit);
+    }
+    
+    /**
+     * 占用一个在途位置
+     *
+     * @param timeout 最长等待时间
+     * @param unit    时间单位
+     * @return 是否占用成功，超时返回 false
+     * @throws InterruptedException 如果等待时线程被中断
+     */
+    public boolean acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        return permits.tryAcquire(timeout, unit);
+    }
+    
+    /**
+     * 收到确认（或发送失败）后释放在途位置
+     */
+    public void release() {
+        permits.release();
+    }
+    
+    /**
+     * 代理拒绝更多在途消息时收缩窗口
+     *
+     * @param inflight 被拒绝时客户端实际的在途消息数，即代理允许的上限
+     * @return 窗口是否被收缩；在途数量不小于当前窗口时不收缩
+     */
+    public synchronized boolean shrinkTo(int inflight) {
+        int newLimit = Math.max(1, inflight);
+        if (newLimit >= limit) {
+            return false;
+        }
+        permits.reduce(limit - newLimit);
+        log.warn("Broker receive-maximum is lower than configured, shrinking in-flight window from {} to {}", limit, newLimit);
+        limit = newLimit;
+        return true;
+    }
+    
+    /**
+     * 连接建立后按代理声明的 receive-maximum 重新设定窗口，已在途的消息仍占用位置
+     *
+     * @param receiveMaximum 代理在 CONNACK 中声明的上限
+     * @return 新的窗口大小，不超过配置值
+     */
+    public synchronized int resetTo(int receiveMaximum) {
+        int newLimit = Math.max(1, Math.min(configured, receiveMaximum));
+        if (newLimit > limit) {
+            permits.release(newLimit - limit);
+        } else if (newLimit < limit) {
+            permits.reduce(limit - newLimit);
+        }
+        if (newLimit != limit) {
+            log.info("In-flight window set from {} to {} by broker receive-maximum {}", limit, newLimit, receiveMaximum);
+            limit = newLimit;
+        }
+        return newLimit;
+    }
+    
+    /**
+     * 当前窗口大小
+     */
+    public int limit() {
+        return limit;
+    }
+    
+    /**
+     * 当前在途消息数量
+     */
+    public int inflight() {
+        return Math.max(0, limit - permits.availablePermits());
+    }
+    
+    private static final class WindowSemaphore extends Semaphore {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        
+        private WindowSemaphore(int permits) {
+            super(permits);
+        }
+        
+        private void reduce(int reduction) {
+            reducePermits(reduction);
+        }
+    }
+}
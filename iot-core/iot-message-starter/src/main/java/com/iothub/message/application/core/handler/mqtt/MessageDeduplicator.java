@@ -0,0 +1,76 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.utils.dedup.MessageIdCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 入站消息去重
+ * 按发送方写入的 MessageId 过滤时间窗口内重复投递的消息，避免 QoS 1 重发导致命令被重复执行。
+ */
+@Slf4j
+@Component
+public class MessageDeduplicator {
+    
+    private final MessageIdCache cache;   // 未启用去重时为 null
+    
+    public MessageDeduplicator(IotMessageConfigProperties iotMessageConfigProperties) {
+        IotMessageConfigProperties.Dedup config = iotMessageConfigProperties.getDedup();
+        if (config.isEnabled()) {
+            this.cache = new MessageIdCache(config.getCapacity(), config.getShards(), config.getGenerations(), config.getWindow());
+            log.info("Message dedup enabled, window: {}ms, capacity: {}", config.getWindow(), config.getCapacity());
+        } else {
+            this.cache = null;
+        }
+    }
+    
+    /**
+     * 判断消息是否为重复投递，只查询不记录；消息入队后再通过 {@link #record(String)} 记录
+     *
+     * @param messageId 消息 ID，为空时不做去重
+     * @return 时间窗口内已出现过返回 true
+     */
+    public boolean isDuplicate(String messageId) {
+        if (cache == null || messageId == null || messageId.isEmpty()) {
+            return false;
+        }
+        if (!cache.contains(messageId)) {
+            return false;
+        }
+        log.info("Duplicate message dropped, MessageId: {}, total duplicates: {}", messageId, cache.hitCount());
+        return true;
+    }
+    
+    /**
+     * 记录已入队消息的 ID；因队列已满被丢弃的消息不记录，发送方重发时仍会被接收
+     *
+     * @param messageId 消息 ID，为空时不记录
+     */
+    public void record(String messageId) {
+        if (cache != null && messageId != null && !messageId.isEmpty()) {
+            cache.add(messageId);
+        }
+    }
+    
+    /**
+     * 命中（被判定为重复）的次数
+     */
+    public long hitCount() {
+        return cache == null ? 0 : cache.hitCount();
+    }
+    
+    /**
+     * 未命中（首次出现）的次数
+     */
+    public long missCount() {
+        return cache == null ? 0 : cache.missCount();
+    }
+    
+    /**
+     * 因容量不足提前淘汰旧记录的次数，持续增长说明 capacity 配置偏小
+     */
+    public long overflowCount() {
+        return cache == null ? 0 : cache.overflowCount();
+    }
+}
@@ -0,0 +1,135 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.domain.InboundHeaders;
+import com.iothub.message.application.enums.MessageSourceType;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.utils.queue.SpillCodec;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 入站消息的溢写编解码器
+ * 只保留基本类型的消息头（主题、QoS 等）和预解析的业务消息头，id 与 timestamp 在读回时重新生成。
+ */
+public class MessageSpillCodec implements SpillCodec<Message<?>> {
+    
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_INBOUND_HEADERS = 5;            // 旧格式，不含内容类型，仅用于读回升级前溢写的记录
+    private static final byte TYPE_INBOUND_HEADERS_CONTENT_TYPE = 6;
+    
+    @Override
+    public byte[] encode(Message<?> message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            Map<String, Object> headers = new HashMap<>();
+            message.getHeaders().forEach((key, value) -> {
+                if (value instanceof String || value instanceof Integer || value instanceof Long || value instanceof Boolean
+                        || value instanceof InboundHeaders) {
+                    headers.put(key, value);
+                }
+            });
+            
+            out.writeShort(headers.size());
+            for (Map.Entry<String, Object> entry : headers.entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+            
+            byte[] payload = payloadBytes(message.getPayload());
+            out.writeInt(payload.length);
+            out.write(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode message for spill", e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    @Override
+    public Message<?> decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int headerCount = in.readUnsignedShort();
+            Map<String, Object> headers = new HashMap<>(headerCount * 2);
+            for (int i = 0; i < headerCount; i++) {
+                String key = in.readUTF();
+                headers.put(key, readValue(in));
+            }
+            
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            return MessageBuilder.withPayload(payload).copyHeaders(headers).build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode spilled message", e);
+        }
+    }
+    
+    private static byte[] payloadBytes(Object payload) {
+        if (payload instanceof byte[] bytes) {
+            return bytes;
+        }
+        return String.valueOf(payload).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        switch (value) {
+            case String text -> {
+                out.writeByte(TYPE_STRING);
+                out.writeUTF(text);
+            }
+            case Integer number -> {
+                out.writeByte(TYPE_INTEGER);
+                out.writeInt(number);
+            }
+            case Long number -> {
+                out.writeByte(TYPE_LONG);
+                out.writeLong(number);
+            }
+            case Boolean flag -> {
+                out.writeByte(TYPE_BOOLEAN);
+                out.writeBoolean(flag);
+            }
+            case InboundHeaders headers -> {
+                out.writeByte(TYPE_INBOUND_HEADERS_CONTENT_TYPE);
+                writeNullable(out, headers.getMessageType() == null ? null : headers.getMessageType().getType());
+                out.writeUTF(headers.getSourceType().getCode());
+                writeNullable(out, headers.getMessageId());
+                writeNullable(out, headers.getDeviceCode());
+                writeNullable(out, headers.getContentType());
+            }
+            default -> throw new IllegalArgumentException("Unsupported header type: " + value.getClass());
+        }
+    }
+    
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case TYPE_STRING -> in.readUTF();
+            case TYPE_INTEGER -> in.readInt();
+            case TYPE_LONG -> in.readLong();
+            case TYPE_BOOLEAN -> in.readBoolean();
+            case TYPE_INBOUND_HEADERS -> new InboundHeaders(MessageTypeEnum.fromHeader(readNullable(in)),
+                    MessageSourceType.fromHeader(in.readUTF()), readNullable(in), readNullable(in));
+            case TYPE_INBOUND_HEADERS_CONTENT_TYPE -> new InboundHeaders(MessageTypeEnum.fromHeader(readNullable(in)),
+                    MessageSourceType.fromHeader(in.readUTF()), readNullable(in), readNullable(in), readNullable(in));
+            default -> throw new IOException("Unknown header type: " + type);
+        };
+    }
+    
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+    
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,314 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import com.iothub.message.application.core.listener.MqttConnectionEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.mqttv5.client.IMqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttClientPersistence;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.integration.mqtt.core.Mqttv5ClientManager;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MQTT 连接生命周期管理
+ * 每个连接只有一个客户端、一个重连循环，由订阅适配器和发送处理器共用（或按配置分为收、发两个连接）；
+ * 连接建立和断开时发布 MqttConnectionEvent，其他组件监听事件感知连接状态。
+ * 重连不使用 Paho 的自动重连（固定间隔翻倍、没有抖动），而由本类按 ReconnectBackoff 在单独的调度线程上发起：
+ * 首次连接失败或连接断开后按指数退避加全抖动等待，每次连接建立后经 connectComplete 回调通知订阅适配器重新订阅。
+ * start 只创建客户端，首次连接同样在调度线程上发起，代理不可达时不会阻塞容器启动；其他组件按连接事件感知连接建立。
+ * 连接选项在构造时复制一份再关闭自动重连，传入的选项对象（通常是多个连接共用的 Bean）保持不变。
+ */
+@Slf4j
+public class MqttConnectionManager extends Mqttv5ClientManager {
+    
+    private final String name;
+    private final boolean publisherLane;
+    private final MqttConfigProperties.Reconnect reconnectConfig;
+    private final ReconnectBackoff backoff;
+    private final ScheduledExecutorService reconnectScheduler;
+    private volatile boolean connected;
+    private volatile boolean running;
+    private boolean everConnected;          // 是否成功连接过，区分首次连接和重连
+    private int attempts;                   // 本次断开以来的重连次数
+    private ScheduledFuture<?> pendingReconnect;
+    private MqttClientPersistence persistence;
+    
+    /**
+     * 使用默认重连配置
+     *
+     * @param name     连接名称，随事件发布
+     * @param options  连接选项
+     * @param clientId 客户端 ID
+     */
+    public MqttConnectionManager(String name, MqttConnectionOptions options, String clientId) {
+        this(name, options, clientId, new MqttConfigProperties.Reconnect());
+    }
+    
+    /**
+     * @param name      连接名称，随事件发布
+     * @param options   连接选项，复制后关闭自动重连，传入的对象不会被修改
+     * @param clientId  客户端 ID
+     * @param reconnect 重连配置
+     */
+    public MqttConnectionManager(String name, MqttConnectionOptions options, String clientId, MqttConfigProperties.Reconnect reconnect) {
+        this(name, options, clientId, reconnect, false);
+    }
+    
+    private MqttConnectionManager(String name, MqttConnectionOptions options, String clientId, MqttConfigProperties.Reconnect reconnect,
+                                  boolean publisherLane) {
+        super(copyWithoutAutomaticReconnect(options), clientId);
+        this.name = name;
+        this.publisherLane = publisherLane;
+        this.reconnectConfig = reconnect;
+        this.backoff = new ReconnectBackoff(reconnect);
+        this.reconnectScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("mqtt-reconnect-" + name).factory());
+    }
+    
+    /**
+     * 以相同的连接选项创建发布连接池中的额外连接，名称和客户端 ID 带 -pubN 后缀，连接事件同样发布
+     *
+     * @param index 连接在池中的序号
+     * @return 尚未启动的连接管理器
+     */
+    public MqttConnectionManager publisherLane(int index) {
+        String suffix = "-pub" + index;
+        MqttConnectionManager lane = new MqttConnectionManager(name + suffix, getConnectionInfo(), getClientId() + suffix,
+                reconnectConfig, true);
+        lane.setApplicationEventPublisher(getApplicationEventPublisher());
+        lane.setCompletionTimeout(getCompletionTimeout());
+        lane.setDisconnectCompletionTimeout(getDisconnectCompletionTimeout());
+        return lane;
+    }
+    
+    /**
+     * 连接名称
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * 自上次连接建立以来的重连次数
+     */
+    public synchronized int reconnectAttempts() {
+        return attempts;
+    }
+    
+    /**
+     * 最近一次连接事件后是否处于已连接状态
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+    
+    @Override
+    public void setPersistence(MqttClientPersistence persistence) {
+        super.setPersistence(persistence);
+        this.persistence = persistence;
+    }
+    
+    /**
+     * 创建客户端并在调度线程上发起首次连接，不等待连接建立；首次连接失败时转入退避重连
+     */
+    @Override
+    public void start() {
+        lock.lock();
+        try {
+            if (getClient() == null) {
+                MqttAsyncClient client = new MqttAsyncClient(getUrl(), getClientId(), persistence);
+                client.setManualAcks(isManualAcks());
+                client.setCallback(this);
+                setClient(client);
+            }
+        } catch (MqttException e) {
+            throw new IllegalStateException("Could not start client manager", e);
+        } finally {
+            lock.unlock();
+        }
+        synchronized (this) {
+            running = true;
+            if (pendingReconnect == null) {
+                pendingReconnect = reconnectScheduler.schedule(this::reconnect, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+    
+    /**
+     * 取消尚未发起的重连并断开连接；连接尚未建立（首次连接或重连仍在进行）时没有在途消息，不等待直接关闭客户端
+     */
+    @Override
+    public void stop() {
+        running = false;
+        synchronized (this) {
+            if (pendingReconnect != null) {
+                pendingReconnect.cancel(false);
+                pendingReconnect = null;
+            }
+        }
+        lock.lock();
+        try {
+            IMqttAsyncClient client = getClient();
+            if (client == null || client.isConnected()) {
+                super.stop();
+                return;
+            }
+            try {
+                client.disconnectForcibly(0, getDisconnectCompletionTimeout(), false);
+                client.close(true);
+            } catch (MqttException e) {
+                log.warn("MQTT connection [{}] failed to close client: {}", name, e.getMessage());
+            } finally {
+                setClient(null);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 注册连接回调；连接在注册前已经建立时立即补发一次 connectComplete，
+     * 订阅适配器在连接建立之后才注册回调，否则启动时不会订阅
+     */
+    @Override
+    public void addCallback(ConnectCallback callback) {
+        super.addCallback(callback);
+        IMqttAsyncClient client = getClient();
+        if (client != null && client.isConnected()) {
+            callback.connectComplete(false);
+        }
+    }
+    
+    @Override
+    public void connectComplete(boolean reconnect, String serverURI) {
+        // 父类把回调转发给订阅适配器，由适配器重新订阅（cleanStart 时代理不保留会话中的订阅）
+        super.connectComplete(reconnect, serverURI);
+        int recoveredAfter;
+        synchronized (this) {
+            reconnect = reconnect || everConnected;
+            everConnected = true;
+            recoveredAfter = attempts;
+            attempts = 0;
+            backoff.reset();
+        }
+        connected = true;
+        if (reconnect) {
+            log.info("MQTT connection [{}] reconnected to {} after {} attempt(s)", name, serverURI, recoveredAfter);
+        } else {
+            log.info("MQTT connection [{}] connected to {}", name, serverURI);
+        }
+        publish(new MqttConnectionEvent(this, name, MqttConnectionEvent.State.CONNECTED, publisherLane, reconnect, recoveredAfter,
+                serverURI, null));
+    }
+    
+    @Override
+    public void disconnected(MqttDisconnectResponse disconnectResponse) {
+        super.disconnected(disconnectResponse);
+        connected = false;
+        log.warn("MQTT connection [{}] lost: {}", name, disconnectResponse.getException() != null
+                ? disconnectResponse.getException().getMessage() : disconnectResponse.getReasonString());
+        publish(new MqttConnectionEvent(this, name, MqttConnectionEvent.State.DISCONNECTED, publisherLane, false, 0, null,
+                disconnectResponse.getException()));
+        scheduleReconnect();
+    }
+    
+    /**
+     * 按退避策略安排下一次重连，已有待执行的重连或已停止时忽略
+     */
+    private synchronized void scheduleReconnect() {
+        if (!running || pendingReconnect != null) {
+            return;
+        }
+        long delay = backoff.nextDelay(System.currentTimeMillis());
+        attempts++;
+        log.info("MQTT connection [{}] reconnect attempt {} in {} ms", name, attempts, delay);
+        pendingReconnect = reconnectScheduler.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+    }
+    
+    private void reconnect() {
+        synchronized (this) {
+            pendingReconnect = null;
+        }
+        IMqttAsyncClient client = getClient();
+        if (!running || client == null || client.isConnected()) {
+            return;
+        }
+        try {
+            client.connect(getConnectionInfo()).waitForCompletion(getCompletionTimeout());
+        } catch (MqttException e) {
+            if (attempts == 0) {
+                log.warn("MQTT connection [{}] initial connect failed: {}", name, e.getMessage());
+            } else {
+                log.warn("MQTT connection [{}] reconnect attempt {} failed: {}", name, attempts, e.getMessage());
+            }
+            scheduleReconnect();
+        }
+    }
+    
+    /**
+     * 复制连接选项并关闭自动重连，MqttConnectionOptions 没有提供复制方法
+     */
+    private static MqttConnectionOptions copyWithoutAutomaticReconnect(MqttConnectionOptions options) {
+        MqttConnectionOptions copy = new MqttConnectionOptions();
+        copy.setServerURIs(options.getServerURIs());
+        copy.setAutomaticReconnect(false);
+        copy.setAutomaticReconnectDelay(options.getAutomaticReconnectMinDelay(), options.getAutomaticReconnectMaxDelay());
+        copy.setMaxReconnectDelay(options.getMaxReconnectDelay());
+        copy.setUseSubscriptionIdentifiers(options.useSubscriptionIdentifiers());
+        copy.setKeepAliveInterval(options.getKeepAliveInterval());
+        copy.setConnectionTimeout(options.getConnectionTimeout());
+        copy.setHttpsHostnameVerificationEnabled(options.isHttpsHostnameVerificationEnabled());
+        copy.setSendReasonMessages(options.isSendReasonMessages());
+        copy.setCleanStart(options.isCleanStart());
+        if (options.getWillDestination() != null) {
+            copy.setWill(options.getWillDestination(), options.getWillMessage());
+        }
+        copy.setWillMessageProperties(options.getWillMessageProperties());
+        copy.setUserName(options.getUserName());
+        copy.setPassword(options.getPassword());
+        copy.setSessionExpiryInterval(options.getSessionExpiryInterval());
+        copy.setReceiveMaximum(options.getReceiveMaximum());
+        copy.setMaximumPacketSize(options.getMaximumPacketSize());
+        copy.setTopicAliasMaximum(options.getTopicAliasMaximum());
+        if (options.getRequestResponseInfo() != null) {
+            copy.setRequestResponseInfo(options.getRequestResponseInfo());
+        }
+        if (options.getRequestProblemInfo() != null) {
+            copy.setRequestProblemInfo(options.getRequestProblemInfo());
+        }
+        if (options.getUserProperties() != null) {
+            copy.setUserProperties(new ArrayList<>(options.getUserProperties()));
+        }
+        copy.setAuthMethod(options.getAuthMethod());
+        copy.setAuthData(options.getAuthData());
+        copy.setSocketFactory(options.getSocketFactory());
+        copy.setSSLProperties(options.getSSLProperties());
+        copy.setSSLHostnameVerifier(options.getSSLHostnameVerifier());
+        if (options.getCustomWebSocketHeaders() != null) {
+            copy.setCustomWebSocketHeaders(options.getCustomWebSocketHeaders());
+        }
+        copy.setExecutorServiceTimeout(options.getExecutorServiceTimeout());
+        return copy;
+    }
+    
+    private void publish(MqttConnectionEvent event) {
+        ApplicationEventPublisher publisher = getApplicationEventPublisher();
+        if (publisher == null) {
+            return;
+        }
+        try {
+            publisher.publishEvent(event);
+        } catch (RuntimeException e) {
+            // 监听方的异常不能影响客户端的回调线程
+            log.error("Failed to publish MQTT connection event: {} {}", name, event.getState(), e);
+        }
+    }
+}
@@ -3,10 +3,17 @@ package com.iothub.message.application.core.handler.mqtt;
 import cn.hutool.core.util.StrUtil;
 import com.iothub.message.application.core.config.IotMessageConfigProperties;
 import com.iothub.message.application.core.handler.connector.IotMessageProcessor;
+import com.iothub.message.application.core.handler.connector.ProcessorRouter;
+import com.iothub.message.application.core.handler.dispatcher.DeviceOrderedDispatcher;
+import com.iothub.message.application.core.handler.dispatcher.MessageBatchAccumulator;
+import com.iothub.message.application.domain.InboundHeaders;
+import com.iothub.message.application.domain.IotMessage;
 import com.iothub.message.application.enums.MessageSourceType;
 import com.iothub.message.application.enums.MessageTypeEnum;
 import com.iothub.message.application.utils.TimerUtil;
+import com.iothub.message.application.utils.codec.PayloadCompression;
 import com.iothub.message.application.utils.queue.MqttMessageQueue;
+import com.iothub.message.application.utils.topic.TopicMatch;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
@@ -16,8 +23,10 @@ import org.springframework.integration.mqtt.support.MqttHeaders;
 import org.springframework.messaging.Message;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Map;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.*;
 
@@ -26,17 +35,27 @@ import java.util.concurrent.*;
 public class MqttMessageReceiverHandler {
     
     private static final int TIMEOUT = 10; // 超时时间10秒
-    private static final int PROCESS_TIMEOUT = 5; // 消息处理的超时时间5秒
+    private static final int DRAIN_SIZE = 256; // 每次从队列中批量取出的最大消息数
     
-
-    private final ExecutorService virtualThreadPool; // 虚拟线程池，用于处理消息
+    private final ExecutorService virtualThreadPool; // 虚拟线程池，用于运行消息拉取循环
     
     @Resource
-    private Map<MessageTypeEnum, IotMessageProcessor> processors;
+    private ProcessorRouter processorRouter;
+    @Resource
+    private PayloadCodecRegistry payloadCodecRegistry;
     @Resource
     private MqttMessageQueue<Message<?>> messageQueue;
     @Resource
     private IotMessageConfigProperties iotMessageConfigProperties;
+    @Resource
+    private DeviceOrderedDispatcher deviceOrderedDispatcher;
+    @Resource
+    private MessageDeduplicator messageDeduplicator;
+    @Resource
+    private InboundAdmission inboundAdmission;
+    
+    private MessageBatchAccumulator batchAccumulator; // 按消息类型攒批，只在消息拉取线程中访问
+    private PayloadCompression payloadCompression;    // 解压带 ContentEncoding 用户属性的负载
     
     public MqttMessageReceiverHandler() {
         this.virtualThreadPool = Executors.newVirtualThreadPerTaskExecutor(); // 创建虚拟线程池
@@ -44,27 +63,54 @@ public class MqttMessageReceiverHandler {
     
     @ServiceActivator(inputChannel = "mqttInputChannel")
     public void handleMessage(Message<?> message) {
-        messageQueue.put(message); // 将消息放入队列
+        InboundHeaders headers = InboundHeaders.of(message);
+        if (isEcho(headers)) {
+            inboundAdmission.acknowledge(message);
+            return; // 本端自己发出的消息；正常情况下 noLocal 订阅已在代理侧过滤，这里作为兜底
+        }
+        if (messageDeduplicator.isDuplicate(headers.getMessageId())) {
+            inboundAdmission.acknowledge(message);
+            return; // 时间窗口内重复投递的消息
+        }
+        // 按消息类型的溢出策略放入队列后确认；受保护的消息放不下时暂不确认，由消费线程补入，不阻塞回调线程
+        inboundAdmission.admit(message);
     }
     
     @PostConstruct
     private void startMessageProcessor() {
+        messageQueue.setTypeResolver(message -> InboundHeaders.of(message).getMessageType());
+        messageQueue.enableSpill(new MessageSpillCodec());
+        
+        batchAccumulator = new MessageBatchAccumulator(iotMessageConfigProperties.getBatches(), deviceOrderedDispatcher);
+        payloadCompression = iotMessageConfigProperties.getCompression().create();
+        
         Runnable task = () -> {
+            List<Message<?>> drained = new ArrayList<>(DRAIN_SIZE);
             while (true) {
                 try {
-                    Message<?> message = messageQueue.poll(TIMEOUT, TimeUnit.SECONDS);
+                    // 有未到期的批次时，最多等到该批次到期
+                    long wait = batchAccumulator.nextFlushDelay(TimeUnit.SECONDS.toNanos(TIMEOUT));
+                    Message<?> message = messageQueue.poll(wait, TimeUnit.NANOSECONDS);
                     if (Objects.nonNull(message)) {
-                        TimerUtil.startTimer("消息处理");
-                        processMessage(message); // 处理消息
-                        TimerUtil.stopTimer("消息处理");
+                        drained.add(message);
+                        messageQueue.drainTo(drained, DRAIN_SIZE - 1, 0, TimeUnit.NANOSECONDS); // 顺带取出已到达的消息
+                        inboundAdmission.admitDeferred(); // 队列已腾出位置，补入暂不确认的消息
+                        for (Message<?> element : drained) {
+                            processMessage(element); // 校验并分发消息
+                        }
                     } else {
                         log.debug("No messages in queue within the timeout period.");
+                        inboundAdmission.admitDeferred(); // 补入前队列恰好被取空的情况
                     }
+                    batchAccumulator.flushExpired();
+                    messageQueue.reportQueueWait();
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     log.error("Message processing thread was interrupted", e);
                 } catch (Exception e) {
                     log.error("Unexpected error in message processing", e);
+                } finally {
+                    drained.clear();
                 }
             }
         };
@@ -74,22 +120,19 @@ public class MqttMessageReceiverHandler {
     }
     
     /**
-     * 处理单条消息
+     * 校验单条消息，并按设备分发到对应的处理通道
      */
-    private void processMessage(Message<?> message) {
-        String content = extractContent(message);
-        String topic = extractTopic(message);
-        MessageTypeEnum messageType = extractMessageType(message);
-        MessageSourceType messageSourceType = extractMessageSourceType(message);
+    private void processMessage(Message<?> message) throws InterruptedException {
+        InboundHeaders headers = InboundHeaders.of(message);
+        MessageTypeEnum messageType = headers.getMessageType();
         
-        if(Objects.isNull(messageSourceType) || StrUtil.isEmpty(iotMessageConfigProperties.getTag())){
+        if(StrUtil.isEmpty(iotMessageConfigProperties.getTag())){
             log.error("请添加标识，当前支持的标识有：{}", Arrays.stream(MessageSourceType.values()).toArray());
             return;
         }
         
-        // 需要接收的标识和发送不一致 或者 未知，可能有级联消费情况
-        if(messageSourceType.getCode().equals(iotMessageConfigProperties.getTag())
-                && !messageSourceType.equals(MessageSourceType.UNKNOWN)){
+        // 需要接收的标识和发送不一致 或者 未知，可能有级联消费情况；只依赖预解析的消息头，不触碰负载
+        if(isEcho(headers)){
             return;
         }
         
@@ -98,61 +141,99 @@ public class MqttMessageReceiverHandler {
             return;
         }
         
-        IotMessageProcessor processor = processors.get(messageType);
-        if (processor != null) {
-            log.info("Processing message with processor: {}", processor.getClass().getName());
-            processWithTimeout(processor, content, topic);
-        } else {
-            log.error("No processor found for MessageType: {}", messageType);
+        String topic = extractTopic(message);
+        byte[] payload;
+        try {
+            // 压缩过的负载在队列和溢写中保持压缩状态，出队后才解压
+            payload = payloadCompression.decompress(message.getHeaders().get(InboundHeaders.CONTENT_ENCODING, String.class),
+                    extractPayload(message));
+        } catch (IllegalArgumentException e) {
+            log.error("Dropping message with undecodable payload from topic: {}", topic, e);
+            return;
+        }
+        
+        // 合并发布的信封拆开后逐条按原主题路由，处理器感知不到合并
+        if (ReportEnvelope.isEnvelope(headers.getContentType())) {
+            List<ReportEnvelope.Entry> entries;
+            try {
+                entries = ReportEnvelope.decode(payload);
+            } catch (IllegalArgumentException e) {
+                log.error("Dropping malformed report envelope from topic: {}", topic, e);
+                return;
+            }
+            for (ReportEnvelope.Entry entry : entries) {
+                dispatch(entry.topic(), entry.payload(), new InboundHeaders(messageType, headers.getSourceType(),
+                        entry.messageId(), entry.deviceCode(), entry.contentType()));
+            }
+            return;
         }
+        dispatch(topic, payload, headers);
     }
     
     /**
-     * 提取消息内容
+     * 按消息类型和主题模式选择处理器，并按设备分发到对应的处理通道
      */
-    private String extractContent(Message<?> message) {
-        byte[] payload = (byte[]) message.getPayload();
-        return new String(payload); // 转换负载为字符串
+    private void dispatch(String topic, byte[] payload, InboundHeaders headers) throws InterruptedException {
+        MessageTypeEnum messageType = headers.getMessageType();
+        
+        // 按消息类型和主题模式选择处理器，同时绑定主题中的命名层级
+        TopicMatch<IotMessageProcessor> route = processorRouter.route(messageType, topic);
+        if (route == null) {
+            log.error("No processor found for MessageType: {}, topic: {}", messageType, topic);
+            return;
+        }
+        IotMessageProcessor processor = route.target();
+        
+        // 负载保持原始字节，由处理器按需读取或按 content-type 解码
+        IotMessage iotMessage = new IotMessage(topic, payload, headers, route.variables(),
+                payloadCodecRegistry.forContentType(headers.getContentType()));
+        
+        // 配置了批量参数的消息类型先攒批，再整批交给处理器
+        if (batchAccumulator.isBatched(messageType)) {
+            batchAccumulator.add(messageType, processor, iotMessage);
+            return;
+        }
+        
+        // 同一设备的消息进入同一通道，保证顺序；不同设备并行处理
+        String routingKey = StrUtil.isNotEmpty(headers.getDeviceCode()) ? headers.getDeviceCode() : topic;
+        deviceOrderedDispatcher.dispatch(routingKey, messageType, () -> {
+            log.info("Processing message with processor: {}", processor.getClass().getName());
+            TimerUtil.startTimer("消息处理");
+            try {
+                processor.process(iotMessage); // 处理消息
+            } catch (Exception e) {
+                log.error("Error during message processing: {}", e.getMessage());
+            } finally {
+                TimerUtil.stopTimer("消息处理");
+            }
+        });
     }
     
     /**
-     * 提取消息的主题
+     * 提取消息负载，入站适配器不做转换，负载为原始字节
      */
-    private String extractTopic(Message<?> message) {
-        return message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC, String.class);
+    private byte[] extractPayload(Message<?> message) {
+        Object payload = message.getPayload();
+        if (payload instanceof byte[] bytes) {
+            return bytes;
+        }
+        return String.valueOf(payload).getBytes(StandardCharsets.UTF_8);
     }
     
     /**
-     * 提取消息类型
+     * 提取消息的主题
      */
-    private MessageTypeEnum extractMessageType(Message<?> message) {
-        String messageTypeHeader = message.getHeaders().get("MessageType", String.class);
-        return MessageTypeEnum.match(messageTypeHeader);
-    }
-    
-    private MessageSourceType extractMessageSourceType(Message<?> message) {
-        String messageSourceType = message.getHeaders().get("MessageSourceType", String.class);
-        return MessageSourceType.match(messageSourceType);
+    private String extractTopic(Message<?> message) {
+        return message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC, String.class);
     }
     
     /**
-     * 使用虚拟线程池处理消息，并设置超时时间
+     * 是否为本端发出的消息（来源标识与本端标识相同）
      */
-    private void processWithTimeout(IotMessageProcessor processor, String content, String topic) {
-        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-            try {
-                processor.process(topic, content); // 处理消息
-            } catch (Exception e) {
-                log.error("Error during message processing: {}", e.getMessage());
-            }
-        }, virtualThreadPool).completeOnTimeout(null, PROCESS_TIMEOUT, TimeUnit.SECONDS);
-        
-        // 等待任务完成或超时
-        try {
-            future.join();
-        } catch (CompletionException ex) {
-            log.error("Message processing failed or timed out", ex.getCause());
-        }
+    private boolean isEcho(InboundHeaders headers) {
+        MessageSourceType sourceType = headers.getSourceType();
+        return sourceType != MessageSourceType.UNKNOWN
+                && sourceType.getCode().equals(iotMessageConfigProperties.getTag());
     }
     
     @PreDestroy
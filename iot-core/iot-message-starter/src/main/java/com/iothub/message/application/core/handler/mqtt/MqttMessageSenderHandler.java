@@ -1,117 +1,359 @@
 package com.iothub.message.application.core.handler.mqtt;
 
 import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import com.iothub.message.application.domain.InboundHeaders;
+import com.iothub.message.application.domain.PublishOptions;
+import com.iothub.message.application.domain.PublishReceipt;
 import com.iothub.message.application.enums.MessageSourceType;
 import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.utils.codec.PayloadCompression;
+import com.iothub.message.application.utils.id.MessageIdGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.mqttv5.client.IMqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttClientException;
+import org.eclipse.paho.mqttv5.common.MqttException;
 import org.eclipse.paho.mqttv5.common.MqttMessage;
 import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
 import org.eclipse.paho.mqttv5.common.packet.UserProperty;
-import org.springframework.integration.mqtt.outbound.Mqttv5PahoMessageHandler;
-import org.springframework.integration.mqtt.support.MqttHeaders;
-import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.mqtt.core.Mqttv5ClientManager;
 import org.springframework.lang.NonNull;
-import org.springframework.messaging.Message;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 发送 MQTT 消息的处理类，支持多种发送方式
+ * 发布经由发布连接池按设备编码（没有设备时按主题）选择连接完成，每次发布的确认通过其令牌回调关联到对应的 CompletableFuture；
+ * QoS 1/2 消息占用所选连接的在途窗口，窗口满时发布方等待，直到代理确认释放位置。
  */
 @Slf4j
 @Component
 public class MqttMessageSenderHandler {
     
     @Resource
-    private Mqttv5PahoMessageHandler mqttv5PahoMessageHandler;
+    private Mqttv5ClientManager mqttv5ClientManager;
     @Resource
     private IotMessageConfigProperties iotMessageConfigProperties;
-
+    @Resource
+    private MqttConfigProperties mqttConfigProperties;
+    
+    private PublisherPool publisherPool;
+    private PayloadCompression payloadCompression;   // 未启用压缩时为 null
+    private MessageIdGenerator messageIdGenerator;
+    
+    // 不随消息变化的用户属性预先创建，每条消息只新建消息 ID 和设备编码属性
+    private UserProperty sourceTypeProperty;
+    private final Map<MessageTypeEnum, UserProperty> messageTypeProperties = new EnumMap<>(MessageTypeEnum.class);
+    
+    public MqttMessageSenderHandler() {
+    }
+    
+    /**
+     * 不经过容器直接创建，用于测试
+     */
+    MqttMessageSenderHandler(Mqttv5ClientManager mqttv5ClientManager, IotMessageConfigProperties iotMessageConfigProperties,
+                             MqttConfigProperties mqttConfigProperties) {
+        this.mqttv5ClientManager = mqttv5ClientManager;
+        this.iotMessageConfigProperties = iotMessageConfigProperties;
+        this.mqttConfigProperties = mqttConfigProperties;
+        init();
+    }
+    
+    @PostConstruct
+    private void init() {
+        publisherPool = new PublisherPool(mqttv5ClientManager, mqttConfigProperties.getPublish());
+        IotMessageConfigProperties.Compression compression = iotMessageConfigProperties.getCompression();
+        payloadCompression = compression.isEnabled() ? compression.create() : null;
+        messageIdGenerator = new MessageIdGenerator(iotMessageConfigProperties.getNodeId());
+        sourceTypeProperty = new UserProperty(InboundHeaders.MESSAGE_SOURCE_TYPE,
+                MessageSourceType.match(iotMessageConfigProperties.getTag()).getCode());
+        for (MessageTypeEnum messageType : MessageTypeEnum.values()) {
+            messageTypeProperties.put(messageType, new UserProperty(InboundHeaders.MESSAGE_TYPE, messageType.getType()));
+        }
+    }
+    
+    @PreDestroy
+    void destroy() {
+        publisherPool.stop();
+    }
+    
     /**
-     * 发送带有指定消息类型的 MQTT 消息
+     * 发送带有指定消息类型的 MQTT 消息，不等待确认，确认结果只记录日志
      *
      * @param topic       MQTT 主题
      * @param content     消息内容
      * @param messageType 消息类型
      */
     public void publish(String topic, String content, @NonNull MessageTypeEnum messageType) {
-        Message<MqttMessage> message = createMessage(topic, content, messageType);
-        sendUsingMessageHandler(message, topic);
+        publishAsync(topic, content, messageType).whenComplete((receipt, e) -> {
+            if (e != null) {
+                log.error("Failed to send message to topic: {}", topic, e);
+            } else {
+                log.info("Message acknowledged by broker, topic: {}, messageId: {}", topic, receipt.messageId());
+            }
+        });
     }
     
     /**
-     * 创建 Spring Integration 消息
+     * 异步发送带有指定消息类型的 MQTT 消息
+     * 在途窗口已满时阻塞调用方，最多等待 spring.mqtt.publish.window-timeout 毫秒
      *
      * @param topic       MQTT 主题
      * @param content     消息内容
      * @param messageType 消息类型
-     * @return 创建的 Spring Integration 消息
+     * @return 代理确认后完成的 Future（QoS 1 为 PUBACK，QoS 2 为 PUBCOMP）；发送失败、代理拒绝或等待窗口超时时异常完成
      */
-    private Message<MqttMessage> createMessage(String topic, String content, MessageTypeEnum messageType) {
-        MqttMessage mqttMessage = createMqttMessage(content);
-        addUserProperties(mqttMessage, messageType);
-        
-        return MessageBuilder.withPayload(mqttMessage)
-                .setHeader(MqttHeaders.TOPIC, topic)
-//                .setHeader("MessageType", messageType.getType())
-//                .setHeader("MessageSourceType", MessageSourceType.match(iotMessageConfigProperties.getTag()))
-//                .setHeader("MessageId", UUID.randomUUID().toString())
-                .build();
+    public CompletableFuture<PublishReceipt> publishAsync(String topic, String content, @NonNull MessageTypeEnum messageType) {
+        return publishAsync(topic, content.getBytes(StandardCharsets.UTF_8), null, null, messageType, nextMessageId());
     }
     
     /**
-     * 使用 MqttPahoMessageHandler 发送 Spring Integration 消息
+     * 使用指定的消息 ID 异步发送已编码的消息，补发时保持原消息 ID，接收方据此去重
+     * 启用压缩时，达到阈值的负载压缩后发送，并携带 ContentEncoding 用户属性
      *
-     * @param message 消息
-     * @param topic   主题
+     * @param topic       MQTT 主题
+     * @param payload     消息负载
+     * @param contentType 负载的内容类型，作为 MQTT v5 content-type 属性发出，为 null 时不设置
+     * @param options     发布选项，为 null 时使用消息类型的默认策略（iot.deliveries）
+     * @param messageType 消息类型
+     * @param messageId   消息 ID
+     * @return 代理确认后完成的 Future
+     */
+    public CompletableFuture<PublishReceipt> publishAsync(String topic, byte[] payload, String contentType, PublishOptions options,
+                                                         @NonNull MessageTypeEnum messageType, String messageId) {
+        return publishAsync(topic, null, payload, contentType, options, messageType, messageId);
+    }
+    
+    /**
+     * 使用指定的消息 ID 异步发送已编码的消息，按路由键选择发布连接
+     *
+     * @param topic       MQTT 主题
+     * @param routingKey  路由键，即设备编码：作为 DeviceCode 用户属性发出，接收方据此保证同一设备按序处理；
+     *                    同一路由键的消息经由同一连接按顺序发出。为 null 时不携带 DeviceCode，按主题选择连接
+     * @param payload     消息负载
+     * @param contentType 负载的内容类型，为 null 时不设置
+     * @param options     发布选项，为 null 时使用消息类型的默认策略（iot.deliveries）
+     * @param messageType 消息类型
+     * @param messageId   消息 ID
+     * @return 代理确认后完成的 Future
      */
-    private void sendUsingMessageHandler(Message<MqttMessage> message, String topic) {
+    public CompletableFuture<PublishReceipt> publishAsync(String topic, String routingKey, byte[] payload, String contentType,
+                                                         PublishOptions options, @NonNull MessageTypeEnum messageType,
+                                                         String messageId) {
+        PublishOptions resolved = options != null ? options : iotMessageConfigProperties.deliveryOf(messageType);
+        byte[] compressed = payloadCompression != null ? payloadCompression.compress(payload) : null;
+        MqttMessage mqttMessage = createMqttMessage(compressed != null ? compressed : payload, contentType, resolved);
+        // 合并上报的信封包含多个设备，设备编码由各条目自带，信封本身不携带
+        addUserProperties(mqttMessage, messageType, messageId, ReportEnvelope.isEnvelope(contentType) ? null : routingKey);
+        if (compressed != null) {
+            mqttMessage.getProperties().getUserProperties().add(
+                    new UserProperty(InboundHeaders.CONTENT_ENCODING, PayloadCompression.DEFLATE));
+        }
+        
+        CompletableFuture<PublishReceipt> future = new CompletableFuture<>();
         try {
-            mqttv5PahoMessageHandler.handleMessage(message);
-            log.info("Successfully sent message to topic: {}, message: {}", topic, message);
-        } catch (Exception e) {
-            log.error("Failed to send message to topic: {}, message: {}", topic, message, e);
+            send(topic, routingKey != null ? routingKey : topic, mqttMessage, messageId, future);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+    
+    /**
+     * 生成新的消息 ID：单调递增、大致按时间排序的 128 位 ID，以 32 位十六进制表示
+     */
+    public String nextMessageId() {
+        return messageIdGenerator.next();
+    }
+    
+    /**
+     * 是否至少有一个发布连接已连接
+     */
+    public boolean isConnected() {
+        return publisherPool.isConnected();
+    }
+    
+    /**
+     * 当前在途窗口大小（所有发布连接之和）
+     */
+    public int inflightLimit() {
+        return publisherPool.inflightLimit();
+    }
+    
+    /**
+     * 当前已发出、尚未确认的消息数量（所有发布连接之和）
+     */
+    public int inflightCount() {
+        return publisherPool.inflightCount();
+    }
+    
+    /**
+     * 发布连接池
+     */
+    public PublisherPool publisherPool() {
+        return publisherPool;
+    }
+    
+    /**
+     * 按路由键选择发布连接，占用其在途位置后发布消息；客户端因超过代理的 receive-maximum 拒绝时，收缩窗口后重新排队；
+     * 连接无法发出（如已断开）时标记为不健康，转投下一个健康的连接，每个连接至多尝试一次
+     */
+    private void send(String topic, String routingKey, MqttMessage mqttMessage, String messageId,
+                      CompletableFuture<PublishReceipt> future) throws InterruptedException {
+        boolean windowed = mqttMessage.getQos() > 0; // QoS 0 没有确认，不占用窗口
+        long windowTimeout = mqttConfigProperties.getPublish().getWindowTimeout();
+        PublisherPool.Lane lane = publisherPool.select(routingKey);
+        InflightWindow window = lane.window();
+        int attempts = 1;
+        while (true) {
+            if (windowed && !window.acquire(windowTimeout, TimeUnit.MILLISECONDS)) {
+                future.completeExceptionally(new TimeoutException(
+                        "In-flight window stayed full for " + windowTimeout + "ms, topic: " + topic));
+                return;
+            }
+            IMqttAsyncClient client = lane.client();
+            DeliveryListener listener = new DeliveryListener(topic, messageId, lane, windowed, future);
+            try {
+                TopicAliasTable aliases = lane.topicAliases(client);
+                if (aliases != null) {
+                    aliases.publish(topic, mqttMessage.getProperties(), () -> client.publish(topic, mqttMessage, null, listener));
+                } else {
+                    client.publish(topic, mqttMessage, null, listener);
+                }
+                lane.succeeded();
+                return;
+            } catch (MqttException e) {
+                if (windowed) {
+                    window.release();
+                }
+                if (windowed && e.getReasonCode() == MqttClientException.REASON_CODE_MAX_INFLIGHT
+                        && window.shrinkTo(client.getInFlightMessageCount())) {
+                    continue;
+                }
+                lane.failed();
+                if (attempts++ < publisherPool.size()) {
+                    PublisherPool.Lane next = publisherPool.select(routingKey);
+                    if (next != lane) {
+                        lane = next;
+                        window = lane.window();
+                        continue;
+                    }
+                }
+                future.completeExceptionally(e);
+                return;
+            }
         }
     }
     
+    /**
+     * 指定客户端所属发布连接的出站主题别名表；未启用或客户端不支持时返回 null
+     */
+    TopicAliasTable topicAliasesOf(IMqttAsyncClient client) {
+        return publisherPool.topicAliasesOf(client);
+    }
+    
     /**
      * 创建 MQTT 消息对象
      *
-     * @param content 消息内容
+     * @param payload     消息负载
+     * @param contentType 负载的内容类型
+     * @param options     发布选项
      * @return 创建的 MqttMessage 对象
      */
-    private MqttMessage createMqttMessage(String content) {
-        MqttMessage mqttMessage = new MqttMessage(content.getBytes());
-        mqttMessage.setQos(1);
-        mqttMessage.setRetained(false);
+    private MqttMessage createMqttMessage(byte[] payload, String contentType, PublishOptions options) {
+        MqttMessage mqttMessage = new MqttMessage(payload);
+        mqttMessage.setQos(options.qos());
+        mqttMessage.setRetained(options.retained());
         if (mqttMessage.getProperties() == null) {
             mqttMessage.setProperties(new MqttProperties());
         }
+        if (contentType != null) {
+            mqttMessage.getProperties().setContentType(contentType);
+        }
+        if (options.expires()) {
+            mqttMessage.getProperties().setMessageExpiryInterval(options.messageExpiryInterval());
+        }
         return mqttMessage;
     }
     
     /**
-     * 为 MQTT 消息添加用户自定义属性
+     * 为 MQTT 消息添加用户自定义属性，消息类型和来源属性复用预先创建的实例
      *
      * @param mqttMessage MqttMessage 对象
      * @param messageType 消息类型
+     * @param messageId   消息 ID
+     * @param deviceCode  设备编码，为 null 时不携带
+     */
+    private void addUserProperties(MqttMessage mqttMessage, MessageTypeEnum messageType, String messageId, String deviceCode) {
+        List<UserProperty> userProperties = mqttMessage.getProperties().getUserProperties();
+        userProperties.add(messageTypeProperties.get(messageType));
+        userProperties.add(new UserProperty(InboundHeaders.MESSAGE_ID, messageId));
+        userProperties.add(sourceTypeProperty);
+        if (deviceCode != null) {
+            userProperties.add(new UserProperty(InboundHeaders.DEVICE_CODE, deviceCode));
+        }
+    }
+    
+    /**
+     * 单次发布的确认回调：释放在途位置并完成对应的 Future
      */
-    private void addUserProperties(MqttMessage mqttMessage, MessageTypeEnum messageType) {
-        Map<String, String> headers = new HashMap<>();
-        headers.put("MessageType", messageType.getType());
-        headers.put("MessageId", UUID.randomUUID().toString());
-        headers.put("MessageSourceType", MessageSourceType.match(iotMessageConfigProperties.getTag()).getCode());
+    private final class DeliveryListener implements MqttActionListener {
+        private final String topic;
+        private final String messageId;
+        private final PublisherPool.Lane lane;
+        private final boolean windowed;
+        private final CompletableFuture<PublishReceipt> future;
+        private final long sentAt = System.nanoTime();
         
-        headers.forEach((key, value) -> {
-            if (value != null) {
-                UserProperty userProperty = new UserProperty(key, value);
-                mqttMessage.getProperties().getUserProperties().add(userProperty);
+        private DeliveryListener(String topic, String messageId, PublisherPool.Lane lane, boolean windowed,
+                                 CompletableFuture<PublishReceipt> future) {
+            this.topic = topic;
+            this.messageId = messageId;
+            this.lane = lane;
+            this.windowed = windowed;
+            this.future = future;
+        }
+        
+        @Override
+        public void onSuccess(IMqttToken token) {
+            release();
+            // MQTT v5 中代理可以通过 PUBACK/PUBREC 的原因码（>= 0x80）拒绝消息
+            int[] reasonCodes = token.getReasonCodes();
+            if (reasonCodes != null) {
+                for (int reasonCode : reasonCodes) {
+                    if (reasonCode >= 0x80) {
+                        future.completeExceptionally(new MqttException(reasonCode));
+                        return;
+                    }
+                }
             }
-        });
+            future.complete(new PublishReceipt(topic, messageId, token.getMessageId(), System.nanoTime() - sentAt, false));
+        }
+        
+        @Override
+        public void onFailure(IMqttToken token, Throwable exception) {
+            release();
+            lane.failed();
+            future.completeExceptionally(exception);
+        }
+        
+        private void release() {
+            if (windowed) {
+                lane.window().release();
+            }
+        }
     }
-    
 }
@@ -0,0 +1,87 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.mqttv5.client.IMqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.internal.MqttConnectionState;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.Properties;
+
+/**
+ * 读取 Paho 客户端内部的连接状态
+ * 代理在 CONNACK 中声明的 receive-maximum 等上限由 Paho 保存在 MqttConnectionState 中，客户端没有公开读取方法，这里通过反射读取；
+ * 客户端版本不支持时返回 null，调用方沿用配置值。依赖 Paho 内部实现的扩展按 {@link #VERSION} 判断是否启用。
+ */
+@Slf4j
+final class PahoConnectionState {
+    
+    // MQTT v5 规定代理未声明 receive-maximum 时取 65535
+    static final int DEFAULT_RECEIVE_MAXIMUM = 65535;
+    
+    // 类路径上 Paho v5 客户端的版本，无法确定时为 null
+    static final String VERSION = pahoVersion();
+    
+    private static final Field CONNECTION = connectionField();
+    
+    private PahoConnectionState() {
+    }
+    
+    /**
+     * 客户端内部的连接状态
+     *
+     * @return 连接状态；客户端不是 Paho 的 MqttAsyncClient 或版本不支持时返回 null
+     */
+    static MqttConnectionState of(IMqttAsyncClient client) {
+        if (CONNECTION == null || !(client instanceof MqttAsyncClient)) {
+            return null;
+        }
+        try {
+            return (MqttConnectionState) CONNECTION.get(client);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Failed to read MQTT connection state", e);
+            return null;
+        }
+    }
+    
+    /**
+     * 当前连接上代理声明的 receive-maximum
+     *
+     * @return 代理允许的在途 QoS 1/2 消息上限，未声明时为 65535；无法读取时返回 0
+     */
+    static int receiveMaximum(IMqttAsyncClient client) {
+        MqttConnectionState state = of(client);
+        if (state == null) {
+            return 0;
+        }
+        Integer receiveMaximum = state.getReceiveMaximum();
+        return receiveMaximum == null ? DEFAULT_RECEIVE_MAXIMUM : receiveMaximum;
+    }
+    
+    private static String pahoVersion() {
+        try (InputStream in = MqttAsyncClient.class.getResourceAsStream(
+                "/META-INF/maven/org.eclipse.paho/org.eclipse.paho.mqttv5.client/pom.properties")) {
+            if (in != null) {
+                Properties properties = new Properties();
+                properties.load(in);
+                return properties.getProperty("version");
+            }
+        } catch (IOException e) {
+            log.debug("Failed to read Paho version", e);
+        }
+        return MqttAsyncClient.class.getPackage().getImplementationVersion();
+    }
+    
+    private static Field connectionField() {
+        try {
+            Field field = MqttAsyncClient.class.getDeclaredField("mqttConnection");
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("MQTT client does not expose its connection state, broker limits are not applied", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.utils.codec.BinaryPayloadCodec;
+import com.iothub.message.application.utils.codec.CborPayloadCodec;
+import com.iothub.message.application.utils.codec.JsonPayloadCodec;
+import com.iothub.message.application.utils.codec.PayloadCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 负载编解码器注册表
+ * 内置 json、cbor、binary 三种编解码器，容器中的 {@link PayloadCodec} Bean 按名称注册，同名时覆盖内置实现。
+ * 发送方按消息类型选择编码器（iot.codec），接收方按消息的 content-type 选择解码器；
+ * 没有 content-type 的消息来自旧版本发送方，按 JSON 文本处理。
+ */
+@Slf4j
+@Component
+public class PayloadCodecRegistry {
+    
+    private final Map<String, PayloadCodec> byName = new HashMap<>();
+    private final Map<String, PayloadCodec> byContentType = new HashMap<>();
+    private final Map<MessageTypeEnum, PayloadCodec> byMessageType = new EnumMap<>(MessageTypeEnum.class);
+    private final PayloadCodec defaultCodec;
+    
+    public PayloadCodecRegistry(IotMessageConfigProperties iotMessageConfigProperties, List<PayloadCodec> customCodecs) {
+        register(new JsonPayloadCodec());
+        register(new CborPayloadCodec());
+        register(new BinaryPayloadCodec());
+        customCodecs.forEach(this::register);
+        
+        IotMessageConfigProperties.Codec config = iotMessageConfigProperties.getCodec();
+        defaultCodec = lookup(config.getDefaultFormat());
+        for (MessageTypeEnum messageType : MessageTypeEnum.values()) {
+            byMessageType.put(messageType, lookup(config.formatOf(messageType)));
+        }
+        log.info("Payload codecs: {}, by message type: {}", byName.keySet(), byMessageType.entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue().name()).toList());
+    }
+    
+    /**
+     * 获取指定消息类型使用的编码器
+     */
+    public PayloadCodec codecFor(MessageTypeEnum messageType) {
+        PayloadCodec codec = messageType == null ? null : byMessageType.get(messageType);
+        return codec != null ? codec : defaultCodec;
+    }
+    
+    /**
+     * 按内容类型获取解码器
+     *
+     * @param contentType 消息的 content-type，忽略参数部分（如 ;charset=utf-8）和大小写
+     * @return 解码器；内容类型为空时返回 JSON 解码器，未知的内容类型返回 null
+     */
+    public PayloadCodec forContentType(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return byName.get(JsonPayloadCodec.NAME);
+        }
+        return byContentType.get(normalize(contentType));
+    }
+    
+    private void register(PayloadCodec codec) {
+        PayloadCodec previous = byName.put(codec.name(), codec);
+        if (previous != null) {
+            byContentType.remove(normalize(previous.contentType()));
+            log.info("Payload codec {} overridden by {}", codec.name(), codec.getClass().getName());
+        }
+        byContentType.put(normalize(codec.contentType()), codec);
+    }
+    
+    private PayloadCodec lookup(String name) {
+        PayloadCodec codec = byName.get(name);
+        if (codec == null) {
+            throw new IllegalStateException("Unknown payload codec '" + name + "', available: " + byName.keySet());
+        }
+        return codec;
+    }
+    
+    private static String normalize(String contentType) {
+        int parameters = contentType.indexOf(';');
+        String mediaType = parameters < 0 ? contentType : contentType.substring(0, parameters);
+        return mediaType.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,441 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.core.listener.MqttConnectionEvent;
+import com.iothub.message.application.domain.PublishOptions;
+import com.iothub.message.application.domain.PublishReceipt;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.utils.queue.SpillSegmentLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 上行发件箱（存储转发）
+ * 链路正常且没有积压时消息直接发布；客户端未连接、发送失败或已有积压时，消息追加到本地只追加日志，
+ * 由刷盘线程按 fsyncInterval 批量刷盘后才确认写入方。链路恢复后补发线程按原顺序逐条补发，
+ * 收到代理确认后才消费该记录，补发速率不超过 replayRate；连接恢复的 CONNECTED 事件会立即唤醒补发线程。日志达到保留上限时丢弃最旧的段。
+ * 补发沿用原消息 ID，重启前已发出但未消费的记录可能被重复补发，由接收方按消息 ID 去重。
+ * 设置了消息过期时间的记录补发时扣除在发件箱中停留的时间，已过期的不再补发。
+ */
+@Slf4j
+@Component
+public class PublishOutbox {
+    
+    @Resource
+    private MqttMessageSenderHandler mqttMessageSenderHandler;
+    @Resource
+    private IotMessageConfigProperties iotMessageConfigProperties;
+    
+    private IotMessageConfigProperties.Outbox config;
+    private SpillSegmentLog outboxLog;
+    private Thread flusher;
+    private volatile Thread replayer;
+    private volatile boolean running;
+    
+    private final Object lock = new Object();
+    private List<StoredRecord> unflushed = new ArrayList<>();   // 已写入日志、等待下一次刷盘后确认的记录
+    private long discardEpoch;                                  // 每次因保留上限丢弃记录时递增
+    
+    private final LongAdder storedCount = new LongAdder();
+    private final LongAdder replayedCount = new LongAdder();
+    private final LongAdder discardedCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    
+    public PublishOutbox() {
+    }
+    
+    /**
+     * 不经过容器直接创建，用于测试
+     */
+    PublishOutbox(MqttMessageSenderHandler mqttMessageSenderHandler, IotMessageConfigProperties iotMessageConfigProperties) {
+        this.mqttMessageSenderHandler = mqttMessageSenderHandler;
+        this.iotMessageConfigProperties = iotMessageConfigProperties;
+        start();
+    }
+    
+    @PostConstruct
+    void start() {
+        config = iotMessageConfigProperties.getOutbox();
+        if (!config.isEnabled()) {
+            return;
+        }
+        outboxLog = new SpillSegmentLog(Path.of(config.getDirectory()), config.getSegmentSize(), config.getMaxSegments());
+        running = true;
+        flusher = Thread.ofVirtual().name("outbox-flusher").start(this::flushLoop);
+        replayer = Thread.ofVirtual().name("outbox-replayer").start(this::replayLoop);
+        log.info("Outbox enabled, directory: {}, pending records: {}", config.getDirectory(), outboxLog.pendingCount());
+    }
+    
+    /**
+     * 发布文本消息，链路不可用时暂存到发件箱
+     *
+     * @param topic       MQTT 主题
+     * @param content     消息内容
+     * @param messageType 消息类型
+     * @return 代理确认或发件箱刷盘后完成的 Future，暂存的消息以 {@link PublishReceipt#deferred()} 为 true 完成
+     */
+    public CompletableFuture<PublishReceipt> publish(String topic, String content, @NonNull MessageTypeEnum messageType) {
+        return publish(topic, content.getBytes(StandardCharsets.UTF_8), null, null, messageType);
+    }
+    
+    /**
+     * 发布已编码的消息，链路不可用时暂存到发件箱
+     *
+     * @param topic       MQTT 主题
+     * @param payload     消息负载
+     * @param contentType 负载的内容类型，为 null 时不设置
+     * @param options     发布选项，为 null 时使用消息类型的默认策略
+     * @param messageType 消息类型
+     * @return 代理确认或发件箱刷盘后完成的 Future，暂存的消息以 {@link PublishReceipt#deferred()} 为 true 完成
+     */
+    public CompletableFuture<PublishReceipt> publish(String topic, byte[] payload, String contentType, PublishOptions options,
+                                                     @NonNull MessageTypeEnum messageType) {
+        return publish(topic, null, payload, contentType, options, messageType);
+    }
+    
+    /**
+     * 发布已编码的消息，按路由键选择发布连接，链路不可用时暂存到发件箱
+     *
+     * @param topic       MQTT 主题
+     * @param routingKey  路由键，即设备编码：作为 DeviceCode 用户属性发出并选择发布连接，随记录暂存，补发时同样使用；
+     *                    为 null 时不携带，按主题选择连接
+     * @param payload     消息负载
+     * @param contentType 负载的内容类型，为 null 时不设置
+     * @param options     发布选项，为 null 时使用消息类型的默认策略
+     * @param messageType 消息类型
+     * @return 代理确认或发件箱刷盘后完成的 Future，暂存的消息以 {@link PublishReceipt#deferred()} 为 true 完成
+     */
+    public CompletableFuture<PublishReceipt> publish(String topic, String routingKey, byte[] payload, String contentType,
+                                                     PublishOptions options, @NonNull MessageTypeEnum messageType) {
+        // 暂存时固定发布选项并记录写入时间，补发时扣除在发件箱中停留的时间
+        PublishOptions resolved = options != null ? options : iotMessageConfigProperties.deliveryOf(messageType);
+        OutboxRecord record = new OutboxRecord(topic, routingKey, messageType, mqttMessageSenderHandler.nextMessageId(), contentType,
+                resolved, System.currentTimeMillis(), payload);
+        if (outboxLog == null) {
+            return send(record);
+        }
+        
+        // 已有积压时新消息也写入发件箱，保证补发顺序
+        if (outboxLog.hasPending() || !mqttMessageSenderHandler.isConnected()) {
+            return store(record);
+        }
+        return send(record).exceptionallyCompose(e -> {
+            Throwable cause = unwrap(e);
+            if (isRejectedByBroker(cause)) {
+                return CompletableFuture.failedFuture(cause);
+            }
+            log.warn("Publish to {} failed ({}), storing message {} in outbox", topic, cause.getMessage(), record.messageId());
+            return store(record);
+        });
+    }
+    
+    /**
+     * 发件箱中等待补发的记录数
+     */
+    public long pendingCount() {
+        return outboxLog == null ? 0 : outboxLog.pendingCount();
+    }
+    
+    /**
+     * 累计暂存到发件箱的记录数
+     */
+    public long storedCount() {
+        return storedCount.sum();
+    }
+    
+    /**
+     * 累计补发成功的记录数
+     */
+    public long replayedCount() {
+        return replayedCount.sum();
+    }
+    
+    /**
+     * 因达到保留上限被丢弃的记录数
+     */
+    public long discardedCount() {
+        return discardedCount.sum();
+    }
+    
+    /**
+     * 生成新的消息 ID
+     */
+    public String nextMessageId() {
+        return mqttMessageSenderHandler.nextMessageId();
+    }
+    
+    /**
+     * 补发前已超过消息过期时间而丢弃的记录数
+     */
+    public long expiredCount() {
+        return expiredCount.sum();
+    }
+    
+    /**
+     * 连接建立或重连成功后立即唤醒补发线程
+     */
+    @EventListener
+    public void onConnectionEvent(MqttConnectionEvent event) {
+        Thread thread = replayer;
+        if (event.isConnected() && thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        if (outboxLog == null) {
+            return;
+        }
+        running = false;
+        flusher.interrupt();
+        replayer.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+            replayer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        outboxLog.close();
+    }
+    
+    private CompletableFuture<PublishReceipt> send(OutboxRecord record) {
+        return send(record, record.options());
+    }
+    
+    private CompletableFuture<PublishReceipt> send(OutboxRecord record, PublishOptions options) {
+        return mqttMessageSenderHandler.publishAsync(record.topic(), record.routingKey(), record.payload(), record.contentType(),
+                options, record.messageType(), record.messageId());
+    }
+    
+    /**
+     * 追加到日志，达到保留上限时丢弃最旧的段；写入方在下一次刷盘后得到确认
+     */
+    private CompletableFuture<PublishReceipt> store(OutboxRecord record) {
+        byte[] data = record.encode();
+        if (data.length > outboxLog.maxRecordSize()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Message of " + data.length + " bytes exceeds outbox record limit " + outboxLog.maxRecordSize()));
+        }
+        CompletableFuture<PublishReceipt> future = new CompletableFuture<>();
+        synchronized (lock) {
+            while (!outboxLog.append(data)) {
+                long discarded = outboxLog.discardOldestSegment();
+                if (discarded == 0) {
+                    future.completeExceptionally(new IllegalStateException("Outbox is full"));
+                    return future;
+                }
+                discardEpoch++;
+                discardedCount.add(discarded);
+                log.warn("Outbox reached retention cap, discarded {} oldest records", discarded);
+            }
+            unflushed.add(new StoredRecord(record, future));
+        }
+        storedCount.increment();
+        return future;
+    }
+    
+    /**
+     * 批量刷盘：一次 fsync 确认该间隔内写入的所有记录
+     */
+    private void flushLoop() {
+        while (running) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(config.getFsyncInterval());
+            } catch (InterruptedException e) {
+                return;
+            }
+            flush();
+        }
+    }
+    
+    private void flush() {
+        List<StoredRecord> flushed;
+        synchronized (lock) {
+            if (unflushed.isEmpty()) {
+                return;
+            }
+            flushed = unflushed;
+            unflushed = new ArrayList<>();
+            outboxLog.force();
+        }
+        for (StoredRecord stored : flushed) {
+            stored.future().complete(PublishReceipt.deferred(stored.record().topic(), stored.record().messageId()));
+        }
+    }
+    
+    /**
+     * 按原顺序补发：每条记录收到代理确认后才消费，两条之间按 replayRate 限速
+     */
+    private void replayLoop() {
+        long interval = TimeUnit.SECONDS.toNanos(1) / Math.max(1, config.getReplayRate());
+        long nextSendAt = System.nanoTime();
+        while (running) {
+            try {
+                byte[] data;
+                long epoch;
+                synchronized (lock) {
+                    data = outboxLog.peek();
+                    epoch = discardEpoch;
+                }
+                if (data == null || !mqttMessageSenderHandler.isConnected()) {
+                    // 链路恢复时由连接事件提前唤醒，不必等满 retryInterval
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(config.getRetryInterval()));
+                    continue;
+                }
+                
+                long now = System.nanoTime();
+                if (nextSendAt > now) {
+                    TimeUnit.NANOSECONDS.sleep(nextSendAt - now);
+                }
+                nextSendAt = Math.max(nextSendAt, now) + interval;
+                
+                OutboxRecord record;
+                try {
+                    record = OutboxRecord.decode(data);
+                } catch (UncheckedIOException | IllegalArgumentException e) {
+                    log.error("Dropping undecodable outbox record of {} bytes", data.length, e);
+                    consume(epoch);
+                    continue;
+                }
+                if (replay(record)) {
+                    consume(epoch);
+                } else {
+                    TimeUnit.MILLISECONDS.sleep(config.getRetryInterval());
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log.error("Unexpected error while replaying outbox", e);
+            }
+        }
+    }
+    
+    /**
+     * 消费已补发的记录；补发期间记录所在的段因保留上限被丢弃时，队首已是其他记录，不再消费
+     */
+    private void consume(long epoch) {
+        synchronized (lock) {
+            if (epoch == discardEpoch) {
+                outboxLog.read();
+            }
+        }
+    }
+    
+    /**
+     * 补发一条记录并等待确认
+     *
+     * @return 记录是否可以消费：代理已确认，或代理明确拒绝（重发也不会成功）
+     */
+    private boolean replay(OutboxRecord record) throws InterruptedException {
+        PublishOptions options = record.options();
+        if (options.expires()) {
+            // 按 MQTT v5 的语义，转发时过期时间扣除已停留的时间，已过期的消息不再发送
+            long remaining = options.messageExpiryInterval()
+                    - TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - record.storedAt());
+            if (remaining <= 0) {
+                expiredCount.increment();
+                log.debug("Outbox message {} to {} expired before replay, dropping it", record.messageId(), record.topic());
+                return true;
+            }
+            options = new PublishOptions(options.qos(), options.retained(), remaining);
+        }
+        try {
+            send(record, options).get(config.getReplayAckTimeout(), TimeUnit.MILLISECONDS);
+            replayedCount.increment();
+            return true;
+        } catch (ExecutionException e) {
+            if (isRejectedByBroker(e.getCause())) {
+                log.error("Broker rejected outbox message {} to {}, dropping it", record.messageId(), record.topic(), e.getCause());
+                return true;
+            }
+            log.warn("Outbox replay of message {} failed: {}", record.messageId(), e.getCause().getMessage());
+            return false;
+        } catch (TimeoutException e) {
+            log.warn("Outbox replay of message {} was not acknowledged in {}ms", record.messageId(), config.getReplayAckTimeout());
+            return false;
+        }
+    }
+    
+    /**
+     * 代理通过原因码拒绝了消息（0x80 ~ 0xFF），与连接、超时等链路故障区分
+     */
+    private static boolean isRejectedByBroker(Throwable e) {
+        return e instanceof MqttException mqttException
+                && mqttException.getReasonCode() >= 0x80 && mqttException.getReasonCode() <= 0xFF;
+    }
+    
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+    
+    private record StoredRecord(OutboxRecord record, CompletableFuture<PublishReceipt> future) {
+    }
+    
+    /**
+     * 发件箱中的一条记录：[主题][消息类型][消息 ID][内容类型][QoS][保留标志][过期时间][写入时间][负载长度][负载][路由键]
+     * 路由键即设备编码，补发时仍作为 DeviceCode 用户属性发出
+     */
+    private record OutboxRecord(String topic, String routingKey, MessageTypeEnum messageType, String messageId, String contentType,
+                                PublishOptions options, long storedAt, byte[] payload) {
+        
+        private byte[] encode() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 128);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeUTF(topic);
+                out.writeUTF(messageType.getType());
+                out.writeUTF(messageId);
+                out.writeUTF(contentType == null ? "" : contentType);
+                out.writeByte(options.qos());
+                out.writeBoolean(options.retained());
+                out.writeLong(options.messageExpiryInterval());
+                out.writeLong(storedAt);
+                out.writeInt(payload.length);
+                out.write(payload);
+                out.writeUTF(routingKey == null ? "" : routingKey);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to encode outbox record", e);
+            }
+            return bytes.toByteArray();
+        }
+        
+        private static OutboxRecord decode(byte[] data) {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+                String topic = in.readUTF();
+                MessageTypeEnum messageType = MessageTypeEnum.fromHeader(in.readUTF());
+                String messageId = in.readUTF();
+                String contentType = in.readUTF();
+                PublishOptions options = new PublishOptions(in.readByte(), in.readBoolean(), in.readLong());
+                long storedAt = in.readLong();
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+                // 路由键追加在负载之后，旧版本写入的记录没有这一项
+                String routingKey = in.available() > 0 ? in.readUTF() : "";
+                return new OutboxRecord(topic, routingKey.isEmpty() ? null : routingKey, messageType, messageId,
+                        contentType.isEmpty() ? null : contentType, options, storedAt, payload);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to decode outbox record", e);
+            }
+        }
+    }
+}
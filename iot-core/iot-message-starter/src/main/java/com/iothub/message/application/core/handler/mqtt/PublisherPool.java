@@ -0,0 +1,296 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.mqttv5.client.IMqttAsyncClient;
+import org.springframework.integration.mqtt.core.Mqttv5ClientManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 出站发布连接池
+ * Paho 的每个连接只有一个发送线程写同一个套接字，在途的 QoS 1/2 消息数量还受代理 receive-maximum 的限制；
+ * 连接池把发布分散到多个连接上，每个连接维护独立的在途窗口、主题别名表和健康状态，在途窗口在每次连接建立后按代理的 receive-maximum 重新设定。
+ * 按路由键哈希选择连接：设备消息以设备编码为路由键，同一设备的消息总是经由同一连接发出，设备内的顺序不变；
+ * 合并上报按连接分组攒批，一个信封只包含落在同一连接上的设备，并以其中任一设备的编码为路由键，
+ * 同一设备的上报无论合并与否都经由同一连接按顺序发出。
+ * 选中的连接断开或刚刚发布失败时，按环形顺序转投下一个健康的连接，同一路由键在故障期间转投的连接也是确定的。
+ * 第一个连接即发送处理器使用的客户端（未拆分时与订阅共用），其余连接由连接池按相同的连接选项创建，同样发布连接事件。
+ */
+@Slf4j
+public class PublisherPool {
+    
+    private final Lane[] lanes;
+    private final List<Mqttv5ClientManager> ownedManagers = new ArrayList<>();
+    private final long failoverCooldownNanos;
+    private final boolean topicAliases;
+    private final LongAdder failoverCount = new LongAdder();
+    
+    /**
+     * @param primary 发送处理器使用的客户端管理器，作为第一个连接
+     * @param publish 发布配置
+     */
+    public PublisherPool(Mqttv5ClientManager primary, MqttConfigProperties.Publish publish) {
+        int size = Math.max(1, publish.getPoolSize());
+        this.lanes = new Lane[size];
+        this.failoverCooldownNanos = publish.getFailoverCooldown() * 1_000_000L;
+        this.topicAliases = publish.isTopicAliases();
+        lanes[0] = new Lane(0, primary, publish.getMaxInflight());
+        for (int i = 1; i < size; i++) {
+            Mqttv5ClientManager manager = primary instanceof MqttConnectionManager connectionManager
+                    ? connectionManager.publisherLane(i)
+                    : new Mqttv5ClientManager(primary.getConnectionInfo(), clientIdOf(primary, i));
+            manager.setDisconnectCompletionTimeout(publish.getShutdownTimeout());
+            manager.start();
+            ownedManagers.add(manager);
+            lanes[i] = new Lane(i, manager, publish.getMaxInflight());
+        }
+        if (size > 1) {
+            log.info("MQTT publisher pool started with {} connections", size);
+        }
+    }
+    
+    private static String clientIdOf(Mqttv5ClientManager primary, int index) {
+        IMqttAsyncClient client = primary.getClient();
+        String base = client != null ? client.getClientId() : "Out";
+        return base + "-pub" + index;
+    }
+    
+    /**
+     * 为路由键选择发布连接
+     *
+     * @param routingKey 路由键，通常为设备编码；没有设备的消息使用主题
+     * @return 路由键对应的连接；该连接不健康时为环形顺序上的下一个健康连接，全部不健康时仍返回对应的连接
+     */
+    public Lane select(String routingKey) {
+        if (lanes.length == 1) {
+            return lanes[0];
+        }
+        int home = homeLane(routingKey, lanes.length);
+        long now = System.nanoTime();
+        for (int i = 0; i < lanes.length; i++) {
+            Lane lane = lanes[(home + i) % lanes.length];
+            if (lane.isHealthy(now)) {
+                if (i > 0) {
+                    failoverCount.increment();
+                }
+                return lane;
+            }
+        }
+        return lanes[home];
+    }
+    
+    /**
+     * 路由键在连接池中对应的连接序号，连接都健康时即 {@link #select(String)} 选中的连接
+     *
+     * @param routingKey 路由键
+     * @param size       连接数量
+     * @return 连接序号
+     */
+    public static int homeLane(String routingKey, int size) {
+        return size <= 1 ? 0 : Math.floorMod(routingKey.hashCode(), size);
+    }
+    
+    /**
+     * 连接数量
+     */
+    public int size() {
+        return lanes.length;
+    }
+    
+    /**
+     * 指定序号的连接
+     */
+    public Lane lane(int index) {
+        return lanes[index];
+    }
+    
+    /**
+     * 是否至少有一个连接已连接
+     */
+    public boolean isConnected() {
+        for (Lane lane : lanes) {
+            if (lane.isConnected()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 因选中的连接不健康而转投其他连接的发布次数
+     */
+    public long failoverCount() {
+        return failoverCount.sum();
+    }
+    
+    /**
+     * 所有连接的在途窗口大小之和
+     */
+    public int inflightLimit() {
+        int limit = 0;
+        for (Lane lane : lanes) {
+            limit += lane.window.limit();
+        }
+        return limit;
+    }
+    
+    /**
+     * 所有连接已发出、尚未确认的消息数量之和
+     */
+    public int inflightCount() {
+        int inflight = 0;
+        for (Lane lane : lanes) {
+            inflight += lane.window.inflight();
+        }
+        return inflight;
+    }
+    
+    /**
+     * 指定客户端所属连接的出站主题别名表
+     */
+    TopicAliasTable topicAliasesOf(IMqttAsyncClient client) {
+        for (Lane lane : lanes) {
+            if (lane.client() == client) {
+                return lane.topicAliases(client);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 断开连接池创建的连接，第一个连接由容器管理
+     */
+    public void stop() {
+        for (Mqttv5ClientManager manager : ownedManagers) {
+            try {
+                manager.stop();
+            } catch (RuntimeException e) {
+                log.warn("Failed to stop MQTT publisher connection", e);
+            }
+        }
+    }
+    
+    /**
+     * 连接池中的一个发布连接
+     */
+    public final class Lane {
+        private final int index;
+        private final Mqttv5ClientManager manager;
+        private final InflightWindow window;
+        private final LongAdder publishedCount = new LongAdder();
+        private final LongAdder failureCount = new LongAdder();
+        private volatile boolean coolingDown;
+        private volatile long unhealthyUntil;
+        private volatile IMqttAsyncClient aliasedClient;
+        private volatile TopicAliasTable aliases;
+        
+        private Lane(int index, Mqttv5ClientManager manager, int maxInflight) {
+            this.index = index;
+            this.manager = manager;
+            this.window = new InflightWindow(maxInflight);
+            // 每次连接建立后按代理新声明的 receive-maximum 重新设定窗口
+            manager.addCallback(reconnect -> applyReceiveMaximum());
+            if (isConnected()) {
+                applyReceiveMaximum();
+            }
+        }
+        
+        private void applyReceiveMaximum() {
+            int receiveMaximum = PahoConnectionState.receiveMaximum(client());
+            if (receiveMaximum > 0) {
+                window.resetTo(receiveMaximum);
+            }
+        }
+        
+        /**
+         * 连接在池中的序号
+         */
+        public int index() {
+            return index;
+        }
+        
+        /**
+         * 当前客户端，重连后可能变化
+         */
+        public IMqttAsyncClient client() {
+            return manager.getClient();
+        }
+        
+        /**
+         * 本连接的在途窗口
+         */
+        public InflightWindow window() {
+            return window;
+        }
+        
+        /**
+         * 客户端是否已连接
+         */
+        public boolean isConnected() {
+            IMqttAsyncClient client = client();
+            return client != null && client.isConnected();
+        }
+        
+        /**
+         * 已连接，且最近一次发布失败已超过冷却时间
+         */
+        boolean isHealthy(long now) {
+            if (coolingDown && now - unhealthyUntil < 0) {
+                return false;
+            }
+            coolingDown = false;
+            return isConnected();
+        }
+        
+        /**
+         * 记录一次成功发出的发布
+         */
+        void succeeded() {
+            publishedCount.increment();
+        }
+        
+        /**
+         * 记录一次发布失败，冷却时间内新的发布转投其他连接
+         */
+        void failed() {
+            failureCount.increment();
+            unhealthyUntil = System.nanoTime() + failoverCooldownNanos;
+            coolingDown = true;
+        }
+        
+        /**
+         * 经由本连接发出的消息数量
+         */
+        public long publishedCount() {
+            return publishedCount.sum();
+        }
+        
+        /**
+         * 本连接发布失败的次数
+         */
+        public long failureCount() {
+            return failureCount.sum();
+        }
+        
+        /**
+         * 当前客户端的出站主题别名表，首次发布时安装；未启用或客户端不支持时返回 null
+         */
+        TopicAliasTable topicAliases(IMqttAsyncClient client) {
+            if (!topicAliases) {
+                return null;
+            }
+            if (client != aliasedClient) {
+                synchronized (this) {
+                    if (client != aliasedClient) {
+                        aliases = TopicAliasTable.attach(client);
+                        aliasedClient = client;
+                    }
+                }
+            }
+            return aliases;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.MqttConfigProperties;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.random.RandomGenerator;
+
+/**
+ * 重连退避策略：指数退避 + 全抖动（full jitter），并以滑动窗口限制重连预算
+ * 第 n 次失败后的等待时间在 [0, min(maxDelay, initialDelay * 2^n)] 内均匀随机，
+ * 代理重启后大量边端不会在同一时刻集中重连；预算窗口内的重连次数达到上限时，
+ * 下一次重连推迟到窗口内最早的一次移出窗口，连接反复建立又断开时重连频率也有上限。
+ * 连接建立后退避次数清零，预算窗口不清零。
+ */
+public class ReconnectBackoff {
+    
+    private final long initialDelay;
+    private final long maxDelay;
+    private final int budget;
+    private final long budgetWindow;
+    private final RandomGenerator random;
+    private final ArrayDeque<Long> scheduledAttempts = new ArrayDeque<>();   // 预算窗口内各次重连的计划时间（毫秒）
+    private int failures;
+    
+    public ReconnectBackoff(MqttConfigProperties.Reconnect config) {
+        this(config, new Random());
+    }
+    
+    /**
+     * 指定随机数生成器，用于测试
+     */
+    ReconnectBackoff(MqttConfigProperties.Reconnect config, RandomGenerator random) {
+        this.initialDelay = Math.max(1, config.getInitialDelay());
+        this.maxDelay = Math.max(initialDelay, config.getMaxDelay());
+        this.budget = config.getBudget();
+        this.budgetWindow = config.getBudgetWindow();
+        this.random = random;
+    }
+    
+    /**
+     * 计算下一次重连前的等待时间，并计入退避次数和重连预算
+     *
+     * @param now 当前时间（毫秒）
+     * @return 等待时间（毫秒）
+     */
+    public synchronized long nextDelay(long now) {
+        long ceiling = Math.min(maxDelay, initialDelay << Math.min(failures, 30));
+        long delay = random.nextLong(ceiling + 1);
+        failures++;
+        
+        if (budget > 0) {
+            while (!scheduledAttempts.isEmpty() && scheduledAttempts.peekFirst() <= now - budgetWindow) {
+                scheduledAttempts.pollFirst();
+            }
+            if (scheduledAttempts.size() >= budget) {
+                delay = Math.max(delay, scheduledAttempts.pollFirst() + budgetWindow - now);
+            }
+            scheduledAttempts.addLast(now + delay);
+        }
+        return delay;
+    }
+    
+    /**
+     * 连接建立后清零退避次数，下一次断开从 initialDelay 重新开始退避
+     */
+    public synchronized void reset() {
+        failures = 0;
+    }
+    
+    /**
+     * 自上次连接建立以来的退避次数
+     */
+    public synchronized int failures() {
+        return failures;
+    }
+}
@@ -0,0 +1,292 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import com.iothub.message.application.domain.PublishOptions;
+import com.iothub.message.application.domain.PublishReceipt;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 上行合并发布
+ * 参与合并的消息类型按类型和发布连接攒批，攒满 maxRecords 条、maxBytes 字节或最早一条等待超过 linger 后，
+ * 编码为一个 {@link ReportEnvelope} 经发件箱发布到上行主题根，一次 QoS 1 握手确认整批记录。
+ * 记录按设备编码落到发布连接池中对应的连接分组，信封以组内设备的编码为路由键经由该连接发出，
+ * 同一设备的上报总是进入同一组、经由同一连接，不会因分到不同信封、走不同连接而乱序。
+ * 每条记录的 Future 在信封被确认（或暂存到发件箱）后以各自的消息 ID 完成。
+ * 攒满或到期的批次在锁内封装后排入待发队列，释放锁之后再交给发件箱：发件箱在在途窗口已满时会等待，
+ * 等待期间其他线程仍可继续攒批。待发队列由持有发布锁的线程按顺序发出，同一组的信封保持攒批顺序。
+ */
+@Slf4j
+@Component
+public class ReportCoalescer {
+    
+    @Resource
+    private PublishOutbox publishOutbox;
+    @Resource
+    private IotMessageConfigProperties iotMessageConfigProperties;
+    @Resource
+    private MqttConfigProperties mqttConfigProperties;
+    
+    private IotMessageConfigProperties.Coalescing config;
+    private int laneCount;
+    // 每种消息类型按发布连接各有一组正在攒批的记录
+    private final Map<MessageTypeEnum, PendingEnvelope[]> pending = new EnumMap<>(MessageTypeEnum.class);
+    private final ArrayDeque<SealedEnvelope> ready = new ArrayDeque<>();   // 已封装、待发布的信封，由 pending 锁保护
+    private final ReentrantLock publishLock = new ReentrantLock();
+    private Thread flusher;
+    private volatile boolean running;
+    
+    private final LongAdder envelopeCount = new LongAdder();
+    private final LongAdder recordCount = new LongAdder();
+    
+    public ReportCoalescer() {
+    }
+    
+    /**
+     * 不经过容器直接创建，用于测试
+     */
+    ReportCoalescer(PublishOutbox publishOutbox, IotMessageConfigProperties iotMessageConfigProperties,
+                    MqttConfigProperties mqttConfigProperties) {
+        this.publishOutbox = publishOutbox;
+        this.iotMessageConfigProperties = iotMessageConfigProperties;
+        this.mqttConfigProperties = mqttConfigProperties;
+        start();
+    }
+    
+    @PostConstruct
+    void start() {
+        config = iotMessageConfigProperties.getCoalescing();
+        laneCount = Math.max(1, mqttConfigProperties.getPublish().getPoolSize());
+        if (!config.isEnabled()) {
+            return;
+        }
+        running = true;
+        flusher = Thread.ofVirtual().name("report-coalescer").start(this::flushLoop);
+        log.info("Report coalescing enabled for {}, maxRecords: {}, maxBytes: {}, linger: {}ms, lanes: {}",
+                config.getTypes(), config.getMaxRecords(), config.getMaxBytes(), config.getLinger(), laneCount);
+    }
+    
+    /**
+     * 发布一条设备上报，参与合并的消息类型进入攒批，其余直接经发件箱发布
+     *
+     * @param topic       单独发布时的主题
+     * @param deviceCode  设备编码
+     * @param payload     已编码的负载
+     * @param contentType 负载的内容类型
+     * @param options     消息单独指定的发布选项，不为 null 时不参与合并，按该选项单独发布
+     * @param messageType 消息类型
+     * @return 所在信封被代理确认或暂存到发件箱后完成的 Future
+     */
+    public CompletableFuture<PublishReceipt> publish(String topic, String deviceCode, byte[] payload, String contentType,
+                                                     PublishOptions options, @NonNull MessageTypeEnum messageType) {
+        ReportEnvelope.Entry entry = new ReportEnvelope.Entry(topic, deviceCode, publishOutbox.nextMessageId(), contentType, payload);
+        int entrySize = entry.encodedSize();
+        if (!running || options != null || !config.getTypes().contains(messageType)
+                || ReportEnvelope.HEADER_SIZE + entrySize > config.getMaxBytes()) {
+            return publishOutbox.publish(topic, deviceCode, payload, contentType, options, messageType);
+        }
+        
+        CompletableFuture<PublishReceipt> future = new CompletableFuture<>();
+        boolean sealed = false;
+        synchronized (pending) {
+            // 与单独发布相同，没有设备编码时以主题为路由键
+            int lane = PublisherPool.homeLane(deviceCode != null ? deviceCode : topic, laneCount);
+            PendingEnvelope envelope = pending.computeIfAbsent(messageType, this::newLanes)[lane];
+            if (envelope.bytes + entrySize > config.getMaxBytes()) {
+                sealed = seal(envelope);
+            }
+            if (envelope.entries.isEmpty()) {
+                envelope.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getLinger());
+                pending.notifyAll(); // 唤醒刷新线程重新计算最近的到期时间
+            }
+            envelope.entries.add(entry);
+            envelope.futures.add(future);
+            envelope.bytes += entrySize;
+            if (envelope.entries.size() >= config.getMaxRecords()) {
+                sealed |= seal(envelope);
+            }
+        }
+        if (sealed) {
+            publishReady();
+        }
+        return future;
+    }
+    
+    /**
+     * 累计发出的信封数
+     */
+    public long envelopeCount() {
+        return envelopeCount.sum();
+    }
+    
+    /**
+     * 累计合并发出的记录数
+     */
+    public long recordCount() {
+        return recordCount.sum();
+    }
+    
+    @PreDestroy
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (pending) {
+            pending.values().forEach(lanes -> Arrays.stream(lanes).forEach(this::seal));
+        }
+        publishReady();
+    }
+    
+    private void flushLoop() {
+        while (running) {
+            try {
+                synchronized (pending) {
+                    long now = System.nanoTime();
+                    long wait = Long.MAX_VALUE;
+                    for (PendingEnvelope[] lanes : pending.values()) {
+                        for (PendingEnvelope envelope : lanes) {
+                            if (envelope.entries.isEmpty()) {
+                                continue;
+                            }
+                            if (envelope.deadline - now <= 0) {
+                                seal(envelope);
+                            } else {
+                                wait = Math.min(wait, envelope.deadline - now);
+                            }
+                        }
+                    }
+                    if (ready.isEmpty()) {
+                        if (wait == Long.MAX_VALUE) {
+                            pending.wait();
+                        } else {
+                            TimeUnit.NANOSECONDS.timedWait(pending, wait);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            publishReady();
+        }
+    }
+    
+    private PendingEnvelope[] newLanes(MessageTypeEnum messageType) {
+        PendingEnvelope[] lanes = new PendingEnvelope[laneCount];
+        Arrays.setAll(lanes, i -> new PendingEnvelope(messageType));
+        return lanes;
+    }
+    
+    /**
+     * 把攒好的记录封装为信封排入待发队列，调用方持有 pending 锁
+     *
+     * @return 是否封装了信封
+     */
+    private boolean seal(PendingEnvelope envelope) {
+        if (envelope.entries.isEmpty()) {
+            return false;
+        }
+        ready.add(new SealedEnvelope(envelope.messageType, envelope.entries, envelope.futures));
+        envelope.entries = new ArrayList<>();
+        envelope.futures = new ArrayList<>();
+        envelope.bytes = ReportEnvelope.HEADER_SIZE;
+        return true;
+    }
+    
+    /**
+     * 在 pending 锁外按封装顺序发布待发队列中的信封；同一时刻只有一个线程发布，其余调用方等待其发完
+     */
+    private void publishReady() {
+        publishLock.lock();
+        try {
+            while (true) {
+                SealedEnvelope envelope;
+                synchronized (pending) {
+                    envelope = ready.poll();
+                }
+                if (envelope == null) {
+                    return;
+                }
+                publish(envelope);
+            }
+        } finally {
+            publishLock.unlock();
+        }
+    }
+    
+    /**
+     * 将信封编码后经发件箱发布，信封被确认后逐条完成记录的 Future
+     */
+    private void publish(SealedEnvelope envelope) {
+        List<ReportEnvelope.Entry> entries = envelope.entries();
+        List<CompletableFuture<PublishReceipt>> futures = envelope.futures();
+        envelopeCount.increment();
+        recordCount.add(entries.size());
+        
+        CompletableFuture<PublishReceipt> published;
+        try {
+            // 信封按消息类型的默认策略发布；组内记录都落在同一连接上，以第一条记录的路由键选择的就是该连接
+            ReportEnvelope.Entry first = entries.get(0);
+            published = publishOutbox.publish(mqttConfigProperties.getTopics().getUplink(),
+                    first.deviceCode() != null ? first.deviceCode() : first.topic(),
+                    ReportEnvelope.encode(entries), ReportEnvelope.CONTENT_TYPE, null, envelope.messageType());
+        } catch (RuntimeException e) {
+            published = CompletableFuture.failedFuture(e);
+        }
+        published.whenComplete((receipt, e) -> {
+            for (int i = 0; i < entries.size(); i++) {
+                if (e != null) {
+                    futures.get(i).completeExceptionally(e);
+                } else {
+                    futures.get(i).complete(new PublishReceipt(entries.get(i).topic(), entries.get(i).messageId(),
+                            receipt.packetId(), receipt.ackNanos(), receipt.deferred()));
+                }
+            }
+        });
+    }
+    
+    /**
+     * 同一消息类型、同一发布连接正在攒批的记录
+     */
+    private static class PendingEnvelope {
+        private final MessageTypeEnum messageType;
+        private List<ReportEnvelope.Entry> entries = new ArrayList<>();
+        private List<CompletableFuture<PublishReceipt>> futures = new ArrayList<>();
+        private int bytes = ReportEnvelope.HEADER_SIZE;   // 编码后的信封大小
+        private long deadline;
+        
+        private PendingEnvelope(MessageTypeEnum messageType) {
+            this.messageType = messageType;
+        }
+    }
+    
+    /**
+     * 已封装、等待发布的信封
+     */
+    private record SealedEnvelope(MessageTypeEnum messageType, List<ReportEnvelope.Entry> entries,
+                                  List<CompletableFuture<PublishReceipt>> futures) {
+    }
+}
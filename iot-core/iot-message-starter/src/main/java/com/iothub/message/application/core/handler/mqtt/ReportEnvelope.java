@@ -0,0 +1,134 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 合并上报的信封格式
+ * 同一消息类型的多条设备上报合并为一条 MQTT 消息发出，每条记录保留各自的主题、设备编码、消息 ID 和内容类型，
+ * 接收方按信封的内容类型识别后拆开，逐条按原主题路由，处理器感知不到合并。
+ * 格式：[版本][记录数]{[主题][设备编码][消息 ID][内容类型][负载长度][负载]}*
+ */
+public final class ReportEnvelope {
+    
+    public static final String CONTENT_TYPE = "application/x-iot-envelope";
+    
+    // 信封头部：版本 1 字节 + 记录数 4 字节
+    public static final int HEADER_SIZE = 5;
+    
+    private static final byte VERSION = 1;
+    
+    private ReportEnvelope() {
+    }
+    
+    /**
+     * 信封中的一条记录
+     *
+     * @param topic       记录单独发布时的主题
+     * @param deviceCode  设备编码，可以为 null
+     * @param messageId   记录的消息 ID
+     * @param contentType 负载的内容类型，可以为 null
+     * @param payload     已编码的负载
+     */
+    public record Entry(String topic, String deviceCode, String messageId, String contentType, byte[] payload) {
+        
+        /**
+         * 记录编码后在信封中占用的字节数，与 encode 写出的长度一致
+         */
+        public int encodedSize() {
+            return utfSize(topic) + nullableSize(deviceCode) + utfSize(messageId) + nullableSize(contentType)
+                    + 4 + payload.length;
+        }
+    }
+    
+    /**
+     * 是否为信封格式的消息
+     */
+    public static boolean isEnvelope(String contentType) {
+        return CONTENT_TYPE.equals(contentType);
+    }
+    
+    public static byte[] encode(List<Entry> entries) {
+        int size = HEADER_SIZE;
+        for (Entry entry : entries) {
+            size += entry.encodedSize();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(size);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.topic());
+                writeNullable(out, entry.deviceCode());
+                out.writeUTF(entry.messageId());
+                writeNullable(out, entry.contentType());
+                out.writeInt(entry.payload().length);
+                out.write(entry.payload());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode report envelope", e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * @throws IllegalArgumentException 信封格式错误或版本不支持
+     */
+    public static List<Entry> decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported report envelope version " + version);
+            }
+            int count = in.readInt();
+            if (count < 0 || count > data.length) {
+                throw new IllegalArgumentException("Invalid report envelope record count " + count);
+            }
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String topic = in.readUTF();
+                String deviceCode = readNullable(in);
+                String messageId = in.readUTF();
+                String contentType = readNullable(in);
+                int length = in.readInt();
+                if (length < 0 || length > in.available()) {
+                    throw new IllegalArgumentException("Invalid report envelope payload length " + length);
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                entries.add(new Entry(topic, deviceCode, messageId, contentType, payload));
+            }
+            return entries;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed report envelope", e);
+        }
+    }
+    
+    /**
+     * writeUTF 写出的字节数：2 字节长度 + modified UTF-8 编码（\u0000 和 U+0080 至 U+07FF 占 2 字节，其余非 ASCII 字符占 3 字节）
+     */
+    private static int utfSize(String value) {
+        int size = 2;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            size += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        return size;
+    }
+    
+    private static int nullableSize(String value) {
+        return value == null ? 1 : 1 + utfSize(value);
+    }
+    
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+    
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
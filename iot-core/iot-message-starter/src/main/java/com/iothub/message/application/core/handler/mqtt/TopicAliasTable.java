@@ -0,0 +1,228 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.mqttv5.client.IMqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.internal.ClientComms;
+import org.eclipse.paho.mqttv5.client.internal.ClientState;
+import org.eclipse.paho.mqttv5.client.internal.MqttConnectionState;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serial;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 出站主题别名表（MQTT v5 Topic Alias）
+ * 替换 Paho 客户端内部的出站别名表。Paho 只为最先出现的若干个主题分配别名，用完后其余主题始终发送完整主题名；
+ * 这里在别名用完后按最近最少使用（LRU）回收别名，重新分配给新出现的主题。
+ * 绑定别名的消息同时携带主题名和别名，之后同一主题的消息只携带别名；连接断开时 Paho 清空本表，重连后按代理新声明的
+ * Topic Alias Maximum 重新分配。
+ * 绑定关系保存在 Hashtable 自身中，Paho 和其他调用方通过任何 Hashtable 方法看到的都是同一份数据；
+ * 另有一份按访问顺序排列的记录用于挑选最久未使用的别名，其中已失效的记录在回收时跳过。
+ * 替换依赖 Paho 的内部字段，只在验证过的 Paho 版本上安装，其他版本沿用 Paho 默认的分配方式。
+ */
+@Slf4j
+public class TopicAliasTable extends Hashtable<String, Integer> {
+    
+    @Serial
+    private static final long serialVersionUID = 1L;
+    
+    // 验证过内部字段（ClientState.outgoingTopicAliases 等）及其用法的 Paho 版本
+    static final Set<String> SUPPORTED_PAHO_VERSIONS = Set.of("1.2.5");
+    
+    private final transient MqttConnectionState connection;
+    private final LinkedHashMap<String, Integer> recency = new LinkedHashMap<>(64, 0.75f, true);
+    private final ArrayDeque<Integer> freeAliases = new ArrayDeque<>();
+    private int clientAssigned;     // 本次连接中由 Paho 按顺序分配的别名数量，达到代理上限后由本表回收分配
+    private long reassignedCount;
+    
+    TopicAliasTable(MqttConnectionState connection) {
+        this.connection = connection;
+    }
+    
+    /**
+     * 发布一条消息
+     * 主题已有别名时由 Paho 只发送别名；Paho 还有未分配的别名时由 Paho 分配；
+     * 否则回收最久未使用的别名，随本条消息一起发出主题名完成绑定。发布失败时解除该主题的绑定，下次重新绑定。
+     *
+     * @param topic      MQTT 主题
+     * @param properties 消息的属性，别名写入其中
+     * @param action     实际的发布动作
+     */
+    public synchronized void publish(String topic, MqttProperties properties, PublishAction action) throws MqttException {
+        int alias = reserve(topic, properties);
+        try {
+            action.publish();
+        } catch (MqttException | RuntimeException e) {
+            release(topic, alias);
+            throw e;
+        }
+        if (alias > 0) {
+            bind(topic, alias);
+            reassignedCount++;
+        } else if (!super.containsKey(topic) && maximum() > 0) {
+            clientAssigned = maximum(); // Paho 已不再分配，后续由本表分配
+        }
+    }
+    
+    /**
+     * 别名被回收并重新分配的次数
+     */
+    public synchronized long reassignedCount() {
+        return reassignedCount;
+    }
+    
+    private int reserve(String topic, MqttProperties properties) {
+        properties.setTopicAlias(null);
+        int maximum = maximum();
+        if (maximum <= 0 || super.containsKey(topic) || clientAssigned < maximum) {
+            return 0;
+        }
+        Integer alias = freeAliases.poll();
+        Iterator<Map.Entry<String, Integer>> eldest = recency.entrySet().iterator();
+        while (alias == null && eldest.hasNext()) {
+            Map.Entry<String, Integer> entry = eldest.next();
+            eldest.remove();
+            // 跳过已不在表中或已改绑的记录
+            if (entry.getValue().equals(super.get(entry.getKey()))) {
+                super.remove(entry.getKey());
+                alias = entry.getValue();
+            }
+        }
+        if (alias == null) {
+            return 0;
+        }
+        properties.setTopicAlias(alias);
+        return alias;
+    }
+    
+    private void bind(String topic, Integer alias) {
+        super.put(topic, alias);
+        recency.put(topic, alias);
+    }
+    
+    private void release(String topic, int alias) {
+        Integer bound = remove(topic);
+        if (bound != null) {
+            freeAliases.add(bound);
+        }
+        if (alias > 0) {
+            freeAliases.add(alias);
+        }
+    }
+    
+    private int maximum() {
+        Integer maximum = connection.getOutgoingTopicAliasMaximum();
+        return maximum == null ? 0 : maximum;
+    }
+    
+    // Paho 发送 PUBLISH 时调用 containsKey、get、put，连接断开时调用 clear；containsKey 沿用 Hashtable 的实现
+    
+    @Override
+    public synchronized Integer get(Object topic) {
+        Integer alias = super.get(topic);
+        if (alias != null) {
+            recency.get(topic); // 记录访问顺序
+        }
+        return alias;
+    }
+    
+    @Override
+    public synchronized Integer put(String topic, Integer alias) {
+        clientAssigned++;
+        recency.put(topic, alias);
+        return super.put(topic, alias);
+    }
+    
+    @Override
+    public synchronized Integer remove(Object topic) {
+        recency.remove(topic);
+        return super.remove(topic);
+    }
+    
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        recency.clear();
+        freeAliases.clear();
+        clientAssigned = 0;
+    }
+    
+    /**
+     * 本表引用客户端内部的连接状态，只在进程内使用
+     */
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws NotSerializableException {
+        throw new NotSerializableException(TopicAliasTable.class.getName());
+    }
+    
+    /**
+     * 替换客户端内部的出站别名表
+     *
+     * @param client Paho v5 客户端
+     * @return 安装的别名表；客户端版本不支持时返回 null，沿用 Paho 默认的别名分配方式
+     */
+    public static TopicAliasTable attach(IMqttAsyncClient client) {
+        return attach(client, PahoConnectionState.VERSION);
+    }
+    
+    /**
+     * 按指定的 Paho 版本决定是否替换，用于测试
+     */
+    static TopicAliasTable attach(IMqttAsyncClient client, String pahoVersion) {
+        if (!(client instanceof MqttAsyncClient)) {
+            return null;
+        }
+        if (pahoVersion == null || !SUPPORTED_PAHO_VERSIONS.contains(pahoVersion)) {
+            log.warn("Topic alias management is not verified on Paho {}, using client defaults", pahoVersion);
+            return null;
+        }
+        try {
+            ClientComms comms = (ClientComms) field(MqttAsyncClient.class, "comms").get(client);
+            ClientState state = (ClientState) comms.getClientState();
+            Field aliases = field(ClientState.class, "outgoingTopicAliases");
+            TopicAliasTable table = new TopicAliasTable((MqttConnectionState) field(ClientState.class, "mqttConnection").get(state));
+            synchronized (table) {
+                @SuppressWarnings("unchecked")
+                Hashtable<String, Integer> current = (Hashtable<String, Integer>) aliases.get(state);
+                if (current instanceof TopicAliasTable installed) {
+                    return installed;   // 同一客户端上已安装
+                }
+                if (current.getClass() != Hashtable.class) {
+                    log.warn("Unexpected outgoing topic alias table {}, using client defaults", current.getClass().getName());
+                    return null;
+                }
+                current.forEach(table::bind);
+                table.clientAssigned = current.size();
+                aliases.set(state, table);
+            }
+            return table;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Topic alias management is not supported by this MQTT client, using client defaults", e);
+            return null;
+        }
+    }
+    
+    private static Field field(Class<?> type, String name) throws NoSuchFieldException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+    
+    /**
+     * 实际的发布动作
+     */
+    @FunctionalInterface
+    public interface PublishAction {
+        void publish() throws MqttException;
+    }
+}
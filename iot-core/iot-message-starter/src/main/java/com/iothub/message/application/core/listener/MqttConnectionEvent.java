@@ -0,0 +1,49 @@
+package com.iothub.message.application.core.listener;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.io.Serial;
+
+/**
+ * MQTT 连接状态变化事件
+ * 由 MqttConnectionManager 在连接建立（含重连成功）和连接断开时发布，需要感知连接状态的组件监听本事件，不必轮询客户端
+ */
+@Getter
+public class MqttConnectionEvent extends ApplicationEvent {
+    
+    @Serial
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * 连接状态
+     */
+    public enum State {
+        CONNECTED,
+        DISCONNECTED
+    }
+    
+    private final String connection;        // 连接名称：shared（收发共用）、inbound、outbound，发布连接池中的连接带 -pubN 后缀
+    private final State state;
+    private final boolean publisherLane;    // 是否为发布连接池额外创建的连接
+    private final boolean reconnect;        // CONNECTED 时表示是否为重连
+    private final int attempts;             // CONNECTED 时表示本次恢复前的重连次数
+    private final String serverUri;
+    private final Throwable cause;          // DISCONNECTED 时的断开原因，可能为 null
+    
+    public MqttConnectionEvent(Object source, String connection, State state, boolean publisherLane, boolean reconnect,
+                               int attempts, String serverUri, Throwable cause) {
+        super(source);
+        this.connection = connection;
+        this.state = state;
+        this.publisherLane = publisherLane;
+        this.reconnect = reconnect;
+        this.attempts = attempts;
+        this.serverUri = serverUri;
+        this.cause = cause;
+    }
+    
+    public boolean isConnected() {
+        return state == State.CONNECTED;
+    }
+}
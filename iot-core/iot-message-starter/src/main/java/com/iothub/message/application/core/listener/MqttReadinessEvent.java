@@ -0,0 +1,25 @@
+package com.iothub.message.application.core.listener;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.io.Serial;
+
+/**
+ * MQTT 就绪状态变化事件
+ * 由 LaunchStatusMonitor 在所有 MQTT 连接均已建立（就绪）或其中有连接断开（未就绪）时发布，
+ * 只在状态变化时发布一次；容器刷新完成时已经就绪的，再发布一次就绪事件。定时上报等依赖链路的任务监听本事件启动和暂停，不必轮询。
+ */
+@Getter
+public class MqttReadinessEvent extends ApplicationEvent {
+    
+    @Serial
+    private static final long serialVersionUID = 1L;
+    
+    private final boolean ready;
+    
+    public MqttReadinessEvent(Object source, boolean ready) {
+        super(source);
+        this.ready = ready;
+    }
+}
@@ -19,6 +19,7 @@ public class DataPayload<T> {
     private Boolean enabled;
     private int qos;       // Quality of Service (0, 1, or 2)
     private boolean retained; // 是否为保留消息
+    private long messageExpiryInterval; // 消息过期时间（秒），0 表示不过期
     
     // 使用 Builder 模式
     public static class Builder<T> {
@@ -27,6 +28,7 @@ public class DataPayload<T> {
         private Boolean enabled = false;
         private int qos = 0;
         private boolean retained = false;
+        private long messageExpiryInterval = 0;
         
         // 只传数据构造
         public Builder<T> withData(T data) {
@@ -42,6 +44,13 @@ public class DataPayload<T> {
             return this;
         }
         
+        // 可选的 MQTT 配置，附带 MQTT v5 消息过期时间（秒），过期后代理不再投递
+        public Builder<T> withMqttConfig(int qos, boolean retained, long messageExpiryInterval) {
+            withMqttConfig(qos, retained);
+            this.messageExpiryInterval = messageExpiryInterval;
+            return this;
+        }
+        
         // 设置消息类型
         public Builder<T> withMessageType(MessageTypeEnum messageTypeEnum) {
             this.messageTypeEnum = messageTypeEnum;
@@ -50,10 +59,17 @@ public class DataPayload<T> {
         
         // 构建 DataPayload 对象
         public DataPayload<T> build() {
-            return new DataPayload<>(data, messageTypeEnum, enabled, qos, retained);
+            return new DataPayload<>(data, messageTypeEnum, enabled, qos, retained, messageExpiryInterval);
         }
     }
     
+    /**
+     * 消息单独指定的发布选项，未通过 withMqttConfig 指定时返回 null，按消息类型的默认策略发布
+     */
+    public PublishOptions publishOptions() {
+        return Boolean.TRUE.equals(enabled) ? new PublishOptions(qos, retained, messageExpiryInterval) : null;
+    }
+    
     public static <T> Builder<T> builder() {
         return new Builder<>();
     }
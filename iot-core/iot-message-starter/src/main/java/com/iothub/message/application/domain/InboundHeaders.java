@@ -0,0 +1,57 @@
+package com.iothub.message.application.domain;
+
+import com.iothub.message.application.enums.MessageSourceType;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+
+/**
+ * 入站消息的业务消息头
+ * 由入站头映射器在接收时从 MQTT v5 用户属性中一次性解析得到，作为单个消息头随消息流转，
+ * 入队、溢写、校验和分发各环节直接复用，不再重复查找和匹配字符串。
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class InboundHeaders {
+    
+    // 携带本结构的消息头名称
+    public static final String HEADER = "iotInboundHeaders";
+    
+    // MQTT v5 用户属性名称
+    public static final String MESSAGE_TYPE = "MessageType";
+    public static final String MESSAGE_SOURCE_TYPE = "MessageSourceType";
+    public static final String MESSAGE_ID = "MessageId";
+    public static final String DEVICE_CODE = "DeviceCode";
+    public static final String CONTENT_ENCODING = "ContentEncoding";   // 负载的压缩算法，未压缩时不携带
+    
+    private final MessageTypeEnum messageType;     // 消息类型，缺失时为 null
+    private final MessageSourceType sourceType;    // 消息来源，缺失时为 UNKNOWN
+    private final String messageId;
+    private final String deviceCode;
+    private final String contentType;              // MQTT v5 content-type，决定负载的解码器，缺失时为 null
+    
+    public InboundHeaders(MessageTypeEnum messageType, MessageSourceType sourceType, String messageId, String deviceCode) {
+        this(messageType, sourceType, messageId, deviceCode, null);
+    }
+    
+    /**
+     * 获取消息的业务消息头
+     * 优先使用入站映射器解析好的结构；没有时（如本地构造的消息）退回到按名称读取字符串消息头
+     */
+    public static InboundHeaders of(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        if (headers.get(HEADER) instanceof InboundHeaders inboundHeaders) {
+            return inboundHeaders;
+        }
+        return new InboundHeaders(
+                MessageTypeEnum.fromHeader(headers.get(MESSAGE_TYPE, String.class)),
+                MessageSourceType.fromHeader(headers.get(MESSAGE_SOURCE_TYPE, String.class)),
+                headers.get(MESSAGE_ID, String.class),
+                headers.get(DEVICE_CODE, String.class),
+                headers.containsKey(MessageHeaders.CONTENT_TYPE) ? String.valueOf(headers.get(MessageHeaders.CONTENT_TYPE)) : null);
+    }
+}
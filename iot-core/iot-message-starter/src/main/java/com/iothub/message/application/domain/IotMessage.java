@@ -0,0 +1,154 @@
+package com.iothub.message.application.domain;
+
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.utils.codec.JsonPayloadCodec;
+import com.iothub.message.application.utils.codec.PayloadCodec;
+import com.iothub.message.application.utils.topic.TopicVariables;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 交给处理器的入站消息
+ * 持有原始负载字节和接收时已解析好的消息头。负载只以只读视图对外暴露，
+ * 只有处理器调用 {@link #getContent()} 时才按 UTF-8 解码为文本，解码结果会被缓存。
+ * 接收时按消息的 content-type 选定解码器，处理器可通过 {@link #decodePayload()} 得到结构化数据；
+ * 二进制编码（CBOR、紧凑二进制）的负载在 {@link #getContent()} 中转为 JSON 文本，按文本处理的处理器不受编码方式影响。
+ */
+@Getter
+public class IotMessage {
+    
+    private static final PayloadCodec JSON = new JsonPayloadCodec();
+    
+    // 消息主题
+    private final String topic;
+    
+    // 接收时已解析的业务消息头
+    private final InboundHeaders headers;
+    
+    // 主题中命名层级绑定的值
+    @Getter(AccessLevel.NONE)
+    private final TopicVariables topicVariables;
+    
+    // 原始负载，不对外暴露可修改的数组
+    @Getter(AccessLevel.NONE)
+    private final byte[] payload;
+    
+    // 按 content-type 选定的解码器，未知的内容类型为 null
+    @Getter(AccessLevel.NONE)
+    private final PayloadCodec codec;
+    
+    // 按需解码的文本内容
+    @Getter(AccessLevel.NONE)
+    private String content;
+    
+    public IotMessage(String topic, byte[] payload, InboundHeaders headers, TopicVariables topicVariables, PayloadCodec codec) {
+        this.topic = topic;
+        this.payload = payload;
+        this.headers = headers;
+        this.topicVariables = topicVariables;
+        this.codec = codec;
+    }
+    
+    public IotMessage(String topic, byte[] payload, InboundHeaders headers, TopicVariables topicVariables) {
+        this(topic, payload, headers, topicVariables, null);
+    }
+    
+    public IotMessage(String topic, byte[] payload, InboundHeaders headers) {
+        this(topic, payload, headers, TopicVariables.EMPTY);
+    }
+    
+    public IotMessage(String topic, String content) {
+        this(topic, content.getBytes(StandardCharsets.UTF_8), null);
+        this.content = content;
+    }
+    
+    /**
+     * 消息类型
+     */
+    public MessageTypeEnum getMessageType() {
+        return headers == null ? null : headers.getMessageType();
+    }
+    
+    /**
+     * 设备编码，消息未携带时为 null
+     */
+    public String getDeviceCode() {
+        return headers == null ? null : headers.getDeviceCode();
+    }
+    
+    /**
+     * 负载的内容类型（MQTT v5 content-type），消息未携带时为 null
+     */
+    public String getContentType() {
+        return headers == null ? null : headers.getContentType();
+    }
+    
+    /**
+     * 主题中命名层级（如 {deviceCode}）绑定的值
+     *
+     * @param name 层级名称
+     * @return 绑定的值，处理器的主题模式中没有该名称时返回 null
+     */
+    public String getTopicVariable(String name) {
+        return topicVariables.get(name);
+    }
+    
+    /**
+     * 负载的只读视图，不复制底层字节
+     */
+    public ByteBuffer getPayload() {
+        return ByteBuffer.wrap(payload).asReadOnlyBuffer();
+    }
+    
+    /**
+     * 负载长度（字节）
+     */
+    public int getPayloadLength() {
+        return payload.length;
+    }
+    
+    /**
+     * 将负载原样写出，适用于只转发字节的处理器
+     */
+    public void writePayloadTo(OutputStream out) throws IOException {
+        out.write(payload);
+    }
+    
+    /**
+     * 按内容类型解码负载
+     *
+     * @return 解码后的数据，映射为 Map、数组为 List、整数为 Long
+     * @throws IllegalStateException    内容类型未知，没有对应的解码器
+     * @throws IllegalArgumentException 负载格式与内容类型不符
+     */
+    public Object decodePayload() {
+        if (codec == null) {
+            throw new IllegalStateException("No payload codec for content type: " + getContentType());
+        }
+        return codec.decode(payload);
+    }
+    
+    /**
+     * 文本内容，首次调用时解码：文本编码按 UTF-8 解码，二进制编码解码后转为 JSON 文本
+     */
+    public String getContent() {
+        String text = content;
+        if (text == null) {
+            text = codec == null || codec.textual()
+                    ? new String(payload, StandardCharsets.UTF_8)
+                    : new String(JSON.encode(codec.decode(payload)), StandardCharsets.UTF_8);
+            content = text; // String 不可变，并发下重复解码也不影响结果
+        }
+        return text;
+    }
+    
+    @Override
+    public String toString() {
+        return "IotMessage{topic='" + topic + "', headers=" + headers + ", payloadLength=" + payload.length + "}";
+    }
+}
@@ -0,0 +1,27 @@
+package com.iothub.message.application.domain;
+
+/**
+ * 单条消息的发布选项
+ *
+ * @param qos                   服务质量等级（0、1 或 2）
+ * @param retained              是否为保留消息
+ * @param messageExpiryInterval MQTT v5 消息过期时间（秒），超过后代理不再投递；0 表示不过期
+ */
+public record PublishOptions(int qos, boolean retained, long messageExpiryInterval) {
+    
+    public PublishOptions {
+        if (qos < 0 || qos > 2) {
+            throw new IllegalArgumentException("QoS must be 0, 1 or 2: " + qos);
+        }
+        if (messageExpiryInterval < 0 || messageExpiryInterval > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Message expiry interval out of range: " + messageExpiryInterval);
+        }
+    }
+    
+    /**
+     * 是否设置了消息过期时间
+     */
+    public boolean expires() {
+        return messageExpiryInterval > 0;
+    }
+}
@@ -0,0 +1,20 @@
+package com.iothub.message.application.domain;
+
+/**
+ * 发布确认：代理已确认收到消息（QoS 1 收到 PUBACK，QoS 2 收到 PUBCOMP，QoS 0 为写出网络）
+ *
+ * @param topic     发布的主题
+ * @param messageId 业务消息 ID（MessageId 用户属性）
+ * @param packetId  MQTT 报文标识符，QoS 0 时为 0
+ * @param ackNanos  从发出到收到确认的耗时（纳秒）
+ * @param deferred  是否因链路不可用暂存到本地发件箱，此时只保证已刷盘，恢复后补发
+ */
+public record PublishReceipt(String topic, String messageId, int packetId, long ackNanos, boolean deferred) {
+    
+    /**
+     * 暂存到发件箱的消息的确认
+     */
+    public static PublishReceipt deferred(String topic, String messageId) {
+        return new PublishReceipt(topic, messageId, 0, 0, true);
+    }
+}
@@ -51,6 +51,25 @@ public enum MessageSourceType {
         return UNKNOWN;
     }
     
+    /**
+     * 解析消息头中的来源编码
+     * 标准编码通过 switch 表直接命中，大小写或空白不规范时退回到 {@link #match(String)}
+     *
+     * @param code 消息头中的来源编码
+     * @return 匹配的 MessageSourceType，若没有匹配则返回 UNKNOWN
+     */
+    public static MessageSourceType fromHeader(String code) {
+        if (code == null) {
+            return UNKNOWN;
+        }
+        return switch (code) {
+            case "cloud" -> CLOUD;
+            case "edge" -> EDGE;
+            case "unknown" -> UNKNOWN;
+            default -> match(code);
+        };
+    }
+    
     @Override
     public String toString() {
         return String.format("MessageSourceType{code='%s', description='%s'}", code, description);
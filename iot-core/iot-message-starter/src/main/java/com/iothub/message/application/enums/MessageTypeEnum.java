@@ -55,4 +55,30 @@ public enum MessageTypeEnum {
         }
         return UNSUPPORTED;  // 若没有匹配的类型，可以返回 UNSUPPORTED 或其他适当地默认值
     }
+    
+    /**
+     * 解析消息头中的消息类型
+     * 发送方总是写入标准的类型编码，这里用 switch 表直接命中；编码大小写或空白不规范时退回到 {@link #match(String)}
+     *
+     * @param type 消息头中的类型编码
+     * @return 匹配的 MessageType，为空时返回 null，无法识别时返回 UNSUPPORTED
+     */
+    public static MessageTypeEnum fromHeader(String type) {
+        if (type == null) {
+            return null;
+        }
+        return switch (type) {
+            case "request" -> REQUEST_CLOUD;
+            case "response" -> RESPONSE_EDGE;
+            case "invocation" -> COMMAND_INVOCATION;
+            case "acknowledgment" -> COMMAND_ACKNOWLEDGMENT;
+            case "event" -> EVENT;
+            case "notification" -> NOTIFICATION;
+            case "property" -> PROPERTY;
+            case "heartbeat_request" -> HEARTBEAT;
+            case "custom" -> CUSTOM;
+            case "unsupported" -> UNSUPPORTED;
+            default -> match(type);
+        };
+    }
 }
@@ -1,37 +1,102 @@
 package com.iothub.message.application.utils;
 
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import com.iothub.message.application.core.listener.MqttConnectionEvent;
+import com.iothub.message.application.core.listener.MqttReadinessEvent;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.DependsOn;
-import org.springframework.integration.mqtt.outbound.Mqttv5PahoMessageHandler;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
 
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 启动状态监控
+ * 监听 MqttConnectionEvent 记录各连接的状态，不再轮询客户端。以 ApplicationListener 方式注册，
+ * 容器初始化期间（连接管理器启动时）发布的连接事件也能收到。发布连接池额外创建的连接不计入。
+ * 按配置应有的连接（共用连接，或拆分后的收、发两个连接）在初始化时登记为未连接，全部建立后才算就绪，
+ * 先建立的连接不会在其余连接尚未发布事件时就报告就绪。
+ * 整体就绪状态变化时发布 MqttReadinessEvent。首次连接在后台发起，就绪事件可能在 @EventListener 监听方注册之前发布，
+ * 因此容器刷新完成时如已就绪再补发一次，监听方只需处理就绪事件。
+ */
 @Component
 @Slf4j
-@DependsOn("mqttv5PahoMessageHandler")
-public class LaunchStatusMonitor {
+public class LaunchStatusMonitor implements ApplicationListener<MqttConnectionEvent> {
     
     @Resource
-    private Mqttv5PahoMessageHandler mqttv5PahoMessageHandler;
+    private ApplicationEventPublisher applicationEventPublisher;
+    @Resource
+    private MqttConfigProperties mqttConfigProperties;
+    
+    private final Map<String, Boolean> connections = new ConcurrentHashMap<>();
+    private boolean ready;
+    
+    public LaunchStatusMonitor() {
+    }
+    
+    /**
+     * 不经过容器直接创建，用于测试
+     */
+    public LaunchStatusMonitor(ApplicationEventPublisher applicationEventPublisher, MqttConfigProperties mqttConfigProperties) {
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.mqttConfigProperties = mqttConfigProperties;
+        init();
+    }
+    
+    /**
+     * 登记按配置应有的连接，尚未收到事件的连接视为未连接
+     */
+    @PostConstruct
+    private synchronized void init() {
+        mqttConfigProperties.connectionNames().forEach(name -> connections.putIfAbsent(name, Boolean.FALSE));
+    }
+    
+    @Override
+    public synchronized void onApplicationEvent(@NonNull MqttConnectionEvent event) {
+        if (event.isPublisherLane()) {
+            return;
+        }
+        connections.put(event.getConnection(), event.isConnected());
+        boolean alive = isAlive();
+        if (alive != ready) {
+            ready = alive;
+            log.info("MQTT connections are {}", alive ? "ready" : "not ready");
+            if (applicationEventPublisher != null) {
+                applicationEventPublisher.publishEvent(new MqttReadinessEvent(this, alive));
+            }
+        }
+    }
+    
+    /**
+     * 容器刷新完成后所有监听方均已注册，已经就绪的补发一次就绪事件
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void onContextRefreshed() {
+        if (ready && applicationEventPublisher != null) {
+            applicationEventPublisher.publishEvent(new MqttReadinessEvent(this, true));
+        }
+    }
     
     /**
      * 检查 MQTT 客户端是否存活
      *
-     * @return true 如果 MQTT 客户端存活，false 如果客户端不存活
+     * @return true 如果所有 MQTT 连接都已连接，false 如果尚未连接或有连接已断开
      */
     public boolean isMqttClientAlive() {
-        
-        if(Objects.isNull(mqttv5PahoMessageHandler)){
-            return false;
-        }
-        
-        boolean result = mqttv5PahoMessageHandler.isRunning();
-        if(!result) {
+        boolean result = isAlive();
+        if (!result) {
             log.info("MQTT client is not alive.");
         }
         return result;
     }
+    
+    private boolean isAlive() {
+        return !connections.isEmpty() && !connections.containsValue(Boolean.FALSE);
+    }
 }
-
@@ -0,0 +1,170 @@
+package com.iothub.message.application.utils.codec;
+
+import java.util.*;
+
+/**
+ * 紧凑二进制编解码器
+ * 每个值以 1 字节类型标记开头；整数按符号分为两种标记，以绝对值的变长编码存储，字符串、字节数组、数组和映射使用变长长度前缀，
+ * 映射的键固定为字符串，省略类型标记。0 ~ 63 的整数和短字符串（UTF-8 长度小于 64）
+ * 直接放入类型标记字节，单精度能无损表示的浮点数只占 4 字节。适合字段多、数值小的属性上报。
+ */
+public class BinaryPayloadCodec implements PayloadCodec {
+    
+    public static final String NAME = "binary";
+    public static final String CONTENT_TYPE = "application/x-iot-binary";
+    
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_FALSE = 1;
+    private static final int TYPE_TRUE = 2;
+    private static final int TYPE_INTEGER = 3;
+    private static final int TYPE_FLOAT = 4;
+    private static final int TYPE_DOUBLE = 5;
+    private static final int TYPE_STRING = 6;
+    private static final int TYPE_BYTES = 7;
+    private static final int TYPE_LIST = 8;
+    private static final int TYPE_MAP = 9;
+    private static final int TYPE_NARROWED_DOUBLE = 10;
+    private static final int TYPE_NEGATIVE_INTEGER = 11;
+    private static final int TYPE_SMALL_INTEGER = 0x80;   // 0x80 ~ 0xBF，低 6 位为整数值
+    private static final int TYPE_SHORT_STRING = 0xC0;    // 0xC0 ~ 0xFF，低 6 位为 UTF-8 长度
+    private static final int INLINE_LIMIT = 64;
+    
+    private static final int MAX_DEPTH = 64;
+    private static final ByteSink.LengthWriter VAR_LENGTH = ByteSink::writeVarLong;
+    private static final ByteSink.LengthWriter STRING_LENGTH = (sink, length) -> {
+        if (length < INLINE_LIMIT) {
+            sink.write(TYPE_SHORT_STRING | length);
+        } else {
+            sink.write(TYPE_STRING);
+            sink.writeVarLong(length);
+        }
+    };
+    
+    @Override
+    public String name() {
+        return NAME;
+    }
+    
+    @Override
+    public String contentType() {
+        return CONTENT_TYPE;
+    }
+    
+    @Override
+    public byte[] encode(Object value) {
+        ByteSink sink = new ByteSink(128);
+        write(sink, value);
+        return sink.toByteArray();
+    }
+    
+    @Override
+    public Object decode(byte[] data) {
+        ByteSource source = new ByteSource(data);
+        Object value = read(source, 0);
+        if (source.hasRemaining()) {
+            throw new IllegalArgumentException("Trailing data after binary payload");
+        }
+        return value;
+    }
+    
+    private static void write(ByteSink sink, Object value) {
+        switch (PayloadValues.normalize(value)) {
+            case null -> sink.write(TYPE_NULL);
+            case Map<?, ?> map -> {
+                sink.write(TYPE_MAP);
+                sink.writeVarLong(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    sink.writeUtf8(String.valueOf(entry.getKey()), VAR_LENGTH);
+                    write(sink, entry.getValue());
+                }
+            }
+            case Collection<?> collection -> {
+                sink.write(TYPE_LIST);
+                sink.writeVarLong(collection.size());
+                for (Object element : collection) {
+                    write(sink, element);
+                }
+            }
+            case byte[] bytes -> {
+                sink.write(TYPE_BYTES);
+                sink.writeVarLong(bytes.length);
+                sink.write(bytes);
+            }
+            case String text -> sink.writeUtf8(text, STRING_LENGTH);
+            case Boolean flag -> sink.write(flag ? TYPE_TRUE : TYPE_FALSE);
+            case Long number -> {
+                long n = number;
+                if (n >= 0 && n < INLINE_LIMIT) {
+                    sink.write(TYPE_SMALL_INTEGER | (int) n);
+                } else if (n >= 0) {
+                    sink.write(TYPE_INTEGER);
+                    sink.writeVarLong(n);
+                } else {
+                    sink.write(TYPE_NEGATIVE_INTEGER);
+                    sink.writeVarLong(-1 - n); // 与 CBOR 相同，存储 -1 - n，Long.MIN_VALUE 也不会溢出
+                }
+            }
+            case Float number -> {
+                sink.write(TYPE_FLOAT);
+                sink.writeInt(Float.floatToIntBits(number));
+            }
+            case Double number -> {
+                // 单精度能无损表示时使用 4 字节，解码方按双精度读回
+                float narrowed = number.floatValue();
+                if (narrowed == number || Double.isNaN(number)) {
+                    sink.write(TYPE_NARROWED_DOUBLE);
+                    sink.writeInt(Float.floatToIntBits(narrowed));
+                } else {
+                    sink.write(TYPE_DOUBLE);
+                    sink.writeLong(Double.doubleToLongBits(number));
+                }
+            }
+            default -> throw new IllegalStateException("Unexpected normalized value");
+        }
+    }
+    
+    private static Object read(ByteSource source, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Binary payload nested deeper than " + MAX_DEPTH);
+        }
+        int type = source.readUnsignedByte();
+        if (type >= TYPE_SHORT_STRING) {
+            return source.readUtf8(type & 0x3F);
+        }
+        if (type >= TYPE_SMALL_INTEGER) {
+            return (long) (type & 0x3F);
+        }
+        return switch (type) {
+            case TYPE_NULL -> null;
+            case TYPE_FALSE -> false;
+            case TYPE_TRUE -> true;
+            case TYPE_INTEGER -> source.readVarLong();
+            case TYPE_NEGATIVE_INTEGER -> -1 - source.readVarLong();
+            case TYPE_FLOAT -> Float.intBitsToFloat(source.readInt());
+            case TYPE_DOUBLE -> Double.longBitsToDouble(source.readLong());
+            case TYPE_NARROWED_DOUBLE -> (double) Float.intBitsToFloat(source.readInt());
+            case TYPE_STRING -> source.readUtf8(source.readVarLong());
+            case TYPE_BYTES -> source.readBytes(source.readVarLong());
+            case TYPE_LIST -> {
+                long size = source.readVarLong();
+                source.requireLength(size); // 每个元素至少 1 字节
+                List<Object> list = new ArrayList<>((int) size);
+                for (long i = 0; i < size; i++) {
+                    list.add(read(source, depth + 1));
+                }
+                yield list;
+            }
+            case TYPE_MAP -> {
+                long size = source.readVarLong();
+                source.requireLength(size * 2);
+                Map<String, Object> map = new LinkedHashMap<>((int) Math.min(1 << 16, size * 4 / 3 + 1));
+                for (long i = 0; i < size; i++) {
+                    String key = source.readUtf8(source.readVarLong());
+                    map.put(key, read(source, depth + 1));
+                }
+                yield map;
+            }
+            default -> throw new IllegalArgumentException("Unknown binary payload type " + type);
+        };
+    }
+}
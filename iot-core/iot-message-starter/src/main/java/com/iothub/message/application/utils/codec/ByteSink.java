@@ -0,0 +1,100 @@
+package com.iothub.message.application.utils.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 可增长的字节缓冲区，供二进制编解码器按大端序写入，不做同步
+ */
+final class ByteSink {
+    
+    private byte[] buffer;
+    private int position;
+    
+    ByteSink(int initialCapacity) {
+        buffer = new byte[Math.max(16, initialCapacity)];
+    }
+    
+    void write(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+    
+    void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+    
+    void writeShort(int value) {
+        ensureCapacity(2);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+    
+    void writeInt(int value) {
+        ensureCapacity(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+    }
+    
+    void writeLong(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+    }
+    
+    /**
+     * 写入无符号 LEB128 变长整数
+     */
+    void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+    
+    /**
+     * 写入 UTF-8 字符串，ASCII 字符串直接写入，不创建中间数组
+     */
+    void writeUtf8(String text, LengthWriter lengthWriter) {
+        int length = text.length();
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = text.charAt(i) < 0x80;
+        }
+        if (!ascii) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            lengthWriter.writeLength(this, bytes.length);
+            write(bytes);
+            return;
+        }
+        lengthWriter.writeLength(this, length);
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = (byte) text.charAt(i);
+        }
+    }
+    
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+    
+    private void ensureCapacity(int required) {
+        if (position + required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + required));
+        }
+    }
+    
+    /**
+     * 长度前缀的写法，由编码格式决定
+     */
+    @FunctionalInterface
+    interface LengthWriter {
+        void writeLength(ByteSink sink, int length);
+    }
+}
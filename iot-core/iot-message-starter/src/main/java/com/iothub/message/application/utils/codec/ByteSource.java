@@ -0,0 +1,102 @@
+package com.iothub.message.application.utils.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 按大端序读取字节数组，越界时抛出 {@link IllegalArgumentException}
+ */
+final class ByteSource {
+    
+    private final byte[] data;
+    private int position;
+    
+    ByteSource(byte[] data) {
+        this.data = data;
+    }
+    
+    boolean hasRemaining() {
+        return position < data.length;
+    }
+    
+    int remaining() {
+        return data.length - position;
+    }
+    
+    int peek() {
+        require(1);
+        return data[position] & 0xFF;
+    }
+    
+    int readUnsignedByte() {
+        require(1);
+        return data[position++] & 0xFF;
+    }
+    
+    int readUnsignedShort() {
+        require(2);
+        return ((data[position++] & 0xFF) << 8) | (data[position++] & 0xFF);
+    }
+    
+    int readInt() {
+        require(4);
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (data[position++] & 0xFF);
+        }
+        return value;
+    }
+    
+    long readLong() {
+        require(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (data[position++] & 0xFF);
+        }
+        return value;
+    }
+    
+    /**
+     * 读取无符号 LEB128 变长整数
+     */
+    long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at position " + position);
+    }
+    
+    byte[] readBytes(long length) {
+        requireLength(length);
+        byte[] bytes = new byte[(int) length];
+        System.arraycopy(data, position, bytes, 0, bytes.length);
+        position += bytes.length;
+        return bytes;
+    }
+    
+    String readUtf8(long length) {
+        requireLength(length);
+        String text = new String(data, position, (int) length, StandardCharsets.UTF_8);
+        position += (int) length;
+        return text;
+    }
+    
+    /**
+     * 校验长度前缀，防止格式错误的负载触发超大数组分配
+     */
+    void requireLength(long length) {
+        if (length < 0 || length > remaining()) {
+            throw new IllegalArgumentException("Length " + length + " exceeds remaining " + remaining() + " bytes");
+        }
+    }
+    
+    private void require(int length) {
+        if (position + length > data.length) {
+            throw new IllegalArgumentException("Truncated payload at position " + position);
+        }
+    }
+}
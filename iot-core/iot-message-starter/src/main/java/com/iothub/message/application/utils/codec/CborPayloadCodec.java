@@ -0,0 +1,248 @@
+package com.iothub.message.application.utils.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * CBOR（RFC 8949）编解码器
+ * 编码时整数使用最短的头部，浮点数在单精度能无损表示时使用单精度，字符串、数组和映射使用定长形式；解码支持不定长形式，忽略语义标签只保留内容，
+ * 半精度浮点数解码为 Float，超出 long 范围的整数解码为 BigInteger。
+ */
+public class CborPayloadCodec implements PayloadCodec {
+    
+    public static final String NAME = "cbor";
+    public static final String CONTENT_TYPE = "application/cbor";
+    
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_TAG = 6;
+    private static final int MAJOR_SIMPLE = 7;
+    
+    private static final int FALSE = 0xF4;
+    private static final int TRUE = 0xF5;
+    private static final int NULL = 0xF6;
+    private static final int UNDEFINED = 0xF7;
+    private static final int HALF = 0xF9;
+    private static final int FLOAT = 0xFA;
+    private static final int DOUBLE = 0xFB;
+    private static final int BREAK = 0xFF;
+    private static final int INDEFINITE = 31;
+    
+    private static final int MAX_DEPTH = 64;
+    private static final ByteSink.LengthWriter TEXT_LENGTH = (sink, length) -> writeHead(sink, MAJOR_TEXT, length);
+    
+    @Override
+    public String name() {
+        return NAME;
+    }
+    
+    @Override
+    public String contentType() {
+        return CONTENT_TYPE;
+    }
+    
+    @Override
+    public byte[] encode(Object value) {
+        ByteSink sink = new ByteSink(128);
+        write(sink, value);
+        return sink.toByteArray();
+    }
+    
+    @Override
+    public Object decode(byte[] data) {
+        ByteSource source = new ByteSource(data);
+        Object value = read(source, source.readUnsignedByte(), 0);
+        if (source.hasRemaining()) {
+            throw new IllegalArgumentException("Trailing data after CBOR item");
+        }
+        return value;
+    }
+    
+    private static void write(ByteSink sink, Object value) {
+        switch (PayloadValues.normalize(value)) {
+            case null -> sink.write(NULL);
+            case Map<?, ?> map -> {
+                writeHead(sink, MAJOR_MAP, map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    sink.writeUtf8(String.valueOf(entry.getKey()), TEXT_LENGTH);
+                    write(sink, entry.getValue());
+                }
+            }
+            case Collection<?> collection -> {
+                writeHead(sink, MAJOR_ARRAY, collection.size());
+                for (Object element : collection) {
+                    write(sink, element);
+                }
+            }
+            case byte[] bytes -> {
+                writeHead(sink, MAJOR_BYTES, bytes.length);
+                sink.write(bytes);
+            }
+            case String text -> sink.writeUtf8(text, TEXT_LENGTH);
+            case Boolean flag -> sink.write(flag ? TRUE : FALSE);
+            case Long number -> {
+                long n = number;
+                if (n >= 0) {
+                    writeHead(sink, MAJOR_UNSIGNED, n);
+                } else {
+                    writeHead(sink, MAJOR_NEGATIVE, -1 - n);
+                }
+            }
+            case Float number -> {
+                sink.write(FLOAT);
+                sink.writeInt(Float.floatToIntBits(number));
+            }
+            case Double number -> {
+                // 首选序列化：单精度能无损表示时使用 4 字节
+                float narrowed = number.floatValue();
+                if (narrowed == number || Double.isNaN(number)) {
+                    sink.write(FLOAT);
+                    sink.writeInt(Float.floatToIntBits(narrowed));
+                } else {
+                    sink.write(DOUBLE);
+                    sink.writeLong(Double.doubleToLongBits(number));
+                }
+            }
+            default -> throw new IllegalStateException("Unexpected normalized value");
+        }
+    }
+    
+    /**
+     * 写入数据项头部：3 位主类型 + 参数，参数按大小选择 0/1/2/4/8 字节的最短形式（按无符号数比较）
+     */
+    private static void writeHead(ByteSink sink, int major, long argument) {
+        int type = major << 5;
+        if (argument >= 0 && argument < 24) {
+            sink.write(type | (int) argument);
+        } else if (argument >= 0 && argument <= 0xFF) {
+            sink.write(type | 24);
+            sink.write((int) argument);
+        } else if (argument >= 0 && argument <= 0xFFFF) {
+            sink.write(type | 25);
+            sink.writeShort((int) argument);
+        } else if (argument >= 0 && argument <= 0xFFFFFFFFL) {
+            sink.write(type | 26);
+            sink.writeInt((int) argument);
+        } else {
+            sink.write(type | 27);
+            sink.writeLong(argument);
+        }
+    }
+    
+    private static Object read(ByteSource source, int initial, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("CBOR payload nested deeper than " + MAX_DEPTH);
+        }
+        int major = initial >>> 5;
+        int info = initial & 0x1F;
+        if (major == MAJOR_SIMPLE) {
+            return readSimple(source, initial);
+        }
+        if (info == INDEFINITE) {
+            return readIndefinite(source, major, depth);
+        }
+        long argument = readArgument(source, info);
+        return switch (major) {
+            case MAJOR_UNSIGNED -> argument >= 0 ? (Object) argument : (Object) unsigned(argument);
+            case MAJOR_NEGATIVE -> argument >= 0 ? (Object) (-1 - argument) : (Object) unsigned(argument).negate().subtract(BigInteger.ONE);
+            case MAJOR_BYTES -> source.readBytes(argument);
+            case MAJOR_TEXT -> source.readUtf8(argument);
+            case MAJOR_ARRAY -> {
+                source.requireLength(argument); // 每个元素至少 1 字节
+                List<Object> list = new ArrayList<>((int) argument);
+                for (long i = 0; i < argument; i++) {
+                    list.add(read(source, source.readUnsignedByte(), depth + 1));
+                }
+                yield list;
+            }
+            case MAJOR_MAP -> {
+                source.requireLength(argument * 2);
+                Map<String, Object> map = new LinkedHashMap<>(mapCapacity(argument));
+                for (long i = 0; i < argument; i++) {
+                    String key = String.valueOf(read(source, source.readUnsignedByte(), depth + 1));
+                    map.put(key, read(source, source.readUnsignedByte(), depth + 1));
+                }
+                yield map;
+            }
+            case MAJOR_TAG -> read(source, source.readUnsignedByte(), depth + 1); // 忽略语义标签
+            default -> throw new IllegalStateException("Unreachable major type " + major);
+        };
+    }
+    
+    private static Object readIndefinite(ByteSource source, int major, int depth) {
+        switch (major) {
+            case MAJOR_BYTES, MAJOR_TEXT -> {
+                // 不定长字符串由同类型的定长分块组成
+                ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+                for (int initial = source.readUnsignedByte(); initial != BREAK; initial = source.readUnsignedByte()) {
+                    if (initial >>> 5 != major || (initial & 0x1F) == INDEFINITE) {
+                        throw new IllegalArgumentException("Invalid chunk in indefinite-length string");
+                    }
+                    chunks.writeBytes(source.readBytes(readArgument(source, initial & 0x1F)));
+                }
+                byte[] bytes = chunks.toByteArray();
+                return major == MAJOR_BYTES ? bytes : new String(bytes, StandardCharsets.UTF_8);
+            }
+            case MAJOR_ARRAY -> {
+                List<Object> list = new ArrayList<>();
+                for (int initial = source.readUnsignedByte(); initial != BREAK; initial = source.readUnsignedByte()) {
+                    list.add(read(source, initial, depth + 1));
+                }
+                return list;
+            }
+            case MAJOR_MAP -> {
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int initial = source.readUnsignedByte(); initial != BREAK; initial = source.readUnsignedByte()) {
+                    String key = String.valueOf(read(source, initial, depth + 1));
+                    map.put(key, read(source, source.readUnsignedByte(), depth + 1));
+                }
+                return map;
+            }
+            default -> throw new IllegalArgumentException("Indefinite length is not allowed for major type " + major);
+        }
+    }
+    
+    private static Object readSimple(ByteSource source, int initial) {
+        return switch (initial) {
+            case FALSE -> false;
+            case TRUE -> true;
+            case NULL, UNDEFINED -> null;
+            case HALF -> Float.float16ToFloat((short) source.readUnsignedShort());
+            case FLOAT -> Float.intBitsToFloat(source.readInt());
+            case DOUBLE -> Double.longBitsToDouble(source.readLong());
+            default -> throw new IllegalArgumentException("Unsupported CBOR simple value 0x" + Integer.toHexString(initial));
+        };
+    }
+    
+    private static long readArgument(ByteSource source, int info) {
+        return switch (info) {
+            case 24 -> source.readUnsignedByte();
+            case 25 -> source.readUnsignedShort();
+            case 26 -> source.readInt() & 0xFFFFFFFFL;
+            case 27 -> source.readLong();
+            default -> {
+                if (info >= 24) {
+                    throw new IllegalArgumentException("Reserved CBOR additional info " + info);
+                }
+                yield info;
+            }
+        };
+    }
+    
+    /**
+     * 8 字节参数按无符号数解释，超出 long 范围时转为 BigInteger
+     */
+    private static BigInteger unsigned(long argument) {
+        return new BigInteger(Long.toUnsignedString(argument));
+    }
+    
+    private static int mapCapacity(long size) {
+        return (int) Math.min(1 << 16, size * 4 / 3 + 1);
+    }
+}
@@ -0,0 +1,149 @@
+package com.iothub.message.application.utils.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * JSON 编解码器
+ * 基于 Gson 的流式读写器直接在负载和数据之间转换，不构建中间的 JSON 树。
+ * 字节数组编码为 Base64 字符串，非有限浮点数（NaN、Infinity）编码为 null。
+ */
+public class JsonPayloadCodec implements PayloadCodec {
+    
+    public static final String NAME = "json";
+    public static final String CONTENT_TYPE = "application/json";
+    
+    private static final int MAX_DEPTH = 64;
+    
+    @Override
+    public String name() {
+        return NAME;
+    }
+    
+    @Override
+    public String contentType() {
+        return CONTENT_TYPE;
+    }
+    
+    @Override
+    public boolean textual() {
+        return true;
+    }
+    
+    @Override
+    public byte[] encode(Object value) {
+        // 先写入字符缓冲区再整体编码为 UTF-8，比逐字符经过编码器写入字节流快
+        StringWriter text = new StringWriter(256);
+        try (JsonWriter writer = new JsonWriter(text)) {
+            write(writer, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode JSON payload", e);
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public Object decode(byte[] data) {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+            Object value = read(reader, 0);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new IllegalArgumentException("Trailing data after JSON value");
+            }
+            return value;
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Malformed JSON payload: " + e.getMessage(), e);
+        }
+    }
+    
+    private static void write(JsonWriter writer, Object value) throws IOException {
+        switch (PayloadValues.normalize(value)) {
+            case null -> writer.nullValue();
+            case Map<?, ?> map -> {
+                writer.beginObject();
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writer.name(String.valueOf(entry.getKey()));
+                    write(writer, entry.getValue());
+                }
+                writer.endObject();
+            }
+            case Collection<?> collection -> {
+                writer.beginArray();
+                for (Object element : collection) {
+                    write(writer, element);
+                }
+                writer.endArray();
+            }
+            case byte[] bytes -> writer.value(Base64.getEncoder().encodeToString(bytes));
+            case String text -> writer.value(text);
+            case Boolean flag -> writer.value(flag);
+            case Long number -> writer.value(number.longValue());
+            case Float number -> writeDouble(writer, number.doubleValue());
+            case Double number -> writeDouble(writer, number);
+            default -> throw new IllegalStateException("Unexpected normalized value");
+        }
+    }
+    
+    private static void writeDouble(JsonWriter writer, double number) throws IOException {
+        if (Double.isFinite(number)) {
+            writer.value(number);
+        } else {
+            writer.nullValue();
+        }
+    }
+    
+    private static Object read(JsonReader reader, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("JSON payload nested deeper than " + MAX_DEPTH);
+        }
+        switch (reader.peek()) {
+            case BEGIN_OBJECT -> {
+                Map<String, Object> map = new LinkedHashMap<>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    map.put(reader.nextName(), read(reader, depth + 1));
+                }
+                reader.endObject();
+                return map;
+            }
+            case BEGIN_ARRAY -> {
+                List<Object> list = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    list.add(read(reader, depth + 1));
+                }
+                reader.endArray();
+                return list;
+            }
+            case STRING -> {
+                return reader.nextString();
+            }
+            case NUMBER -> {
+                return parseNumber(reader.nextString());
+            }
+            case BOOLEAN -> {
+                return reader.nextBoolean();
+            }
+            case NULL -> {
+                reader.nextNull();
+                return null;
+            }
+            default -> throw new IllegalArgumentException("Unexpected JSON token " + reader.peek());
+        }
+    }
+    
+    private static Object parseNumber(String text) {
+        if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                // 超出 long 范围的整数按浮点数处理
+            }
+        }
+        return Double.parseDouble(text);
+    }
+}
@@ -0,0 +1,45 @@
+package com.iothub.message.application.utils.codec;
+
+/**
+ * 负载编解码器
+ * 在上报数据（Map、List、字符串、数值、布尔值、字节数组及其嵌套）与消息负载字节之间转换。
+ * 编码器的内容类型随消息通过 MQTT v5 content-type 属性发出，接收方据此选择解码器，不需要猜测负载格式。
+ * 实现必须是线程安全的。
+ */
+public interface PayloadCodec {
+    
+    /**
+     * 编解码器名称，用于按消息类型配置（iot.codec.formats）
+     */
+    String name();
+    
+    /**
+     * 编码结果的内容类型，作为 MQTT v5 content-type 属性发出
+     */
+    String contentType();
+    
+    /**
+     * 编码结果是否为可直接阅读的文本
+     */
+    default boolean textual() {
+        return false;
+    }
+    
+    /**
+     * 编码数据
+     *
+     * @param value 上报数据，不支持的类型按 {@link String#valueOf(Object)} 编码为字符串
+     * @return 负载字节
+     */
+    byte[] encode(Object value);
+    
+    /**
+     * 解码负载
+     * 映射解码为 {@link java.util.LinkedHashMap}，数组解码为 {@link java.util.ArrayList}，整数解码为 Long
+     *
+     * @param data 负载字节
+     * @return 解码后的数据
+     * @throws IllegalArgumentException 负载格式错误
+     */
+    Object decode(byte[] data);
+}
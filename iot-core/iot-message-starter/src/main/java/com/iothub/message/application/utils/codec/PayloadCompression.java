@@ -0,0 +1,189 @@
+package com.iothub.message.application.utils.codec;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 负载压缩（deflate，zlib 格式）
+ * 发送端对达到阈值的负载压缩，压缩后没有变小则原样发送；压缩过的消息通过 ContentEncoding 用户属性标记，接收端据此解压。
+ * Deflater、Inflater 及其输出缓冲区放在有界池中跨消息复用：发布方多为虚拟线程，按线程缓存会退化为每条消息新建。
+ * 解压后的大小有上限，防止异常或恶意数据占满内存。
+ */
+public class PayloadCompression {
+    
+    // 压缩算法在 ContentEncoding 用户属性中的取值
+    public static final String DEFLATE = "deflate";
+    
+    private static final int INITIAL_BUFFER = 4096;
+    private static final int RETAINED_BUFFER = 1024 * 1024;   // 归还到池中的缓冲区上限，更大的丢弃后按需重新分配
+    
+    private final int threshold;
+    private final int level;
+    private final int maxInflatedSize;
+    private final ArrayBlockingQueue<Compressor> compressors;
+    private final ArrayBlockingQueue<Decompressor> decompressors;
+    
+    private final LongAdder compressedCount = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+    
+    /**
+     * @param threshold       负载达到该字节数才压缩
+     * @param level           压缩级别（0 ~ 9）
+     * @param poolSize        复用的压缩器和解压器数量上限
+     * @param maxInflatedSize 解压后的最大字节数
+     */
+    public PayloadCompression(int threshold, int level, int poolSize, int maxInflatedSize) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be 0 ~ 9: " + level);
+        }
+        this.threshold = Math.max(1, threshold);
+        this.level = level;
+        this.maxInflatedSize = maxInflatedSize;
+        this.compressors = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+        this.decompressors = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+    
+    /**
+     * 压缩负载
+     *
+     * @param payload 原始负载
+     * @return 压缩后的负载；未达到阈值或压缩后没有变小时返回 null，调用方原样发送
+     */
+    public byte[] compress(byte[] payload) {
+        if (payload.length < threshold) {
+            return null;
+        }
+        Compressor compressor = compressors.poll();
+        if (compressor == null) {
+            compressor = new Compressor(level);
+        }
+        try {
+            byte[] compressed = compressor.compress(payload);
+            if (compressed != null) {
+                compressedCount.increment();
+                savedBytes.add(payload.length - compressed.length);
+            }
+            return compressed;
+        } finally {
+            if (!compressors.offer(compressor)) {
+                compressor.deflater.end();
+            }
+        }
+    }
+    
+    /**
+     * 解压负载
+     *
+     * @param encoding ContentEncoding 用户属性的值，为 null 时表示未压缩
+     * @param payload  收到的负载
+     * @return 解压后的负载；未压缩时原样返回
+     * @throws IllegalArgumentException 如果编码不支持、数据损坏或解压后超过上限
+     */
+    public byte[] decompress(String encoding, byte[] payload) {
+        if (encoding == null) {
+            return payload;
+        }
+        if (!DEFLATE.equalsIgnoreCase(encoding)) {
+            throw new IllegalArgumentException("Unsupported content encoding: " + encoding);
+        }
+        Decompressor decompressor = decompressors.poll();
+        if (decompressor == null) {
+            decompressor = new Decompressor();
+        }
+        try {
+            return decompressor.decompress(payload, maxInflatedSize);
+        } finally {
+            decompressor.trim();
+            if (!decompressors.offer(decompressor)) {
+                decompressor.inflater.end();
+            }
+        }
+    }
+    
+    /**
+     * 被压缩发送的消息数量
+     */
+    public long compressedCount() {
+        return compressedCount.sum();
+    }
+    
+    /**
+     * 压缩累计节省的字节数
+     */
+    public long savedBytes() {
+        return savedBytes.sum();
+    }
+    
+    private static final class Compressor {
+        private final Deflater deflater;
+        private byte[] buffer = new byte[INITIAL_BUFFER];
+        
+        private Compressor(int level) {
+            this.deflater = new Deflater(level);
+        }
+        
+        private byte[] compress(byte[] payload) {
+            // 输出超过原始大小就没有意义，缓冲区只需与原始负载一样大
+            if (buffer.length < payload.length) {
+                buffer = new byte[payload.length];
+            }
+            deflater.reset();
+            deflater.setInput(payload);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length >= payload.length) {
+                    return null;
+                }
+                length += deflater.deflate(buffer, length, payload.length - length);
+            }
+            if (length >= payload.length) {
+                return null;
+            }
+            byte[] compressed = Arrays.copyOf(buffer, length);
+            if (buffer.length > RETAINED_BUFFER) {
+                buffer = new byte[INITIAL_BUFFER];
+            }
+            return compressed;
+        }
+    }
+    
+    private static final class Decompressor {
+        private final Inflater inflater = new Inflater();
+        private byte[] buffer = new byte[INITIAL_BUFFER];
+        
+        private byte[] decompress(byte[] payload, int maxInflatedSize) {
+            inflater.reset();
+            inflater.setInput(payload);
+            int length = 0;
+            try {
+                while (!inflater.finished()) {
+                    if (length == buffer.length) {
+                        if (buffer.length >= maxInflatedSize) {
+                            throw new IllegalArgumentException("Inflated payload exceeds " + maxInflatedSize + " bytes");
+                        }
+                        buffer = Arrays.copyOf(buffer, (int) Math.min(maxInflatedSize, buffer.length * 2L));
+                    }
+                    int inflated = inflater.inflate(buffer, length, buffer.length - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IllegalArgumentException("Truncated deflate payload");
+                    }
+                    length += inflated;
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalArgumentException("Malformed deflate payload", e);
+            }
+            return Arrays.copyOf(buffer, length);
+        }
+        
+        private void trim() {
+            if (buffer.length > RETAINED_BUFFER) {
+                buffer = new byte[INITIAL_BUFFER];
+            }
+        }
+    }
+}
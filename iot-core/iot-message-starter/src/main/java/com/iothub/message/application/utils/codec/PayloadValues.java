@@ -0,0 +1,67 @@
+package com.iothub.message.application.utils.codec;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 编码前的值归一化，各编解码器只需处理归一化后的有限几种类型
+ */
+final class PayloadValues {
+    
+    private PayloadValues() {
+    }
+    
+    /**
+     * 将值归一化为以下类型之一：null、Map、Collection、byte[]、String、Boolean、Long、Float、Double
+     */
+    static Object normalize(Object value) {
+        return switch (value) {
+            case null -> null;
+            case Map<?, ?> map -> map;
+            case Collection<?> collection -> collection;
+            case byte[] bytes -> bytes;
+            case String text -> text;
+            case Boolean flag -> flag;
+            case Long number -> number;
+            case Integer number -> number.longValue();
+            case Short number -> number.longValue();
+            case Byte number -> number.longValue();
+            case AtomicInteger number -> number.longValue();
+            case AtomicLong number -> number.longValue();
+            case BigInteger number -> number.bitLength() < 64 ? (Object) number.longValue() : (Object) number.doubleValue();
+            case Float number -> number;
+            case Double number -> number;
+            case BigDecimal number -> number.doubleValue();
+            case Number number -> number.doubleValue();
+            case CharSequence text -> text.toString();
+            case Character character -> character.toString();
+            case Enum<?> constant -> constant.name();
+            case Object[] array -> Arrays.asList(array);
+            case Iterable<?> iterable -> toList(iterable);
+            default -> value.getClass().isArray() ? primitiveArrayToList(value) : String.valueOf(value);
+        };
+    }
+    
+    private static List<Object> toList(Iterable<?> iterable) {
+        List<Object> list = new ArrayList<>();
+        iterable.forEach(list::add);
+        return list;
+    }
+    
+    private static List<Object> primitiveArrayToList(Object array) {
+        int length = Array.getLength(array);
+        List<Object> list = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            list.add(Array.get(array, i));
+        }
+        return list;
+    }
+}
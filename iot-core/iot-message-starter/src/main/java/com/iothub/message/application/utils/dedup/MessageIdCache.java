@@ -0,0 +1,309 @@
+package com.iothub.message.application.utils.dedup;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 有界、按时间窗口过期的消息 ID 去重缓存
+ * 消息 ID 按 128 位存储（UUID 或 32 位十六进制直接解析，其他格式取 128 位哈希），按哈希分片，
+ * 每个分片由若干代开放寻址哈希表组成，每代覆盖一个时间桶：写入总是进入当前代，查询检查所有代，
+ * 时间桶到期时最旧的一代被整体清空并复用为当前代，因此过期是 O(1) 的，且不需要逐条记录时间戳。
+ * 当前代写满时提前轮转并计入溢出次数，此时最旧一代的记录会早于时间窗口被淘汰，内存占用始终有上限。
+ * 每个 ID 占 16 字节，按装载因子计算，最坏情况下内存约为 代数 × 容量 × 32 字节，哈希表在首次写入时才分配。
+ */
+public class MessageIdCache {
+    
+    private static final double LOAD_FACTOR = 0.75;
+    private static final double SHARD_HEADROOM = 1.1;
+    
+    private final Shard[] shards;
+    private final int shardMask;
+    private final long bucketMillis;    // 每代覆盖的时间
+    private final LongSupplier clock;
+    
+    private final LongAdder hits = new LongAdder();        // 命中（重复消息）次数
+    private final LongAdder misses = new LongAdder();      // 未命中（首次出现）次数
+    private final LongAdder overflows = new LongAdder();   // 因当前代写满而提前轮转的次数
+    
+    /**
+     * @param capacity     单个时间桶内最多记录的消息 ID 数量
+     * @param shardCount   分片数量，向上取整为 2 的幂
+     * @param generations  每个分片的代数，至少为 2
+     * @param windowMillis 去重时间窗口（毫秒），记录至少保留这么久（溢出时除外）
+     */
+    public MessageIdCache(int capacity, int shardCount, int generations, long windowMillis) {
+        this(capacity, shardCount, generations, windowMillis, System::currentTimeMillis);
+    }
+    
+    public MessageIdCache(int capacity, int shardCount, int generations, long windowMillis, LongSupplier clock) {
+        int shardsSize = shardCount <= 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+        int generationCount = Math.max(2, generations);
+        // 当前代之外的 generations - 1 代覆盖完整窗口，保证记录至少保留 windowMillis
+        this.bucketMillis = Math.max(1, (windowMillis + generationCount - 2) / (generationCount - 1));
+        this.clock = clock;
+        
+        // 每代都能容纳完整容量（突发流量可能集中在一个时间桶内），并为分片间的不均匀预留余量
+        int perGeneration = Math.max(1, (int) Math.ceil((double) capacity / shardsSize * SHARD_HEADROOM));
+        long now = clock.getAsLong();
+        this.shards = new Shard[shardsSize];
+        for (int i = 0; i < shardsSize; i++) {
+            shards[i] = new Shard(generationCount, perGeneration, now);
+        }
+        this.shardMask = shardsSize - 1;
+    }
+    
+    /**
+     * 记录消息 ID
+     *
+     * @param messageId 消息 ID
+     * @return 首次出现返回 true；窗口内已出现过返回 false
+     */
+    public boolean add(String messageId) {
+        return lookup(messageId, true);
+    }
+    
+    /**
+     * 判断消息 ID 在窗口内是否已出现过，不记录
+     *
+     * @param messageId 消息 ID
+     * @return 窗口内已出现过返回 true
+     */
+    public boolean contains(String messageId) {
+        return lookup(messageId, false);
+    }
+    
+    /**
+     * 把消息 ID 转为 128 位后记录或查询
+     */
+    private boolean lookup(String messageId, boolean insert) {
+        long high = 0;
+        long low = 0;
+        int digits = 0;
+        for (int i = 0, length = messageId.length(); i < length && digits <= 32; i++) {
+            char c = messageId.charAt(i);
+            if (c == '-') {
+                continue;
+            }
+            int value = Character.digit(c, 16);
+            if (value < 0) {
+                digits = -1;
+                break;
+            }
+            if (digits < 16) {
+                high = (high << 4) | value;
+            } else {
+                low = (low << 4) | value;
+            }
+            digits++;
+        }
+        if (digits != 32) {
+            // 非 128 位十六进制格式，取两个不同种子的 64 位哈希
+            high = hash(messageId, 0x9E3779B97F4A7C15L);
+            low = hash(messageId, 0xC2B2AE3D27D4EB4FL);
+        }
+        return insert ? add(high, low) : contains(high, low);
+    }
+    
+    /**
+     * 记录 128 位消息 ID
+     *
+     * @return 首次出现返回 true；窗口内已出现过返回 false
+     */
+    public boolean add(long high, long low) {
+        if (high == 0 && low == 0) {
+            low = 1; // (0, 0) 用作空槽标记
+        }
+        long hash = mix(high ^ Long.rotateLeft(low, 32));
+        Shard shard = shards[(int) (hash >>> 32) & shardMask];
+        boolean added;
+        synchronized (shard) {
+            added = shard.add(high, low, hash, clock.getAsLong());
+        }
+        (added ? misses : hits).increment();
+        return added;
+    }
+    
+    /**
+     * 判断 128 位消息 ID 在窗口内是否已出现过，不记录；已出现过时计入命中次数
+     */
+    public boolean contains(long high, long low) {
+        if (high == 0 && low == 0) {
+            low = 1;
+        }
+        long hash = mix(high ^ Long.rotateLeft(low, 32));
+        Shard shard = shards[(int) (hash >>> 32) & shardMask];
+        boolean found;
+        synchronized (shard) {
+            found = shard.contains(high, low, hash, clock.getAsLong());
+        }
+        if (found) {
+            hits.increment();
+        }
+        return found;
+    }
+    
+    public long hitCount() {
+        return hits.sum();
+    }
+    
+    public long missCount() {
+        return misses.sum();
+    }
+    
+    public long overflowCount() {
+        return overflows.sum();
+    }
+    
+    /**
+     * 当前记录的消息 ID 数量（包括尚未清理的过期代）
+     */
+    public long size() {
+        long size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Generation generation : shard.generations) {
+                    size += generation.size;
+                }
+            }
+        }
+        return size;
+    }
+    
+    private static long hash(String value, long seed) {
+        long h = seed;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+    
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    /**
+     * 分片：按时间桶轮转的若干代哈希表
+     */
+    private final class Shard {
+        private final Generation[] generations;
+        private int current;
+        private long currentStart;    // 当前代的起始时间
+        
+        private Shard(int generationCount, int perGeneration, long now) {
+            this.generations = new Generation[generationCount];
+            for (int i = 0; i < generationCount; i++) {
+                generations[i] = new Generation(perGeneration);
+            }
+            this.currentStart = now;
+        }
+        
+        private boolean add(long high, long low, long hash, long now) {
+            if (contains(high, low, hash, now)) {
+                return false;
+            }
+            if (generations[current].isFull()) {
+                overflows.increment();
+                rotate();
+                currentStart = now;
+            }
+            generations[current].insert(high, low, hash);
+            return true;
+        }
+        
+        private boolean contains(long high, long low, long hash, long now) {
+            expire(now);
+            for (Generation generation : generations) {
+                if (generation.contains(high, low, hash)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private void expire(long now) {
+            long elapsed = now - currentStart;
+            if (elapsed < bucketMillis) {
+                return;
+            }
+            if (elapsed >= bucketMillis * generations.length) {
+                // 整个窗口都已过期
+                for (Generation generation : generations) {
+                    generation.clear();
+                }
+                currentStart = now;
+                return;
+            }
+            while (now - currentStart >= bucketMillis) {
+                rotate();
+                currentStart += bucketMillis;
+            }
+        }
+        
+        private void rotate() {
+            current = (current + 1) % generations.length;
+            generations[current].clear();
+        }
+    }
+    
+    /**
+     * 一代开放寻址哈希表，每个槽位占两个 long，首次写入时才分配
+     */
+    private static final class Generation {
+        private final int maxSize;
+        private final int mask;
+        private long[] slots;
+        private int size;
+        
+        private Generation(int maxSize) {
+            this.maxSize = maxSize;
+            int capacity = Integer.highestOneBit((int) Math.ceil(maxSize / LOAD_FACTOR) - 1) << 1;
+            this.mask = Math.max(2, capacity) - 1;
+        }
+        
+        private boolean isFull() {
+            return size >= maxSize;
+        }
+        
+        private boolean contains(long high, long low, long hash) {
+            if (size == 0) {
+                return false;
+            }
+            for (int index = (int) hash & mask; ; index = (index + 1) & mask) {
+                long slotHigh = slots[index << 1];
+                long slotLow = slots[(index << 1) + 1];
+                if (slotHigh == high && slotLow == low) {
+                    return true;
+                }
+                if (slotHigh == 0 && slotLow == 0) {
+                    return false;
+                }
+            }
+        }
+        
+        private void insert(long high, long low, long hash) {
+            if (slots == null) {
+                slots = new long[(mask + 1) << 1];
+            }
+            int index = (int) hash & mask;
+            while (slots[index << 1] != 0 || slots[(index << 1) + 1] != 0) {
+                index = (index + 1) & mask;
+            }
+            slots[index << 1] = high;
+            slots[(index << 1) + 1] = low;
+            size++;
+        }
+        
+        private void clear() {
+            if (size > 0) {
+                Arrays.fill(slots, 0);
+                size = 0;
+            }
+        }
+    }
+}
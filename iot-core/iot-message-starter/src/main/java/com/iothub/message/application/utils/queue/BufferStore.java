@@ -0,0 +1,88 @@
+package com.iothub.message.application.utils.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * 缓冲队列的底层存储
+ * LocalBufferQueue 通过该接口屏蔽链表队列与环形数组队列之间的差异。
+ *
+ * @param <T> 存储的元素类型
+ */
+public interface BufferStore<T> {
+    
+    /**
+     * 非阻塞写入元素
+     *
+     * @param element 要写入的元素
+     * @return 写入成功返回 true，存储已满返回 false
+     */
+    boolean offer(T element);
+    
+    /**
+     * 在超时时间内等待空闲位置并写入元素
+     *
+     * @param element 要写入的元素
+     * @param timeout 超时时间
+     * @param unit    时间单位
+     * @return 写入成功返回 true，超时返回 false
+     * @throws InterruptedException 如果等待时线程被中断
+     */
+    boolean offer(T element, long timeout, TimeUnit unit) throws InterruptedException;
+    
+    /**
+     * 非阻塞读取元素
+     *
+     * @return 读取到的元素，存储为空时返回 null
+     */
+    T poll();
+    
+    /**
+     * 非阻塞读取元素，并把元素在存储中的等待时间计入统计
+     *
+     * @param waitStats 等待时间统计，为 null 时不统计
+     * @return 读取到的元素，存储为空时返回 null
+     */
+    T poll(QueueWaitStats waitStats);
+    
+    /**
+     * 在超时时间内等待并读取元素
+     *
+     * @param timeout 超时时间
+     * @param unit    时间单位
+     * @return 读取到的元素，超时返回 null
+     * @throws InterruptedException 如果等待时线程被中断
+     */
+    T poll(long timeout, TimeUnit unit) throws InterruptedException;
+    
+    /**
+     * 阻塞读取元素，直到有可用元素
+     *
+     * @return 读取到的元素
+     * @throws InterruptedException 如果等待时线程被中断
+     */
+    T take() throws InterruptedException;
+    
+    /**
+     * 从队首开始移除第一个满足条件的元素，其余元素保持原有顺序
+     *
+     * @param filter 判断元素能否被移除
+     * @return 被移除的元素，没有满足条件的元素或移除后也无法写入新元素时返回 null
+     */
+    T evict(Predicate<? super T> filter);
+    
+    /**
+     * 当前存储的元素数量
+     */
+    int size();
+    
+    /**
+     * 存储容量
+     */
+    int capacity();
+    
+    /**
+     * 清空存储
+     */
+    void clear();
+}
@@ -0,0 +1,91 @@
+package com.iothub.message.application.utils.queue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * 基于 LinkedBlockingQueue 的缓冲存储，每个元素分配一个链表节点和一个记录写入时刻的包装
+ *
+ * @param <T> 存储的元素类型
+ */
+public class LinkedBufferStore<T> implements BufferStore<T> {
+    
+    private final BlockingQueue<Stamped<T>> queue;
+    private final int capacity;
+    
+    public LinkedBufferStore(int capacity) {
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.capacity = capacity;
+    }
+    
+    @Override
+    public boolean offer(T element) {
+        return queue.offer(new Stamped<>(element, System.nanoTime()));
+    }
+    
+    @Override
+    public boolean offer(T element, long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.offer(new Stamped<>(element, System.nanoTime()), timeout, unit);
+    }
+    
+    @Override
+    public T poll() {
+        return unwrap(queue.poll(), null);
+    }
+    
+    @Override
+    public T poll(QueueWaitStats waitStats) {
+        return unwrap(queue.poll(), waitStats);
+    }
+    
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return unwrap(queue.poll(timeout, unit), null);
+    }
+    
+    @Override
+    public T take() throws InterruptedException {
+        return unwrap(queue.take(), null);
+    }
+    
+    @Override
+    public T evict(Predicate<? super T> filter) {
+        for (Stamped<T> stamped : queue) {
+            // remove 返回 false 说明已被消费者取走，继续查找下一个
+            if (filter.test(stamped.element()) && queue.remove(stamped)) {
+                return stamped.element();
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public int size() {
+        return queue.size();
+    }
+    
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+    
+    @Override
+    public void clear() {
+        queue.clear();
+    }
+    
+    private static <T> T unwrap(Stamped<T> stamped, QueueWaitStats waitStats) {
+        if (stamped == null) {
+            return null;
+        }
+        if (waitStats != null) {
+            waitStats.record(System.nanoTime() - stamped.enqueuedAt());
+        }
+        return stamped.element();
+    }
+    
+    private record Stamped<T>(T element, long enqueuedAt) {
+    }
+}
@@ -2,28 +2,73 @@ package com.iothub.message.application.utils.queue;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 /**
  * 本地缓冲队列管理类
  * 提供线程安全的 put 和 get 方法，并支持队列容量限制和丢弃策略。
+ * 底层存储可选链表队列或预分配的无锁环形数组，见 {@link QueueType}。
+ * 可选启用磁盘溢写：内存写满后元素追加到 {@link SpillSegmentLog}，消费时先取内存再按顺序读回磁盘记录。
+ * 磁盘记录在元素之前写入入队时刻（墙上时钟），进程重启后读回的记录同样能计算排队等待时间。
  *
  * @param <T> 队列中存储的元素类型
  */
 @Slf4j
 public class LocalBufferQueue<T> {
     
-    private final BlockingQueue<T> queue;
+    private final BufferStore<T> queue;
+    private volatile SpillSegmentLog spillLog;   // 磁盘溢写层，未启用时为 null
+    private SpillCodec<T> spillCodec;
     
     /**
-     * 构造器，指定队列容量
+     * 构造器，指定队列容量，使用链表队列作为底层存储
      *
      * @param capacity 队列容量
      */
     public LocalBufferQueue(int capacity) {
-        this.queue = new LinkedBlockingQueue<>(capacity);
+        this(new LinkedBufferStore<>(capacity));
+    }
+    
+    /**
+     * 构造器，指定队列容量、底层存储类型和等待策略
+     *
+     * @param capacity     队列容量
+     * @param queueType    底层存储类型
+     * @param waitStrategy 环形队列为空时的等待策略，链表队列忽略该参数
+     */
+    public LocalBufferQueue(int capacity, QueueType queueType, WaitStrategy waitStrategy) {
+        this(createStore(capacity, queueType, waitStrategy));
+    }
+    
+    /**
+     * 构造器，使用指定的底层存储
+     *
+     * @param store 底层存储
+     */
+    public LocalBufferQueue(BufferStore<T> store) {
+        this.queue = store;
+    }
+    
+    private static <T> BufferStore<T> createStore(int capacity, QueueType queueType, WaitStrategy waitStrategy) {
+        return switch (queueType) {
+            case RING_MPSC -> new RingBufferStore<>(capacity, false, waitStrategy);
+            case RING_MPMC -> new RingBufferStore<>(capacity, true, waitStrategy);
+            default -> new LinkedBufferStore<>(capacity);
+        };
+    }
+    
+    /**
+     * 启用磁盘溢写层
+     *
+     * @param spillLog   溢写日志
+     * @param spillCodec 元素与磁盘记录之间的编解码器
+     */
+    public void enableSpill(SpillSegmentLog spillLog, SpillCodec<T> spillCodec) {
+        this.spillCodec = spillCodec;
+        this.spillLog = spillLog;
     }
     
     /**
@@ -33,13 +78,63 @@ public class LocalBufferQueue<T> {
      * @return 添加是否成功
      */
     public boolean put(T element) {
-        boolean added = queue.offer(element);
+        boolean added = offer(element);
         if (!added) {
             log.warn("Queue is full. Dropping element: {}", element);
         }
         return added;
     }
     
+    /**
+     * 尝试向队列中添加元素，队列已满时直接返回，由调用方决定溢出处理方式
+     *
+     * @param element 要添加的元素
+     * @return 添加是否成功
+     */
+    public boolean offer(T element) {
+        SpillSegmentLog spill = spillLog;
+        if (spill == null) {
+            return queue.offer(element);
+        }
+        // 磁盘中还有积压时新元素也必须写入磁盘，保证先进先出
+        if (!spill.hasPending() && queue.offer(element)) {
+            return true;
+        }
+        return spill.append(encodeSpill(element));
+    }
+    
+    /**
+     * 在超时时间内等待队列空出位置并添加元素
+     *
+     * @param element 要添加的元素
+     * @param timeout 超时时间
+     * @param unit    时间单位
+     * @return 添加是否成功，超时返回 false
+     * @throws InterruptedException 如果线程被中断
+     */
+    public boolean offer(T element, long timeout, TimeUnit unit) throws InterruptedException {
+        return offer(element) || queue.offer(element, timeout, unit);
+    }
+    
+    /**
+     * 非阻塞地从队列中获取消息
+     *
+     * @return 获取的元素，队列为空时返回 null
+     */
+    public T poll() {
+        return poll(null);
+    }
+    
+    /**
+     * 非阻塞地从队列中获取消息，并把消息的排队等待时间计入统计
+     *
+     * @param waitStats 等待时间统计，为 null 时不统计
+     * @return 获取的元素，队列为空时返回 null
+     */
+    public T poll(QueueWaitStats waitStats) {
+        T element = queue.poll(waitStats);
+        return element != null ? element : pollSpill(waitStats);
+    }
     
     /**
      * 尝试从队列中获取消息
@@ -50,6 +145,10 @@ public class LocalBufferQueue<T> {
      * @throws InterruptedException 如果线程被中断
      */
     public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        SpillSegmentLog spill = spillLog;
+        if (spill != null && spill.hasPending()) {
+            return poll();
+        }
         return queue.poll(timeout, unit);
     }
     
@@ -60,16 +159,45 @@ public class LocalBufferQueue<T> {
      * @throws InterruptedException 如果被中断
      */
     public T get() throws InterruptedException {
+        SpillSegmentLog spill = spillLog;
+        if (spill != null && spill.hasPending()) {
+            T element = poll();
+            if (element != null) {
+                return element;
+            }
+        }
         return queue.take();
     }
     
+    /**
+     * 从内存队首开始移除第一个满足条件的元素，其余元素保持原有顺序；已溢写到磁盘的元素不参与
+     *
+     * @param filter 判断元素能否被移除
+     * @return 被移除的元素，没有可移除的元素时返回 null
+     */
+    public T evict(Predicate<? super T> filter) {
+        return queue.evict(filter);
+    }
+    
     /**
      * 获取当前队列大小
      *
      * @return 队列中元素的数量
      */
     public int size() {
-        return queue.size();
+        SpillSegmentLog spill = spillLog;
+        long spilled = spill == null ? 0 : spill.pendingCount();
+        return (int) Math.min(Integer.MAX_VALUE, queue.size() + spilled);
+    }
+    
+    /**
+     * 获取当前溢写到磁盘、尚未读回的元素数量
+     *
+     * @return 磁盘中积压的元素数量
+     */
+    public long spilledSize() {
+        SpillSegmentLog spill = spillLog;
+        return spill == null ? 0 : spill.pendingCount();
     }
     
     /**
@@ -78,7 +206,39 @@ public class LocalBufferQueue<T> {
      * @return 队列容量
      */
     public int capacity() {
-        return queue.remainingCapacity() + queue.size();
+        return queue.capacity();
+    }
+    
+    private byte[] encodeSpill(T element) {
+        byte[] data = spillCodec.encode(element);
+        return ByteBuffer.allocate(Long.BYTES + data.length)
+                .putLong(System.currentTimeMillis())
+                .put(data)
+                .array();
+    }
+    
+    /**
+     * 按顺序从磁盘读回一个元素，无法解码的记录会被记录日志后跳过
+     */
+    private T pollSpill(QueueWaitStats waitStats) {
+        SpillSegmentLog spill = spillLog;
+        if (spill == null) {
+            return null;
+        }
+        byte[] data;
+        while ((data = spill.read()) != null) {
+            try {
+                long enqueuedAt = ByteBuffer.wrap(data).getLong();
+                T element = spillCodec.decode(Arrays.copyOfRange(data, Long.BYTES, data.length));
+                if (waitStats != null) {
+                    waitStats.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - enqueuedAt));
+                }
+                return element;
+            } catch (Exception e) {
+                log.error("Failed to decode spilled element, skipping record of {} bytes", data.length, e);
+            }
+        }
+        return null;
     }
     
     /**
@@ -0,0 +1,16 @@
+package com.iothub.message.application.utils.queue;
+
+/**
+ * 接收队列的优先级通道，按声明顺序从高到低
+ */
+public enum MessagePriority {
+    
+    // 命令、请求与响应等需要尽快送达的消息
+    HIGH,
+    
+    // 事件、通知、心跳等一般消息
+    NORMAL,
+    
+    // 属性上报等大批量遥测消息
+    LOW
+}
@@ -1,16 +1,76 @@
 package com.iothub.message.application.utils.queue;
 
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+/**
+ * MQTT 接收缓冲队列
+ * 按消息类型的优先级（{@link MessagePriority}）分为多个通道，每个通道内先进先出，消费时优先取高优先级通道，
+ * 使命令等消息不必排在大批量遥测之后。低优先级通道有积压时，连续被抢先 starvationLimit 次后让出一次，避免饿死。
+ * 各通道使用配置的底层存储（默认为无锁环形数组），入队和出队都不分配对象、不持有锁；
+ * 存储在槽位中记录写入时刻，出队时按优先级统计排队等待时间。
+ * 所有通道为空时消费方按配置的等待策略等待，任一通道写入后唤醒。
+ *
+ * @param <T> 队列元素类型
+ */
 @Component
 @Slf4j
 public class MqttMessageQueue<T> {
     
-    private static final int QUEUE_CAPACITY = 10000; // 队列容量
-    private final LocalBufferQueue<T> queue = new LocalBufferQueue<>(QUEUE_CAPACITY);
+    private static final MessagePriority[] PRIORITIES = MessagePriority.values();
+    
+    private final IotMessageConfigProperties.Queue config;
+    private final int highWater;   // 单个通道的高水位（条数）
+    private final int lowWater;    // 单个通道的低水位（条数）
+    
+    // 按优先级从高到低排列的通道
+    private final List<Lane<T>> lanes;
+    // 所有通道为空时消费方在此等待，任一通道写入后唤醒
+    private final QueueSignal notEmpty = new QueueSignal();
+    private final Supplier<T> laneReader = this::pollLanes;
+    
+    // 是否处于暂停入站状态
+    private final AtomicBoolean paused = new AtomicBoolean(false);
+    private final List<QueuePressureListener> pressureListeners = new CopyOnWriteArrayList<>();
+    // 各消息类型被丢弃的数量
+    private final Map<MessageTypeEnum, LongAdder> droppedCounters = new EnumMap<>(MessageTypeEnum.class);
+    // 从元素中解析消息类型，用于判断队列中已有的消息能否被挤出
+    private volatile Function<T, MessageTypeEnum> typeResolver = element -> null;
+    private long nextWaitReport;
+    
+    public MqttMessageQueue(IotMessageConfigProperties iotMessageConfigProperties) {
+        this.config = iotMessageConfigProperties.getQueue();
+        this.highWater = Math.max(1, (int) (config.getCapacity() * config.getHighWaterMark()));
+        this.lowWater = Math.min(highWater - 1, (int) (config.getCapacity() * config.getLowWaterMark()));
+        List<Lane<T>> lanes = new ArrayList<>(PRIORITIES.length);
+        for (MessagePriority priority : PRIORITIES) {
+            lanes.add(new Lane<>(priority, new LocalBufferQueue<>(config.getCapacity(), config.getType(), config.getWaitStrategy())));
+        }
+        this.lanes = List.copyOf(lanes);
+        for (MessageTypeEnum messageType : MessageTypeEnum.values()) {
+            droppedCounters.put(messageType, new LongAdder());
+        }
+        this.nextWaitReport = System.currentTimeMillis() + config.getWaitReportInterval();
+        log.info("MQTT message queue created, type: {}, wait strategy: {}, capacity: {} x {} priority lanes",
+                config.getType(), config.getWaitStrategy(), config.getCapacity(), this.lanes.size());
+    }
     
     /**
      * 添加消息到队列
@@ -18,15 +78,347 @@ public class MqttMessageQueue<T> {
      * @param element 内容
      */
     public void put(T element) {
-        if (!queue.put(element)) {
+        Lane<T> lane = lanes.get(config.getDefaultPriority().ordinal());
+        if (!enqueue(lane, element)) {
             log.warn("Failed to add element to queue. Queue is full.");
         }
     }
     
     /**
-     * 获取元素
+     * 按消息类型对应的优先级和溢出策略添加消息到队列，受保护的消息类型在通道已满时阻塞写入方直到截止时间
+     *
+     * @param element     内容
+     * @param messageType 消息类型，为空时使用默认优先级和默认策略
+     * @return 消息是否已入队
+     */
+    public boolean put(T element, MessageTypeEnum messageType) {
+        if (offer(element, messageType)) {
+            return true;
+        }
+        if (isDroppable(messageType)) {
+            return false;
+        }
+        try {
+            return blockUntilDeadline(lanes.get(config.priorityOf(messageType).ordinal()), element, messageType);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return drop(element, messageType);
+        }
+    }
+    
+    /**
+     * 按消息类型对应的优先级和溢出策略添加消息到队列，不阻塞写入方
+     * 可丢弃的消息类型在通道已满时按 DROP_NEWEST、DROP_OLDEST 策略处理；
+     * 受保护的消息类型（BLOCK、PAUSE_INBOUND）在通道已满时既不等待也不丢弃，直接返回 false，由调用方保留后重试
+     *
+     * @param element     内容
+     * @param messageType 消息类型，为空时使用默认优先级和默认策略
+     * @return 消息是否已入队
+     */
+    public boolean offer(T element, MessageTypeEnum messageType) {
+        Lane<T> lane = lanes.get(config.priorityOf(messageType).ordinal());
+        OverflowPolicy policy = config.overflowPolicyOf(messageType);
+        if (policy == OverflowPolicy.PAUSE_INBOUND && lane.queue.size() >= highWater) {
+            pauseInbound();
+        }
+        
+        if (enqueue(lane, element)) {
+            return true;
+        }
+        
+        return switch (policy) {
+            case DROP_NEWEST -> drop(element, messageType);
+            case DROP_OLDEST -> replaceOldest(lane, element, messageType);
+            case BLOCK, PAUSE_INBOUND -> false;
+        };
+    }
+    
+    /**
+     * 指定消息类型在队列已满时是否允许丢弃（DROP_NEWEST、DROP_OLDEST 策略）
+     */
+    public boolean isDroppable(MessageTypeEnum messageType) {
+        return config.isDroppable(messageType);
+    }
+    
+    /**
+     * 获取元素，优先从高优先级通道取出
      */
     public T poll(long timeout, TimeUnit unit) throws InterruptedException {
-        return queue.poll(timeout, unit);
+        T element = pollLanes();
+        if (element == null) {
+            element = notEmpty.await(laneReader, config.getWaitStrategy(), timeout, unit);
+        }
+        if (element != null && paused.get()) {
+            resumeIfDrained();
+        }
+        return element;
+    }
+    
+    /**
+     * 批量获取元素：最多等待 maxWait 以取满 maxItems 个元素，取满后立即返回
+     * maxWait 为 0 时只取出当前已有的元素，不做等待
+     *
+     * @param batch    接收元素的集合
+     * @param maxItems 最多取出的元素数量
+     * @param maxWait  最长等待时间
+     * @param unit     时间单位
+     * @return 实际取出的元素数量
+     * @throws InterruptedException 如果等待时线程被中断
+     */
+    public int drainTo(Collection<? super T> batch, int maxItems, long maxWait, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(maxWait);
+        int drained = 0;
+        while (drained < maxItems) {
+            T element = pollLanes();
+            if (element == null) {
+                element = notEmpty.await(laneReader, config.getWaitStrategy(), Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (element == null) {
+                    break;
+                }
+            }
+            batch.add(element);
+            drained++;
+        }
+        if (drained > 0 && paused.get()) {
+            resumeIfDrained();
+        }
+        return drained;
+    }
+    
+    /**
+     * 按配置启用磁盘溢写层，未开启溢写时不做任何处理
+     * 每个优先级通道使用 directory 下以通道名命名的子目录
+     *
+     * @param spillCodec 消息与磁盘记录之间的编解码器
+     */
+    public void enableSpill(SpillCodec<T> spillCodec) {
+        IotMessageConfigProperties.Spill spill = config.getSpill();
+        if (!spill.isEnabled() || lanes.get(0).spillLog != null) {
+            return;
+        }
+        for (Lane<T> lane : lanes) {
+            Path directory = Path.of(spill.getDirectory(), lane.priority.name().toLowerCase());
+            lane.spillLog = new SpillSegmentLog(directory, spill.getSegmentSize(), spill.getMaxSegments());
+            lane.queue.enableSpill(lane.spillLog, spillCodec);
+        }
+        log.info("Spill tier enabled, directory: {}, pending records: {}", spill.getDirectory(), spilledSize());
+    }
+    
+    /**
+     * 注册队列水位监听器
+     */
+    public void addPressureListener(QueuePressureListener listener) {
+        pressureListeners.add(listener);
+    }
+    
+    /**
+     * 设置元素的消息类型解析器
+     */
+    public void setTypeResolver(Function<T, MessageTypeEnum> typeResolver) {
+        this.typeResolver = typeResolver;
+    }
+    
+    /**
+     * 当前队列中的消息数量
+     */
+    public int size() {
+        long size = 0;
+        for (Lane<T> lane : lanes) {
+            size += lane.queue.size();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+    
+    /**
+     * 指定优先级通道中的消息数量
+     */
+    public int size(MessagePriority priority) {
+        return lanes.get(priority.ordinal()).queue.size();
+    }
+    
+    /**
+     * 队列容量（所有优先级通道之和）
+     */
+    public int capacity() {
+        int capacity = 0;
+        for (Lane<T> lane : lanes) {
+            capacity += lane.queue.capacity();
+        }
+        return capacity;
+    }
+    
+    /**
+     * 指定消息类型因队列溢出被丢弃的数量
+     */
+    public long droppedCount(MessageTypeEnum messageType) {
+        return droppedCounters.get(messageType == null ? MessageTypeEnum.UNSUPPORTED : messageType).sum();
+    }
+    
+    /**
+     * 指定优先级通道的排队等待时间统计
+     */
+    public QueueWaitStats queueWaitStats(MessagePriority priority) {
+        return lanes.get(priority.ordinal()).waitStats;
+    }
+    
+    /**
+     * 到达日志间隔时输出各优先级通道的排队等待时间，由消费线程定期调用
+     */
+    public void reportQueueWait() {
+        long interval = config.getWaitReportInterval();
+        long now = System.currentTimeMillis();
+        if (interval <= 0 || now < nextWaitReport) {
+            return;
+        }
+        nextWaitReport = now + interval;
+        for (Lane<T> lane : lanes) {
+            if (lane.waitStats.count() > 0) {
+                log.info("Queue wait of {} lane: {}, pending: {}", lane.priority, lane.waitStats, lane.queue.size());
+            }
+        }
+    }
+    
+    /**
+     * 溢写到磁盘、尚未读回的消息数量
+     */
+    public long spilledSize() {
+        long spilled = 0;
+        for (Lane<T> lane : lanes) {
+            spilled += lane.queue.spilledSize();
+        }
+        return spilled;
+    }
+    
+    @PreDestroy
+    public void close() {
+        for (Lane<T> lane : lanes) {
+            if (lane.spillLog != null) {
+                lane.spillLog.close();
+            }
+        }
+    }
+    
+    /**
+     * 按优先级选择通道取出一个元素
+     * 先检查是否有低优先级通道已被连续抢先 starvationLimit 次，有则让它先出；否则从最高优先级的非空通道取出，
+     * 同时为排在其后且有积压的通道累加被抢先次数
+     */
+    private T pollLanes() {
+        int starvationLimit = config.getStarvationLimit();
+        for (int i = lanes.size() - 1; i > 0; i--) {
+            Lane<T> lane = lanes.get(i);
+            if (lane.skipped.get() >= starvationLimit && lane.skipped.getAndSet(0) >= starvationLimit) {
+                T element = lane.poll();
+                if (element != null) {
+                    return element;
+                }
+            }
+        }
+        for (int i = 0; i < lanes.size(); i++) {
+            T element = lanes.get(i).poll();
+            if (element != null) {
+                for (int j = i + 1; j < lanes.size(); j++) {
+                    Lane<T> skipped = lanes.get(j);
+                    if (skipped.queue.size() > 0) {
+                        skipped.skipped.incrementAndGet();
+                    }
+                }
+                return element;
+            }
+        }
+        return null;
+    }
+    
+    private boolean enqueue(Lane<T> lane, T element) {
+        if (lane.queue.offer(element)) {
+            notEmpty.signal();
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * 原地挤出通道中最旧的可丢弃消息后写入新消息，受保护的消息（如命令）留在原位，先后顺序不变；
+     * 通道中没有可丢弃的消息时丢弃新消息
+     */
+    private boolean replaceOldest(Lane<T> lane, T element, MessageTypeEnum messageType) {
+        T evicted = lane.queue.evict(queued -> isDroppable(typeResolver.apply(queued)));
+        if (evicted != null) {
+            drop(evicted, typeResolver.apply(evicted));
+        }
+        return enqueue(lane, element) || drop(element, messageType);
+    }
+    
+    /**
+     * 阻塞写入方直到通道空出位置，超过截止时间后丢弃并记录错误
+     */
+    private boolean blockUntilDeadline(Lane<T> lane, T element, MessageTypeEnum messageType) throws InterruptedException {
+        if (lane.queue.offer(element, config.getBlockTimeout(), TimeUnit.MILLISECONDS)) {
+            notEmpty.signal();
+            return true;
+        }
+        log.error("Queue stayed full for {}ms, message of type {} is dropped", config.getBlockTimeout(), messageType);
+        return drop(element, messageType);
+    }
+    
+    private boolean drop(T element, MessageTypeEnum messageType) {
+        LongAdder counter = droppedCounters.get(messageType == null ? MessageTypeEnum.UNSUPPORTED : messageType);
+        counter.increment();
+        if (isDroppable(messageType)) {
+            log.warn("Queue is full. Dropping message of type {}, total dropped: {}", messageType, counter.sum());
+        } else {
+            log.error("Queue is full. Dropping protected message of type {}, total dropped: {}, message: {}",
+                    messageType, counter.sum(), element);
+        }
+        return false;
+    }
+    
+    private void pauseInbound() {
+        if (paused.compareAndSet(false, true)) {
+            log.warn("Queue reached high water mark ({}/{}), pausing inbound", size(), capacity());
+            pressureListeners.forEach(QueuePressureListener::onHighWater);
+        }
+    }
+    
+    /**
+     * 所有通道都回落到低水位后恢复入站
+     */
+    private void resumeIfDrained() {
+        for (Lane<T> lane : lanes) {
+            if (lane.queue.size() > lowWater) {
+                return;
+            }
+        }
+        if (paused.compareAndSet(true, false)) {
+            log.info("Queue drained to low water mark ({}/{}), resuming inbound", size(), capacity());
+            pressureListeners.forEach(QueuePressureListener::onLowWater);
+        }
+    }
+    
+    /**
+     * 一个优先级通道
+     */
+    private static final class Lane<T> {
+        private final MessagePriority priority;
+        private final LocalBufferQueue<T> queue;
+        private final QueueWaitStats waitStats = new QueueWaitStats();
+        private final AtomicInteger skipped = new AtomicInteger();   // 有积压时连续被更高优先级抢先的次数
+        private SpillSegmentLog spillLog;
+        
+        private Lane(MessagePriority priority, LocalBufferQueue<T> queue) {
+            this.priority = priority;
+            this.queue = queue;
+        }
+        
+        /**
+         * 取出一个元素并记录其排队等待时间，取到时清零被抢先次数
+         */
+        private T poll() {
+            T element = queue.poll(waitStats);
+            if (element != null && skipped.get() != 0) {
+                skipped.set(0);
+            }
+            return element;
+        }
     }
 }
@@ -0,0 +1,22 @@
+package com.iothub.message.application.utils.queue;
+
+/**
+ * 队列已满时的溢出策略
+ */
+public enum OverflowPolicy {
+    
+    // 丢弃新到达的消息
+    DROP_NEWEST,
+    
+    // 丢弃队首最旧的消息，为新消息腾出位置
+    DROP_OLDEST,
+    
+    // 不丢弃：阻塞写入方，直到队列空出位置或超过截止时间；
+    // 入站适配器的回调线程不阻塞，放不下的消息暂不确认，由 InboundAdmission 在队列空出位置后补入
+    BLOCK,
+    
+    // 达到高水位时暂停 MQTT 入站适配器，降到低水位后恢复；队列已满时按 BLOCK 处理。
+    // 适配器停止时会取消订阅，cleanStart=true 时代理不为本客户端保留消息，暂停期间下发的消息会丢失，
+    // 只适合允许丢失的下行数据；命令类消息应使用 BLOCK
+    PAUSE_INBOUND
+}
@@ -0,0 +1,17 @@
+package com.iothub.message.application.utils.queue;
+
+/**
+ * 队列水位监听器，用于在队列积压时暂停上游，在积压消退后恢复
+ */
+public interface QueuePressureListener {
+    
+    /**
+     * 队列达到高水位
+     */
+    void onHighWater();
+    
+    /**
+     * 队列回落到低水位
+     */
+    void onLowWater();
+}
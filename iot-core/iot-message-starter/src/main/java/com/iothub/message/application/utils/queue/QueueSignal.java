@@ -0,0 +1,76 @@
+package com.iothub.message.application.utils.queue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * 队列的等待与唤醒
+ * 等待方按等待策略重试，策略要求挂起时登记为等待者后挂起，直到另一方调用 signal 或等待超时；
+ * 没有等待者时 signal 只有一次 volatile 读，不影响无竞争时的写入和读取。
+ * 登记之后、挂起之前会再重试一次，与 signal 之前的写入构成先写后读的配对，不会错过唤醒。
+ */
+public class QueueSignal {
+    
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Set<Thread> waiters = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * 唤醒所有挂起的等待者，由写入（或取出）成功的一方调用
+     */
+    public void signal() {
+        if (waiting.get() > 0) {
+            for (Thread waiter : waiters) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+    
+    /**
+     * 按等待策略重试，直到 attempt 返回非空结果或超时
+     *
+     * @param attempt      一次非阻塞尝试，成功时返回非空结果
+     * @param waitStrategy 等待策略
+     * @param timeout      超时时间
+     * @param unit         时间单位
+     * @return attempt 的结果，超时返回 null
+     * @throws InterruptedException 如果等待时线程被中断
+     */
+    public <R> R await(Supplier<R> attempt, WaitStrategy waitStrategy, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int attempts = 0;
+        while (true) {
+            R result = attempt.get();
+            if (result != null) {
+                return result;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            if (!waitStrategy.parks(attempts)) {
+                waitStrategy.idle(attempts++);
+                continue;
+            }
+            Thread current = Thread.currentThread();
+            waiters.add(current);
+            waiting.incrementAndGet();
+            try {
+                result = attempt.get();
+                if (result != null) {
+                    return result;
+                }
+                LockSupport.parkNanos(this, remaining);
+            } finally {
+                waiting.decrementAndGet();
+                waiters.remove(current);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.iothub.message.application.utils.queue;
+
+/**
+ * 缓冲队列的底层存储类型
+ */
+public enum QueueType {
+    
+    // LinkedBlockingQueue，每条消息分配一个节点，读写各持一把锁
+    LINKED,
+    
+    // 预分配环形数组，多生产者/单消费者
+    RING_MPSC,
+    
+    // 预分配环形数组，多生产者/多消费者
+    RING_MPMC
+}
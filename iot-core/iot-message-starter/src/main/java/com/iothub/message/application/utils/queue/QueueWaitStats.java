@@ -0,0 +1,83 @@
+package com.iothub.message.application.utils.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消息在队列中的等待时间统计
+ * 按 2 的幂划分直方图桶，记录为 O(1) 且不分配对象；分位数取所在桶的上界，误差不超过一倍。
+ */
+public class QueueWaitStats {
+    
+    private static final int BUCKETS = 64;
+    
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] histogram = new LongAdder[BUCKETS]; // 第 i 个桶记录 [2^(i-1), 2^i) 纳秒
+    
+    public QueueWaitStats() {
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * 记录一次等待时间
+     *
+     * @param waitNanos 等待时间（纳秒），负值按 0 记录
+     */
+    public void record(long waitNanos) {
+        long nanos = Math.max(0, waitNanos);
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        histogram[64 - Long.numberOfLeadingZeros(nanos)].increment();
+    }
+    
+    public long count() {
+        return count.sum();
+    }
+    
+    public long averageNanos() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / n;
+    }
+    
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+    
+    /**
+     * 等待时间分位数的近似值
+     *
+     * @param percentile 分位数，取值 (0, 100]
+     * @return 分位数所在桶的上界（纳秒），没有记录时返回 0
+     */
+    public long percentileNanos(double percentile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i].sum();
+            if (seen >= rank) {
+                return i == 0 ? 0 : Math.min(maxNanos(), (1L << i) - 1);
+            }
+        }
+        return maxNanos();
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("count=%d, avg=%.3fms, p99=%.3fms, max=%.3fms", count(),
+                toMillis(averageNanos()), toMillis(percentileNanos(99)), toMillis(maxNanos()));
+    }
+    
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
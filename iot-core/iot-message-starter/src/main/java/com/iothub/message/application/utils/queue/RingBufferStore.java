@@ -0,0 +1,239 @@
+package com.iothub.message.application.utils.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * 无锁环形数组缓冲存储
+ * 槽位在构造时一次性分配（长度为 2 的幂），每个槽位带一个序号用于协调生产者与消费者：
+ * 序号等于写位置时槽位可写，等于写位置 + 1 时槽位可读。写入和读取都不分配对象、不持有锁。
+ * 每个槽位另记录写入时刻，读取时可把元素的排队等待时间计入统计。
+ * 队列为空（或已满）时等待方按等待策略重试；PARK 策略下挂起，由另一方写入（或取出）后唤醒，空闲时不会周期性醒来。
+ * evict 把槽位中的元素原地替换为墓碑，不移动其余元素；墓碑不计入逻辑容量，消费者读到墓碑时跳过。
+ * 槽位数至少比逻辑容量多一个，挤出元素后新元素可以写入空余的槽位。
+ *
+ * @param <T> 存储的元素类型
+ */
+public class RingBufferStore<T> implements BufferStore<T> {
+    
+    private static final Object EVICTED = new Object();
+    
+    private final int capacity;              // 逻辑容量（即配置的队列容量）
+    private final int mask;
+    private final AtomicReferenceArray<Object> buffer;
+    private final long[] enqueuedAt;         // 各槽位元素的写入时刻（纳秒），随序号一起发布
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();   // 尚未被消费者跳过的墓碑数量
+    private final boolean multiConsumer;
+    private final WaitStrategy waitStrategy;
+    private final QueueSignal notEmpty = new QueueSignal();
+    private final QueueSignal notFull = new QueueSignal();
+    
+    /**
+     * @param capacity      队列容量，槽位数为不小于 capacity + 1 的 2 的幂
+     * @param multiConsumer 是否允许多个消费者并发读取
+     * @param waitStrategy  队列为空时的等待策略
+     */
+    public RingBufferStore(int capacity, boolean multiConsumer, WaitStrategy waitStrategy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int slots = 1 << (32 - Integer.numberOfLeadingZeros(capacity));
+        this.capacity = capacity;
+        this.mask = slots - 1;
+        this.buffer = new AtomicReferenceArray<>(slots);
+        this.enqueuedAt = new long[slots];
+        this.sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+        this.multiConsumer = multiConsumer;
+        this.waitStrategy = waitStrategy;
+    }
+    
+    @Override
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new NullPointerException("Element must not be null");
+        }
+        long pos = producerIndex.get();
+        while (true) {
+            if (pos - consumerIndex.get() - evicted.get() >= capacity) {
+                return false; // 达到逻辑容量
+            }
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (producerIndex.compareAndSet(pos, pos + 1)) {
+                    buffer.setPlain(index, element);   // 由下面的序号写入发布
+                    enqueuedAt[index] = System.nanoTime();
+                    sequences.set(index, pos + 1); // 发布：对消费者可见
+                    notEmpty.signal();
+                    return true;
+                }
+                pos = producerIndex.get();
+            } else if (diff < 0) {
+                return false; // 槽位尚未被消费
+            } else {
+                pos = producerIndex.get(); // 被其他生产者抢占，重读写位置
+            }
+        }
+    }
+    
+    @Override
+    public boolean offer(T element, long timeout, TimeUnit unit) throws InterruptedException {
+        if (offer(element)) {
+            return true;
+        }
+        return notFull.await(() -> offer(element) ? Boolean.TRUE : null, waitStrategy, timeout, unit) != null;
+    }
+    
+    @Override
+    public T poll() {
+        return poll(null);
+    }
+    
+    @Override
+    public T poll(QueueWaitStats waitStats) {
+        return multiConsumer ? pollMulti(waitStats) : pollSingle(waitStats);
+    }
+    
+    /**
+     * 单消费者读取：只有一个线程推进读位置，无需 CAS
+     */
+    @SuppressWarnings("unchecked")
+    private T pollSingle(QueueWaitStats waitStats) {
+        while (true) {
+            long pos = consumerIndex.get();
+            int index = (int) (pos & mask);
+            if (sequences.get(index) != pos + 1) {
+                return null;
+            }
+            Object element = take(index, waitStats);
+            sequences.set(index, pos + mask + 1); // 槽位交还给下一轮生产者
+            consumerIndex.set(pos + 1);
+            if (release(element)) {
+                return (T) element;
+            }
+        }
+    }
+    
+    /**
+     * 多消费者读取：通过 CAS 竞争读位置
+     */
+    @SuppressWarnings("unchecked")
+    private T pollMulti(QueueWaitStats waitStats) {
+        long pos = consumerIndex.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (consumerIndex.compareAndSet(pos, pos + 1)) {
+                    Object element = take(index, waitStats);
+                    sequences.set(index, pos + mask + 1);
+                    if (release(element)) {
+                        return (T) element;
+                    }
+                }
+                pos = consumerIndex.get();
+            } else if (diff < 0) {
+                return null; // 队列为空
+            } else {
+                pos = consumerIndex.get();
+            }
+        }
+    }
+    
+    /**
+     * 取走槽位中的元素，与 evict 竞争同一个元素时只有一方成功；在交还槽位之前读取写入时刻
+     */
+    private Object take(int index, QueueWaitStats waitStats) {
+        Object element = buffer.getAndSet(index, null);
+        if (element != EVICTED && waitStats != null) {
+            waitStats.record(System.nanoTime() - enqueuedAt[index]);
+        }
+        return element;
+    }
+    
+    /**
+     * 槽位交还后唤醒等待的生产者
+     *
+     * @return false 如果取走的是墓碑，需要继续读取下一个槽位
+     */
+    private boolean release(Object element) {
+        if (element == EVICTED) {
+            evicted.decrementAndGet();
+        }
+        notFull.signal();
+        return element != EVICTED;
+    }
+    
+    /**
+     * 从读位置开始查找第一个满足条件的已发布元素，原地替换为墓碑
+     * 没有空余槽位时不挤出：挤出后新元素同样写不进去，只会白白丢掉一条旧消息。
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T evict(Predicate<? super T> filter) {
+        long end = producerIndex.get();
+        long pos = consumerIndex.get();
+        if (end - pos > mask) {
+            return null;
+        }
+        for (; pos < end; pos++) {
+            int index = (int) (pos & mask);
+            if (sequences.get(index) != pos + 1) {
+                continue; // 尚未发布，或已被取走
+            }
+            Object element = buffer.get(index);
+            if (element == null || element == EVICTED || sequences.get(index) != pos + 1 || !filter.test((T) element)) {
+                continue;
+            }
+            if (buffer.compareAndSet(index, element, EVICTED)) {
+                evicted.incrementAndGet();
+                return (T) element;
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        T element = poll();
+        return element != null ? element : notEmpty.await(this::poll, waitStrategy, timeout, unit);
+    }
+    
+    @Override
+    public T take() throws InterruptedException {
+        T element;
+        do {
+            element = poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } while (element == null);
+        return element;
+    }
+    
+    @Override
+    public int size() {
+        // 先读消费位置，保证差值不会为负
+        long consumed = consumerIndex.get();
+        long produced = producerIndex.get();
+        return (int) Math.max(0, Math.min(capacity, produced - consumed - evicted.get()));
+    }
+    
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+    
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // 逐个出队，保证与并发生产者之间的序号一致
+        }
+    }
+}
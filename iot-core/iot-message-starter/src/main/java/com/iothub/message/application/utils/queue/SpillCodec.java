@@ -0,0 +1,25 @@
+package com.iothub.message.application.utils.queue;
+
+/**
+ * 溢写编解码器，负责将队列元素与磁盘记录互相转换
+ *
+ * @param <T> 队列元素类型
+ */
+public interface SpillCodec<T> {
+    
+    /**
+     * 将元素编码为字节数组
+     *
+     * @param element 队列元素
+     * @return 编码后的字节
+     */
+    byte[] encode(T element);
+    
+    /**
+     * 将字节数组解码为元素
+     *
+     * @param data 磁盘记录
+     * @return 队列元素
+     */
+    T decode(byte[] data);
+}
@@ -0,0 +1,390 @@
+package com.iothub.message.application.utils.queue;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 磁盘溢写日志
+ * 由若干个固定大小的内存映射段文件组成，只追加写入。每条记录格式为 [长度][CRC32][数据]，
+ * 记录之后总是写入一个长度为 0 的结束标记，段写满后写入滚动标记并切换到新段。
+ * 读位置记录在检查点文件中，重启后从最后提交的读位置继续消费；已消费完的段会被回收复用。
+ * 写入只落到页缓存，需要持久化保证的调用方可以批量调用 {@link #force()} 刷盘。
+ */
+@Slf4j
+public class SpillSegmentLog implements Closeable {
+    
+    private static final int HEADER_SIZE = 8;          // 长度(4) + CRC(4)
+    private static final int END_MARKER = 0;           // 结束标记：后面没有记录
+    private static final int ROLL_MARKER = -1;         // 滚动标记：后续记录在下一个段
+    private static final int MAX_SPARE_SEGMENTS = 2;   // 最多保留的备用段数量
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SPARE_PREFIX = "spare-";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    
+    private final Deque<Segment> segments = new ArrayDeque<>();   // 未消费完的段，按编号递增
+    private final Deque<Path> spareFiles = new ArrayDeque<>();    // 已回收可复用的段文件
+    private final FileChannel checkpointChannel;
+    private final MappedByteBuffer checkpoint;                    // [读段编号][读位置]
+    private final CRC32 crc = new CRC32();
+    
+    private long nextSegmentId;
+    private long unforcedSegmentId;   // 该编号及之后的段可能有尚未刷盘的写入
+    private int writePosition;
+    private int readPosition;
+    private long pending;    // 尚未读取的记录数
+    
+    /**
+     * 打开（或创建）溢写日志
+     *
+     * @param directory   段文件所在目录
+     * @param segmentSize 单个段文件大小（字节）
+     * @param maxSegments 最多同时存在的段数量，用于限制磁盘占用
+     */
+    public SpillSegmentLog(Path directory, int segmentSize, int maxSegments) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(2, maxSegments);
+        try {
+            Files.createDirectories(directory);
+            this.checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, 16);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open spill log in " + directory, e);
+        }
+    }
+    
+    /**
+     * 追加一条记录
+     *
+     * @param data 记录内容
+     * @return 追加成功返回 true；记录过大或磁盘段数达到上限时返回 false
+     */
+    public synchronized boolean append(byte[] data) {
+        int required = HEADER_SIZE + data.length + 4; // 预留结束标记
+        if (required > segmentSize) {
+            log.warn("Spill record of {} bytes exceeds segment size {}", data.length, segmentSize);
+            return false;
+        }
+        try {
+            if (segments.isEmpty()) {
+                createSegment();
+            } else if (writePosition + required > segmentSize) {
+                if (segments.size() >= maxSegments) {
+                    return false;
+                }
+                segments.getLast().buffer.putInt(writePosition, ROLL_MARKER);
+                createSegment();
+            }
+        } catch (IOException e) {
+            log.error("Failed to create spill segment in {}", directory, e);
+            return false;
+        }
+        
+        MappedByteBuffer buffer = segments.getLast().buffer;
+        crc.reset();
+        crc.update(data);
+        buffer.put(writePosition + HEADER_SIZE, data);
+        buffer.putInt(writePosition + 4, (int) crc.getValue());
+        buffer.putInt(writePosition + HEADER_SIZE + data.length, END_MARKER);
+        buffer.putInt(writePosition, data.length); // 最后写长度，保证记录完整后才可见
+        writePosition += HEADER_SIZE + data.length;
+        pending++;
+        return true;
+    }
+    
+    /**
+     * 按写入顺序读取下一条记录并提交读位置
+     *
+     * @return 记录内容，没有待读记录时返回 null
+     */
+    public synchronized byte[] read() {
+        return next(true);
+    }
+    
+    /**
+     * 读取下一条记录但不移动读位置，再次调用返回同一条记录，确认处理完成后再调用 {@link #read()} 消费
+     *
+     * @return 记录内容，没有待读记录时返回 null
+     */
+    public synchronized byte[] peek() {
+        return next(false);
+    }
+    
+    /**
+     * 丢弃最旧的一个段中所有未读的记录，用于磁盘占用达到上限时为新记录腾出空间
+     *
+     * @return 被丢弃的记录数；只剩一个段时不丢弃，返回 0
+     */
+    public synchronized long discardOldestSegment() {
+        if (segments.size() < 2) {
+            return 0;
+        }
+        long before = pending;
+        discardHead();
+        return before - pending;
+    }
+    
+    /**
+     * 将上次刷盘以来写入的段和读位置检查点强制写入磁盘
+     */
+    public synchronized void force() {
+        for (Segment segment : segments) {
+            if (segment.id >= unforcedSegmentId) {
+                segment.buffer.force();
+            }
+        }
+        checkpoint.force();
+        unforcedSegmentId = segments.isEmpty() ? nextSegmentId : segments.getLast().id;
+    }
+    
+    /**
+     * 单条记录的最大长度
+     */
+    public int maxRecordSize() {
+        return segmentSize - HEADER_SIZE - 4;
+    }
+    
+    private byte[] next(boolean consume) {
+        while (pending > 0 && !segments.isEmpty()) {
+            Segment segment = segments.getFirst();
+            int length = segment.buffer.getInt(readPosition);
+            
+            if (length == ROLL_MARKER || (length == END_MARKER && segments.size() > 1)) {
+                recycleHead();
+                continue;
+            }
+            if (length <= 0 || readPosition + HEADER_SIZE + length > segmentSize) {
+                log.error("Corrupted spill record at segment {} position {}, skipping segment", segment.id, readPosition);
+                discardHead();
+                continue;
+            }
+            
+            byte[] data = new byte[length];
+            segment.buffer.get(readPosition + HEADER_SIZE, data);
+            crc.reset();
+            crc.update(data);
+            if ((int) crc.getValue() != segment.buffer.getInt(readPosition + 4)) {
+                log.error("Spill record CRC mismatch at segment {} position {}, skipping segment", segment.id, readPosition);
+                discardHead();
+                continue;
+            }
+            if (!consume) {
+                return data;
+            }
+            
+            readPosition += HEADER_SIZE + length;
+            pending--;
+            if (segments.size() > 1 && segment.buffer.getInt(readPosition) == ROLL_MARKER) {
+                recycleHead(); // 段已读完，立即回收，释放段配额
+            } else {
+                commit(segment.id, readPosition);
+            }
+            return data;
+        }
+        return null;
+    }
+    
+    /**
+     * 是否还有未读取的记录
+     */
+    public synchronized boolean hasPending() {
+        return pending > 0;
+    }
+    
+    /**
+     * 未读取的记录数
+     */
+    public synchronized long pendingCount() {
+        return pending;
+    }
+    
+    @Override
+    public synchronized void close() {
+        checkpoint.force();
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+        try {
+            checkpointChannel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close spill checkpoint", e);
+        }
+    }
+    
+    /**
+     * 启动时恢复：加载段文件与检查点，丢弃已消费的段，定位写位置并统计未读记录数
+     */
+    private void recover() throws IOException {
+        long readSegmentId = checkpoint.getLong(0);
+        int committedPosition = (int) checkpoint.getLong(8);
+        
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.startsWith(SPARE_PREFIX)) {
+                spareFiles.add(file);
+                continue;
+            }
+            long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            nextSegmentId = Math.max(nextSegmentId, id + 1);
+            if (id < readSegmentId) {
+                Files.deleteIfExists(file); // 已经消费完的段
+            } else {
+                segments.add(openSegment(id, file));
+            }
+        }
+        
+        if (segments.isEmpty()) {
+            return;
+        }
+        readPosition = segments.getFirst().id == readSegmentId ? committedPosition : 0;
+        
+        // 从读位置开始扫描所有段，统计未读记录并定位写位置
+        int position = readPosition;
+        for (Segment segment : segments) {
+            while (position + HEADER_SIZE <= segmentSize) {
+                int length = segment.buffer.getInt(position);
+                if (length <= 0 || !isValid(segment, position, length)) {
+                    break;
+                }
+                position += HEADER_SIZE + length;
+                pending++;
+            }
+            if (segment != segments.getLast()) {
+                position = 0;
+            }
+        }
+        writePosition = position;
+        segments.getLast().buffer.putInt(writePosition, END_MARKER);
+        log.info("Recovered spill log in {}: {} segments, {} pending records", directory, segments.size(), pending);
+    }
+    
+    private boolean isValid(Segment segment, int position, int length) {
+        if (position + HEADER_SIZE + length > segmentSize) {
+            return false;
+        }
+        byte[] data = new byte[length];
+        segment.buffer.get(position + HEADER_SIZE, data);
+        crc.reset();
+        crc.update(data);
+        return (int) crc.getValue() == segment.buffer.getInt(position + 4);
+    }
+    
+    private void createSegment() throws IOException {
+        long id = nextSegmentId++;
+        Path file = directory.resolve(segmentFileName(id));
+        Path spare = spareFiles.pollFirst();
+        if (spare != null) {
+            Files.move(spare, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Segment segment = openSegment(id, file);
+        segment.buffer.putInt(0, END_MARKER); // 复用的段中可能残留旧记录
+        segments.addLast(segment);
+        writePosition = 0;
+        if (segments.size() == 1) {
+            readPosition = 0;
+            commit(id, 0);
+        }
+    }
+    
+    private Segment openSegment(long id, Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        return new Segment(id, file, channel, buffer);
+    }
+    
+    /**
+     * 队首段已读完：回收为备用段并推进读位置到下一个段
+     */
+    private void recycleHead() {
+        Segment segment = segments.pollFirst();
+        segment.close();
+        try {
+            if (spareFiles.size() < MAX_SPARE_SEGMENTS) {
+                Path spare = directory.resolve(SPARE_PREFIX + segmentFileName(segment.id));
+                Files.move(segment.file, spare, StandardCopyOption.ATOMIC_MOVE);
+                spareFiles.addLast(spare);
+            } else {
+                Files.deleteIfExists(segment.file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to recycle spill segment {}", segment.file, e);
+        }
+        readPosition = 0;
+        if (!segments.isEmpty()) {
+            commit(segments.getFirst().id, 0);
+        }
+    }
+    
+    /**
+     * 丢弃队首段（损坏或超出保留上限）的剩余记录，并重新统计未读记录数
+     */
+    private void discardHead() {
+        boolean isWriteSegment = segments.size() == 1;
+        recycleHead();
+        if (isWriteSegment) {
+            pending = 0;
+            return;
+        }
+        long count = 0;
+        for (Segment segment : segments) {
+            int position = 0;
+            while (position + HEADER_SIZE <= segmentSize) {
+                int length = segment.buffer.getInt(position);
+                if (length <= 0 || !isValid(segment, position, length)) {
+                    break;
+                }
+                position += HEADER_SIZE + length;
+                count++;
+            }
+        }
+        pending = count;
+    }
+    
+    private void commit(long segmentId, int position) {
+        checkpoint.putLong(0, segmentId);
+        checkpoint.putLong(8, position);
+    }
+    
+    private static String segmentFileName(long id) {
+        return String.format("%020d%s", id, SEGMENT_SUFFIX);
+    }
+    
+    /**
+     * 单个段文件
+     */
+    private record Segment(long id, Path file, FileChannel channel, MappedByteBuffer buffer) {
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close spill segment {}", file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.iothub.message.application.utils.queue;
+
+/**
+ * 环形队列为空（或已满）时等待方的等待策略
+ */
+public enum WaitStrategy {
+    
+    // 忙等：延迟最低，空闲时持续占用一个 CPU
+    SPIN {
+        @Override
+        public void idle(int attempts) {
+            Thread.onSpinWait();
+        }
+    },
+    
+    // 先自旋再让出 CPU：延迟较低，空闲时仍有一定 CPU 消耗
+    YIELD {
+        @Override
+        public void idle(int attempts) {
+            if (attempts < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+    
+    // 先自旋再挂起，直到另一方写入（或取出）后唤醒：空闲时不占用 CPU，适合边端设备
+    PARK {
+        @Override
+        public void idle(int attempts) {
+            Thread.onSpinWait();
+        }
+        
+        @Override
+        public boolean parks(int attempts) {
+            return attempts >= SPIN_TRIES;
+        }
+    };
+    
+    private static final int SPIN_TRIES = 100;          // 进入让出/挂起前的自旋次数
+    
+    /**
+     * 执行一次不挂起的等待
+     *
+     * @param attempts 本次等待前已连续重试的次数
+     */
+    public abstract void idle(int attempts);
+    
+    /**
+     * 连续重试 attempts 次之后是否改为挂起，由 {@link QueueSignal} 唤醒
+     *
+     * @param attempts 已连续重试的次数
+     * @return true 表示挂起等待
+     */
+    public boolean parks(int attempts) {
+        return false;
+    }
+}
@@ -0,0 +1,306 @@
+package com.iothub.message.application.utils.timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 周期任务的哈希时间轮
+ * 每个键按固定周期触发，触发时刻的相位由键的哈希决定：相位 = hash(key) mod 周期，
+ * 同一个键每次都在周期内的同一位置触发，大量键均匀分布在整个周期内，而不是在同一时刻集中触发。
+ * tick 按纪元时间编号（纪元毫秒 / tickMillis），相位在重启、暂停恢复后保持不变。
+ * 每个槽位是一个双向链表，键到节点另有索引：安排、取消、重新安排都是 O(1)，每个键只占一个节点，不需要各自的 ScheduledFuture。
+ * 周期超过一圈的节点按截止 tick 留在槽位中，到期的那一圈才触发。
+ * 由一个工作线程按 tick 推进，工作线程在调用 start 后才启动；到期的键在锁外依次交给 action 处理，action 应当尽快返回（如提交到线程池）。
+ *
+ * @param <K> 键类型，需正确实现 hashCode 和 equals
+ */
+@Slf4j
+public class HashedTimingWheel<K> implements Closeable {
+    
+    private final String name;
+    private final long tickMillis;
+    private final int mask;
+    private final Node<K>[] buckets;
+    private final Map<K, Node<K>> nodes = new HashMap<>();
+    private final Consumer<K> action;
+    private final Object lock = new Object();
+    private long currentTick;          // 已经处理过的最后一个 tick
+    private volatile boolean running;
+    private boolean closed;
+    private Thread worker;
+    private final LongAdder firedCount = new LongAdder();
+    
+    /**
+     * 创建时间轮，调用 start 后由工作线程按时间推进
+     *
+     * @param name          工作线程名称
+     * @param tickMillis    每个 tick 的时长（毫秒），即触发时刻的精度
+     * @param ticksPerWheel 槽位数量，向上取整为 2 的幂；不小于常用周期的 tick 数时每次经过槽位的节点都已到期
+     * @param action        键到期时的处理
+     */
+    public HashedTimingWheel(String name, long tickMillis, int ticksPerWheel, Consumer<K> action) {
+        this(name, tickMillis, ticksPerWheel, action, System.currentTimeMillis() / Math.max(1, tickMillis));
+    }
+    
+    /**
+     * 从指定 tick 开始，不调用 start 时由调用方通过 advanceTo 推进，用于测试
+     */
+    HashedTimingWheel(long tickMillis, int ticksPerWheel, Consumer<K> action, long startTick) {
+        this("timing-wheel", tickMillis, ticksPerWheel, action, startTick);
+    }
+    
+    private HashedTimingWheel(String name, long tickMillis, int ticksPerWheel, Consumer<K> action, long startTick) {
+        if (tickMillis <= 0 || ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("Invalid timing wheel: tick " + tickMillis + "ms, " + ticksPerWheel + " ticks");
+        }
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.name = name;
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.buckets = newBuckets(size);
+        this.action = action;
+        this.currentTick = startTick;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <K> Node<K>[] newBuckets(int size) {
+        return (Node<K>[]) new Node<?>[size];
+    }
+    
+    /**
+     * 启动工作线程，按纪元时间推进；重复调用或关闭后调用时忽略
+     * 创建到启动之间经过的 tick 不补触发，已安排的键从当前 tick 起按各自的相位重新计算下一次触发
+     */
+    public synchronized void start() {
+        if (worker != null || closed) {
+            return;
+        }
+        synchronized (lock) {
+            long now = System.currentTimeMillis() / tickMillis;
+            if (now > currentTick) {
+                currentTick = now;
+                for (Node<K> node : nodes.values()) {
+                    unlink(node);
+                    node.deadline = nextDeadline(phaseOf(node.key, node.periodTicks), node.periodTicks, currentTick);
+                    link(node);
+                }
+            }
+        }
+        running = true;
+        worker = Thread.ofPlatform().daemon().name(name).start(this::run);
+    }
+    
+    /**
+     * 按周期安排键；键已按相同周期安排时保持原来的触发时刻，周期不同时按新周期重新安排
+     *
+     * @param key          键
+     * @param periodMillis 周期（毫秒），按 tick 向上取整
+     * @return true 如果新安排或重新安排了该键
+     */
+    public boolean schedule(K key, long periodMillis) {
+        long periodTicks = Math.max(1, (periodMillis + tickMillis - 1) / tickMillis);
+        synchronized (lock) {
+            Node<K> node = nodes.get(key);
+            if (node != null) {
+                if (node.periodTicks == periodTicks) {
+                    return false;
+                }
+                unlink(node);
+            } else {
+                node = new Node<>(key);
+                nodes.put(key, node);
+            }
+            node.periodTicks = periodTicks;
+            node.deadline = nextDeadline(phaseOf(key, periodTicks), periodTicks, currentTick);
+            link(node);
+            return true;
+        }
+    }
+    
+    /**
+     * 取消键的安排
+     *
+     * @return true 如果该键已安排
+     */
+    public boolean cancel(K key) {
+        synchronized (lock) {
+            Node<K> node = nodes.remove(key);
+            if (node == null) {
+                return false;
+            }
+            unlink(node);
+            return true;
+        }
+    }
+    
+    /**
+     * 取消所有键的安排
+     */
+    public void clear() {
+        synchronized (lock) {
+            nodes.clear();
+            Arrays.fill(buckets, null);
+        }
+    }
+    
+    /**
+     * 键是否已安排
+     */
+    public boolean isScheduled(K key) {
+        synchronized (lock) {
+            return nodes.containsKey(key);
+        }
+    }
+    
+    /**
+     * 已安排的键数量
+     */
+    public int size() {
+        synchronized (lock) {
+            return nodes.size();
+        }
+    }
+    
+    /**
+     * 累计触发次数
+     */
+    public long firedCount() {
+        return firedCount.sum();
+    }
+    
+    /**
+     * 键在周期内的相位（tick），由键的哈希决定，对同一个键和周期始终相同
+     */
+    static long phaseOf(Object key, long periodTicks) {
+        // 混合哈希的高低位，连续编号的设备编码也能均匀分布
+        long h = key.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return Math.floorMod(h, periodTicks);
+    }
+    
+    /**
+     * 当前 tick 之后第一个落在该相位上的 tick
+     */
+    private static long nextDeadline(long phase, long periodTicks, long currentTick) {
+        long next = currentTick + 1;
+        return next + Math.floorMod(phase - next, periodTicks);
+    }
+    
+    /**
+     * 依次处理到指定 tick 为止的所有 tick，触发到期的键
+     *
+     * @param tick 目标 tick（纪元毫秒 / tickMillis）
+     */
+    void advanceTo(long tick) {
+        while (true) {
+            List<K> due = new ArrayList<>();
+            synchronized (lock) {
+                if (currentTick >= tick) {
+                    return;
+                }
+                long processing = ++currentTick;
+                Node<K> node = buckets[(int) (processing & mask)];
+                while (node != null) {
+                    Node<K> next = node.next;
+                    if (node.deadline <= processing) {
+                        due.add(node.key);
+                        // 周期性重新安排到同一相位；落后超过一个周期时只触发一次
+                        unlink(node);
+                        node.deadline += node.periodTicks * ((processing - node.deadline) / node.periodTicks + 1);
+                        link(node);
+                    }
+                    node = next;
+                }
+            }
+            for (K key : due) {
+                try {
+                    action.accept(key);
+                } catch (RuntimeException e) {
+                    log.error("Timing wheel action failed for {}", key, e);
+                }
+            }
+            firedCount.add(due.size());
+        }
+    }
+    
+    private void link(Node<K> node) {
+        int index = (int) (node.deadline & mask);
+        Node<K> head = buckets[index];
+        node.prev = null;
+        node.next = head;
+        if (head != null) {
+            head.prev = node;
+        }
+        buckets[index] = node;
+    }
+    
+    private void unlink(Node<K> node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            buckets[(int) (node.deadline & mask)] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+    
+    private void run() {
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        long startNanos = System.nanoTime();
+        long startTick;
+        synchronized (lock) {
+            startTick = currentTick;
+        }
+        while (running) {
+            long target = startTick + (System.nanoTime() - startNanos) / tickNanos;
+            advanceTo(target);
+            long wakeAt = startNanos + (target - startTick + 1) * tickNanos;
+            LockSupport.parkNanos(this, wakeAt - System.nanoTime());
+        }
+    }
+    
+    /**
+     * 停止工作线程，已安排的键不再触发
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        running = false;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private static final class Node<K> {
+        private final K key;
+        private long periodTicks;
+        private long deadline;
+        private Node<K> prev;
+        private Node<K> next;
+        
+        private Node(K key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.iothub.message.application.utils.topic;
+
+/**
+ * 主题路由结果
+ *
+ * @param target    匹配到的模式所注册的目标
+ * @param pattern   匹配到的主题模式
+ * @param variables 命名层级绑定的值
+ * @param <T>       目标类型
+ */
+public record TopicMatch<T>(T target, String pattern, TopicVariables variables) {
+}
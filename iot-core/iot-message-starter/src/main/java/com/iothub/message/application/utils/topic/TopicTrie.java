@@ -0,0 +1,198 @@
+package com.iothub.message.application.utils.topic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基于 MQTT 通配符的主题字典树
+ * 模式按层级（以 / 分隔）注册，支持：
+ * <ul>
+ *     <li>普通层级：精确匹配</li>
+ *     <li>{@code +}：匹配任意单个层级</li>
+ *     <li>{@code {name}}：同 {@code +}，并把该层级的值绑定到 name</li>
+ *     <li>{@code #}：只能出现在最后一级，匹配剩余的任意层级（包括零个）</li>
+ * </ul>
+ * 匹配时按层级逐级下降，精确层级优先于单层通配，单层通配优先于多层通配，耗时与主题层级数成正比，
+ * 匹配过程不切分字符串；只有命中带命名层级的模式时才截取绑定值。以 $ 开头的主题不会被首层通配符匹配。
+ * 注册需在路由之前完成，注册完成后可被多线程并发读取。
+ *
+ * @param <T> 路由目标类型
+ */
+public class TopicTrie<T> {
+    
+    private final Node<T> root = new Node<>();
+    private int size;
+    
+    /**
+     * 注册主题模式
+     *
+     * @param pattern 主题模式，如 /topic/down/{deviceCode}、/topic/up/#
+     * @param target  路由目标
+     * @throws IllegalArgumentException 模式不合法或已被注册时抛出
+     */
+    public void register(String pattern, T target) {
+        String[] levels = pattern.split("/", -1);
+        List<Integer> variableLevels = new ArrayList<>();
+        List<String> variableNames = new ArrayList<>();
+        
+        Node<T> node = root;
+        for (int i = 0; i < levels.length; i++) {
+            String level = levels[i];
+            if (level.equals("#")) {
+                if (i != levels.length - 1) {
+                    throw new IllegalArgumentException("'#' must be the last level: " + pattern);
+                }
+                node = node.multi == null ? (node.multi = new Node<>()) : node.multi;
+            } else if (level.equals("+") || isVariable(level)) {
+                if (isVariable(level)) {
+                    variableLevels.add(i);
+                    variableNames.add(level.substring(1, level.length() - 1));
+                }
+                node = node.single == null ? (node.single = new Node<>()) : node.single;
+            } else if (level.contains("+") || level.contains("#")) {
+                throw new IllegalArgumentException("Wildcard must occupy an entire level: " + pattern);
+            } else {
+                node = node.literal(level);
+            }
+        }
+        if (node.match != null) {
+            throw new IllegalArgumentException("Topic pattern already registered: " + pattern);
+        }
+        node.match = new Terminal<>(target, pattern,
+                variableLevels.stream().mapToInt(Integer::intValue).toArray(), variableNames.toArray(new String[0]));
+        size++;
+    }
+    
+    /**
+     * 路由主题
+     *
+     * @param topic 实际收到消息的主题
+     * @return 路由结果，没有匹配的模式时返回 null
+     */
+    public TopicMatch<T> route(String topic) {
+        Terminal<T> terminal = match(root, topic, 0, 0);
+        return terminal == null ? null : terminal.toMatch(topic);
+    }
+    
+    /**
+     * 已注册的模式数量
+     */
+    public int size() {
+        return size;
+    }
+    
+    private Terminal<T> match(Node<T> node, String topic, int start, int depth) {
+        int length = topic.length();
+        if (start > length) {
+            // 所有层级已匹配完，# 也可以匹配零个层级
+            if (node.match != null) {
+                return node.match;
+            }
+            return node.multi != null ? node.multi.match : null;
+        }
+        int end = topic.indexOf('/', start);
+        if (end < 0) {
+            end = length;
+        }
+        
+        Node<T> literal = node.findLiteral(topic, start, end);
+        if (literal != null) {
+            Terminal<T> terminal = match(literal, topic, end + 1, depth + 1);
+            if (terminal != null) {
+                return terminal;
+            }
+        }
+        boolean system = depth == 0 && length > 0 && topic.charAt(0) == '$';
+        if (node.single != null && !system) {
+            Terminal<T> terminal = match(node.single, topic, end + 1, depth + 1);
+            if (terminal != null) {
+                return terminal;
+            }
+        }
+        if (node.multi != null && !system) {
+            return node.multi.match;
+        }
+        return null;
+    }
+    
+    private static boolean isVariable(String level) {
+        return level.length() > 2 && level.charAt(0) == '{' && level.charAt(level.length() - 1) == '}';
+    }
+    
+    /**
+     * 字典树节点，精确层级的子节点用数组保存，按区间比较，避免为每个层级创建子串
+     */
+    private static final class Node<T> {
+        private String[] literals = new String[0];
+        private Node<T>[] children = newArray(0);
+        private Node<T> single;     // + 或 {name}
+        private Node<T> multi;      // #
+        private Terminal<T> match;  // 在此节点结束的模式
+        
+        private Node<T> literal(String level) {
+            for (int i = 0; i < literals.length; i++) {
+                if (literals[i].equals(level)) {
+                    return children[i];
+                }
+            }
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            literals[literals.length - 1] = level;
+            return children[children.length - 1] = new Node<>();
+        }
+        
+        private Node<T> findLiteral(String topic, int start, int end) {
+            int length = end - start;
+            for (int i = 0; i < literals.length; i++) {
+                String literal = literals[i];
+                if (literal.length() == length && topic.regionMatches(start, literal, 0, length)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+        
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newArray(int size) {
+            return (Node<T>[]) new Node<?>[size];
+        }
+    }
+    
+    /**
+     * 注册的模式，没有命名层级时复用同一个路由结果
+     */
+    private static final class Terminal<T> {
+        private final T target;
+        private final String pattern;
+        private final int[] variableLevels;
+        private final String[] variableNames;
+        private final TopicMatch<T> constantMatch;
+        
+        private Terminal(T target, String pattern, int[] variableLevels, String[] variableNames) {
+            this.target = target;
+            this.pattern = pattern;
+            this.variableLevels = variableLevels;
+            this.variableNames = variableNames;
+            this.constantMatch = variableLevels.length == 0 ? new TopicMatch<>(target, pattern, TopicVariables.EMPTY) : null;
+        }
+        
+        private TopicMatch<T> toMatch(String topic) {
+            if (constantMatch != null) {
+                return constantMatch;
+            }
+            String[] values = new String[variableLevels.length];
+            int level = 0;
+            int start = 0;
+            for (int i = 0; i < variableLevels.length; i++) {
+                while (level < variableLevels[i]) {
+                    start = topic.indexOf('/', start) + 1;
+                    level++;
+                }
+                int end = topic.indexOf('/', start);
+                values[i] = topic.substring(start, end < 0 ? topic.length() : end);
+            }
+            return new TopicMatch<>(target, pattern, new TopicVariables(variableNames, values));
+        }
+    }
+}
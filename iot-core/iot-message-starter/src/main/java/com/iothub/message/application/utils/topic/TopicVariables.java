@@ -0,0 +1,57 @@
+package com.iothub.message.application.utils.topic;
+
+import java.util.Arrays;
+
+/**
+ * 主题模式中命名层级（如 {deviceCode}）绑定到的值
+ */
+public final class TopicVariables {
+    
+    public static final TopicVariables EMPTY = new TopicVariables(new String[0], new String[0]);
+    
+    private final String[] names;
+    private final String[] values;
+    
+    TopicVariables(String[] names, String[] values) {
+        this.names = names;
+        this.values = values;
+    }
+    
+    /**
+     * 获取命名层级绑定的值
+     *
+     * @param name 层级名称，不含花括号
+     * @return 绑定的值，模式中没有该名称时返回 null
+     */
+    public String get(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+    
+    public boolean isEmpty() {
+        return names.length == 0;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < names.length; i++) {
+            builder.append(i == 0 ? "" : ", ").append(names[i]).append('=').append(values[i]);
+        }
+        return builder.append('}').toString();
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TopicVariables other && Arrays.equals(names, other.names) && Arrays.equals(values, other.values);
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(names) + Arrays.hashCode(values);
+    }
+}
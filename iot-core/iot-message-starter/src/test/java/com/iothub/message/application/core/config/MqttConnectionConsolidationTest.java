@@ -0,0 +1,195 @@
+package com.iothub.message.application.core.config;
+
+import com.iothub.message.application.core.handler.mqtt.MqttConnectionManager;
+import com.iothub.message.application.core.handler.mqtt.PublisherPool;
+import com.iothub.message.application.core.listener.MqttConnectionEvent;
+import com.iothub.message.application.core.listener.MqttReadinessEvent;
+import com.iothub.message.application.support.MqttBrokerStandIn;
+import com.iothub.message.application.utils.LaunchStatusMonitor;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.integration.config.EnableIntegration;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class MqttConnectionConsolidationTest {
+    
+    private MqttBrokerStandIn broker;
+    private AnnotationConfigApplicationContext context;
+    
+    @Before
+    public void startBroker() throws IOException {
+        broker = new MqttBrokerStandIn();
+    }
+    
+    @After
+    public void stopBroker() throws IOException {
+        if (context != null) {
+            context.getBeansOfType(MqttConnectionManager.class).values()
+                    .forEach(manager -> manager.setDisconnectCompletionTimeout(100));
+            context.close();
+        }
+        broker.close();
+    }
+    
+    @Test
+    public void testInboundAndOutboundShareOneConnection() throws Exception {
+        context = startContext(false);
+        
+        // 首次连接在后台发起，容器启动后等待连接建立
+        awaitTrue(() -> context.getBean(LaunchStatusMonitor.class).isMqttClientAlive());
+        List<String> clientIds = broker.clientIds();
+        assertEquals(1, clientIds.size());
+        assertTrue(clientIds.get(0).startsWith("IotEdge-edge-node-"));
+        // 首次连接在后台完成，@EventListener 监听方同样收到就绪事件
+        ReadinessRecorder recorder = context.getBean(ReadinessRecorder.class);
+        awaitTrue(() -> recorder.states.contains(Boolean.TRUE));
+        assertFalse(context.containsBean("mqttInboundClientManager"));
+    }
+    
+    @Test
+    public void testSplitConnectionsOnRequest() throws Exception {
+        context = startContext(true);
+        
+        awaitTrue(() -> broker.clientIds().size() == 2);
+        List<String> clientIds = broker.clientIds();
+        assertEquals(2, clientIds.size());
+        assertTrue(clientIds.stream().anyMatch(clientId -> clientId.startsWith("IotIn-edge-node-")));
+        assertTrue(clientIds.stream().anyMatch(clientId -> clientId.startsWith("IotOut-edge-node-")));
+        assertEquals("inbound", context.getBean("mqttInboundClientManager", MqttConnectionManager.class).getName());
+        assertEquals("outbound", context.getBean("mqttv5ClientManager", MqttConnectionManager.class).getName());
+        awaitTrue(() -> context.getBean(LaunchStatusMonitor.class).isMqttClientAlive());
+    }
+    
+    @Test
+    public void testPublishesConnectionStateEvents() throws Exception {
+        List<MqttConnectionEvent> events = new CopyOnWriteArrayList<>();
+        LaunchStatusMonitor monitor = new LaunchStatusMonitor(null, new MqttConfigProperties());
+        MqttConnectionOptions options = new MqttConnectionOptions();
+        options.setServerURIs(new String[]{broker.url()});
+        options.setCleanStart(true);
+        MqttConfigProperties.Reconnect reconnect = new MqttConfigProperties.Reconnect();
+        reconnect.setInitialDelay(100);
+        MqttConnectionManager manager = new MqttConnectionManager("shared", options, "events-test", reconnect);
+        manager.setCompletionTimeout(2000);
+        manager.setDisconnectCompletionTimeout(100);
+        manager.setApplicationEventPublisher(event -> {
+            events.add((MqttConnectionEvent) event);
+            monitor.onApplicationEvent((MqttConnectionEvent) event);
+        });
+        manager.start();
+        
+        MqttConfigProperties.Publish publish = new MqttConfigProperties.Publish();
+        publish.setPoolSize(2);
+        publish.setShutdownTimeout(100);
+        PublisherPool pool = new PublisherPool(manager, publish);
+        try {
+            // 两个连接各自在后台完成首次连接，事件的先后不确定
+            awaitTrue(() -> events.size() == 2);
+            assertTrue(events.stream().allMatch(event -> event.getState() == MqttConnectionEvent.State.CONNECTED && !event.isReconnect()));
+            assertEquals(Set.of("shared", "shared-pub1"),
+                    events.stream().map(MqttConnectionEvent::getConnection).collect(Collectors.toSet()));
+            assertTrue(events.stream().allMatch(event -> event.isPublisherLane() == event.getConnection().equals("shared-pub1")));
+            assertTrue(manager.isConnected());
+            assertTrue(monitor.isMqttClientAlive());
+            
+            // 发布连接池中的连接断开不影响启动状态
+            broker.drop("events-test-pub1");
+            awaitTrue(() -> events.size() >= 3);
+            assertEquals("shared-pub1", events.get(2).getConnection());
+            assertEquals(MqttConnectionEvent.State.DISCONNECTED, events.get(2).getState());
+            assertTrue(monitor.isMqttClientAlive());
+            
+            broker.drop("events-test");
+            awaitTrue(() -> !monitor.isMqttClientAlive());
+            assertFalse(manager.isConnected());
+            
+            // 重连成功后发布 CONNECTED 事件
+            awaitTrue(monitor::isMqttClientAlive);
+            assertTrue(events.stream().anyMatch(event -> event.getConnection().equals("shared") && event.isReconnect()));
+        } finally {
+            pool.stop();
+            manager.stop();
+        }
+    }
+    
+    @Test(timeout = 10_000)
+    public void testStartDoesNotWaitForFirstConnect() throws Exception {
+        // 接受 TCP 连接但从不回复 CONNACK 的代理
+        try (ServerSocket silent = new ServerSocket(0)) {
+            MqttConnectionOptions options = new MqttConnectionOptions();
+            options.setServerURIs(new String[]{"tcp://127.0.0.1:" + silent.getLocalPort()});
+            options.setAutomaticReconnect(true);
+            MqttConnectionManager manager = new MqttConnectionManager("silent", options, "silent-test");
+            manager.setCompletionTimeout(60_000);
+            manager.setDisconnectCompletionTimeout(100);
+            try {
+                manager.start();
+                assertNotNull(manager.getClient());
+                assertFalse(manager.isConnected());
+                // 共用的连接选项保持不变，只有管理器自己的副本关闭了自动重连
+                assertTrue(options.isAutomaticReconnect());
+                assertFalse(manager.getConnectionInfo().isAutomaticReconnect());
+            } finally {
+                manager.stop();
+            }
+        }
+    }
+    
+    private AnnotationConfigApplicationContext startContext(boolean split) {
+        MqttConfigProperties properties = new MqttConfigProperties();
+        properties.setBrokerUrl(broker.url());
+        properties.setClientId("edge-node");
+        properties.setUsername("test");
+        properties.setPassword("test");
+        properties.setConnectionTimeout("5s");
+        properties.setQos(1);
+        properties.setSubscriptions(List.of("/topic/down/#"));
+        properties.setSplitConnections(split);
+        
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test",
+                Map.of("spring.mqtt.split-connections", String.valueOf(split))));
+        context.registerBean(MqttConfigProperties.class, () -> properties);
+        context.register(IntegrationConfig.class, MqttAdapterConfig.class, LaunchStatusMonitor.class, ReadinessRecorder.class);
+        context.refresh();
+        return context;
+    }
+    
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue("condition not met in time", System.nanoTime() < deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+    
+    @EnableIntegration
+    static class IntegrationConfig {
+    }
+    
+    static class ReadinessRecorder {
+        
+        private final List<Boolean> states = new CopyOnWriteArrayList<>();
+        
+        @EventListener
+        public void onReadinessChanged(MqttReadinessEvent event) {
+            states.add(event.isReady());
+        }
+    }
+}
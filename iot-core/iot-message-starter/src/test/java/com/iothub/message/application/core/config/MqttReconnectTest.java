@@ -0,0 +1,178 @@
+package com.iothub.message.application.core.config;
+
+import com.iothub.message.application.core.handler.mqtt.MqttConnectionManager;
+import com.iothub.message.application.core.listener.MqttConnectionEvent;
+import com.iothub.message.application.support.MqttBrokerStandIn;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.integration.config.EnableIntegration;
+import org.springframework.messaging.SubscribableChannel;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class MqttReconnectTest {
+    
+    private MqttBrokerStandIn broker;
+    private AnnotationConfigApplicationContext context;
+    private final List<MqttConnectionManager> managers = new ArrayList<>();
+    
+    @Before
+    public void startBroker() throws IOException {
+        broker = new MqttBrokerStandIn();
+    }
+    
+    @After
+    public void stopBroker() throws IOException {
+        if (context != null) {
+            context.getBeansOfType(MqttConnectionManager.class).values()
+                    .forEach(manager -> manager.setDisconnectCompletionTimeout(100));
+            context.close();
+        }
+        managers.forEach(MqttConnectionManager::stop);
+        broker.close();
+    }
+    
+    @Test
+    public void testRecoversAndResubscribesAfterBrokerRestart() throws Exception {
+        List<MqttConnectionEvent> events = new CopyOnWriteArrayList<>();
+        List<String> received = new CopyOnWriteArrayList<>();
+        context = startContext(events);
+        context.getBean("mqttInputChannel", SubscribableChannel.class)
+                .subscribe(message -> received.add(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)));
+        MqttConnectionManager manager = context.getBean("mqttv5ClientManager", MqttConnectionManager.class);
+        awaitTrue(manager::isConnected);
+        awaitDelivered(received, "before");
+        
+        // 代理停机 1 秒后在原端口重启，会话和订阅全部丢失
+        broker.pause();
+        awaitTrue(() -> !manager.isConnected());
+        TimeUnit.SECONDS.sleep(1);
+        broker.resume();
+        awaitTrue(manager::isConnected);
+        
+        // 重连后重新订阅，下行消息恢复投递
+        awaitDelivered(received, "after");
+        awaitEvents(events, "shared", 3);
+        assertRecoveredOnce(events, "shared");
+        assertEquals(0, manager.reconnectAttempts());
+    }
+    
+    @Test
+    public void testFleetRecoversAfterBrokerRestart() throws Exception {
+        int fleet = 16;
+        List<MqttConnectionEvent> events = new CopyOnWriteArrayList<>();
+        MqttConfigProperties.Reconnect reconnect = new MqttConfigProperties.Reconnect();
+        reconnect.setInitialDelay(200);
+        reconnect.setMaxDelay(1000);
+        for (int i = 0; i < fleet; i++) {
+            MqttConnectionOptions options = new MqttConnectionOptions();
+            options.setServerURIs(new String[]{broker.url()});
+            options.setCleanStart(true);
+            MqttConnectionManager manager = new MqttConnectionManager("edge-" + i, options, "fleet-" + i, reconnect);
+            manager.setDisconnectCompletionTimeout(100);
+            manager.setApplicationEventPublisher(event -> events.add((MqttConnectionEvent) event));
+            manager.start();
+            managers.add(manager);
+        }
+        awaitTrue(() -> managers.stream().allMatch(MqttConnectionManager::isConnected));
+        
+        broker.pause();
+        awaitTrue(() -> managers.stream().noneMatch(MqttConnectionManager::isConnected));
+        TimeUnit.MILLISECONDS.sleep(500);
+        broker.resume();
+        awaitTrue(() -> managers.stream().allMatch(MqttConnectionManager::isConnected));
+        
+        // 每个节点各自经历一次首次连接、断开、重连，重连次数随重连成功事件发出后清零；重连时刻的分布由 ReconnectBackoffTest 覆盖
+        for (MqttConnectionManager manager : managers) {
+            awaitEvents(events, manager.getName(), 3);
+            assertRecoveredOnce(events, manager.getName());
+            assertEquals(0, manager.reconnectAttempts());
+        }
+    }
+    
+    /**
+     * 指定连接的事件依次为首次连接、断开、经过至少一次重连后恢复
+     */
+    private static void assertRecoveredOnce(List<MqttConnectionEvent> events, String connection) {
+        List<MqttConnectionEvent> own = events.stream().filter(event -> event.getConnection().equals(connection)).toList();
+        assertEquals(List.of(MqttConnectionEvent.State.CONNECTED, MqttConnectionEvent.State.DISCONNECTED, MqttConnectionEvent.State.CONNECTED),
+                own.stream().map(MqttConnectionEvent::getState).toList());
+        assertFalse(own.get(0).isReconnect());
+        assertEquals(0, own.get(0).getAttempts());
+        assertTrue(own.get(2).isReconnect());
+        assertTrue(own.get(2).getAttempts() >= 1);
+    }
+    
+    /**
+     * 连接状态先于事件更新，断言事件序列前等待事件发出
+     */
+    private static void awaitEvents(List<MqttConnectionEvent> events, String connection, int count) throws InterruptedException {
+        awaitTrue(() -> events.stream().filter(event -> event.getConnection().equals(connection)).count() >= count);
+    }
+    
+    private void awaitDelivered(List<String> received, String payload) throws Exception {
+        MqttAsyncClient cloud = broker.connect("cloud-" + payload, (topic, message) -> {
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!received.contains(payload)) {
+            assertTrue("message not delivered in time", System.nanoTime() < deadline);
+            cloud.publish("/topic/down/device-1", new MqttMessage(payload.getBytes(StandardCharsets.UTF_8))).waitForCompletion(5000);
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+    
+    private AnnotationConfigApplicationContext startContext(List<MqttConnectionEvent> events) {
+        MqttConfigProperties properties = new MqttConfigProperties();
+        properties.setBrokerUrl(broker.url());
+        properties.setClientId("edge-node");
+        properties.setUsername("test");
+        properties.setPassword("test");
+        properties.setConnectionTimeout("5s");
+        properties.setQos(1);
+        properties.setSubscriptions(List.of("/topic/down/#"));
+        properties.getReconnect().setInitialDelay(100);
+        properties.getReconnect().setMaxDelay(1000);
+        
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test",
+                Map.of("spring.mqtt.split-connections", "false")));
+        context.addApplicationListener((ApplicationListener<ApplicationEvent>) event -> {
+            if (event instanceof MqttConnectionEvent connectionEvent) {
+                events.add(connectionEvent);
+            }
+        });
+        context.registerBean(MqttConfigProperties.class, () -> properties);
+        context.register(IntegrationConfig.class, MqttAdapterConfig.class);
+        context.refresh();
+        return context;
+    }
+    
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue("condition not met in time", System.nanoTime() < deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+    
+    @EnableIntegration
+    static class IntegrationConfig {
+    }
+}
@@ -0,0 +1,132 @@
+package com.iothub.message.application.core.config;
+
+import com.iothub.message.application.support.MqttBrokerStandIn;
+import com.iothub.message.application.core.handler.mqtt.MqttConnectionManager;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.MqttSubscription;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.integration.config.EnableIntegration;
+import org.springframework.messaging.SubscribableChannel;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class NoLocalSubscriptionTest {
+    
+    private MqttBrokerStandIn broker;
+    private AnnotationConfigApplicationContext context;
+    
+    @Before
+    public void startBroker() throws IOException {
+        broker = new MqttBrokerStandIn();
+    }
+    
+    @After
+    public void stopBroker() throws IOException {
+        if (context != null) {
+            context.getBeansOfType(MqttConnectionManager.class).values()
+                    .forEach(manager -> manager.setDisconnectCompletionTimeout(100));
+            context.close();
+        }
+        broker.close();
+    }
+    
+    @Test
+    public void testSharedSubscriptionsNeverUseNoLocal() {
+        MqttConfigProperties properties = new MqttConfigProperties();
+        properties.setSubscriptions(List.of("/topic/down/#", "/topic/up/#"));
+        properties.getShared().setSharedTopics(List.of("/topic/up/#"));
+        
+        MqttSubscription[] subscriptions = MqttAdapterConfig.buildSubscriptions(properties);
+        assertEquals("/topic/down/#", subscriptions[0].getTopic());
+        assertTrue(subscriptions[0].isNoLocal());
+        assertTrue(subscriptions[0].isRetainAsPublished());
+        assertEquals("$share/iot-connector//topic/up/#", subscriptions[1].getTopic());
+        assertFalse(subscriptions[1].isNoLocal());
+    }
+    
+    @Test
+    public void testOwnMessagesStayOnBroker() throws Exception {
+        assertEquals(0, echoesReceived(true));
+    }
+    
+    @Test
+    public void testOwnMessagesEchoWithoutNoLocal() throws Exception {
+        assertEquals(1, echoesReceived(false));
+    }
+    
+    @Test
+    public void testInboundAdapterReceivesOnSharedConnection() throws Exception {
+        MqttConfigProperties properties = new MqttConfigProperties();
+        properties.setBrokerUrl(broker.url());
+        properties.setClientId("edge-node");
+        properties.setUsername("test");
+        properties.setPassword("test");
+        properties.setConnectionTimeout("5s");
+        properties.setQos(1);
+        properties.setSubscriptions(List.of("/topic/down/#"));
+        
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test",
+                Map.of("spring.mqtt.split-connections", "false")));
+        context.registerBean(MqttConfigProperties.class, () -> properties);
+        context.register(IntegrationConfig.class, MqttAdapterConfig.class);
+        context.refresh();
+        List<String> received = new CopyOnWriteArrayList<>();
+        context.getBean("mqttInputChannel", SubscribableChannel.class)
+                .subscribe(message -> received.add(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)));
+        
+        // 适配器注册回调时共享连接可能已经建立，仍然要完成订阅并收到下行消息
+        MqttAsyncClient cloud = broker.connect("cloud", (topic, message) -> {
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!received.contains("down")) {
+            assertTrue("message not delivered in time", System.nanoTime() < deadline);
+            cloud.publish("/topic/down/dev-1", new MqttMessage("down".getBytes(StandardCharsets.UTF_8))).waitForCompletion(5000);
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+    
+    /**
+     * 同一个连接既订阅又发布（旧的 /topic/# 布局），统计本端收到的自己发出的消息数
+     */
+    private int echoesReceived(boolean noLocal) throws Exception {
+        MqttConfigProperties properties = new MqttConfigProperties();
+        properties.setSubscriptions(List.of("/topic/#"));
+        properties.setNoLocal(noLocal);
+        
+        AtomicInteger echoes = new AtomicInteger();
+        AtomicInteger peerReceived = new AtomicInteger();
+        MqttAsyncClient edge = broker.connect("edge", (topic, message) -> echoes.incrementAndGet());
+        edge.subscribe(MqttAdapterConfig.buildSubscriptions(properties)).waitForCompletion(5000);
+        MqttAsyncClient cloud = broker.connect("cloud", (topic, message) -> peerReceived.incrementAndGet());
+        cloud.subscribe(new MqttSubscription("/topic/up/#", 0)).waitForCompletion(5000);
+        
+        edge.publish(properties.getTopics().uplinkOf("dev-1"), "{}".getBytes(StandardCharsets.UTF_8), 0, false)
+                .waitForCompletion(5000);
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (peerReceived.get() == 0) {
+            assertTrue("message not delivered in time", System.nanoTime() < deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        TimeUnit.MILLISECONDS.sleep(100);
+        return echoes.get();
+    }
+    
+    @EnableIntegration
+    static class IntegrationConfig {
+    }
+}
@@ -0,0 +1,103 @@
+package com.iothub.message.application.core.config;
+
+import com.iothub.message.application.support.MqttBrokerStandIn;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SharedSubscriptionTest {
+    
+    private static final int INSTANCES = 3;
+    private static final int MESSAGES = 300;
+    
+    private MqttBrokerStandIn broker;
+    
+    @Before
+    public void startBroker() throws IOException {
+        broker = new MqttBrokerStandIn();
+    }
+    
+    @After
+    public void stopBroker() throws IOException {
+        broker.close();
+    }
+    
+    @Test
+    public void testResolvesSharedAndExclusiveTopics() {
+        MqttConfigProperties properties = new MqttConfigProperties();
+        properties.setSubscriptions(List.of("/topic/#", "/edge/heartbeat", "$share/other/raw"));
+        assertArrayEquals(new String[]{"/topic/#", "/edge/heartbeat", "$share/other/raw"}, properties.resolveSubscriptions());
+        
+        properties.getShared().setEnabled(true);
+        properties.getShared().setGroup("cloud");
+        properties.getShared().setExclusiveTopics(List.of("/edge/heartbeat"));
+        assertArrayEquals(new String[]{"$share/cloud//topic/#", "/edge/heartbeat", "$share/other/raw"},
+                properties.resolveSubscriptions());
+        
+        properties.getShared().setGroup("bad/group");
+        assertThrows(IllegalArgumentException.class, properties::resolveSubscriptions);
+    }
+    
+    @Test
+    public void testSharedSubscriptionSplitsLoadAcrossInstances() throws Exception {
+        MqttConfigProperties properties = new MqttConfigProperties();
+        properties.setSubscriptions(List.of("/topic/#", "/broadcast"));
+        properties.getShared().setEnabled(true);
+        properties.getShared().setGroup("iot-cloud-connector");
+        properties.getShared().setExclusiveTopics(List.of("/broadcast"));
+        
+        AtomicInteger[] sharedCounts = new AtomicInteger[INSTANCES];
+        AtomicInteger[] broadcastCounts = new AtomicInteger[INSTANCES];
+        for (int i = 0; i < INSTANCES; i++) {
+            sharedCounts[i] = new AtomicInteger();
+            broadcastCounts[i] = new AtomicInteger();
+            int instance = i;
+            MqttAsyncClient client = broker.connect("connector-" + i, (topic, message) ->
+                    (topic.equals("/broadcast") ? broadcastCounts[instance] : sharedCounts[instance]).incrementAndGet());
+            String[] filters = properties.resolveSubscriptions();
+            client.subscribe(filters, new int[]{0, 0}).waitForCompletion(5000);
+        }
+        
+        MqttAsyncClient publisher = broker.connect("publisher", (topic, message) -> {
+        });
+        for (int i = 0; i < MESSAGES; i++) {
+            publisher.publish("/topic/device-" + i, ("report-" + i).getBytes(StandardCharsets.UTF_8), 0, false)
+                    .waitForCompletion(5000);
+        }
+        publisher.publish("/broadcast", "config".getBytes(StandardCharsets.UTF_8), 0, false).waitForCompletion(5000);
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (total(sharedCounts) < MESSAGES || total(broadcastCounts) < INSTANCES) {
+            assertTrue("messages not delivered in time", System.nanoTime() < deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        TimeUnit.MILLISECONDS.sleep(100);
+        
+        // 共享主题：每条消息只投递一次，且分摊到所有实例
+        assertEquals(MESSAGES, total(sharedCounts));
+        for (AtomicInteger count : sharedCounts) {
+            assertEquals(MESSAGES / INSTANCES, count.get());
+        }
+        // 独占主题：每个实例都收到
+        for (AtomicInteger count : broadcastCounts) {
+            assertEquals(1, count.get());
+        }
+    }
+    
+    private static int total(AtomicInteger[] counts) {
+        int total = 0;
+        for (AtomicInteger count : counts) {
+            total += count.get();
+        }
+        return total;
+    }
+}
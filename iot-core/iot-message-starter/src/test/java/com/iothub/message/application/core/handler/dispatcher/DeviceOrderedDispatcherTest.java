@@ -0,0 +1,188 @@
+package com.iothub.message.application.core.handler.dispatcher;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class DeviceOrderedDispatcherTest {
+    
+    private DeviceOrderedDispatcher dispatcher;
+    
+    @After
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+    
+    private DeviceOrderedDispatcher createDispatcher(int laneCount, int processTimeout) {
+        return createDispatcher(laneCount, processTimeout, 1000);
+    }
+    
+    private DeviceOrderedDispatcher createDispatcher(int laneCount, int processTimeout, int laneQueueCapacity) {
+        IotMessageConfigProperties properties = new IotMessageConfigProperties();
+        properties.getDispatcher().setLaneCount(laneCount);
+        properties.getDispatcher().setProcessTimeout(processTimeout);
+        properties.getDispatcher().setLaneQueueCapacity(laneQueueCapacity);
+        properties.getDispatcher().setDispatchTimeout(200);
+        DeviceOrderedDispatcher dispatcher = new DeviceOrderedDispatcher(properties);
+        dispatcher.start();
+        return dispatcher;
+    }
+    
+    @Test
+    public void testKeepsPerDeviceOrder() throws InterruptedException {
+        dispatcher = createDispatcher(4, 5);
+        int devices = 20;
+        int messages = 100;
+        Map<String, List<Integer>> processed = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(devices * messages);
+        for (int i = 0; i < messages; i++) {
+            for (int d = 0; d < devices; d++) {
+                String device = "device-" + d;
+                int seq = i;
+                dispatcher.dispatch(device, MessageTypeEnum.EVENT, () -> {
+                    processed.computeIfAbsent(device, k -> new CopyOnWriteArrayList<>()).add(seq);
+                    done.countDown();
+                });
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < messages; i++) {
+            expected.add(i);
+        }
+        for (int d = 0; d < devices; d++) {
+            assertEquals(expected, processed.get("device-" + d));
+        }
+    }
+    
+    @Test
+    public void testSlowDeviceDoesNotBlockOtherLanes() throws InterruptedException {
+        dispatcher = createDispatcher(4, 5);
+        String slow = "device-0";
+        String fast = "device-1";
+        for (int i = 2; dispatcher.laneIndex(fast) == dispatcher.laneIndex(slow); i++) {
+            fast = "device-" + i;
+        }
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(1);
+        dispatcher.dispatch(slow, MessageTypeEnum.EVENT, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher.dispatch(fast, MessageTypeEnum.EVENT, fastDone::countDown);
+        
+        assertTrue(fastDone.await(2, TimeUnit.SECONDS));
+        release.countDown();
+    }
+    
+    @Test
+    public void testTimedOutTaskIsInterruptedBeforeNextTaskOfSameDevice() throws InterruptedException {
+        dispatcher = createDispatcher(1, 1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        AtomicLong firstEnded = new AtomicLong();
+        AtomicLong secondStarted = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(1);
+        
+        // 第一条消息超时后被中断，但忽略中断继续运行一段时间
+        dispatcher.dispatch("device-1", MessageTypeEnum.EVENT, () -> {
+            try {
+                TimeUnit.SECONDS.sleep(10);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+            firstEnded.set(System.nanoTime());
+        });
+        dispatcher.dispatch("device-1", MessageTypeEnum.EVENT, () -> {
+            secondStarted.set(System.nanoTime());
+            done.countDown();
+        });
+        
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.get());
+        assertTrue(firstEnded.get() > 0);
+        assertTrue(secondStarted.get() >= firstEnded.get());
+    }
+    
+    @Test(timeout = 20000)
+    public void testInterruptIgnoringTaskDoesNotStallOtherDevices() throws InterruptedException {
+        dispatcher = createDispatcher(2, 1, 2);
+        String stuck = "device-0";
+        String fast = "device-1";
+        for (int i = 2; dispatcher.laneIndex(fast) == dispatcher.laneIndex(stuck); i++) {
+            fast = "device-" + i;
+        }
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger interrupts = new AtomicInteger();
+        // 处理器忽略中断，超时后通道一直被占住
+        dispatcher.dispatch(stuck, MessageTypeEnum.EVENT, () -> {
+            while (true) {
+                try {
+                    release.await();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupts.incrementAndGet();
+                }
+            }
+        });
+        
+        // 填满卡住的通道：遥测立即丢弃，命令最多等待 dispatchTimeout 后丢弃，分发都不会一直阻塞
+        int dispatched = 0;
+        for (int i = 0; i < 5; i++) {
+            if (dispatcher.dispatch(stuck, MessageTypeEnum.PROPERTY, () -> { })) {
+                dispatched++;
+            }
+        }
+        assertTrue(dispatched <= 2);
+        assertEquals(5 - dispatched, dispatcher.droppedCount(MessageTypeEnum.PROPERTY));
+        assertFalse(dispatcher.dispatch(stuck, MessageTypeEnum.COMMAND_INVOCATION, () -> { }));
+        assertEquals(1, dispatcher.droppedCount(MessageTypeEnum.COMMAND_INVOCATION));
+        
+        // 其他设备照常分发和处理
+        CountDownLatch fastDone = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(dispatcher.dispatch(fast, MessageTypeEnum.COMMAND_INVOCATION, fastDone::countDown));
+        }
+        assertTrue(fastDone.await(2, TimeUnit.SECONDS));
+        
+        // 中断后仍未结束的通道标记为卡住，发往它的命令不再等待
+        while (dispatcher.blockedLaneCount() == 0) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertTrue(interrupts.get() > 0);
+        assertFalse(dispatcher.dispatch(stuck, MessageTypeEnum.COMMAND_INVOCATION, () -> { }));
+        assertEquals(2, dispatcher.droppedCount(MessageTypeEnum.COMMAND_INVOCATION));
+        
+        // 任务结束后通道恢复
+        CountDownLatch recovered = new CountDownLatch(1);
+        release.countDown();
+        while (!dispatcher.dispatch(stuck, MessageTypeEnum.COMMAND_INVOCATION, recovered::countDown)) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertTrue(recovered.await(2, TimeUnit.SECONDS));
+        assertEquals(0, dispatcher.blockedLaneCount());
+    }
+}
@@ -0,0 +1,94 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.domain.InboundHeaders;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.utils.queue.MqttMessageQueue;
+import org.junit.Test;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.acks.SimpleAcknowledgment;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class InboundAdmissionTest {
+    
+    private final List<String> acknowledged = new ArrayList<>();
+    
+    private MqttMessageQueue<Message<?>> createQueue(int capacity) {
+        IotMessageConfigProperties properties = new IotMessageConfigProperties();
+        properties.getQueue().setCapacity(capacity);
+        properties.getQueue().setBlockTimeout(60000); // 入站路径若仍阻塞，测试会超时
+        MqttMessageQueue<Message<?>> queue = new MqttMessageQueue<>(properties);
+        queue.setTypeResolver(message -> InboundHeaders.of(message).getMessageType());
+        return queue;
+    }
+    
+    private Message<?> message(String id, MessageTypeEnum messageType) {
+        return MessageBuilder.withPayload(id.getBytes())
+                .setHeader(InboundHeaders.MESSAGE_TYPE, messageType.getType())
+                .setHeader(InboundHeaders.MESSAGE_ID, id)
+                .setHeader(IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK, (SimpleAcknowledgment) () -> acknowledged.add(id))
+                .build();
+    }
+    
+    private static String idOf(Message<?> message) {
+        return message == null ? null : InboundHeaders.of(message).getMessageId();
+    }
+    
+    @Test(timeout = 10000)
+    public void testCommandOnFullQueueIsHeldUnacknowledgedWithoutBlocking() throws InterruptedException {
+        MqttMessageQueue<Message<?>> queue = createQueue(2);
+        InboundAdmission admission = new InboundAdmission(queue, new MessageDeduplicator(new IotMessageConfigProperties()));
+        
+        admission.admit(message("cmd1", MessageTypeEnum.COMMAND_INVOCATION));
+        admission.admit(message("cmd2", MessageTypeEnum.COMMAND_INVOCATION));
+        admission.admit(message("cmd3", MessageTypeEnum.COMMAND_INVOCATION));
+        admission.admit(message("cmd4", MessageTypeEnum.COMMAND_INVOCATION));
+        
+        // 放不下的命令不确认、不丢弃，回调线程立即返回
+        assertEquals(List.of("cmd1", "cmd2"), acknowledged);
+        assertEquals(2, admission.deferredSize());
+        assertEquals(0, queue.droppedCount(MessageTypeEnum.COMMAND_INVOCATION));
+        
+        // 队列仍满时不补入
+        assertEquals(0, admission.admitDeferred());
+        
+        assertEquals("cmd1", idOf(queue.poll(1, TimeUnit.MILLISECONDS)));
+        assertEquals(1, admission.admitDeferred());
+        assertEquals(List.of("cmd1", "cmd2", "cmd3"), acknowledged);
+        
+        // 等待列表非空时新到达的命令排到末尾，不越过先到达的命令
+        assertEquals("cmd2", idOf(queue.poll(1, TimeUnit.MILLISECONDS)));
+        admission.admit(message("cmd5", MessageTypeEnum.COMMAND_INVOCATION));
+        assertEquals(List.of("cmd1", "cmd2", "cmd3"), acknowledged);
+        assertEquals(1, admission.admitDeferred());
+        
+        assertEquals("cmd3", idOf(queue.poll(1, TimeUnit.MILLISECONDS)));
+        assertEquals("cmd4", idOf(queue.poll(1, TimeUnit.MILLISECONDS)));
+        assertEquals(1, admission.admitDeferred());
+        assertEquals("cmd5", idOf(queue.poll(1, TimeUnit.MILLISECONDS)));
+        assertEquals(List.of("cmd1", "cmd2", "cmd3", "cmd4", "cmd5"), acknowledged);
+        assertEquals(0, admission.deferredSize());
+    }
+    
+    @Test
+    public void testDroppedTelemetryIsStillAcknowledged() throws InterruptedException {
+        MqttMessageQueue<Message<?>> queue = createQueue(1);
+        InboundAdmission admission = new InboundAdmission(queue, new MessageDeduplicator(new IotMessageConfigProperties()));
+        
+        admission.admit(message("p1", MessageTypeEnum.PROPERTY));
+        admission.admit(message("p2", MessageTypeEnum.PROPERTY));
+        
+        // 遥测按 DROP_OLDEST 挤出旧消息，两条都已确认，代理不再重发
+        assertEquals(List.of("p1", "p2"), acknowledged);
+        assertEquals(0, admission.deferredSize());
+        assertEquals(1, queue.droppedCount(MessageTypeEnum.PROPERTY));
+        assertEquals("p2", idOf(queue.poll(1, TimeUnit.MILLISECONDS)));
+    }
+}
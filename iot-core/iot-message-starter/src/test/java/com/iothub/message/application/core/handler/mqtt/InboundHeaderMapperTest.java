@@ -0,0 +1,70 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.domain.InboundHeaders;
+import com.iothub.message.application.enums.MessageSourceType;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+import org.junit.Test;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class InboundHeaderMapperTest {
+    
+    private final InboundHeaderMapper mapper = new InboundHeaderMapper();
+    
+    @Test
+    public void testDecodesUserPropertiesIntoSingleHeader() {
+        MqttProperties properties = new MqttProperties();
+        properties.setUserProperties(List.of(
+                new UserProperty(InboundHeaders.MESSAGE_TYPE, "property"),
+                new UserProperty(InboundHeaders.MESSAGE_SOURCE_TYPE, "edge"),
+                new UserProperty(InboundHeaders.MESSAGE_ID, "id-1"),
+                new UserProperty(InboundHeaders.DEVICE_CODE, "dev-1"),
+                new UserProperty("Custom", "value")));
+        
+        Map<String, Object> headers = mapper.toHeaders(properties);
+        InboundHeaders inboundHeaders = (InboundHeaders) headers.get(InboundHeaders.HEADER);
+        assertEquals(MessageTypeEnum.PROPERTY, inboundHeaders.getMessageType());
+        assertEquals(MessageSourceType.EDGE, inboundHeaders.getSourceType());
+        assertEquals("id-1", inboundHeaders.getMessageId());
+        assertEquals("dev-1", inboundHeaders.getDeviceCode());
+        assertEquals("value", headers.get("Custom"));
+        assertFalse(headers.containsKey(InboundHeaders.MESSAGE_TYPE));
+    }
+    
+    @Test
+    public void testMissingPropertiesUseDefaults() {
+        InboundHeaders inboundHeaders = (InboundHeaders) mapper.toHeaders(new MqttProperties()).get(InboundHeaders.HEADER);
+        assertNull(inboundHeaders.getMessageType());
+        assertEquals(MessageSourceType.UNKNOWN, inboundHeaders.getSourceType());
+    }
+    
+    @Test
+    public void testFallsBackToStringHeaders() {
+        Message<byte[]> message = MessageBuilder.withPayload(new byte[0])
+                .setHeader(InboundHeaders.MESSAGE_TYPE, "Invocation")
+                .setHeader(InboundHeaders.MESSAGE_SOURCE_TYPE, "cloud")
+                .build();
+        
+        InboundHeaders inboundHeaders = InboundHeaders.of(message);
+        assertEquals(MessageTypeEnum.COMMAND_INVOCATION, inboundHeaders.getMessageType());
+        assertEquals(MessageSourceType.CLOUD, inboundHeaders.getSourceType());
+    }
+    
+    @Test
+    public void testSwitchTableMatchesLinearScan() {
+        for (MessageTypeEnum messageType : MessageTypeEnum.values()) {
+            assertEquals(MessageTypeEnum.match(messageType.getType()), MessageTypeEnum.fromHeader(messageType.getType()));
+        }
+        for (MessageSourceType sourceType : MessageSourceType.values()) {
+            assertEquals(MessageSourceType.match(sourceType.getCode()), MessageSourceType.fromHeader(sourceType.getCode()));
+        }
+        assertEquals(MessageTypeEnum.UNSUPPORTED, MessageTypeEnum.fromHeader("other"));
+    }
+}
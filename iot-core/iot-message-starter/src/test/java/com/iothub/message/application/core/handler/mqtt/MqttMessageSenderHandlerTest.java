@@ -0,0 +1,261 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import com.iothub.message.application.domain.InboundHeaders;
+import com.iothub.message.application.domain.PublishOptions;
+import com.iothub.message.application.domain.PublishReceipt;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.support.MqttBrokerStandIn;
+import com.iothub.message.application.utils.codec.PayloadCompression;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.common.MqttSubscription;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.integration.mqtt.core.Mqttv5ClientManager;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class MqttMessageSenderHandlerTest {
+    
+    private MqttBrokerStandIn broker;
+    private Mqttv5ClientManager clientManager;
+    
+    @Before
+    public void startBroker() throws IOException {
+        broker = new MqttBrokerStandIn();
+    }
+    
+    @After
+    public void stopBroker() throws IOException {
+        if (clientManager != null) {
+            clientManager.stop();
+        }
+        broker.close();
+    }
+    
+    @Test
+    public void testFutureCompletesOnPubAck() throws Exception {
+        MqttMessageSenderHandler sender = createSender(10, 1000);
+        
+        PublishReceipt receipt = sender.publishAsync("/topic/up/device-1", "{}", MessageTypeEnum.PROPERTY)
+                .get(5, TimeUnit.SECONDS);
+        assertEquals("/topic/up/device-1", receipt.topic());
+        assertEquals(32, receipt.messageId().length());
+        assertTrue(receipt.packetId() > 0);
+        assertEquals(0, sender.inflightCount());
+    }
+    
+    @Test
+    public void testFullWindowAppliesBackpressure() throws Exception {
+        MqttMessageSenderHandler sender = createSender(2, 200);
+        broker.holdAcks();
+        
+        List<CompletableFuture<PublishReceipt>> pending = new ArrayList<>();
+        pending.add(sender.publishAsync("/topic/up/device-1", "{}", MessageTypeEnum.PROPERTY));
+        pending.add(sender.publishAsync("/topic/up/device-2", "{}", MessageTypeEnum.PROPERTY));
+        assertEquals(2, sender.inflightCount());
+        
+        // 窗口已满，第三条消息在等待超时后失败
+        long start = System.nanoTime();
+        CompletableFuture<PublishReceipt> rejected = sender.publishAsync("/topic/up/device-3", "{}", MessageTypeEnum.PROPERTY);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(rejected.isCompletedExceptionally());
+        try {
+            rejected.get();
+            fail("expected timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertFalse(pending.get(0).isDone());
+        
+        broker.releaseAcks();
+        for (CompletableFuture<PublishReceipt> future : pending) {
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, sender.inflightCount());
+    }
+    
+    @Test
+    public void testWindowShrinksToBrokerReceiveMaximum() throws Exception {
+        broker.setReceiveMaximum(2);
+        MqttMessageSenderHandler sender = createSender(10, 5000);
+        broker.holdAcks();
+        
+        List<CompletableFuture<PublishReceipt>> pending = new ArrayList<>();
+        pending.add(sender.publishAsync("/topic/up/device-1", "{}", MessageTypeEnum.EVENT));
+        pending.add(sender.publishAsync("/topic/up/device-2", "{}", MessageTypeEnum.EVENT));
+        
+        // 第三条消息超出代理的 receive-maximum，窗口收缩后等待确认
+        CompletableFuture<CompletableFuture<PublishReceipt>> third = CompletableFuture.supplyAsync(
+                () -> sender.publishAsync("/topic/up/device-3", "{}", MessageTypeEnum.EVENT));
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertFalse(third.isDone());
+        assertEquals(2, sender.inflightLimit());
+        
+        broker.releaseAcks();
+        pending.add(third.get(5, TimeUnit.SECONDS));
+        for (CompletableFuture<PublishReceipt> future : pending) {
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+        }
+    }
+    
+    @Test
+    public void testWindowFollowsReceiveMaximumOnEachConnect() throws Exception {
+        broker.setReceiveMaximum(2);
+        MqttConfigProperties.Reconnect reconnect = new MqttConfigProperties.Reconnect();
+        reconnect.setInitialDelay(50);
+        reconnect.setMaxDelay(100);
+        MqttConnectionManager manager = new MqttConnectionManager("sender", connectionOptions(), "sender-test", reconnect);
+        MqttMessageSenderHandler sender = createSender(manager, new IotMessageConfigProperties(), 10, 1000);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sender.inflightLimit() != 2) {
+            assertTrue("window not applied in time", System.nanoTime() < deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        
+        // 代理重启后声明了更大的 receive-maximum，重连后窗口随之放大，但不超过配置值
+        broker.setReceiveMaximum(50);
+        broker.drop("sender-test");
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sender.inflightLimit() != 10) {
+            assertTrue("window not reset in time", System.nanoTime() < deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertNotNull(sender.publishAsync("/topic/up/device-1", "{}", MessageTypeEnum.EVENT).get(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void testQosZeroBypassesWindow() throws Exception {
+        MqttMessageSenderHandler sender = createSender(1, 200);
+        broker.holdAcks();
+        
+        // QoS 0 没有确认，窗口已满时仍可发出
+        PublishOptions atMostOnce = new PublishOptions(0, false, 0);
+        CompletableFuture<PublishReceipt> held = sender.publishAsync("/topic/up/device-1", "{}", MessageTypeEnum.EVENT);
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(sender.publishAsync("/topic/up/device-2", "{}".getBytes(StandardCharsets.UTF_8), null, atMostOnce,
+                    MessageTypeEnum.EVENT, "message-" + i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, sender.inflightCount());
+        
+        broker.releaseAcks();
+        assertNotNull(held.get(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void testRetainedMessageWithExpiryIsAcknowledged() throws Exception {
+        MqttMessageSenderHandler sender = createSender(10, 1000);
+        
+        PublishReceipt receipt = sender.publishAsync("/topic/up/device-1", "{}".getBytes(StandardCharsets.UTF_8), null,
+                new PublishOptions(1, true, 60), MessageTypeEnum.PROPERTY, "message-1").get(5, TimeUnit.SECONDS);
+        assertEquals("message-1", receipt.messageId());
+        assertEquals(0, sender.inflightCount());
+    }
+    
+    @Test
+    public void testResolvesDeliveryPolicyByMessageType() {
+        IotMessageConfigProperties properties = new IotMessageConfigProperties();
+        properties.getDeliveries().put(MessageTypeEnum.EVENT, new IotMessageConfigProperties.Delivery(2, true, 0));
+        
+        assertEquals(new PublishOptions(1, false, 300), properties.deliveryOf(MessageTypeEnum.PROPERTY));
+        assertEquals(new PublishOptions(2, true, 0), properties.deliveryOf(MessageTypeEnum.EVENT));
+        assertEquals(new PublishOptions(1, false, 0), properties.deliveryOf(MessageTypeEnum.COMMAND_ACKNOWLEDGMENT));
+        assertThrows(IllegalArgumentException.class, () -> new PublishOptions(3, false, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PublishOptions(1, false, -1));
+    }
+    
+    @Test
+    public void testCompressesPayloadsAboveThreshold() throws Exception {
+        List<byte[]> received = new CopyOnWriteArrayList<>();
+        MqttAsyncClient cloud = broker.connect("cloud", (topic, message) -> received.add(message.getPayload()));
+        cloud.subscribe(new MqttSubscription("/topic/up/#", 1)).waitForCompletion(5000);
+        IotMessageConfigProperties iotProperties = new IotMessageConfigProperties();
+        iotProperties.getCompression().setEnabled(true);
+        iotProperties.getCompression().setThreshold(256);
+        MqttMessageSenderHandler sender = createSender(iotProperties, 10, 1000);
+        
+        String large = "{\"temperature\":23.5,\"humidity\":41.0}".repeat(32);
+        sender.publishAsync("/topic/up/device-1", "{}", MessageTypeEnum.PROPERTY).get(5, TimeUnit.SECONDS);
+        sender.publishAsync("/topic/up/device-1", large, MessageTypeEnum.PROPERTY).get(5, TimeUnit.SECONDS);
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.size() < 2 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals("{}", new String(received.get(0), StandardCharsets.UTF_8));
+        assertTrue(received.get(1).length < large.length() / 4);
+        byte[] inflated = iotProperties.getCompression().create().decompress(PayloadCompression.DEFLATE, received.get(1));
+        assertEquals(large, new String(inflated, StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    public void testStampsDeviceCodeFromRoutingKey() throws Exception {
+        List<Message<?>> received = new CopyOnWriteArrayList<>();
+        InboundHeaderMapper headerMapper = new InboundHeaderMapper();
+        MqttAsyncClient cloud = broker.connect("cloud", (topic, message) -> received.add(
+                MessageBuilder.withPayload(message.getPayload()).copyHeaders(headerMapper.toHeaders(message.getProperties())).build()));
+        cloud.subscribe(new MqttSubscription("/topic/up/#", 1)).waitForCompletion(5000);
+        MqttMessageSenderHandler sender = createSender(10, 1000);
+        
+        byte[] payload = "{}".getBytes(StandardCharsets.UTF_8);
+        sender.publishAsync("/topic/up/device-1", "device-1", payload, null, null, MessageTypeEnum.PROPERTY, "message-1")
+                .get(5, TimeUnit.SECONDS);
+        sender.publishAsync("/topic/up/device-1", null, payload, null, null, MessageTypeEnum.PROPERTY, "message-2")
+                .get(5, TimeUnit.SECONDS);
+        // 信封中的条目各自携带设备编码，信封本身不携带
+        sender.publishAsync("/topic/up", "device-1", payload, ReportEnvelope.CONTENT_TYPE, null, MessageTypeEnum.PROPERTY, "message-3")
+                .get(5, TimeUnit.SECONDS);
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.size() < 3 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(3, received.size());
+        assertEquals("device-1", InboundHeaders.of(received.get(0)).getDeviceCode());
+        assertNull(InboundHeaders.of(received.get(1)).getDeviceCode());
+        assertNull(InboundHeaders.of(received.get(2)).getDeviceCode());
+    }
+    
+    private MqttMessageSenderHandler createSender(int maxInflight, long windowTimeout) {
+        return createSender(new IotMessageConfigProperties(), maxInflight, windowTimeout);
+    }
+    
+    private MqttMessageSenderHandler createSender(IotMessageConfigProperties iotProperties, int maxInflight, long windowTimeout) {
+        return createSender(new Mqttv5ClientManager(connectionOptions(), "sender-test"), iotProperties, maxInflight, windowTimeout);
+    }
+    
+    private MqttConnectionOptions connectionOptions() {
+        MqttConnectionOptions options = new MqttConnectionOptions();
+        options.setServerURIs(new String[]{broker.url()});
+        options.setCleanStart(true);
+        return options;
+    }
+    
+    private MqttMessageSenderHandler createSender(Mqttv5ClientManager manager, IotMessageConfigProperties iotProperties,
+                                                  int maxInflight, long windowTimeout) {
+        clientManager = manager;
+        clientManager.setDisconnectCompletionTimeout(100);
+        clientManager.start();
+        
+        iotProperties.setTag("edge");
+        MqttConfigProperties mqttProperties = new MqttConfigProperties();
+        mqttProperties.getPublish().setMaxInflight(maxInflight);
+        mqttProperties.getPublish().setWindowTimeout(windowTimeout);
+        return new MqttMessageSenderHandler(clientManager, iotProperties, mqttProperties);
+    }
+}
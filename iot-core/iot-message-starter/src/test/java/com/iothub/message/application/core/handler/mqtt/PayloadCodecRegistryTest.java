@@ -0,0 +1,84 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.domain.InboundHeaders;
+import com.iothub.message.application.domain.IotMessage;
+import com.iothub.message.application.enums.MessageSourceType;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.utils.codec.CborPayloadCodec;
+import com.iothub.message.application.utils.codec.JsonPayloadCodec;
+import com.iothub.message.application.utils.codec.PayloadCodec;
+import com.iothub.message.application.utils.topic.TopicVariables;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PayloadCodecRegistryTest {
+    
+    @Test
+    public void testSelectsCodecPerMessageType() {
+        IotMessageConfigProperties properties = new IotMessageConfigProperties();
+        properties.getCodec().getFormats().put(MessageTypeEnum.PROPERTY, "binary");
+        properties.getCodec().getFormats().put(MessageTypeEnum.EVENT, "cbor");
+        PayloadCodecRegistry registry = new PayloadCodecRegistry(properties, List.of());
+        
+        assertEquals("binary", registry.codecFor(MessageTypeEnum.PROPERTY).name());
+        assertEquals("cbor", registry.codecFor(MessageTypeEnum.EVENT).name());
+        assertEquals("json", registry.codecFor(MessageTypeEnum.COMMAND_ACKNOWLEDGMENT).name());
+        assertEquals("json", registry.codecFor(null).name());
+    }
+    
+    @Test
+    public void testResolvesDecoderByContentType() {
+        PayloadCodecRegistry registry = new PayloadCodecRegistry(new IotMessageConfigProperties(), List.of());
+        
+        assertEquals("cbor", registry.forContentType(CborPayloadCodec.CONTENT_TYPE).name());
+        assertEquals("json", registry.forContentType("Application/JSON; charset=utf-8").name());
+        assertEquals("json", registry.forContentType(null).name()); // 旧版本发送方不带内容类型
+        assertNull(registry.forContentType("application/xml"));
+    }
+    
+    @Test
+    public void testCustomCodecOverridesBuiltIn() {
+        PayloadCodec custom = new JsonPayloadCodec() {
+            @Override
+            public String contentType() {
+                return "application/vnd.custom+json";
+            }
+        };
+        PayloadCodecRegistry registry = new PayloadCodecRegistry(new IotMessageConfigProperties(), List.of(custom));
+        
+        assertSame(custom, registry.codecFor(MessageTypeEnum.PROPERTY));
+        assertSame(custom, registry.forContentType("application/vnd.custom+json"));
+        assertNull(registry.forContentType(JsonPayloadCodec.CONTENT_TYPE));
+    }
+    
+    @Test
+    public void testRejectsUnknownCodecName() {
+        IotMessageConfigProperties properties = new IotMessageConfigProperties();
+        properties.getCodec().setDefaultFormat("protobuf");
+        assertThrows(IllegalStateException.class, () -> new PayloadCodecRegistry(properties, List.of()));
+    }
+    
+    @Test
+    public void testBinaryPayloadReadsAsJsonText() {
+        PayloadCodecRegistry registry = new PayloadCodecRegistry(new IotMessageConfigProperties(), List.of());
+        PayloadCodec cbor = registry.forContentType(CborPayloadCodec.CONTENT_TYPE);
+        InboundHeaders headers = new InboundHeaders(MessageTypeEnum.PROPERTY, MessageSourceType.EDGE, "id-1", "dev-1",
+                CborPayloadCodec.CONTENT_TYPE);
+        
+        IotMessage message = new IotMessage("/topic/up/dev-1", cbor.encode(Map.of("temperature", 21)), headers,
+                TopicVariables.EMPTY, cbor);
+        assertEquals(Map.of("temperature", 21L), message.decodePayload());
+        assertEquals("{\"temperature\":21}", message.getContent());
+        
+        IotMessage unknown = new IotMessage("/topic/up/dev-1", "<a/>".getBytes(StandardCharsets.UTF_8), headers,
+                TopicVariables.EMPTY, null);
+        assertEquals("<a/>", unknown.getContent());
+        assertThrows(IllegalStateException.class, unknown::decodePayload);
+    }
+}
@@ -0,0 +1,175 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import com.iothub.message.application.domain.InboundHeaders;
+import com.iothub.message.application.domain.PublishOptions;
+import com.iothub.message.application.domain.PublishReceipt;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.support.MqttBrokerStandIn;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.common.MqttSubscription;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.integration.mqtt.core.Mqttv5ClientManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PublishOutboxTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private MqttBrokerStandIn broker;
+    private Mqttv5ClientManager clientManager;
+    private final List<PublishOutbox> outboxes = new ArrayList<>();
+    
+    @Before
+    public void startBroker() throws IOException {
+        broker = new MqttBrokerStandIn();
+    }
+    
+    @After
+    public void stopBroker() throws IOException {
+        outboxes.forEach(PublishOutbox::close);
+        clientManager.stop();
+        broker.close();
+    }
+    
+    @Test
+    public void testPublishesDirectlyWhenConnected() throws Exception {
+        PublishOutbox outbox = createOutbox(folder.newFolder("outbox").getPath(), 4096, 8);
+        clientManager.start();
+        
+        PublishReceipt receipt = outbox.publish("/topic/up/device-1", "{}", MessageTypeEnum.PROPERTY).get(5, TimeUnit.SECONDS);
+        assertFalse(receipt.deferred());
+        assertEquals(0, outbox.storedCount());
+        assertEquals(0, outbox.pendingCount());
+    }
+    
+    @Test
+    public void testReplaysStoredMessagesInOrderAfterReconnect() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        List<String> deviceCodes = new CopyOnWriteArrayList<>();
+        InboundHeaderMapper headerMapper = new InboundHeaderMapper();
+        MqttAsyncClient cloud = broker.connect("cloud", (topic, message) -> {
+            received.add(new String(message.getPayload(), StandardCharsets.UTF_8));
+            Object headers = headerMapper.toHeaders(message.getProperties()).get(InboundHeaders.HEADER);
+            deviceCodes.add(((InboundHeaders) headers).getDeviceCode());
+        });
+        cloud.subscribe(new MqttSubscription("/topic/up/#", 1)).waitForCompletion(5000);
+        PublishOutbox outbox = createOutbox(folder.newFolder("outbox").getPath(), 4096, 8);
+        
+        // 客户端尚未连接，消息写入发件箱，刷盘后以暂存回执完成
+        List<CompletableFuture<PublishReceipt>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(outbox.publish("/topic/up/device-1", "device-1", ("message-" + i).getBytes(StandardCharsets.UTF_8), null,
+                    null, MessageTypeEnum.PROPERTY));
+        }
+        for (CompletableFuture<PublishReceipt> future : futures) {
+            assertTrue(future.get(5, TimeUnit.SECONDS).deferred());
+        }
+        assertEquals(5, outbox.pendingCount());
+        assertTrue(received.isEmpty());
+        
+        clientManager.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        // 代理先确认发布方再投递给订阅方，发件箱清空后订阅方可能还没收完
+        while ((outbox.pendingCount() > 0 || received.size() < 5) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertEquals(0, outbox.pendingCount());
+        assertEquals(5, outbox.replayedCount());
+        assertEquals(List.of("message-0", "message-1", "message-2", "message-3", "message-4"), received);
+        // 设备编码随记录暂存，补发时仍然携带
+        assertEquals(List.of("device-1", "device-1", "device-1", "device-1", "device-1"), deviceCodes);
+    }
+    
+    @Test
+    public void testStoredMessagesSurviveRestart() throws Exception {
+        String directory = folder.newFolder("outbox").getPath();
+        PublishOutbox outbox = createOutbox(directory, 4096, 8);
+        for (int i = 0; i < 3; i++) {
+            outbox.publish("/topic/up/device-1", "message-" + i, MessageTypeEnum.EVENT).get(5, TimeUnit.SECONDS);
+        }
+        outbox.close();
+        outboxes.remove(outbox);
+        
+        assertEquals(3, createOutbox(directory, 4096, 8).pendingCount());
+    }
+    
+    @Test
+    public void testDiscardsOldestRecordsAtRetentionCap() throws Exception {
+        PublishOutbox outbox = createOutbox(folder.newFolder("outbox").getPath(), 256, 2);
+        
+        List<CompletableFuture<PublishReceipt>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(outbox.publish("/topic/up/device-1", "message-" + i, MessageTypeEnum.PROPERTY));
+        }
+        for (CompletableFuture<PublishReceipt> future : futures) {
+            assertTrue(future.get(5, TimeUnit.SECONDS).deferred());
+        }
+        assertTrue(outbox.discardedCount() > 0);
+        assertEquals(20, outbox.storedCount());
+        assertEquals(20 - outbox.discardedCount(), outbox.pendingCount());
+    }
+    
+    @Test
+    public void testDropsExpiredRecordsOnReplay() throws Exception {
+        PublishOutbox outbox = createOutbox(folder.newFolder("outbox").getPath(), 4096, 8);
+        byte[] payload = "{}".getBytes(StandardCharsets.UTF_8);
+        outbox.publish("/topic/up/device-1", payload, null, new PublishOptions(1, false, 1), MessageTypeEnum.PROPERTY)
+                .get(5, TimeUnit.SECONDS);
+        outbox.publish("/topic/up/device-1", payload, null, new PublishOptions(1, false, 0), MessageTypeEnum.PROPERTY)
+                .get(5, TimeUnit.SECONDS);
+        
+        // 断网时间超过第一条消息的过期时间，补发时丢弃
+        TimeUnit.MILLISECONDS.sleep(1100);
+        clientManager.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (outbox.pendingCount() > 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertEquals(0, outbox.pendingCount());
+        assertEquals(1, outbox.expiredCount());
+        assertEquals(1, outbox.replayedCount());
+    }
+    
+    private PublishOutbox createOutbox(String directory, int segmentSize, int maxSegments) {
+        if (clientManager == null) {
+            MqttConnectionOptions options = new MqttConnectionOptions();
+            options.setServerURIs(new String[]{broker.url()});
+            options.setCleanStart(true);
+            clientManager = new Mqttv5ClientManager(options, "outbox-test");
+            clientManager.setDisconnectCompletionTimeout(100);
+        }
+        
+        IotMessageConfigProperties iotProperties = new IotMessageConfigProperties();
+        iotProperties.setTag("edge");
+        IotMessageConfigProperties.Outbox config = iotProperties.getOutbox();
+        config.setEnabled(true);
+        config.setDirectory(directory);
+        config.setSegmentSize(segmentSize);
+        config.setMaxSegments(maxSegments);
+        config.setFsyncInterval(20);
+        config.setReplayRate(1000);
+        config.setRetryInterval(50);
+        MqttMessageSenderHandler sender = new MqttMessageSenderHandler(clientManager, iotProperties, new MqttConfigProperties());
+        
+        PublishOutbox outbox = new PublishOutbox(sender, iotProperties);
+        outboxes.add(outbox);
+        return outbox;
+    }
+}
@@ -0,0 +1,188 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import com.iothub.message.application.domain.PublishReceipt;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.support.MqttBrokerStandIn;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.common.MqttSubscription;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.integration.mqtt.core.Mqttv5ClientManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PublisherPoolTest {
+    
+    private MqttBrokerStandIn broker;
+    private final List<Mqttv5ClientManager> clientManagers = new ArrayList<>();
+    private final List<MqttMessageSenderHandler> senders = new ArrayList<>();
+    
+    @Before
+    public void startBroker() throws IOException {
+        broker = new MqttBrokerStandIn();
+    }
+    
+    @After
+    public void stopBroker() throws IOException {
+        senders.forEach(MqttMessageSenderHandler::destroy);
+        clientManagers.forEach(Mqttv5ClientManager::stop);
+        broker.close();
+    }
+    
+    @Test
+    public void testSpreadsTopicsAndKeepsPerDeviceOrder() throws Exception {
+        Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        AtomicInteger count = new AtomicInteger();
+        MqttAsyncClient cloud = broker.connect("cloud", (topic, message) -> {
+            received.computeIfAbsent(topic, key -> new CopyOnWriteArrayList<>())
+                    .add(Integer.parseInt(new String(message.getPayload(), StandardCharsets.UTF_8)));
+            count.incrementAndGet();
+        });
+        cloud.subscribe(new MqttSubscription("/topic/up/#", 0)).waitForCompletion(5000);
+        MqttMessageSenderHandler sender = createSender(4, 32);
+        PublisherPool pool = sender.publisherPool();
+        
+        // 每个设备由一个虚拟线程按顺序发布，不等待确认
+        int devices = 32;
+        int perDevice = 50;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int d = 0; d < devices; d++) {
+                String topic = "/topic/up/device-" + d;
+                executor.submit(() -> {
+                    for (int i = 0; i < perDevice; i++) {
+                        sender.publishAsync(topic, String.valueOf(i), MessageTypeEnum.EVENT);
+                    }
+                });
+            }
+        }
+        awaitCount(count, devices * perDevice);
+        
+        Set<Integer> usedLanes = new HashSet<>();
+        for (int d = 0; d < devices; d++) {
+            String topic = "/topic/up/device-" + d;
+            assertSame(pool.select(topic), pool.select(topic));
+            usedLanes.add(pool.select(topic).index());
+            List<Integer> sequence = received.get(topic);
+            for (int i = 0; i < perDevice; i++) {
+                assertEquals(i, (int) sequence.get(i));
+            }
+        }
+        assertEquals(4, usedLanes.size());
+        long published = 0;
+        for (int i = 0; i < pool.size(); i++) {
+            assertTrue(pool.lane(i).isConnected());
+            assertTrue(pool.lane(i).publishedCount() > 0);
+            published += pool.lane(i).publishedCount();
+        }
+        assertEquals(devices * perDevice, published);
+        assertEquals(0, pool.failoverCount());
+    }
+    
+    @Test
+    public void testRoutesSharedTopicByDeviceCode() throws Exception {
+        MqttMessageSenderHandler sender = createSender(4, 32);
+        PublisherPool pool = sender.publisherPool();
+        
+        // 合并后的信封都发往上行根主题，按设备编码路由后仍分散到所有连接上
+        int devices = 32;
+        for (int d = 0; d < devices; d++) {
+            String deviceCode = "device-" + d;
+            PublishReceipt receipt = sender.publishAsync("/topic/up", deviceCode, "{}".getBytes(StandardCharsets.UTF_8), null, null,
+                    MessageTypeEnum.EVENT, sender.nextMessageId()).get(5, TimeUnit.SECONDS);
+            assertNotNull(receipt);
+        }
+        for (int i = 0; i < pool.size(); i++) {
+            assertTrue(pool.lane(i).publishedCount() > 0);
+        }
+        for (int d = 0; d < devices; d++) {
+            assertSame(pool.select("device-" + d), pool.select("device-" + d));
+        }
+    }
+    
+    @Test
+    public void testFailsOverWhenConnectionDrops() throws Exception {
+        MqttMessageSenderHandler sender = createSender(2, 32, true);
+        PublisherPool pool = sender.publisherPool();
+        String homedOnSecond = null;
+        for (int d = 0; homedOnSecond == null; d++) {
+            if (pool.select("/topic/up/device-" + d).index() == 1) {
+                homedOnSecond = "/topic/up/device-" + d;
+            }
+        }
+        
+        broker.drop("pool-test-pub1");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.lane(1).isConnected() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertFalse(pool.lane(1).isConnected());
+        assertTrue(sender.isConnected());
+        
+        // 断开的连接不再被选中，同一主题确定地转投到下一个健康连接
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(sender.publishAsync(homedOnSecond, "{}", MessageTypeEnum.EVENT).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(10, pool.lane(0).publishedCount());
+        assertEquals(10, pool.failoverCount());
+        
+        // 自动重连后该主题回到原来的连接
+        while (!pool.lane(1).isConnected() && System.nanoTime() < deadline + TimeUnit.SECONDS.toNanos(5)) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertNotNull(sender.publishAsync(homedOnSecond, "{}", MessageTypeEnum.EVENT).get(5, TimeUnit.SECONDS));
+        assertEquals(1, pool.lane(1).publishedCount());
+        assertEquals(10, pool.failoverCount());
+    }
+    
+    private static void awaitCount(AtomicInteger count, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (count.get() < expected && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(expected, count.get());
+    }
+    
+    private MqttMessageSenderHandler createSender(int poolSize, int maxInflight) {
+        return createSender(poolSize, maxInflight, false);
+    }
+    
+    private MqttMessageSenderHandler createSender(int poolSize, int maxInflight, boolean automaticReconnect) {
+        MqttConnectionOptions options = new MqttConnectionOptions();
+        options.setServerURIs(new String[]{broker.url()});
+        options.setCleanStart(true);
+        options.setAutomaticReconnect(automaticReconnect);
+        Mqttv5ClientManager clientManager = new Mqttv5ClientManager(options, "pool-test");
+        clientManager.setDisconnectCompletionTimeout(100);
+        clientManager.start();
+        clientManagers.add(clientManager);
+        
+        IotMessageConfigProperties iotProperties = new IotMessageConfigProperties();
+        iotProperties.setTag("edge");
+        MqttConfigProperties mqttProperties = new MqttConfigProperties();
+        mqttProperties.getPublish().setPoolSize(poolSize);
+        mqttProperties.getPublish().setMaxInflight(maxInflight);
+        mqttProperties.getPublish().setWindowTimeout(10_000);
+        mqttProperties.getPublish().setShutdownTimeout(100);
+        MqttMessageSenderHandler sender = new MqttMessageSenderHandler(clientManager, iotProperties, mqttProperties);
+        senders.add(sender);
+        return sender;
+    }
+}
@@ -0,0 +1,75 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReconnectBackoffTest {
+    
+    @Test
+    public void testDelaysStayWithinDoublingCeiling() {
+        ReconnectBackoff backoff = new ReconnectBackoff(config(100, 1000, 0, 0), new Random(42));
+        for (int attempt = 0; attempt < 20; attempt++) {
+            long ceiling = Math.min(1000, 100L << attempt);
+            long delay = backoff.nextDelay(0);
+            assertTrue(delay >= 0 && delay <= ceiling);
+        }
+        assertEquals(20, backoff.failures());
+    }
+    
+    @Test
+    public void testFullJitterSpreadsDelays() {
+        ReconnectBackoff backoff = new ReconnectBackoff(config(1000, 1000, 0, 0), new Random(7));
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        long sum = 0;
+        int samples = 1000;
+        for (int i = 0; i < samples; i++) {
+            long delay = backoff.nextDelay(0);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+            sum += delay;
+        }
+        // 全抖动在 [0, 上限] 内均匀分布，而不是集中在上限附近
+        assertTrue(min < 100);
+        assertTrue(max > 900);
+        assertEquals(500, sum / samples, 50);
+    }
+    
+    @Test
+    public void testResetStartsOverFromInitialDelay() {
+        ReconnectBackoff backoff = new ReconnectBackoff(config(100, 60000, 0, 0), new Random(1));
+        for (int i = 0; i < 10; i++) {
+            backoff.nextDelay(0);
+        }
+        backoff.reset();
+        assertEquals(0, backoff.failures());
+        assertTrue(backoff.nextDelay(0) <= 100);
+    }
+    
+    @Test
+    public void testBudgetDefersAttemptsUntilWindowFrees() {
+        ReconnectBackoff backoff = new ReconnectBackoff(config(1, 1, 3, 10000), new Random(3));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(backoff.nextDelay(0) <= 1);
+        }
+        // 窗口内已有 3 次重连，第 4 次推迟到第一次移出窗口
+        long deferred = backoff.nextDelay(0);
+        assertTrue(deferred >= 10000 && deferred <= 10001);
+        
+        // 窗口滑过之后恢复正常退避
+        assertTrue(backoff.nextDelay(30000) <= 1);
+    }
+    
+    private static MqttConfigProperties.Reconnect config(long initialDelay, long maxDelay, int budget, long budgetWindow) {
+        MqttConfigProperties.Reconnect reconnect = new MqttConfigProperties.Reconnect();
+        reconnect.setInitialDelay(initialDelay);
+        reconnect.setMaxDelay(maxDelay);
+        reconnect.setBudget(budget);
+        reconnect.setBudgetWindow(budgetWindow);
+        return reconnect;
+    }
+}
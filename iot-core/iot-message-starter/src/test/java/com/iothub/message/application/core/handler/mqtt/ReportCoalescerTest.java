@@ -0,0 +1,285 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import com.iothub.message.application.domain.PublishReceipt;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.support.MqttBrokerStandIn;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.MqttSubscription;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.integration.mqtt.core.Mqttv5ClientManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReportCoalescerTest {
+    
+    private MqttBrokerStandIn broker;
+    private Mqttv5ClientManager clientManager;
+    private MqttMessageSenderHandler sender;
+    private ReportCoalescer coalescer;
+    private final List<String> topics = new CopyOnWriteArrayList<>();
+    private final List<MqttMessage> received = new CopyOnWriteArrayList<>();
+    
+    @Before
+    public void startBroker() throws Exception {
+        broker = new MqttBrokerStandIn();
+        MqttAsyncClient cloud = broker.connect("cloud", (topic, message) -> {
+            topics.add(topic);
+            received.add(message);
+        });
+        cloud.subscribe(new MqttSubscription("/topic/up/#", 1)).waitForCompletion(5000);
+    }
+    
+    @After
+    public void stopBroker() throws IOException {
+        if (coalescer != null) {
+            coalescer.close();
+        }
+        if (sender != null) {
+            sender.destroy();
+        }
+        if (clientManager != null) {
+            clientManager.stop();
+        }
+        broker.close();
+    }
+    
+    @Test
+    public void testCoalescesReportsIntoOneEnvelope() throws Exception {
+        createCoalescer(100, 64 * 1024, 200);
+        
+        List<CompletableFuture<PublishReceipt>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(coalescer.publish("/topic/up/device-" + i, "device-" + i, payload(i), "application/json", null,
+                    MessageTypeEnum.PROPERTY));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            PublishReceipt receipt = futures.get(i).get(5, TimeUnit.SECONDS);
+            assertEquals("/topic/up/device-" + i, receipt.topic());
+            assertTrue(receipt.packetId() > 0);
+        }
+        awaitReceived(1);
+        
+        assertEquals(List.of("/topic/up"), topics);
+        List<ReportEnvelope.Entry> entries = ReportEnvelope.decode(received.get(0).getPayload());
+        assertEquals(10, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals("/topic/up/device-" + i, entries.get(i).topic());
+            assertEquals("device-" + i, entries.get(i).deviceCode());
+            assertEquals("application/json", entries.get(i).contentType());
+            assertArrayEquals(payload(i), entries.get(i).payload());
+        }
+        assertEquals(1, coalescer.envelopeCount());
+        assertEquals(10, coalescer.recordCount());
+    }
+    
+    @Test
+    public void testFlushesWhenRecordLimitReached() throws Exception {
+        createCoalescer(4, 64 * 1024, 60_000);
+        
+        List<CompletableFuture<PublishReceipt>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(coalescer.publish("/topic/up/device-1", "device-1", payload(i), null, null, MessageTypeEnum.EVENT));
+        }
+        // linger 很长，只能是攒满条数触发的发布
+        for (CompletableFuture<PublishReceipt> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        awaitReceived(2);
+        assertEquals(4, ReportEnvelope.decode(received.get(0).getPayload()).size());
+        assertEquals(4, ReportEnvelope.decode(received.get(1).getPayload()).size());
+    }
+    
+    @Test
+    public void testPublishesOtherTypesDirectly() throws Exception {
+        createCoalescer(100, 64 * 1024, 60_000);
+        
+        PublishReceipt receipt = coalescer.publish("/topic/up/device-1", "device-1", payload(0), "application/json", null,
+                MessageTypeEnum.COMMAND_ACKNOWLEDGMENT).get(5, TimeUnit.SECONDS);
+        assertEquals("/topic/up/device-1", receipt.topic());
+        awaitReceived(1);
+        assertEquals(List.of("/topic/up/device-1"), topics);
+        assertArrayEquals(payload(0), received.get(0).getPayload());
+        assertEquals(0, coalescer.envelopeCount());
+    }
+    
+    @Test
+    public void testRejectsMalformedEnvelope() {
+        byte[] encoded = ReportEnvelope.encode(List.of(
+                new ReportEnvelope.Entry("/topic/up/device-1", null, "id-1", null, payload(1))));
+        assertEquals(1, ReportEnvelope.decode(encoded).size());
+        assertNull(ReportEnvelope.decode(encoded).get(0).deviceCode());
+        
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> ReportEnvelope.decode(truncated));
+        assertThrows(IllegalArgumentException.class, () -> ReportEnvelope.decode(new byte[]{9, 0, 0, 0, 0}));
+    }
+    
+    @Test
+    public void testEncodedSizeMatchesEnvelope() {
+        List<ReportEnvelope.Entry> entries = List.of(
+                new ReportEnvelope.Entry("/topic/up/device-1", "device-1", "id-1", "application/json", payload(1)),
+                new ReportEnvelope.Entry("/topic/up/设备-2", "设备-2", "id-2", null, payload(2)),
+                new ReportEnvelope.Entry("/topic/up/device-3", null, "id-\u0000-3", "application/cbor", new byte[0]));
+        int size = ReportEnvelope.HEADER_SIZE;
+        for (ReportEnvelope.Entry entry : entries) {
+            size += entry.encodedSize();
+        }
+        assertEquals(ReportEnvelope.encode(entries).length, size);
+    }
+    
+    @Test
+    public void testEnvelopeNeverExceedsMaxBytes() throws Exception {
+        int maxBytes = 256;
+        createCoalescer(100, maxBytes, 60_000);
+        
+        List<CompletableFuture<PublishReceipt>> futures = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            futures.add(coalescer.publish("/topic/up/设备-" + i, "设备-" + i, payload(i), "application/json", null,
+                    MessageTypeEnum.PROPERTY));
+        }
+        coalescer.close();
+        for (CompletableFuture<PublishReceipt> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertTrue(coalescer.envelopeCount() > 1);
+        awaitReceived((int) coalescer.envelopeCount());
+        for (MqttMessage message : received) {
+            assertTrue(message.getPayload().length <= maxBytes);
+        }
+    }
+    
+    @Test
+    public void testBatchingContinuesWhileWindowIsFull() throws Exception {
+        MqttConfigProperties mqttProperties = new MqttConfigProperties();
+        mqttProperties.getPublish().setMaxInflight(1);
+        mqttProperties.getPublish().setWindowTimeout(10_000);
+        createCoalescer(2, 64 * 1024, 60_000, mqttProperties);
+        broker.holdAcks();
+        
+        List<CompletableFuture<PublishReceipt>> futures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            futures.add(coalescer.publish("/topic/up/device-1", "device-1", payload(i), null, null, MessageTypeEnum.EVENT));
+        }
+        // 第二个信封等待在途窗口，等待期间不占用攒批的锁
+        CompletableFuture<List<CompletableFuture<PublishReceipt>>> blocked = CompletableFuture.supplyAsync(() -> List.of(
+                coalescer.publish("/topic/up/device-1", "device-1", payload(2), null, null, MessageTypeEnum.EVENT),
+                coalescer.publish("/topic/up/device-1", "device-1", payload(3), null, null, MessageTypeEnum.EVENT)));
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertFalse(blocked.isDone());
+        CompletableFuture<PublishReceipt> next = CompletableFuture.supplyAsync(() -> coalescer.publish(
+                "/topic/up/device-1", "device-1", payload(4), null, null, MessageTypeEnum.EVENT)).get(1, TimeUnit.SECONDS);
+        futures.add(next);
+        
+        broker.releaseAcks();
+        futures.addAll(2, blocked.get(5, TimeUnit.SECONDS));
+        coalescer.close();
+        for (CompletableFuture<PublishReceipt> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        
+        // 信封按攒批顺序发出
+        awaitReceived(3);
+        int value = 0;
+        for (MqttMessage message : received) {
+            for (ReportEnvelope.Entry entry : ReportEnvelope.decode(message.getPayload())) {
+                assertArrayEquals(payload(value++), entry.payload());
+            }
+        }
+        assertEquals(5, value);
+    }
+    
+    @Test
+    public void testGroupsReportsByPublisherLane() throws Exception {
+        int poolSize = 3;
+        MqttConfigProperties mqttProperties = new MqttConfigProperties();
+        mqttProperties.getPublish().setPoolSize(poolSize);
+        mqttProperties.getPublish().setShutdownTimeout(100);
+        createCoalescer(4, 64 * 1024, 50, mqttProperties);
+        
+        List<CompletableFuture<PublishReceipt>> futures = new ArrayList<>();
+        for (int round = 0; round < 5; round++) {
+            for (int device = 0; device < 9; device++) {
+                futures.add(coalescer.publish("/topic/up/device-" + device, "device-" + device, payload(round), null, null,
+                        MessageTypeEnum.PROPERTY));
+            }
+        }
+        coalescer.close();
+        for (CompletableFuture<PublishReceipt> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        awaitReceived((int) coalescer.envelopeCount());
+        
+        // 一个信封只包含落在同一连接上的设备，并经由该连接发出
+        long[] envelopesPerLane = new long[poolSize];
+        Map<String, List<Integer>> rounds = new HashMap<>();
+        for (MqttMessage message : received) {
+            List<ReportEnvelope.Entry> entries = ReportEnvelope.decode(message.getPayload());
+            int lane = PublisherPool.homeLane(entries.get(0).deviceCode(), poolSize);
+            envelopesPerLane[lane]++;
+            for (ReportEnvelope.Entry entry : entries) {
+                assertEquals(lane, PublisherPool.homeLane(entry.deviceCode(), poolSize));
+                String value = new String(entry.payload(), StandardCharsets.UTF_8);
+                rounds.computeIfAbsent(entry.deviceCode(), key -> new ArrayList<>())
+                        .add(Integer.parseInt(value.replaceAll("\\D", "")));
+            }
+        }
+        for (int lane = 0; lane < poolSize; lane++) {
+            assertEquals(envelopesPerLane[lane], sender.publisherPool().lane(lane).publishedCount());
+        }
+        // 同一设备的上报保持发布顺序
+        assertEquals(9, rounds.size());
+        rounds.values().forEach(values -> assertEquals(List.of(0, 1, 2, 3, 4), values));
+    }
+    
+    private void awaitReceived(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.size() < count && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(count, received.size());
+    }
+    
+    private void createCoalescer(int maxRecords, int maxBytes, long linger) {
+        createCoalescer(maxRecords, maxBytes, linger, new MqttConfigProperties());
+    }
+    
+    private void createCoalescer(int maxRecords, int maxBytes, long linger, MqttConfigProperties mqttProperties) {
+        MqttConnectionOptions options = new MqttConnectionOptions();
+        options.setServerURIs(new String[]{broker.url()});
+        options.setCleanStart(true);
+        clientManager = new Mqttv5ClientManager(options, "coalescer-test");
+        clientManager.setDisconnectCompletionTimeout(100);
+        clientManager.start();
+        
+        IotMessageConfigProperties iotProperties = new IotMessageConfigProperties();
+        iotProperties.setTag("edge");
+        IotMessageConfigProperties.Coalescing config = iotProperties.getCoalescing();
+        config.setEnabled(true);
+        config.setMaxRecords(maxRecords);
+        config.setMaxBytes(maxBytes);
+        config.setLinger(linger);
+        sender = new MqttMessageSenderHandler(clientManager, iotProperties, mqttProperties);
+        coalescer = new ReportCoalescer(new PublishOutbox(sender, iotProperties), iotProperties, mqttProperties);
+    }
+    
+    private static byte[] payload(int index) {
+        return ("{\"value\":" + index + "}").getBytes(StandardCharsets.UTF_8);
+    }
+}
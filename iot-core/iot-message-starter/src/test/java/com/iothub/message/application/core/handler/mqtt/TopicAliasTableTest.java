@@ -0,0 +1,194 @@
+package com.iothub.message.application.core.handler.mqtt;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import com.iothub.message.application.support.MqttBrokerStandIn;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.MqttSubscription;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.MqttPublish;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.integration.mqtt.core.Mqttv5ClientManager;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TopicAliasTableTest {
+    
+    private static final String TOPIC = "/topic/up/";
+    
+    private MqttBrokerStandIn broker;
+    private Mqttv5ClientManager clientManager;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    
+    @Before
+    public void startBroker() throws Exception {
+        broker = new MqttBrokerStandIn();
+        MqttAsyncClient cloud = broker.connect("cloud", (topic, message) -> received.add(topic));
+        cloud.subscribe(new MqttSubscription(TOPIC + "#", 1)).waitForCompletion(5000);
+    }
+    
+    @After
+    public void stopBroker() throws IOException {
+        if (clientManager != null) {
+            clientManager.stop();
+        }
+        broker.close();
+    }
+    
+    @Test
+    public void testSendsOnlyAliasAfterBinding() throws Exception {
+        broker.setTopicAliasMaximum(10);
+        MqttMessageSenderHandler sender = createSender(true);
+        
+        for (int i = 0; i < 20; i++) {
+            for (int device = 0; device < 3; device++) {
+                sender.publishAsync(TOPIC + "device-" + device, "{}", MessageTypeEnum.PROPERTY).get(5, TimeUnit.SECONDS);
+            }
+        }
+        awaitReceived(60);
+        assertEquals(57, broker.aliasOnlyCount());
+        assertEquals(TOPIC + "device-2", received.get(59));
+    }
+    
+    @Test
+    public void testReassignsLeastRecentlyUsedAlias() throws Exception {
+        broker.setTopicAliasMaximum(2);
+        MqttMessageSenderHandler sender = createSender(true);
+        
+        List<String> topics = List.of("a", "b", "a", "c", "c", "a", "b", "b");
+        for (String topic : topics) {
+            sender.publishAsync(TOPIC + topic, "{}", MessageTypeEnum.PROPERTY).get(5, TimeUnit.SECONDS);
+        }
+        awaitReceived(topics.size());
+        
+        // b 最久未使用，别名先让给 c；之后 c 最久未使用，别名再让给 b
+        assertEquals(topics.stream().map(topic -> TOPIC + topic).toList(), received);
+        assertEquals(4, broker.aliasOnlyCount());
+        TopicAliasTable aliases = sender.topicAliasesOf(clientManager.getClient());
+        assertEquals(2, aliases.reassignedCount());
+        assertEquals(2, aliases.size());
+        // 继承自 Hashtable 的方法看到的是同一份绑定关系
+        assertEquals(Set.of(TOPIC + "a", TOPIC + "b"), aliases.keySet());
+        assertEquals(Set.of(1, 2), Set.copyOf(aliases.values()));
+    }
+    
+    @Test
+    public void testUnsupportedPahoVersionKeepsClientDefaults() throws Exception {
+        broker.setTopicAliasMaximum(2);
+        MqttAsyncClient client = broker.connect("version-test", (topic, message) -> { });
+        assertNull(TopicAliasTable.attach(client, "1.3.0"));
+        assertNull(TopicAliasTable.attach(client, null));
+        TopicAliasTable table = TopicAliasTable.attach(client, "1.2.5");
+        assertNotNull(table);
+        assertSame(table, TopicAliasTable.attach(client, "1.2.5"));
+    }
+    
+    @Test
+    public void testClientDefaultsKeepFirstTopics() throws Exception {
+        broker.setTopicAliasMaximum(2);
+        MqttMessageSenderHandler sender = createSender(false);
+        
+        List<String> topics = List.of("a", "b", "a", "c", "c", "a", "b", "b");
+        for (String topic : topics) {
+            sender.publishAsync(TOPIC + topic, "{}", MessageTypeEnum.PROPERTY).get(5, TimeUnit.SECONDS);
+        }
+        awaitReceived(topics.size());
+        
+        // 客户端默认只给最先出现的 a、b 分配别名，c 始终发送完整主题名
+        assertEquals(4, broker.aliasOnlyCount());
+        assertNull(sender.topicAliasesOf(clientManager.getClient()));
+    }
+    
+    @Test
+    public void testRebindsAliasesAfterReconnect() throws Exception {
+        broker.setTopicAliasMaximum(5);
+        MqttMessageSenderHandler sender = createSender(true);
+        sender.publishAsync(TOPIC + "device-1", "{}", MessageTypeEnum.PROPERTY).get(5, TimeUnit.SECONDS);
+        sender.publishAsync(TOPIC + "device-1", "{}", MessageTypeEnum.PROPERTY).get(5, TimeUnit.SECONDS);
+        awaitReceived(2);
+        assertEquals(1, broker.aliasOnlyCount());
+        
+        broker.drop("alias-test");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sender.isConnected() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        while (!sender.isConnected() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        assertTrue(sender.isConnected());
+        
+        // 新连接上代理一侧的别名已失效，第一条消息重新携带主题名绑定
+        sender.publishAsync(TOPIC + "device-1", "{}", MessageTypeEnum.PROPERTY).get(5, TimeUnit.SECONDS);
+        sender.publishAsync(TOPIC + "device-1", "{}", MessageTypeEnum.PROPERTY).get(5, TimeUnit.SECONDS);
+        awaitReceived(4);
+        assertEquals(2, broker.aliasOnlyCount());
+        assertTrue(sender.isConnected());
+    }
+    
+    @Test
+    public void testAliasSavesBytesPerMessage() throws Exception {
+        String topic = TOPIC + "edge-gateway-01/device-000123";
+        int[] payloadSizes = {16, 64, 256, 1024};
+        for (int size : payloadSizes) {
+            int full = wireSize(topic, null, size);
+            int binding = wireSize(topic, 1, size);
+            int aliased = wireSize(null, 1, size);
+            assertEquals(topic.length() - 3, full - aliased);
+            assertEquals(3, binding - full);
+        }
+    }
+    
+    private static int wireSize(String topic, Integer alias, int payloadSize) throws Exception {
+        MqttMessage message = new MqttMessage(new byte[payloadSize]);
+        message.setQos(1);
+        MqttProperties properties = new MqttProperties();
+        properties.setContentType("application/cbor");
+        properties.getUserProperties().add(new UserProperty("MessageType", MessageTypeEnum.PROPERTY.getType()));
+        properties.getUserProperties().add(new UserProperty("MessageId", UUID.randomUUID().toString()));
+        properties.getUserProperties().add(new UserProperty("MessageSourceType", "edge"));
+        properties.setTopicAlias(alias);
+        MqttPublish publish = new MqttPublish(TOPIC, message, properties);
+        publish.setTopicName(topic);
+        publish.setMessageId(1);
+        return publish.serialize().length;
+    }
+    
+    private void awaitReceived(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.size() < count && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(count, received.size());
+    }
+    
+    private MqttMessageSenderHandler createSender(boolean topicAliases) {
+        MqttConnectionOptions options = new MqttConnectionOptions();
+        options.setServerURIs(new String[]{broker.url()});
+        options.setCleanStart(true);
+        options.setAutomaticReconnect(true);
+        options.setAutomaticReconnectDelay(1, 2);
+        clientManager = new Mqttv5ClientManager(options, "alias-test");
+        clientManager.setDisconnectCompletionTimeout(100);
+        clientManager.start();
+        
+        IotMessageConfigProperties iotProperties = new IotMessageConfigProperties();
+        iotProperties.setTag("edge");
+        MqttConfigProperties mqttProperties = new MqttConfigProperties();
+        mqttProperties.getPublish().setTopicAliases(topicAliases);
+        return new MqttMessageSenderHandler(clientManager, iotProperties, mqttProperties);
+    }
+}
@@ -0,0 +1,62 @@
+package com.iothub.message.application.domain;
+
+import com.iothub.message.application.enums.MessageSourceType;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * 负载以字节视图传递：视图与接收到的数组共享字节，不复制，文本只解码一次
+ */
+public class IotMessageAllocationTest {
+    
+    private static final int PAYLOAD_SIZE = 512;
+    private static final InboundHeaders HEADERS =
+            new InboundHeaders(MessageTypeEnum.PROPERTY, MessageSourceType.EDGE, "id-1", "dev-1");
+    
+    @Test
+    public void testLazyContentDecodesOnce() {
+        byte[] payload = "{\"temperature\":23.5}".getBytes(StandardCharsets.UTF_8);
+        IotMessage message = new IotMessage("/topic/dev-1", payload, HEADERS);
+        
+        assertEquals(payload.length, message.getPayloadLength());
+        assertTrue(message.getPayload().isReadOnly());
+        assertSame(message.getContent(), message.getContent());
+        assertEquals("{\"temperature\":23.5}", message.getContent());
+    }
+    
+    @Test
+    public void testPayloadViewSharesReceivedBytes() {
+        byte[] payload = new byte[PAYLOAD_SIZE];
+        Arrays.fill(payload, (byte) 'a');
+        IotMessage message = new IotMessage("/topic/dev-1", payload, HEADERS);
+        
+        // 视图直接引用接收到的数组，对数组的修改在视图中可见
+        ByteBuffer view = message.getPayload();
+        payload[0] = 'b';
+        assertEquals('b', view.get(0));
+        assertEquals(PAYLOAD_SIZE, view.remaining());
+        
+        // 每次返回独立的读位置，处理器之间互不影响，也不能通过视图修改负载
+        view.get();
+        assertEquals(0, message.getPayload().position());
+        assertThrows(ReadOnlyBufferException.class, () -> view.put(0, (byte) 'c'));
+    }
+    
+    @Test
+    public void testWritePayloadToForwardsBytes() throws IOException {
+        byte[] payload = "{\"switch\":true}".getBytes(StandardCharsets.UTF_8);
+        IotMessage message = new IotMessage("/topic/dev-1", payload, HEADERS);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writePayloadTo(out);
+        assertArrayEquals(payload, out.toByteArray());
+    }
+}
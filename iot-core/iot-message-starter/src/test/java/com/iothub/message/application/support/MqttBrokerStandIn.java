@@ -0,0 +1,489 @@
+package com.iothub.message.application.support;
+
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttCallback;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
+import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * 最小化的 MQTT v5 代理替身：支持连接、订阅、取消订阅和发布，收到 QoS 1 消息时回复 PUBACK（可暂扣或延迟，模拟链路往返时间），
+ * 可在 CONNACK 中声明 receive-maximum 和 Topic Alias Maximum 并解析客户端的主题别名；向订阅者投递时一律使用 QoS 0，
+ * 并原样转发发布方的用户属性。
+ * 共享订阅按 MQTT v5 规范在同组订阅者之间轮询投递，非共享订阅支持 noLocal 选项；可在原端口停机和重启
+ */
+public class MqttBrokerStandIn implements Closeable {
+    private final int port;
+    private volatile ServerSocket serverSocket;
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final Map<String, AtomicInteger> roundRobin = new ConcurrentHashMap<>();
+    private final List<MqttAsyncClient> clients = new CopyOnWriteArrayList<>();
+    private volatile int receiveMaximum;       // 大于 0 时在 CONNACK 中声明
+    private volatile int topicAliasMaximum;    // 大于 0 时在 CONNACK 中声明
+    private final AtomicInteger aliasOnlyCount = new AtomicInteger();
+    private volatile boolean holdAcks;         // 为 true 时暂扣 PUBACK，直到 releaseAcks
+    private volatile long ackDelayMicros;      // 大于 0 时延迟回复 PUBACK
+    private final ScheduledExecutorService delayedAcks = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().factory());
+    
+    public MqttBrokerStandIn() throws IOException {
+        this.serverSocket = new ServerSocket(0);
+        this.port = serverSocket.getLocalPort();
+        ServerSocket listening = serverSocket;
+        Thread.ofVirtual().start(() -> accept(listening));
+    }
+    
+    public int port() {
+        return port;
+    }
+    
+    public String url() {
+        return "tcp://127.0.0.1:" + port();
+    }
+    
+    /**
+     * 设置之后建立的连接在 CONNACK 中声明的 receive-maximum
+     */
+    public void setReceiveMaximum(int receiveMaximum) {
+        this.receiveMaximum = receiveMaximum;
+    }
+    
+    /**
+     * 设置之后建立的连接在 CONNACK 中声明的 Topic Alias Maximum
+     */
+    public void setTopicAliasMaximum(int topicAliasMaximum) {
+        this.topicAliasMaximum = topicAliasMaximum;
+    }
+    
+    /**
+     * 收到的只携带主题别名、不带主题名的 PUBLISH 数量
+     */
+    public int aliasOnlyCount() {
+        return aliasOnlyCount.get();
+    }
+    
+    /**
+     * 当前已建立连接的客户端 ID
+     */
+    public List<String> clientIds() {
+        List<String> clientIds = new ArrayList<>();
+        for (Session session : sessions) {
+            if (session.clientId != null && !session.socket.isClosed()) {
+                clientIds.add(session.clientId);
+            }
+        }
+        return clientIds;
+    }
+    
+    /**
+     * 从代理一侧断开指定客户端的连接，模拟网络中断
+     */
+    public void drop(String clientIdPrefix) throws IOException {
+        for (Session session : sessions) {
+            if (session.clientId != null && session.clientId.startsWith(clientIdPrefix)) {
+                session.socket.close();
+            }
+        }
+    }
+    
+    /**
+     * 模拟代理停机：关闭监听端口并断开所有连接，会话和订阅随之丢失，直到 resume 之前新的连接都被拒绝
+     */
+    public void pause() throws IOException {
+        serverSocket.close();
+        for (Session session : sessions) {
+            session.socket.close();
+        }
+        sessions.clear();
+    }
+    
+    /**
+     * 模拟代理重启完成：在原端口重新监听
+     */
+    public void resume() throws IOException {
+        ServerSocket listening = new ServerSocket();
+        listening.setReuseAddress(true);
+        listening.bind(new InetSocketAddress(port));
+        serverSocket = listening;
+        Thread.ofVirtual().start(() -> accept(listening));
+    }
+    
+    /**
+     * 延迟回复之后收到的 QoS 1 消息的 PUBACK，模拟代理与客户端之间的往返时间
+     */
+    public void setAckDelay(long delay, TimeUnit unit) {
+        this.ackDelayMicros = unit.toMicros(delay);
+    }
+    
+    /**
+     * 暂扣之后收到的 QoS 1 消息的 PUBACK
+     */
+    public void holdAcks() {
+        this.holdAcks = true;
+    }
+    
+    /**
+     * 发出所有暂扣的 PUBACK，之后的消息立即确认
+     */
+    public void releaseAcks() throws IOException {
+        holdAcks = false;
+        for (Session session : sessions) {
+            Integer packetId;
+            while ((packetId = session.heldAcks.poll()) != null) {
+                session.ack(packetId);
+            }
+        }
+    }
+    
+    /**
+     * 创建连接到本代理的 Paho v5 客户端，关闭代理时一并断开
+     *
+     * @param clientId 客户端 ID
+     * @param listener 收到消息时的回调（主题, 消息）
+     */
+    public MqttAsyncClient connect(String clientId, BiConsumer<String, MqttMessage> listener) throws MqttException {
+        MqttAsyncClient client = new MqttAsyncClient(url(), clientId, new MemoryPersistence());
+        client.setCallback(new MqttCallback() {
+            @Override
+            public void messageArrived(String topic, MqttMessage message) {
+                listener.accept(topic, message);
+            }
+            
+            @Override
+            public void disconnected(MqttDisconnectResponse disconnectResponse) {
+            }
+            
+            @Override
+            public void mqttErrorOccurred(MqttException exception) {
+            }
+            
+            @Override
+            public void deliveryComplete(IMqttToken token) {
+            }
+            
+            @Override
+            public void connectComplete(boolean reconnect, String serverURI) {
+            }
+            
+            @Override
+            public void authPacketArrived(int reasonCode, MqttProperties properties) {
+            }
+        });
+        MqttConnectionOptions options = new MqttConnectionOptions();
+        options.setCleanStart(true);
+        client.connect(options).waitForCompletion(5000);
+        clients.add(client);
+        return client;
+    }
+    
+    private void accept(ServerSocket listening) {
+        while (!listening.isClosed()) {
+            try {
+                Session session = new Session(listening.accept());
+                sessions.add(session);
+                Thread.ofVirtual().start(session);
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+    
+    private void route(Session origin, String topic, byte[] userProperties, byte[] payload) throws IOException {
+        Map<String, List<Session>> groups = new ConcurrentHashMap<>();
+        for (Session session : sessions) {
+            for (Subscription subscription : session.subscriptions) {
+                String filter = subscription.filter();
+                if (filter.startsWith("$share/")) {
+                    int slash = filter.indexOf('/', 7);
+                    if (matches(filter.substring(slash + 1), topic)) {
+                        groups.computeIfAbsent(filter, key -> new ArrayList<>()).add(session);
+                    }
+                } else if (matches(filter, topic) && !(subscription.noLocal() && session == origin)) {
+                    session.publish(topic, userProperties, payload);
+                }
+            }
+        }
+        for (Map.Entry<String, List<Session>> group : groups.entrySet()) {
+            List<Session> members = group.getValue();
+            int next = roundRobin.computeIfAbsent(group.getKey(), key -> new AtomicInteger()).getAndIncrement();
+            members.get(next % members.size()).publish(topic, userProperties, payload);
+        }
+    }
+    
+    private static boolean matches(String filter, String topic) {
+        String[] filterLevels = filter.split("/", -1);
+        String[] topicLevels = topic.split("/", -1);
+        for (int i = 0; i < filterLevels.length; i++) {
+            if (filterLevels[i].equals("#")) {
+                return true;
+            }
+            if (i >= topicLevels.length || (!filterLevels[i].equals("+") && !filterLevels[i].equals(topicLevels[i]))) {
+                return false;
+            }
+        }
+        return filterLevels.length == topicLevels.length;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        for (MqttAsyncClient client : clients) {
+            try {
+                client.disconnectForcibly(100, 100, false);
+                client.close();
+            } catch (MqttException e) {
+                // 测试结束时忽略断开异常
+            }
+        }
+        serverSocket.close();
+        delayedAcks.shutdownNow();
+        for (Session session : sessions) {
+            session.socket.close();
+        }
+    }
+    
+    private final class Session implements Runnable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final OutputStream out;
+        private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+        private final Queue<Integer> heldAcks = new ConcurrentLinkedQueue<>();
+        private final Map<Integer, String> topicAliases = new ConcurrentHashMap<>();
+        private volatile String clientId;
+        
+        private Session(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = socket.getOutputStream();
+        }
+        
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    int header = in.readUnsignedByte();
+                    byte[] body = new byte[readVarInt(in)];
+                    in.readFully(body);
+                    DataInputStream packet = new DataInputStream(new ByteArrayInputStream(body));
+                    switch (header >> 4) {
+                        case 1 -> {                                         // CONNECT
+                            packet.readUTF();
+                            packet.skipNBytes(4);
+                            packet.skipNBytes(readVarInt(packet));
+                            clientId = packet.readUTF();
+                            connack();
+                        }
+                        case 3 -> {                                         // PUBLISH
+                            String topic = packet.readUTF();
+                            int packetId = (header & 0x06) != 0 ? packet.readUnsignedShort() : 0;
+                            byte[] properties = new byte[readVarInt(packet)];
+                            packet.readFully(properties);
+                            Integer alias = topicAlias(properties);
+                            if (alias != null && topic.isEmpty()) {
+                                topic = topicAliases.get(alias);
+                                aliasOnlyCount.incrementAndGet();
+                                if (topic == null) {
+                                    socket.close();                         // 未绑定的别名属于协议错误
+                                    return;
+                                }
+                            } else if (alias != null) {
+                                topicAliases.put(alias, topic);
+                            }
+                            route(this, topic, userProperties(properties), packet.readAllBytes());
+                            if (packetId != 0) {
+                                long delay = ackDelayMicros;
+                                if (holdAcks) {
+                                    heldAcks.add(packetId);
+                                } else if (delay > 0) {
+                                    int delayedId = packetId;
+                                    delayedAcks.schedule(() -> {
+                                        try {
+                                            ack(delayedId);
+                                        } catch (IOException e) {
+                                            // 连接已断开，客户端重连后自行重发
+                                        }
+                                    }, delay, TimeUnit.MICROSECONDS);
+                                } else {
+                                    ack(packetId);
+                                }
+                            }
+                        }
+                        case 8 -> {                                         // SUBSCRIBE
+                            int packetId = packet.readUnsignedShort();
+                            packet.skipNBytes(readVarInt(packet));
+                            ByteArrayOutputStream ack = new ByteArrayOutputStream();
+                            ack.write(packetId >> 8);
+                            ack.write(packetId);
+                            ack.write(0);
+                            while (packet.available() > 0) {
+                                String filter = packet.readUTF();
+                                int options = packet.readUnsignedByte();
+                                subscriptions.add(new Subscription(filter, (options & 0x04) != 0));
+                                ack.write(0);
+                            }
+                            send(0x90, ack.toByteArray());                  // SUBACK
+                        }
+                        case 10 -> {                                        // UNSUBSCRIBE
+                            int packetId = packet.readUnsignedShort();
+                            packet.skipNBytes(readVarInt(packet));
+                            ByteArrayOutputStream ack = new ByteArrayOutputStream();
+                            ack.write(packetId >> 8);
+                            ack.write(packetId);
+                            ack.write(0);
+                            while (packet.available() > 0) {
+                                String filter = packet.readUTF();
+                                subscriptions.removeIf(subscription -> subscription.filter().equals(filter));
+                                ack.write(0);
+                            }
+                            send(0xB0, ack.toByteArray());                  // UNSUBACK
+                        }
+                        case 12 -> send(0xD0, new byte[0]);                 // PINGRESP
+                        case 14 -> {                                        // DISCONNECT
+                            socket.close();
+                            return;
+                        }
+                        default -> {
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                sessions.remove(this);
+            }
+        }
+        
+        private void connack() throws IOException {
+            ByteArrayOutputStream properties = new ByteArrayOutputStream();
+            int maximum = receiveMaximum;
+            if (maximum > 0) {
+                properties.write(new byte[]{0x21, (byte) (maximum >> 8), (byte) maximum});
+            }
+            int aliasMaximum = topicAliasMaximum;
+            if (aliasMaximum > 0) {
+                properties.write(new byte[]{0x22, (byte) (aliasMaximum >> 8), (byte) aliasMaximum});
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            body.write(0);
+            body.write(0);
+            body.write(properties.size());
+            properties.writeTo(body);
+            send(0x20, body.toByteArray());
+        }
+        
+        private void ack(int packetId) throws IOException {
+            send(0x40, new byte[]{(byte) (packetId >> 8), (byte) packetId});   // PUBACK，省略原因码表示成功
+        }
+        
+        private void publish(String topic, byte[] properties, byte[] payload) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(body);
+            data.writeUTF(topic);
+            writeVarInt(data, properties.length);
+            data.write(properties);
+            data.write(payload);
+            send(0x30, body.toByteArray());
+        }
+        
+        private synchronized void send(int header, byte[] body) throws IOException {
+            ByteArrayOutputStream packet = new ByteArrayOutputStream();
+            packet.write(header);
+            writeVarInt(packet, body.length);
+            packet.write(body);
+            out.write(packet.toByteArray());
+            out.flush();
+        }
+    }
+    
+    /**
+     * 从 PUBLISH 的属性中取出用户属性，按原编码拼接，用于转发给订阅者
+     */
+    private static byte[] userProperties(byte[] properties) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(properties));
+        ByteArrayOutputStream forwarded = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(forwarded);
+        while (in.available() > 0) {
+            int id = in.readUnsignedByte();
+            switch (id) {
+                case 0x01 -> in.readUnsignedByte();
+                case 0x02 -> in.readInt();
+                case 0x03, 0x08 -> in.readUTF();
+                case 0x09 -> in.skipNBytes(in.readUnsignedShort());
+                case 0x0B -> readVarInt(in);
+                case 0x23 -> in.readUnsignedShort();
+                case 0x26 -> {
+                    out.write(id);
+                    out.writeUTF(in.readUTF());
+                    out.writeUTF(in.readUTF());
+                }
+                default -> throw new IOException("Unexpected publish property: " + id);
+            }
+        }
+        return forwarded.toByteArray();
+    }
+    
+    /**
+     * 从 PUBLISH 的属性中取出主题别名，其余属性跳过
+     */
+    private static Integer topicAlias(byte[] properties) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(properties));
+        Integer alias = null;
+        while (in.available() > 0) {
+            int id = in.readUnsignedByte();
+            switch (id) {
+                case 0x01 -> in.readUnsignedByte();                         // 负载格式
+                case 0x02 -> in.readInt();                                  // 消息过期时间
+                case 0x03, 0x08 -> in.readUTF();                            // 内容类型、响应主题
+                case 0x09 -> in.skipNBytes(in.readUnsignedShort());         // 关联数据
+                case 0x0B -> readVarInt(in);                                // 订阅标识符
+                case 0x23 -> alias = in.readUnsignedShort();                // 主题别名
+                case 0x26 -> {                                              // 用户属性
+                    in.readUTF();
+                    in.readUTF();
+                }
+                default -> throw new IOException("Unexpected publish property: " + id);
+            }
+        }
+        return alias;
+    }
+    
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int multiplier = 1;
+        int digit;
+        do {
+            digit = in.readUnsignedByte();
+            value += (digit & 0x7F) * multiplier;
+            multiplier *= 128;
+        } while ((digit & 0x80) != 0);
+        return value;
+    }
+    
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        do {
+            int digit = value % 128;
+            value /= 128;
+            out.write(value > 0 ? digit | 0x80 : digit);
+        } while (value > 0);
+    }
+    
+    private record Subscription(String filter, boolean noLocal) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.iothub.message.application.utils;
+
+import com.iothub.message.application.core.config.MqttConfigProperties;
+import com.iothub.message.application.core.listener.MqttConnectionEvent;
+import com.iothub.message.application.core.listener.MqttReadinessEvent;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LaunchStatusMonitorTest {
+    
+    private final List<MqttReadinessEvent> readiness = new ArrayList<>();
+    private LaunchStatusMonitor monitor = createMonitor(false);
+    
+    @Test
+    public void testPublishesReadinessOnlyOnTransitions() {
+        assertFalse(monitor.isMqttClientAlive());
+        
+        monitor.onApplicationEvent(event("shared", MqttConnectionEvent.State.CONNECTED, false));
+        monitor.onApplicationEvent(event("shared", MqttConnectionEvent.State.CONNECTED, false));
+        assertEquals(1, readiness.size());
+        assertTrue(readiness.get(0).isReady());
+        assertTrue(monitor.isMqttClientAlive());
+        
+        monitor.onApplicationEvent(event("shared", MqttConnectionEvent.State.DISCONNECTED, false));
+        monitor.onApplicationEvent(event("shared", MqttConnectionEvent.State.CONNECTED, false));
+        assertEquals(3, readiness.size());
+        assertFalse(readiness.get(1).isReady());
+        assertTrue(readiness.get(2).isReady());
+    }
+    
+    @Test
+    public void testIgnoresPublisherLanes() {
+        monitor.onApplicationEvent(event("shared", MqttConnectionEvent.State.CONNECTED, false));
+        monitor.onApplicationEvent(event("shared-pub1", MqttConnectionEvent.State.DISCONNECTED, true));
+        assertEquals(1, readiness.size());
+        assertTrue(monitor.isMqttClientAlive());
+    }
+    
+    @Test
+    public void testNotReadyWhileAnyConnectionIsDown() {
+        monitor = createMonitor(true);
+        
+        // 订阅连接尚未发布任何事件，只有发送连接建立时不算就绪
+        monitor.onApplicationEvent(event("outbound", MqttConnectionEvent.State.CONNECTED, false));
+        assertFalse(monitor.isMqttClientAlive());
+        assertTrue(readiness.isEmpty());
+        
+        monitor.onApplicationEvent(event("inbound", MqttConnectionEvent.State.CONNECTED, false));
+        assertEquals(1, readiness.size());
+        assertTrue(readiness.get(0).isReady());
+        
+        monitor.onApplicationEvent(event("inbound", MqttConnectionEvent.State.DISCONNECTED, false));
+        assertFalse(monitor.isMqttClientAlive());
+        assertFalse(readiness.get(1).isReady());
+    }
+    
+    @Test
+    public void testRepublishesReadinessOnContextRefresh() {
+        // 未就绪时不补发
+        monitor.onContextRefreshed();
+        assertTrue(readiness.isEmpty());
+        
+        // 首次连接在监听方注册之前完成，容器刷新完成时再发布一次就绪事件
+        monitor.onApplicationEvent(event("shared", MqttConnectionEvent.State.CONNECTED, false));
+        monitor.onContextRefreshed();
+        assertEquals(2, readiness.size());
+        assertTrue(readiness.get(1).isReady());
+    }
+    
+    private LaunchStatusMonitor createMonitor(boolean splitConnections) {
+        MqttConfigProperties properties = new MqttConfigProperties();
+        properties.setSplitConnections(splitConnections);
+        return new LaunchStatusMonitor(event -> readiness.add((MqttReadinessEvent) event), properties);
+    }
+    
+    private MqttConnectionEvent event(String connection, MqttConnectionEvent.State state, boolean publisherLane) {
+        return new MqttConnectionEvent(this, connection, state, publisherLane, false, 0, null, null);
+    }
+}
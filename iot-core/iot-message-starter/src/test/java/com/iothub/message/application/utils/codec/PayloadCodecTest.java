@@ -0,0 +1,122 @@
+package com.iothub.message.application.utils.codec;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PayloadCodecTest {
+    
+    private static final List<PayloadCodec> CODECS = List.of(new JsonPayloadCodec(), new CborPayloadCodec(), new BinaryPayloadCodec());
+    
+    @Test
+    public void testRoundTripsReportValues() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("temperature", 23.5);
+        report.put("humidity", 61);
+        report.put("offset", -300L);
+        report.put("online", true);
+        report.put("alarm", null);
+        report.put("name", "温湿度传感器-1");
+        report.put("tags", List.of("a", "b"));
+        report.put("nested", Map.of("level", 2));
+        report.put("samples", new int[]{1, -2, 3});
+        report.put("big", Long.MIN_VALUE);
+        
+        for (PayloadCodec codec : CODECS) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> decoded = (Map<String, Object>) codec.decode(codec.encode(report));
+            assertEquals(codec.name(), new ArrayList<>(report.keySet()), new ArrayList<>(decoded.keySet()));
+            assertEquals(codec.name(), 23.5, ((Number) decoded.get("temperature")).doubleValue(), 0);
+            assertEquals(codec.name(), 61L, decoded.get("humidity"));
+            assertEquals(codec.name(), -300L, decoded.get("offset"));
+            assertEquals(codec.name(), true, decoded.get("online"));
+            assertNull(codec.name(), decoded.get("alarm"));
+            assertEquals(codec.name(), "温湿度传感器-1", decoded.get("name"));
+            assertEquals(codec.name(), List.of("a", "b"), decoded.get("tags"));
+            assertEquals(codec.name(), Map.of("level", 2L), decoded.get("nested"));
+            assertEquals(codec.name(), List.of(1L, -2L, 3L), decoded.get("samples"));
+            assertEquals(codec.name(), Long.MIN_VALUE, decoded.get("big"));
+        }
+    }
+    
+    @Test
+    public void testBinaryFormatsKeepBytesAndFloats() {
+        byte[] raw = {0, 1, (byte) 0xFF};
+        for (PayloadCodec codec : List.of(new CborPayloadCodec(), new BinaryPayloadCodec())) {
+            assertArrayEquals(raw, (byte[]) codec.decode(codec.encode(raw)));
+            assertEquals(1.5f, codec.decode(codec.encode(1.5f)));
+        }
+        // JSON 中字节数组以 Base64 字符串表示
+        JsonPayloadCodec json = new JsonPayloadCodec();
+        assertEquals(Base64.getEncoder().encodeToString(raw), json.decode(json.encode(raw)));
+    }
+    
+    @Test
+    public void testCborMatchesSpecificationVectors() {
+        CborPayloadCodec cbor = new CborPayloadCodec();
+        // RFC 8949 附录 A 的示例
+        assertArrayEquals(hex("00"), cbor.encode(0));
+        assertArrayEquals(hex("1818"), cbor.encode(24));
+        assertArrayEquals(hex("1903e8"), cbor.encode(1000));
+        assertArrayEquals(hex("1a000f4240"), cbor.encode(1000000));
+        assertArrayEquals(hex("1b000000e8d4a51000"), cbor.encode(1000000000000L));
+        assertArrayEquals(hex("3863"), cbor.encode(-100));
+        assertArrayEquals(hex("fb3ff199999999999a"), cbor.encode(1.1));
+        assertArrayEquals(hex("6449455446"), cbor.encode("IETF"));
+        assertArrayEquals(hex("a26161016162820203"), cbor.encode(orderedMap("a", 1, "b", List.of(2, 3))));
+        
+        assertEquals(new BigInteger("18446744073709551615"), cbor.decode(hex("1bffffffffffffffff")));
+        assertEquals(new BigInteger("-18446744073709551616"), cbor.decode(hex("3bffffffffffffffff")));
+        assertEquals(1.0f, cbor.decode(hex("f93c00")));
+        assertEquals(List.of(1L, List.of(2L, 3L), List.of(4L, 5L)), cbor.decode(hex("9f018202039f0405ffff")));
+        assertEquals("streaming", cbor.decode(hex("7f657374726561646d696e67ff")));
+        assertEquals(Map.of("a", 1L), cbor.decode(hex("bf6161 01ff")));
+        assertEquals(1363896240L, cbor.decode(hex("c11a514b67b0"))); // 语义标签被忽略
+    }
+    
+    @Test
+    public void testRejectsMalformedPayloads() {
+        for (PayloadCodec codec : CODECS) {
+            byte[] encoded = codec.encode(Map.of("key", "value"));
+            byte[] truncated = Arrays.copyOf(encoded, encoded.length - 2);
+            assertThrows(codec.name(), IllegalArgumentException.class, () -> codec.decode(truncated));
+        }
+        // 长度前缀远超负载长度时不分配数组
+        assertThrows(IllegalArgumentException.class, () -> new CborPayloadCodec().decode(hex("9b7fffffffffffffff")));
+        assertThrows(IllegalArgumentException.class, () -> new BinaryPayloadCodec().decode(hex("08ffffffff0f")));
+        assertThrows(IllegalArgumentException.class, () -> new JsonPayloadCodec().decode("{\"a\":1} x".getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    @Test
+    public void testBinaryCodecsAreSmallerThanJson() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            report.put("property" + i, i % 3 == 0 ? (Object) (i * 1.25) : i % 3 == 1 ? (Object) (i * 17L) : "value-" + i);
+        }
+        report.put("timestamp", 1_700_000_000_000L);
+        
+        int json = new JsonPayloadCodec().encode(report).length;
+        assertTrue(new BinaryPayloadCodec().encode(report).length < json);
+        assertTrue(new CborPayloadCodec().encode(report).length < json);
+    }
+    
+    private static Map<String, Object> orderedMap(String k1, Object v1, String k2, Object v2) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put(k1, v1);
+        map.put(k2, v2);
+        return map;
+    }
+    
+    private static byte[] hex(String text) {
+        String digits = text.replace(" ", "");
+        byte[] bytes = new byte[digits.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(digits.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,144 @@
+package com.iothub.message.application.utils.codec;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.Assert.*;
+
+public class PayloadCompressionTest {
+    
+    private static final PayloadCodec JSON = new JsonPayloadCodec();
+    
+    @Test
+    public void testRoundTripsAboveThreshold() {
+        PayloadCompression compression = new PayloadCompression(1024, 6, 4, 1024 * 1024);
+        byte[] payload = propertyReport(40);
+        
+        byte[] compressed = compression.compress(payload);
+        assertNotNull(compressed);
+        assertTrue(compressed.length < payload.length / 3);
+        assertArrayEquals(payload, compression.decompress(PayloadCompression.DEFLATE, compressed));
+        assertEquals(1, compression.compressedCount());
+        assertEquals(payload.length - compressed.length, compression.savedBytes());
+    }
+    
+    @Test
+    public void testSkipsSmallAndIncompressiblePayloads() {
+        PayloadCompression compression = new PayloadCompression(1024, 6, 4, 1024 * 1024);
+        assertNull(compression.compress(new byte[1023]));
+        
+        byte[] random = new byte[4096];
+        new Random(7).nextBytes(random);
+        assertNull(compression.compress(random));
+        assertEquals(0, compression.compressedCount());
+        
+        // 未压缩的负载原样返回
+        assertSame(random, compression.decompress(null, random));
+    }
+    
+    @Test
+    public void testRejectsMalformedOrOversizedPayloads() throws Exception {
+        PayloadCompression compression = new PayloadCompression(16, 6, 4, 64 * 1024);
+        byte[] compressed = compression.compress(propertyReport(40));
+        
+        assertThrows(IllegalArgumentException.class, () -> compression.decompress("lz4", compressed));
+        assertThrows(IllegalArgumentException.class,
+                () -> compression.decompress(PayloadCompression.DEFLATE, "not deflate".getBytes(StandardCharsets.UTF_8)));
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        assertThrows(IllegalArgumentException.class, () -> compression.decompress(PayloadCompression.DEFLATE, truncated));
+        
+        // 1 MB 的零压缩后只有 1 KB 左右，解压后超过上限
+        ByteArrayOutputStream bomb = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bomb)) {
+            out.write(new byte[1024 * 1024]);
+        }
+        assertThrows(IllegalArgumentException.class, () -> compression.decompress(PayloadCompression.DEFLATE, bomb.toByteArray()));
+        
+        // 出错后池中的实例仍可继续使用
+        assertNotNull(compression.decompress(PayloadCompression.DEFLATE, compressed));
+    }
+    
+    @Test
+    public void testConcurrentCallersShareThePool() throws Exception {
+        PayloadCompression compression = new PayloadCompression(64, 6, 2, 1024 * 1024);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 200; i++) {
+                int fields = 10 + i % 50;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    byte[] payload = propertyReport(fields);
+                    byte[] compressed = compression.compress(payload);
+                    assertArrayEquals(payload, compression.decompress(PayloadCompression.DEFLATE, compressed));
+                }, executor));
+            }
+            for (CompletableFuture<Void> future : futures) {
+                future.get();
+            }
+        }
+        assertEquals(200, compression.compressedCount());
+    }
+    
+    @Test
+    public void testPooledDeflaterMatchesFreshDeflater() {
+        PayloadCompression compression = new PayloadCompression(256, 6, 1, 1024 * 1024);
+        // 单个池化实例反复使用，每次重置后的输出与新建的 Deflater 完全一致
+        for (int round = 0; round < 3; round++) {
+            for (int fields : new int[]{20, 80}) {
+                byte[] payload = propertyReport(fields);
+                byte[] compressed = compression.compress(payload);
+                assertArrayEquals(deflatePerMessage(payload), compressed);
+                assertTrue(compressed.length < payload.length / 2);
+                assertArrayEquals(payload, compression.decompress(PayloadCompression.DEFLATE, compressed));
+            }
+        }
+        assertEquals(6, compression.compressedCount());
+    }
+    
+    private static byte[] deflatePerMessage(byte[] payload) {
+        Deflater deflater = new Deflater(6);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length);
+            deflater.setInput(payload);
+            deflater.finish();
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    /**
+     * 模拟连接器上报的属性文档：字段名重复度高，数值各不相同
+     */
+    private static byte[] propertyReport(int fields) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("deviceCode", "device-000123");
+        report.put("timestamp", 1_760_000_000_000L);
+        Random random = new Random(fields);
+        for (int i = 0; i < fields; i++) {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("identifier", "sensor_channel_" + i);
+            point.put("value", Math.round(random.nextDouble() * 10_000) / 100.0);
+            point.put("unit", i % 2 == 0 ? "celsius" : "percent");
+            point.put("quality", "GOOD");
+            report.put("point_" + i, point);
+        }
+        return JSON.encode(report);
+    }
+}
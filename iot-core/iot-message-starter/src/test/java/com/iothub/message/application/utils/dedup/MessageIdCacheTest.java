@@ -0,0 +1,83 @@
+package com.iothub.message.application.utils.dedup;
+
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class MessageIdCacheTest {
+    
+    private final AtomicLong clock = new AtomicLong(1_000);
+    
+    @Test
+    public void testDetectsDuplicatesWithinWindow() {
+        MessageIdCache cache = new MessageIdCache(1000, 4, 4, 60_000, clock::get);
+        String id = UUID.randomUUID().toString();
+        
+        assertTrue(cache.add(id));
+        clock.addAndGet(59_000);
+        assertFalse(cache.add(id));
+        assertFalse(cache.add(id.toUpperCase()));
+        
+        assertEquals(1, cache.missCount());
+        assertEquals(2, cache.hitCount());
+    }
+    
+    @Test
+    public void testContainsDoesNotRecord() {
+        MessageIdCache cache = new MessageIdCache(1000, 4, 4, 60_000, clock::get);
+        String id = UUID.randomUUID().toString();
+        
+        // 只查询不记录：入队失败的消息不会让发送方的重发被当成重复
+        assertFalse(cache.contains(id));
+        assertFalse(cache.contains(id));
+        assertTrue(cache.add(id));
+        assertTrue(cache.contains(id));
+        assertTrue(cache.contains(id.toUpperCase()));
+        assertFalse(cache.contains(id + "-other"));
+        assertEquals(2, cache.hitCount());
+    }
+    
+    @Test
+    public void testExpiresAfterWindow() {
+        MessageIdCache cache = new MessageIdCache(1000, 4, 4, 60_000, clock::get);
+        assertTrue(cache.add("device-1-42"));
+        
+        clock.addAndGet(30_000);
+        assertTrue(cache.add("device-1-43"));
+        clock.addAndGet(100_000);
+        assertTrue(cache.add("device-1-42"));
+        
+        // 长时间无消息后整个窗口一次性过期
+        clock.addAndGet(10 * 60_000);
+        assertTrue(cache.add("device-1-43"));
+        assertEquals(1, cache.size());
+    }
+    
+    @Test
+    public void testOverflowEvictsOldestGeneration() {
+        MessageIdCache cache = new MessageIdCache(100, 1, 2, 60_000, clock::get);
+        for (int i = 1; i <= 300; i++) {
+            assertTrue(cache.add(0, i));
+        }
+        assertTrue(cache.overflowCount() > 0);
+        assertTrue(cache.size() < 300);
+        
+        // 最近写入的记录仍然可以被识别
+        assertFalse(cache.add(0, 300));
+    }
+    
+    @Test
+    public void testHoldsManyIds() {
+        MessageIdCache cache = new MessageIdCache(1_000_000, 64, 4, 60_000, clock::get);
+        for (long i = 0; i < 1_000_000; i++) {
+            assertTrue(cache.add(i, i * 31));
+        }
+        assertEquals(0, cache.overflowCount());
+        for (long i = 0; i < 1_000_000; i += 997) {
+            assertFalse(cache.add(i, i * 31));
+        }
+    }
+}
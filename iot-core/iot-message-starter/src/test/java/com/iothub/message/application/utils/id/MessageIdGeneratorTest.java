@@ -0,0 +1,80 @@
+package com.iothub.message.application.utils.id;
+
+import com.iothub.message.application.utils.dedup.MessageIdCache;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class MessageIdGeneratorTest {
+    
+    @Test
+    public void testFormatsNodeAndTimestamp() {
+        MessageIdGenerator generator = new MessageIdGenerator(0x1234, 0xABCDEF);
+        long before = System.currentTimeMillis();
+        String id = generator.next();
+        
+        assertEquals(32, id.length());
+        assertTrue(id.matches("[0-9a-f]{32}"));
+        assertEquals("1234000000abcdef", id.substring(16));
+        long timestamp = MessageIdGenerator.timestampOf(id);
+        assertTrue(timestamp >= before && timestamp <= System.currentTimeMillis() + 1);
+        assertEquals(-1, MessageIdGenerator.timestampOf(UUID.randomUUID().toString()));
+        
+        assertThrows(IllegalArgumentException.class, () -> new MessageIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new MessageIdGenerator(MessageIdGenerator.MAX_NODE_ID + 1));
+    }
+    
+    @Test
+    public void testStrictlyIncreasingAndSortable() {
+        MessageIdGenerator generator = new MessageIdGenerator(1);
+        String previous = generator.next();
+        long previousHigh = generator.nextHigh();
+        for (int i = 0; i < 2_000_000; i++) {
+            long high = generator.nextHigh();
+            assertTrue(high > previousHigh);
+            previousHigh = high;
+        }
+        // 十六进制定长表示，字典序与生成顺序一致
+        String next = generator.next();
+        assertTrue(next.compareTo(previous) > 0);
+    }
+    
+    @Test
+    public void testUniqueAcrossConcurrentCallers() throws Exception {
+        MessageIdGenerator generator = new MessageIdGenerator(7);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int task = 0; task < 64; task++) {
+                futures.add(executor.submit(() -> {
+                    String previous = "";
+                    for (int i = 0; i < 5_000; i++) {
+                        String id = generator.next();
+                        assertTrue(id.compareTo(previous) > 0);
+                        ids.add(id);
+                        previous = id;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        assertEquals(64 * 5_000, ids.size());
+        
+        // 去重缓存按 128 位解析，不走字符串哈希
+        MessageIdCache cache = new MessageIdCache(1000, 4, 2, 60_000);
+        String id = generator.next();
+        assertTrue(cache.add(id));
+        assertFalse(cache.add(id));
+    }
+}
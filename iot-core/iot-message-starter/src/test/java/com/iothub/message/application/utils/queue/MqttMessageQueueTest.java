@@ -0,0 +1,257 @@
+package com.iothub.message.application.utils.queue;
+
+import com.iothub.message.application.core.config.IotMessageConfigProperties;
+import com.iothub.message.application.enums.MessageTypeEnum;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MqttMessageQueueTest {
+    
+    private MqttMessageQueue<String> createQueue(int capacity) {
+        IotMessageConfigProperties properties = new IotMessageConfigProperties();
+        properties.getQueue().setCapacity(capacity);
+        properties.getQueue().setBlockTimeout(50);
+        MqttMessageQueue<String> queue = new MqttMessageQueue<>(properties);
+        queue.setTypeResolver(element -> element.startsWith("cmd")
+                ? MessageTypeEnum.COMMAND_INVOCATION : MessageTypeEnum.PROPERTY);
+        return queue;
+    }
+    
+    @Test
+    public void testDropOldestKeepsLatestTelemetry() throws InterruptedException {
+        MqttMessageQueue<String> queue = createQueue(2);
+        assertTrue(queue.put("p1", MessageTypeEnum.PROPERTY));
+        assertTrue(queue.put("p2", MessageTypeEnum.PROPERTY));
+        assertTrue(queue.put("p3", MessageTypeEnum.PROPERTY));
+        
+        assertEquals("p2", queue.poll(1, TimeUnit.MILLISECONDS));
+        assertEquals("p3", queue.poll(1, TimeUnit.MILLISECONDS));
+        assertEquals(1, queue.droppedCount(MessageTypeEnum.PROPERTY));
+    }
+    
+    @Test
+    public void testTelemetryNeverEvictsCommand() throws InterruptedException {
+        for (QueueType type : QueueType.values()) {
+            MqttMessageQueue<String> queue = createMixedLane(2, type);
+            assertTrue(queue.put("cmd1", MessageTypeEnum.COMMAND_INVOCATION));
+            assertTrue(queue.put("p1", MessageTypeEnum.PROPERTY));
+            // 挤出的是命令之后最旧的属性，命令留在队首
+            assertTrue(queue.put("p2", MessageTypeEnum.PROPERTY));
+            
+            assertEquals("cmd1", queue.poll(1, TimeUnit.MILLISECONDS));
+            assertEquals("p2", queue.poll(1, TimeUnit.MILLISECONDS));
+            assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+            assertEquals(0, queue.droppedCount(MessageTypeEnum.COMMAND_INVOCATION));
+            assertEquals(1, queue.droppedCount(MessageTypeEnum.PROPERTY));
+        }
+    }
+    
+    @Test
+    public void testDropOldestKeepsCommandsInOrder() throws InterruptedException {
+        for (QueueType type : QueueType.values()) {
+            MqttMessageQueue<String> queue = createMixedLane(3, type);
+            assertTrue(queue.put("cmd1", MessageTypeEnum.COMMAND_INVOCATION));
+            assertTrue(queue.put("p1", MessageTypeEnum.PROPERTY));
+            assertTrue(queue.put("cmd2", MessageTypeEnum.COMMAND_INVOCATION));
+            assertTrue(queue.put("p2", MessageTypeEnum.PROPERTY));
+            
+            assertEquals("cmd1", queue.poll(1, TimeUnit.MILLISECONDS));
+            assertEquals("cmd2", queue.poll(1, TimeUnit.MILLISECONDS));
+            assertEquals("p2", queue.poll(1, TimeUnit.MILLISECONDS));
+            assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+            
+            // 被挤出的槽位跳过后容量恢复；通道中只有命令时丢弃新到达的属性
+            for (int i = 3; i <= 5; i++) {
+                assertTrue(queue.put("cmd" + i, MessageTypeEnum.COMMAND_INVOCATION));
+            }
+            assertFalse(queue.put("p3", MessageTypeEnum.PROPERTY));
+            assertEquals(3, queue.size());
+            assertEquals("cmd3", queue.poll(1, TimeUnit.MILLISECONDS));
+            assertEquals(2, queue.droppedCount(MessageTypeEnum.PROPERTY));
+        }
+    }
+    
+    /**
+     * 命令与属性进入同一通道，属性按 DROP_OLDEST 处理
+     */
+    private MqttMessageQueue<String> createMixedLane(int capacity, QueueType type) {
+        IotMessageConfigProperties properties = new IotMessageConfigProperties();
+        properties.getQueue().setCapacity(capacity);
+        properties.getQueue().setBlockTimeout(50);
+        properties.getQueue().setType(type);
+        properties.getQueue().getPriorities().put(MessageTypeEnum.COMMAND_INVOCATION, MessagePriority.LOW);
+        MqttMessageQueue<String> queue = new MqttMessageQueue<>(properties);
+        queue.setTypeResolver(element -> element.startsWith("cmd")
+                ? MessageTypeEnum.COMMAND_INVOCATION : MessageTypeEnum.PROPERTY);
+        return queue;
+    }
+    
+    @Test
+    public void testBlockWaitsForSpace() throws InterruptedException {
+        MqttMessageQueue<String> queue = createQueue(1);
+        assertTrue(queue.put("cmd1", MessageTypeEnum.COMMAND_INVOCATION));
+        
+        Thread consumer = Thread.ofVirtual().start(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+                queue.poll(1, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(queue.put("cmd2", MessageTypeEnum.COMMAND_INVOCATION));
+        consumer.join();
+        
+        // 超过截止时间仍然没有空位时，消息被丢弃并计数
+        assertFalse(queue.put("cmd3", MessageTypeEnum.COMMAND_INVOCATION));
+        assertEquals(1, queue.droppedCount(MessageTypeEnum.COMMAND_INVOCATION));
+    }
+    
+    @Test
+    public void testPauseAndResumeOnWaterMarks() throws InterruptedException {
+        IotMessageConfigProperties properties = new IotMessageConfigProperties();
+        properties.getQueue().setCapacity(10);
+        properties.getQueue().setDefaultOverflowPolicy(OverflowPolicy.PAUSE_INBOUND);
+        properties.getQueue().getOverflowPolicies().clear();
+        MqttMessageQueue<String> queue = new MqttMessageQueue<>(properties);
+        
+        AtomicInteger paused = new AtomicInteger();
+        AtomicInteger resumed = new AtomicInteger();
+        queue.addPressureListener(new QueuePressureListener() {
+            @Override
+            public void onHighWater() {
+                paused.incrementAndGet();
+            }
+            
+            @Override
+            public void onLowWater() {
+                resumed.incrementAndGet();
+            }
+        });
+        
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.put("p" + i, MessageTypeEnum.PROPERTY));
+        }
+        assertEquals(1, paused.get());
+        
+        while (queue.size() > 5) {
+            queue.poll(1, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(1, resumed.get());
+    }
+    
+    @Test
+    public void testDrainToStopsAtMaxItems() throws InterruptedException {
+        MqttMessageQueue<String> queue = createQueue(10);
+        for (int i = 0; i < 5; i++) {
+            queue.put("p" + i, MessageTypeEnum.PROPERTY);
+        }
+        
+        List<String> batch = new ArrayList<>();
+        assertEquals(3, queue.drainTo(batch, 3, 1, TimeUnit.SECONDS));
+        assertEquals(List.of("p0", "p1", "p2"), batch);
+        
+        // 不等待时只取出已有的元素
+        batch.clear();
+        assertEquals(2, queue.drainTo(batch, 10, 0, TimeUnit.MILLISECONDS));
+        assertEquals(List.of("p3", "p4"), batch);
+    }
+    
+    @Test
+    public void testDrainToLingersForLateElements() throws InterruptedException {
+        MqttMessageQueue<String> queue = createQueue(10);
+        queue.put("p0", MessageTypeEnum.PROPERTY);
+        Thread producer = Thread.ofVirtual().start(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(20);
+                queue.put("p1", MessageTypeEnum.PROPERTY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        
+        List<String> batch = new ArrayList<>();
+        assertEquals(2, queue.drainTo(batch, 2, 5, TimeUnit.SECONDS));
+        producer.join();
+        assertEquals(List.of("p0", "p1"), batch);
+    }
+    
+    @Test
+    public void testCommandOvertakesTelemetryBacklog() throws InterruptedException {
+        MqttMessageQueue<String> queue = createQueue(100);
+        for (int i = 0; i < 50; i++) {
+            queue.put("p" + i, MessageTypeEnum.PROPERTY);
+        }
+        queue.put("e0", MessageTypeEnum.EVENT);
+        queue.put("cmd0", MessageTypeEnum.COMMAND_INVOCATION);
+        
+        assertEquals("cmd0", queue.poll(1, TimeUnit.MILLISECONDS));
+        assertEquals("e0", queue.poll(1, TimeUnit.MILLISECONDS));
+        assertEquals("p0", queue.poll(1, TimeUnit.MILLISECONDS));
+        assertEquals(49, queue.size(MessagePriority.LOW));
+        assertEquals(0, queue.size(MessagePriority.HIGH));
+    }
+    
+    @Test
+    public void testParkedConsumerIsWokenByAnyLane() throws Exception {
+        MqttMessageQueue<String> queue = createQueue(10);
+        CompletableFuture<String> polled = new CompletableFuture<>();
+        Thread consumer = Thread.ofPlatform().start(() -> {
+            try {
+                polled.complete(queue.poll(30, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                polled.completeExceptionally(e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (consumer.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue(System.nanoTime() < deadline);
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        queue.put("cmd0", MessageTypeEnum.COMMAND_INVOCATION);
+        assertEquals("cmd0", polled.get(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void testLowPriorityIsNotStarved() throws InterruptedException {
+        IotMessageConfigProperties properties = new IotMessageConfigProperties();
+        properties.getQueue().setCapacity(100);
+        properties.getQueue().setStarvationLimit(4);
+        MqttMessageQueue<String> queue = new MqttMessageQueue<>(properties);
+        for (int i = 0; i < 20; i++) {
+            queue.put("cmd" + i, MessageTypeEnum.COMMAND_INVOCATION);
+        }
+        queue.put("p0", MessageTypeEnum.PROPERTY);
+        
+        // 属性通道连续被抢先 4 次后让出一次
+        List<String> batch = new ArrayList<>();
+        queue.drainTo(batch, 6, 0, TimeUnit.MILLISECONDS);
+        assertEquals(List.of("cmd0", "cmd1", "cmd2", "cmd3", "p0", "cmd4"), batch);
+    }
+    
+    @Test
+    public void testRecordsQueueWaitPerPriority() throws InterruptedException {
+        MqttMessageQueue<String> queue = createQueue(10);
+        queue.put("p0", MessageTypeEnum.PROPERTY);
+        TimeUnit.MILLISECONDS.sleep(20);
+        queue.put("cmd0", MessageTypeEnum.COMMAND_INVOCATION);
+        queue.poll(1, TimeUnit.MILLISECONDS);
+        queue.poll(1, TimeUnit.MILLISECONDS);
+        
+        QueueWaitStats low = queue.queueWaitStats(MessagePriority.LOW);
+        QueueWaitStats high = queue.queueWaitStats(MessagePriority.HIGH);
+        assertEquals(1, low.count());
+        assertEquals(1, high.count());
+        assertTrue(low.maxNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(high.maxNanos() < low.maxNanos());
+        assertTrue(low.percentileNanos(99) <= low.maxNanos());
+        assertEquals(0, queue.queueWaitStats(MessagePriority.NORMAL).count());
+    }
+}
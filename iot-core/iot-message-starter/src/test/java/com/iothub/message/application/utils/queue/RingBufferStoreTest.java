@@ -0,0 +1,208 @@
+package com.iothub.message.application.utils.queue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RingBufferStoreTest {
+    
+    @Test
+    public void testCapacityIsHonoured() {
+        RingBufferStore<Integer> store = new RingBufferStore<>(10, false, WaitStrategy.PARK);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(store.offer(i));
+        }
+        assertFalse(store.offer(10));
+        assertEquals(10, store.size());
+        assertEquals(10, store.capacity());
+        
+        assertEquals(Integer.valueOf(0), store.poll());
+        assertTrue(store.offer(10));
+        assertFalse(store.offer(11));
+    }
+    
+    @Test
+    public void testFifoOrderAcrossWrap() {
+        RingBufferStore<Integer> store = new RingBufferStore<>(4, false, WaitStrategy.SPIN);
+        for (int round = 0; round < 100; round++) {
+            assertTrue(store.offer(round * 2));
+            assertTrue(store.offer(round * 2 + 1));
+            assertEquals(Integer.valueOf(round * 2), store.poll());
+            assertEquals(Integer.valueOf(round * 2 + 1), store.poll());
+        }
+        assertNull(store.poll());
+        assertEquals(0, store.size());
+    }
+    
+    @Test
+    public void testPollTimesOutWhenEmpty() throws InterruptedException {
+        RingBufferStore<Integer> store = new RingBufferStore<>(8, true, WaitStrategy.YIELD);
+        long start = System.nanoTime();
+        assertNull(store.poll(20, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+    
+    @Test
+    public void testParkedConsumerIsWokenByProducer() throws Exception {
+        RingBufferStore<Integer> store = new RingBufferStore<>(8, false, WaitStrategy.PARK);
+        CompletableFuture<Integer> polled = new CompletableFuture<>();
+        Thread consumer = Thread.ofPlatform().start(() -> {
+            try {
+                polled.complete(store.poll(30, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                polled.completeExceptionally(e);
+            }
+        });
+        // 自旋之后挂起，不再周期性醒来轮询
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (consumer.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+        assertTrue(store.offer(42));
+        assertEquals(Integer.valueOf(42), polled.get(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void testParkedProducerIsWokenByConsumer() throws Exception {
+        RingBufferStore<Integer> store = new RingBufferStore<>(1, false, WaitStrategy.PARK);
+        assertTrue(store.offer(1));
+        CompletableFuture<Boolean> offered = new CompletableFuture<>();
+        Thread producer = Thread.ofPlatform().start(() -> {
+            try {
+                offered.complete(store.offer(2, 30, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                offered.completeExceptionally(e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (producer.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+        assertEquals(Integer.valueOf(1), store.poll());
+        assertTrue(offered.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(2), store.poll());
+    }
+    
+    @Test
+    public void testEvictKeepsOrderOfRemainingElements() {
+        RingBufferStore<Integer> store = new RingBufferStore<>(4, false, WaitStrategy.SPIN);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(store.offer(i));
+        }
+        assertEquals(Integer.valueOf(1), store.evict(i -> i % 2 == 1));
+        assertEquals(3, store.size());
+        assertTrue(store.offer(4));
+        assertFalse(store.offer(5));
+        
+        List<Integer> polled = new ArrayList<>();
+        Integer element;
+        while ((element = store.poll()) != null) {
+            polled.add(element);
+        }
+        assertEquals(List.of(0, 2, 3, 4), polled);
+        assertNull(store.evict(i -> true));
+    }
+    
+    @Test
+    public void testEvictRacesWithConsumers() throws InterruptedException {
+        int total = 20_000;
+        RingBufferStore<Integer> store = new RingBufferStore<>(64, true, WaitStrategy.YIELD);
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch produced = new CountDownLatch(1);
+        Thread producer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < total; i++) {
+                while (!store.offer(i)) {
+                    Integer evicted = store.evict(e -> true);
+                    if (evicted != null && !seen.add(evicted)) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+            }
+            produced.countDown();
+        });
+        List<Thread> consumers = new ArrayList<>();
+        for (int c = 0; c < 2; c++) {
+            consumers.add(Thread.ofPlatform().start(() -> {
+                while (produced.getCount() > 0 || store.size() > 0) {
+                    Integer element = store.poll();
+                    if (element != null && !seen.add(element)) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        producer.join();
+        for (Thread consumer : consumers) {
+            consumer.join();
+        }
+        // 每个元素要么被取走，要么被挤出，只发生一次
+        assertEquals(0, duplicates.get());
+        assertEquals(total, seen.size());
+        assertEquals(0, store.size());
+    }
+    
+    @Test
+    public void testMultiProducerSingleConsumer() throws InterruptedException {
+        assertNoLossOrDuplicates(new RingBufferStore<>(1024, false, WaitStrategy.PARK), 4, 1);
+    }
+    
+    @Test
+    public void testMultiProducerMultiConsumer() throws InterruptedException {
+        assertNoLossOrDuplicates(new RingBufferStore<>(1024, true, WaitStrategy.PARK), 4, 4);
+    }
+    
+    private void assertNoLossOrDuplicates(RingBufferStore<Integer> store, int producers, int consumers)
+            throws InterruptedException {
+        int perProducer = 50_000;
+        int total = producers * perProducer;
+        ConcurrentHashMap<Integer, Boolean> seen = new ConcurrentHashMap<>();
+        AtomicInteger consumed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(producers + consumers);
+        List<Thread> threads = new ArrayList<>();
+        
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!store.offer(base + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+                done.countDown();
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (consumed.get() < total) {
+                        Integer value = store.poll(10, TimeUnit.MILLISECONDS);
+                        if (value != null) {
+                            assertNull("duplicate " + value, seen.put(value, Boolean.TRUE));
+                            consumed.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }));
+        }
+        threads.forEach(Thread::start);
+        
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(total, seen.size());
+        assertEquals(0, store.size());
+    }
+}
@@ -0,0 +1,140 @@
+package com.iothub.message.application.utils.queue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class SpillSegmentLogTest {
+    
+    private static final int SEGMENT_SIZE = 256;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testReadsBackInOrderAcrossSegments() throws IOException {
+        Path directory = folder.newFolder("spill").toPath();
+        try (SpillSegmentLog log = new SpillSegmentLog(directory, SEGMENT_SIZE, 8)) {
+            for (int i = 0; i < 40; i++) {
+                assertTrue(log.append(record(i)));
+            }
+            assertEquals(40, log.pendingCount());
+            assertTrue(segmentCount(directory) > 1);
+            
+            for (int i = 0; i < 40; i++) {
+                assertEquals("record-" + i, new String(log.read(), StandardCharsets.UTF_8));
+            }
+            assertNull(log.read());
+            assertFalse(log.hasPending());
+        }
+    }
+    
+    @Test
+    public void testRejectsWhenSegmentLimitReached() throws IOException {
+        Path directory = folder.newFolder("spill").toPath();
+        try (SpillSegmentLog log = new SpillSegmentLog(directory, SEGMENT_SIZE, 2)) {
+            int appended = 0;
+            while (log.append(record(appended))) {
+                appended++;
+            }
+            assertTrue(appended > 0);
+            assertEquals(appended, log.pendingCount());
+            
+            // 读完一个段后空间被回收，可以继续写入
+            while (log.pendingCount() > appended / 2) {
+                log.read();
+            }
+            assertTrue(log.append(record(appended)));
+        }
+    }
+    
+    @Test
+    public void testResumesFromCommittedOffsetAfterRestart() throws IOException {
+        Path directory = folder.newFolder("spill").toPath();
+        try (SpillSegmentLog log = new SpillSegmentLog(directory, SEGMENT_SIZE, 8)) {
+            for (int i = 0; i < 30; i++) {
+                log.append(record(i));
+            }
+            for (int i = 0; i < 12; i++) {
+                log.read();
+            }
+        }
+        
+        try (SpillSegmentLog log = new SpillSegmentLog(directory, SEGMENT_SIZE, 8)) {
+            assertEquals(18, log.pendingCount());
+            assertEquals("record-12", new String(log.read(), StandardCharsets.UTF_8));
+            log.append(record(30));
+            for (int i = 13; i <= 30; i++) {
+                assertEquals("record-" + i, new String(log.read(), StandardCharsets.UTF_8));
+            }
+            assertNull(log.read());
+        }
+    }
+    
+    @Test
+    public void testRejectsRecordLargerThanSegment() throws IOException {
+        Path directory = folder.newFolder("spill").toPath();
+        try (SpillSegmentLog log = new SpillSegmentLog(directory, SEGMENT_SIZE, 8)) {
+            assertFalse(log.append(new byte[SEGMENT_SIZE]));
+            assertFalse(log.hasPending());
+        }
+    }
+    
+    @Test
+    public void testPeekDoesNotConsume() throws IOException {
+        Path directory = folder.newFolder("spill").toPath();
+        try (SpillSegmentLog log = new SpillSegmentLog(directory, SEGMENT_SIZE, 8)) {
+            log.append(record(0));
+            log.append(record(1));
+            
+            assertEquals("record-0", new String(log.peek(), StandardCharsets.UTF_8));
+            assertEquals("record-0", new String(log.peek(), StandardCharsets.UTF_8));
+            assertEquals(2, log.pendingCount());
+            
+            assertEquals("record-0", new String(log.read(), StandardCharsets.UTF_8));
+            assertEquals("record-1", new String(log.peek(), StandardCharsets.UTF_8));
+            assertEquals(1, log.pendingCount());
+        }
+    }
+    
+    @Test
+    public void testDiscardsOldestSegment() throws IOException {
+        Path directory = folder.newFolder("spill").toPath();
+        try (SpillSegmentLog log = new SpillSegmentLog(directory, SEGMENT_SIZE, 2)) {
+            // 只有一个段时不丢弃
+            log.append(record(0));
+            assertEquals(0, log.discardOldestSegment());
+            
+            int appended = 1;
+            while (log.append(record(appended))) {
+                appended++;
+            }
+            
+            long discarded = log.discardOldestSegment();
+            assertTrue(discarded > 0);
+            assertEquals(appended - discarded, log.pendingCount());
+            assertTrue(log.append(record(appended)));
+            
+            // 剩余记录从第二个段的开头继续，顺序不变
+            assertEquals("record-" + discarded, new String(log.read(), StandardCharsets.UTF_8));
+        }
+    }
+    
+    private static byte[] record(int index) {
+        return ("record-" + index).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static long segmentCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().matches("\\d+\\.seg")).count();
+        }
+    }
+}
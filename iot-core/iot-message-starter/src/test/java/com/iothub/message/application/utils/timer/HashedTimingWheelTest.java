@@ -0,0 +1,138 @@
+package com.iothub.message.application.utils.timer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HashedTimingWheelTest {
+    
+    @Test
+    public void testFiresEachKeyAtStablePhase() {
+        Map<String, List<Long>> firedAt = new HashMap<>();
+        long[] tick = {1_000};
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 64,
+                key -> firedAt.computeIfAbsent(key, k -> new ArrayList<>()).add(tick[0]), tick[0]);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(wheel.schedule("device-" + i, 1000));
+        }
+        
+        for (int i = 0; i < 30; i++) {
+            wheel.advanceTo(++tick[0]);
+        }
+        assertEquals(150, wheel.firedCount());
+        for (int i = 0; i < 50; i++) {
+            String key = "device-" + i;
+            long phase = HashedTimingWheel.phaseOf(key, 10);
+            List<Long> ticks = firedAt.get(key);
+            assertEquals(3, ticks.size());
+            for (long fired : ticks) {
+                assertEquals(phase, fired % 10);
+            }
+            assertEquals(10, ticks.get(1) - ticks.get(0));
+        }
+    }
+    
+    @Test
+    public void testCancelAndReschedule() {
+        Map<String, AtomicInteger> fired = new HashMap<>();
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 64,
+                key -> fired.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet(), 0);
+        wheel.schedule("a", 1000);
+        wheel.schedule("b", 1000);
+        wheel.schedule("c", 1000);
+        
+        // 相同周期再次安排不改变触发时刻，周期不同时重新安排
+        assertFalse(wheel.schedule("a", 1000));
+        assertTrue(wheel.schedule("b", 500));
+        assertTrue(wheel.cancel("c"));
+        assertFalse(wheel.cancel("c"));
+        assertFalse(wheel.isScheduled("c"));
+        assertEquals(2, wheel.size());
+        
+        wheel.advanceTo(20);
+        assertEquals(2, fired.get("a").get());
+        assertEquals(4, fired.get("b").get());
+        assertNull(fired.get("c"));
+        
+        wheel.clear();
+        wheel.advanceTo(40);
+        assertEquals(0, wheel.size());
+        assertEquals(2, fired.get("a").get());
+    }
+    
+    @Test
+    public void testPeriodLongerThanWheelWaitsForItsRound() {
+        AtomicInteger fired = new AtomicInteger();
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 8, key -> fired.incrementAndGet(), 0);
+        wheel.schedule("device-1", 1000);   // 100 个 tick，槽位只有 8 个
+        wheel.advanceTo(100);
+        assertEquals(1, fired.get());
+        wheel.advanceTo(200);
+        assertEquals(2, fired.get());
+        
+        // 落后多个周期时只补触发一次
+        wheel.advanceTo(1000);
+        assertEquals(10, fired.get());
+    }
+    
+    @Test
+    public void testSpreadsMillionDevicesEvenly() {
+        int devices = 1_000_000;
+        int periodTicks = 600;      // 100 ms 一个 tick，周期 60 秒
+        AtomicInteger fired = new AtomicInteger();
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 1024, key -> fired.incrementAndGet(), 0);
+        
+        for (int i = 0; i < devices; i++) {
+            wheel.schedule("device-" + i, periodTicks * 100L);
+        }
+        
+        int max = 0;
+        int min = Integer.MAX_VALUE;
+        for (int tick = 1; tick <= periodTicks; tick++) {
+            int before = fired.get();
+            wheel.advanceTo(tick);
+            int perTick = fired.get() - before;
+            max = Math.max(max, perTick);
+            min = Math.min(min, perTick);
+        }
+        assertEquals(devices, fired.get());
+        
+        // 每个 tick 的触发数接近平均值，而不是全部集中在同一时刻
+        double mean = (double) devices / periodTicks;
+        assertTrue(max < mean * 1.2);
+        assertTrue(min > mean * 0.8);
+        
+        for (int i = 0; i < devices; i += 2) {
+            wheel.cancel("device-" + i);
+        }
+        assertEquals(devices / 2, wheel.size());
+    }
+    
+    @Test
+    public void testWorkerThreadAdvancesWithTime() throws Exception {
+        Map<String, AtomicInteger> fired = new ConcurrentHashMap<>();
+        try (HashedTimingWheel<String> wheel = new HashedTimingWheel<>("test-wheel", 10, 16,
+                key -> fired.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet())) {
+            for (int i = 0; i < 20; i++) {
+                wheel.schedule("device-" + i, 100);
+            }
+            // 创建后不推进，start 之后工作线程才开始触发
+            TimeUnit.MILLISECONDS.sleep(150);
+            assertTrue(fired.isEmpty());
+            wheel.start();
+            TimeUnit.MILLISECONDS.sleep(450);
+        }
+        assertEquals(20, fired.size());
+        for (AtomicInteger count : fired.values()) {
+            assertTrue(count.get() >= 3 && count.get() <= 5);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.iothub.message.application.utils.topic;
+
+import org.junit.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class TopicTrieTest {
+    
+    private static final String TOPIC_REGEX = "^/(?:[^/]+/)+([^/]+)$";
+    
+    @Test
+    public void testMatchesLiteralAndWildcards() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.register("/topic/up/status", "status");
+        trie.register("/topic/up/+", "single");
+        trie.register("/topic/#", "multi");
+        
+        assertEquals("status", trie.route("/topic/up/status").target());
+        assertEquals("single", trie.route("/topic/up/device-1").target());
+        assertEquals("multi", trie.route("/topic/up/device-1/event").target());
+        assertEquals("multi", trie.route("/topic/down/device-1").target());
+        assertNull(trie.route("/other/up/device-1"));
+        assertEquals(3, trie.size());
+    }
+    
+    @Test
+    public void testBindsNamedLevels() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.register("/topic/{direction}/{deviceCode}/#", "device");
+        
+        TopicMatch<String> match = trie.route("/topic/down/device-1/command/reboot");
+        assertNotNull(match);
+        assertEquals("/topic/{direction}/{deviceCode}/#", match.pattern());
+        assertEquals("down", match.variables().get("direction"));
+        assertEquals("device-1", match.variables().get("deviceCode"));
+        assertNull(match.variables().get("missing"));
+    }
+    
+    @Test
+    public void testFallsBackWhenLiteralBranchFails() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.register("/topic/up/status", "status");
+        trie.register("/topic/+/{deviceCode}/event", "event");
+        
+        // 精确分支 up 下没有 event 层级，回退到单层通配分支
+        TopicMatch<String> match = trie.route("/topic/up/device-1/event");
+        assertEquals("event", match.target());
+        assertEquals("device-1", match.variables().get("deviceCode"));
+    }
+    
+    @Test
+    public void testMultiLevelMatchesParentLevel() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.register("/topic/up/#", "up");
+        
+        assertEquals("up", trie.route("/topic/up").target());
+        assertEquals("up", trie.route("/topic/up/").target());
+        assertNull(trie.route("/topic"));
+    }
+    
+    @Test
+    public void testSystemTopicsSkipFirstLevelWildcards() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.register("#", "all");
+        trie.register("+/status", "status");
+        
+        assertNull(trie.route("$SYS/status"));
+        assertEquals("status", trie.route("device/status").target());
+        
+        trie.register("$SYS/#", "sys");
+        assertEquals("sys", trie.route("$SYS/status").target());
+    }
+    
+    @Test
+    public void testRejectsInvalidOrDuplicatePatterns() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.register("/topic/+", "first");
+        
+        assertThrows(IllegalArgumentException.class, () -> trie.register("/topic/{deviceCode}", "second"));
+        assertThrows(IllegalArgumentException.class, () -> trie.register("/topic/#/up", "invalid"));
+        assertThrows(IllegalArgumentException.class, () -> trie.register("/topic/dev+", "invalid"));
+        assertEquals(1, trie.size());
+    }
+    
+    @Test
+    public void testRoutesLikeRegex() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.register("/topic/up/#", "up");
+        trie.register("/topic/event/+", "event");
+        trie.register("/topic/down/{deviceCode}", "down");
+        
+        // 替代原来逐条编译的正则，取到的设备编码与正则的捕获组一致
+        for (int i = 0; i < 1024; i++) {
+            String topic = "/topic/down/device-" + i;
+            TopicMatch<String> match = trie.route(topic);
+            assertEquals("down", match.target());
+            assertEquals(compileAndMatch(topic), match.variables().get("deviceCode"));
+        }
+    }
+    
+    private static String compileAndMatch(String topic) {
+        Matcher matcher = Pattern.compile(TOPIC_REGEX).matcher(topic);
+        return matcher.matches() ? matcher.group(1) : "";
+    }
+}
@@ -1,24 +1,33 @@
 package com.iothub.connector.application.manager;
 
 import com.iothub.message.application.core.handler.connector.ConnectorRegistry;
+import com.iothub.message.application.core.listener.MqttReadinessEvent;
 import com.iothub.message.application.domain.Device;
-import com.iothub.message.application.utils.LaunchStatusMonitor;
+import com.iothub.message.application.domain.PublishReceipt;
 import com.iothub.message.application.core.handler.connector.DefaultDeviceConnector;
+import com.iothub.message.application.utils.timer.HashedTimingWheel;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-import java.util.Map;
+import java.lang.management.ManagementFactory;
 import java.util.Objects;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+/**
+ * 设备定时上报
+ * 启动时不等待 MQTT 连接，容器初始化立即完成；MQTT 连接就绪（MqttReadinessEvent）后开始定时上报，
+ * 连接断开后暂停，重新就绪后恢复。启动和暂停只由就绪事件驱动，容器刷新前已就绪的由 LaunchStatusMonitor 补发就绪事件。记录进程启动到首次上报成功的耗时。
+ * 上报由哈希时间轮驱动：每个设备在上报周期内有一个由设备编码决定的固定相位，
+ * 上报均匀分布在整个周期内，不会在同一时刻为所有设备集中提交任务。
+ */
 @Slf4j
 @Component
-@DependsOn("launchStatusMonitor")
 public class ScheduledTaskManager {
     
     private static final int TASK_TIMEOUT = 30; // 每个任务的超时时间（秒）
@@ -27,22 +36,31 @@ public class ScheduledTaskManager {
     private static final int PROPERTY_REPORT_INTERVAL = 5; // 属性报告间隔（分钟）
     private static final int EVENT_REPORT_INTERVAL = 10; // 事件报告间隔（分钟）
     private static final int MAX_WAIT_TIME_MS = 10_000; // 最大等待时间（毫秒），10秒
+    private static final long PROPERTY_REPORT_PERIOD_MS = TimeUnit.MINUTES.toMillis(PROPERTY_REPORT_INTERVAL);
+    private static final long EVENT_REPORT_PERIOD_MS = TimeUnit.SECONDS.toMillis(EVENT_REPORT_INTERVAL);
+    private static final int REPORT_TICK_MS = 100; // 时间轮的 tick（毫秒），即上报时刻的精度
+    private static final int RECONCILE_INTERVAL = 60; // 把新增设备加入时间轮的间隔（秒）
+    private static final long NOT_REPORTED = -1;
     // 为属性报告和事件报告分别定义虚拟线程池
     private final ExecutorService propertyExecutorService;
     private final ExecutorService eventExecutorService;
     // 分别为属性报告和事件报告定义信号量，用于控制并发任务数量
     private final Semaphore propertySemaphore;
     private final Semaphore eventSemaphore;
-    // 定义调度器
+    // 属性报告和事件报告的时间轮，键为设备编码
+    private final HashedTimingWheel<String> propertyWheel;
+    private final HashedTimingWheel<String> eventWheel;
+    // 定义调度器，定期把新增设备加入时间轮
     private final ScheduledExecutorService scheduler;
+    // 就绪期间的设备同步任务，未就绪时为 null
+    private ScheduledFuture<?> reconcileTask;
+    // 进程启动到首次上报成功的耗时（毫秒）
+    private final AtomicLong timeToFirstReport = new AtomicLong(NOT_REPORTED);
     @Resource
     private ConnectorRegistry connectorRegistry;
     @Resource
     private DeviceRegistry deviceRegistry;
     
-    @Resource
-    private LaunchStatusMonitor launchStatusMonitor;
-    
     public ScheduledTaskManager() {
         
         // 初始化虚拟线程池和信号量
@@ -50,102 +68,140 @@ public class ScheduledTaskManager {
         this.eventExecutorService = Executors.newVirtualThreadPerTaskExecutor();
         this.propertySemaphore = new Semaphore(MAX_CONCURRENT_PROPERTY_TASKS);
         this.eventSemaphore = new Semaphore(MAX_CONCURRENT_EVENT_TASKS);
-        scheduler = Executors.newScheduledThreadPool(2);
+        this.propertyWheel = new HashedTimingWheel<>("property-report-wheel", REPORT_TICK_MS,
+                (int) (PROPERTY_REPORT_PERIOD_MS / REPORT_TICK_MS), this::onPropertyReportDue);
+        this.eventWheel = new HashedTimingWheel<>("event-report-wheel", REPORT_TICK_MS,
+                (int) (EVENT_REPORT_PERIOD_MS / REPORT_TICK_MS), this::onEventReportDue);
+        scheduler = Executors.newScheduledThreadPool(1);
     }
     
+    /**
+     * 启动时间轮的工作线程，构造完成后再启动，时间轮的处理不会在本组件初始化完成前被调用
+     */
     @PostConstruct
-    public void init() {
-        
-        waitForMqttClientConnection();
-        
-        // 延迟启动10秒钟后执行首次任务
-        scheduler.scheduleWithFixedDelay(this::processPropertyReports, 0, PROPERTY_REPORT_INTERVAL, TimeUnit.MINUTES);
-        scheduler.scheduleWithFixedDelay(this::processEventReports, 0, EVENT_REPORT_INTERVAL, TimeUnit.SECONDS);
-        log.info("Scheduled tasks have been successfully initialized and will start after a delay of 10 seconds.");
+    public void startWheels() {
+        propertyWheel.start();
+        eventWheel.start();
     }
     
-    private void waitForMqttClientConnection() {
-        // 无限循环直到 MQTT 客户端连接成功
-        while (!launchStatusMonitor.isMqttClientAlive()) {
-            log.info("MQTT client is not alive. Waiting for the client to connect...");
-            try {
-                // 每隔5秒检查一次，避免频繁检查带来的性能负担
-                TimeUnit.SECONDS.sleep(5);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt(); // 恢复中断状态
-                log.error("Thread interrupted while waiting for MQTT client connection", e);
-            }
+    /**
+     * 连接就绪时开始（恢复）定时上报，断开时暂停
+     */
+    @EventListener
+    public void onReadinessChanged(MqttReadinessEvent event) {
+        if (event.isReady()) {
+            resume();
+        } else {
+            pause();
         }
-        
-        // 一旦连接成功，打印日志并继续执行任务
-        log.info("MQTT client connected successfully. Starting scheduled tasks.");
     }
     
-    // 处理设备的属性报告（每5分钟执行一次）
-    private void processPropertyReports() {
-        
-        try {
-            Map<String, Device> devicesMap = deviceRegistry.getAllDeviceMap();
-            List<Device> deviceList = devicesMap.values().stream()
-                    .filter(entry -> entry.isActive() && entry.isOffline())
-                    .toList();
-            
-            log.info("执行属性上报任务，当前在线设备数量为:{}", deviceList.size());
-            // 将设备分批处理，每批处理 MAX_CONCURRENT_PROPERTY_TASKS 个设备
-            for (Device device : deviceList) {
-                // 尝试获取属性报告信号量许可
-                if (propertySemaphore.tryAcquire(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS)) {
-                    propertyExecutorService.submit(() -> {
-                        try {
-                            processDeviceProperty(device);
-                        } finally {
-                            propertySemaphore.release();
-                        }
-                    });
-                } else {
-                    // 如果任务超时未获取到许可，则丢弃任务
-                    log.warn("Property report task for device {} was discarded due to timeout", device.code());
-                }
-            }
-            
-        } catch (Exception e) {
-            log.error("Error processing property reports: {}", e.getMessage());
+    private synchronized void resume() {
+        if (reconcileTask != null || scheduler.isShutdown()) {
+            return;
         }
+        reconcileTask = scheduler.scheduleWithFixedDelay(this::reconcileDevices, 0, RECONCILE_INTERVAL, TimeUnit.SECONDS);
+        log.info("MQTT client is ready, scheduled reports started.");
     }
     
-    // 处理设备的事件报告（每10分钟执行一次）
-    private void processEventReports() {
-        
+    private synchronized void pause() {
+        if (reconcileTask == null) {
+            return;
+        }
+        // 已提交的上报任务照常完成，之后不再触发新的上报；恢复时设备仍回到原来的相位
+        reconcileTask.cancel(false);
+        reconcileTask = null;
+        propertyWheel.clear();
+        eventWheel.clear();
+        log.info("MQTT client is not ready, scheduled reports paused.");
+    }
+    
+    /**
+     * 定时上报是否处于运行状态
+     */
+    public synchronized boolean isReporting() {
+        return reconcileTask != null;
+    }
+    
+    /**
+     * 已安排属性报告的设备数量
+     */
+    public int scheduledDeviceCount() {
+        return propertyWheel.size();
+    }
+    
+    /**
+     * 进程启动到首次上报成功（代理确认）的耗时
+     *
+     * @return 毫秒，尚未有上报成功时为 -1
+     */
+    public long timeToFirstReportMillis() {
+        return timeToFirstReport.get();
+    }
+    
+    private void recordReported(PublishReceipt receipt) {
+        // 暂存到发件箱的上报尚未到达代理，不计入
+        if (receipt != null && !receipt.deferred() && timeToFirstReport.get() == NOT_REPORTED
+                && timeToFirstReport.compareAndSet(NOT_REPORTED, ManagementFactory.getRuntimeMXBean().getUptime())) {
+            log.info("First device report acknowledged {} ms after startup", timeToFirstReport.get());
+        }
+    }
+    
+    // 把需要上报的设备加入时间轮，已安排的设备保持原来的相位；不再需要上报的设备在到期时移出
+    private void reconcileDevices() {
         try {
-            Map<String, Device> devicesMap = deviceRegistry.getAllDeviceMap();
-            List<Device> deviceList = devicesMap.values().stream()
-                    .filter(entry -> entry.isActive() && entry.isOffline())
-                    .toList();
-            
-            log.info("执行事件上报任务，当前在线设备数量为:{}", deviceList.size());
-            
-            // 将设备分批处理，每批处理 MAX_CONCURRENT_EVENT_TASKS 个设备
-            for (Device device : deviceList) {
-                // 尝试获取事件报告信号量许可
-                if (eventSemaphore.tryAcquire(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS)) {
-                    eventExecutorService.submit(() -> {
-                        try {
-                            processDeviceEvent(device);
-                        } finally {
-                            eventSemaphore.release();
-                        }
-                    });
-                } else {
-                    // 如果任务超时未获取到许可，则丢弃任务
-                    log.warn("Event report task for device {} was discarded due to timeout", device.code());
+            int scheduled = 0;
+            for (Device device : deviceRegistry.getAllDeviceMap().values()) {
+                if (isReportable(device)) {
+                    propertyWheel.schedule(device.code(), PROPERTY_REPORT_PERIOD_MS);
+                    eventWheel.schedule(device.code(), EVENT_REPORT_PERIOD_MS);
+                    scheduled++;
                 }
             }
-            
+            log.info("定时上报设备数量为:{}", scheduled);
         } catch (Exception e) {
-            log.error("Error processing event reports: {}", e.getMessage());
+            log.error("Error scheduling device reports: {}", e.getMessage());
         }
     }
     
+    private static boolean isReportable(Device device) {
+        return device != null && device.isActive() && device.isOffline();
+    }
+    
+    // 设备的属性报告到期（每5分钟一次，时刻由设备编码决定）
+    private void onPropertyReportDue(String deviceCode) {
+        submitReport(propertyWheel, deviceCode, propertyExecutorService, propertySemaphore, this::processDeviceProperty);
+    }
+    
+    // 设备的事件报告到期
+    private void onEventReportDue(String deviceCode) {
+        submitReport(eventWheel, deviceCode, eventExecutorService, eventSemaphore, this::processDeviceEvent);
+    }
+    
+    // 在时间轮线程上只做提交，获取并发许可和上报都在虚拟线程中进行
+    private void submitReport(HashedTimingWheel<String> wheel, String deviceCode, ExecutorService executor, Semaphore semaphore,
+                              Consumer<Device> report) {
+        Device device = deviceRegistry.getDevice(deviceCode);
+        if (!isReportable(device)) {
+            wheel.cancel(deviceCode);
+            return;
+        }
+        executor.submit(() -> {
+            // 尝试获取信号量许可
+            if (!semaphore.tryAcquire(MAX_WAIT_TIME_MS, TimeUnit.MILLISECONDS)) {
+                // 如果任务超时未获取到许可，则丢弃任务
+                log.warn("Report task for device {} was discarded due to timeout", deviceCode);
+                return null;
+            }
+            try {
+                report.accept(device);
+            } finally {
+                semaphore.release();
+            }
+            return null;
+        });
+    }
+    
     // 处理设备的属性报告
     private void processDeviceProperty(Device device) {
         try {
@@ -155,7 +211,9 @@ public class ScheduledTaskManager {
             }
             
             connector.setDevice(device);
-            connector.reportProperty(); // 属性报告的处理
+            // 等待代理确认后再释放并发许可，上报速度随代理的实际确认速度调整
+            PublishReceipt receipt = connector.reportProperty().get(TASK_TIMEOUT, TimeUnit.SECONDS); // 属性报告的处理
+            recordReported(receipt);
             
         } catch (Exception e) {
             log.error("Error processing property report for device {}: {}", device.code(), e.getMessage());
@@ -171,7 +229,8 @@ public class ScheduledTaskManager {
             }
             
             connector.setDevice(device);
-            connector.reportEvent(); // 事件报告的处理
+            PublishReceipt receipt = connector.reportEvent().get(TASK_TIMEOUT, TimeUnit.SECONDS); // 事件报告的处理
+            recordReported(receipt);
             
         } catch (Exception e) {
             log.error("Error processing event report for device {}: {}", device.code(), e.getMessage());
@@ -184,6 +243,8 @@ public class ScheduledTaskManager {
         propertyExecutorService.shutdown();
         eventExecutorService.shutdown();
         scheduler.shutdown(); // 关闭调度器
+        propertyWheel.close();
+        eventWheel.close();
         
         // 等待线程池中的所有任务完成
         if (!propertyExecutorService.awaitTermination(TASK_TIMEOUT, TimeUnit.SECONDS)) {
@@ -1,7 +1,9 @@
 package com.iothub.connector.application.processor;
 
 import com.google.gson.Gson;
+import com.iothub.message.application.core.config.MqttConfigProperties;
 import com.iothub.message.application.domain.Device;
+import com.iothub.message.application.domain.IotMessage;
 import com.iothub.message.application.domain.MessageRequest;
 import com.iothub.message.application.enums.MessageTypeEnum;
 import com.iothub.message.application.core.handler.connector.DefaultDeviceConnector;
@@ -12,15 +14,16 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Component
 @Slf4j
 public class CommandInvocationProcessor  implements IotMessageProcessor {
     
-    private static final String TOPIC_REGEX = "^/[^/]+/([^/]+)$";
+    private static final String DEVICE_CODE = "deviceCode"; // 主题最后一级为设备编码，如 /topic/down/{deviceCode}
+    @Resource
+    private MqttConfigProperties mqttConfigProperties;
     @Resource
     private ConnectorRegistry connectorRegistry;
     @Resource
@@ -28,10 +31,17 @@ public class CommandInvocationProcessor  implements IotMessageProcessor {
     
     @Override
     public void process(String topic, String content) {
+        process(new IotMessage(topic, content));
+    }
+    
+    @Override
+    public void process(IotMessage message) {
         // 事件回复的处理逻辑
+        String topic = message.getTopic();
+        String content = message.getContent();
         log.info("Processing COMMAND_INVOCATION from Topic: {}, Content: {}", topic, content);
         
-        String deviceCode = extractDeviceCodeFromTopic(topic);
+        String deviceCode = extractDeviceCode(message);
         if (deviceCode == null) {
             log.warn("Failed to extract device code from topic: {}", topic);
             return;
@@ -59,14 +69,15 @@ public class CommandInvocationProcessor  implements IotMessageProcessor {
         }
     }
     
-    private String extractDeviceCodeFromTopic(String topic) {
-        // 使用正则提取设备编码
-        Pattern pattern = Pattern.compile(TOPIC_REGEX);
-        Matcher matcher = pattern.matcher(topic);
-        if (matcher.matches()) {
-            return matcher.group(1);
+    private String extractDeviceCode(IotMessage message) {
+        // 路由时已从主题中绑定设备编码，直接构造的消息退回取最后一级
+        String deviceCode = message.getTopicVariable(DEVICE_CODE);
+        if (deviceCode != null) {
+            return deviceCode;
         }
-        return null;
+        String topic = message.getTopic();
+        int index = topic == null ? -1 : topic.lastIndexOf('/');
+        return index < 0 || index == topic.length() - 1 ? null : topic.substring(index + 1);
     }
     
     private Device getDevice(String deviceCode) {
@@ -104,4 +115,9 @@ public class CommandInvocationProcessor  implements IotMessageProcessor {
     public MessageTypeEnum getMessageType() {
         return MessageTypeEnum.COMMAND_INVOCATION;
     }
+    
+    @Override
+    public List<String> getTopicPatterns() {
+        return List.of(mqttConfigProperties.getTopics().getDownlink() + "/{" + DEVICE_CODE + "}");
+    }
 }
\ No newline at end of file